@@ -0,0 +1,32 @@
+package com.navaplaystudios.benchmarks;
+
+/**
+ * Entrada de target/benchmarks.jar: las mismas opciones que el main de
+ * JMH, siempre con el profiler de GC para ver bytes asignados por
+ * operación (gc.alloc.rate.norm) junto al tiempo. Ejemplos:
+ *
+ *   java -jar target/benchmarks.jar
+ *   java -jar target/benchmarks.jar GamePlayers -p games=100000
+ *   java -jar target/benchmarks.jar Deck -wi 3 -i 5 -f 1
+ *
+ * Los benchmarks están en los paquetes del servidor para llegar a los
+ * métodos package-private (buildGameState, createGameResponse, ...).
+ */
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class Benchmarks {
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListProfilers()) {
+            org.openjdk.jmh.Main.main(args); // -h, -l, -lprof: que los atienda JMH
+            return;
+        }
+        new Runner(new OptionsBuilder().parent(cli).addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,71 @@
+package com.navaplaystudios.server;
+
+/**
+ * Decodificación de un request entrante: el camino anterior (new JSONObject
+ * y los getters que usaba cada handler) contra ActionDecoder sobre el
+ * GameAction reutilizable del hilo. Con el perfilador de GC se ve la
+ * diferencia en bytes por mensaje, que es lo que motivó el cambio.
+ *
+ * Los mensajes son los del cliente para las acciones más frecuentes; el
+ * peek del rate limiter se mide aparte porque corre antes de cada decode.
+ */
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class ActionDecoderBenchmark {
+    @Param({"play_card", "draw_card", "join_game", "get_game_state"})
+    public String action;
+
+    private String message;
+
+    @Setup
+    public void setup() {
+        switch (action) {
+            case "play_card" -> message =
+                "{\"action\":\"play_card\",\"playerId\":\"player_1729_ab12\",\"cardIndex\":3,\"chosenColor\":\"RED\"}";
+            case "draw_card" -> message = "{\"action\":\"draw_card\",\"playerId\":\"player_1729_ab12\"}";
+            case "join_game" -> message =
+                "{\"action\":\"join_game\",\"gameId\":\"game_1729\",\"playerId\":\"player_1729_ab12\",\"playerName\":\"Jugador 1\"}";
+            case "get_game_state" -> message =
+                "{\"action\":\"get_game_state\",\"playerId\":\"player_1729_ab12\",\"version\":57,\"deltaUpdates\":true}";
+            default -> throw new IllegalArgumentException(action);
+        }
+    }
+
+    /** Lo que hacían onMessage y el handler antes de ActionDecoder. */
+    @Benchmark
+    public void jsonObject(Blackhole bh) {
+        JSONObject request = new JSONObject(message);
+        bh.consume(request.getString("action"));
+        bh.consume(request.optString("playerId", null));
+        bh.consume(request.optString("gameId", null));
+        bh.consume(request.optString("playerName", null));
+        bh.consume(request.optInt("cardIndex", -1));
+        String color = request.optString("chosenColor", null);
+        bh.consume(color == null ? null : Card.Color.valueOf(color));
+        bh.consume(request.optLong("version", -1));
+        bh.consume(request.optBoolean("deltaUpdates"));
+    }
+
+    @Benchmark
+    public GameAction actionDecoder() {
+        GameAction out = ActionDecoder.scratch();
+        ActionDecoder.decode(message, out);
+        return out;
+    }
+
+    @Benchmark
+    public GameAction.Type peekType() {
+        return ActionDecoder.peekType(message);
+    }
+}
@@ -0,0 +1,245 @@
+package com.navaplaystudios.server;
+
+/**
+ * Costo del log de acciones en sus tres momentos:
+ *
+ * - append: lo que paga el shard por registrar una jugada (codificar bajo
+ *   el lock; el disco lo toca el hilo uno-wal), con fsync en cada lote, cada
+ *   50 ms o nunca. Si el disco no da abasto aparece acá como espera.
+ * - playCard: GameManager.playCard solo o seguido de actionLog.played, que
+ *   es lo que hace handlePlayCard; la diferencia es lo que el log le agrega
+ *   a una jugada. Mismo esquema que UnoGameBenchmark: manos con números del
+ *   color de arriba y una tanda de jugadas por invocación.
+ * - recover: arrancar el servidor sobre un log con 10k partidas a medio
+ *   jugar (replay, aplicar cada acción y reanudar turnos). El log se arma
+ *   una vez por trial y se copia a un directorio nuevo en cada invocación.
+ *
+ * Los directorios van en el temporal del sistema y se borran al terminar.
+ */
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.GameState;
+import com.navaplaystudios.server.clases.Player;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ActionLogBenchmark {
+    private static final String[] PLAYERS = {"p1", "p2", "p3"};
+    private static final int PLAYS = 60; // 20 por jugador: nadie se queda sin cartas
+    private static final int TURNS = 30; // por partida en el log de recover
+
+    /** Log abierto con el hilo de escritura corriendo. */
+    @State(Scope.Benchmark)
+    public static class OpenLog {
+        @Param({"0", "50", "-1"})
+        public int fsyncMillis;
+
+        Path dir;
+        ActionLog log;
+
+        @Setup
+        public void setup() throws IOException {
+            dir = Files.createTempDirectory("uno-wal-append");
+            log = new ActionLog(walConfig(dir).setWalFsyncMillis(fsyncMillis));
+            log.replay(entry -> { });
+            log.start();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            log.close();
+            delete(dir);
+        }
+    }
+
+    /** Partida nueva con las manos listas para PLAYS jugadas, con o sin log. */
+    @State(Scope.Thread)
+    public static class Table {
+        @Param({"false", "true"})
+        public boolean wal;
+
+        Path dir;
+        ActionLog log;
+        GameManager manager;
+        UnoGame game;
+        long seed;
+
+        @Setup
+        public void open() throws IOException {
+            dir = Files.createTempDirectory("uno-wal-play");
+            log = new ActionLog(walConfig(dir).setWalEnabled(wal));
+            log.replay(entry -> { });
+            log.start();
+        }
+
+        @Setup(Level.Invocation)
+        public void deal() {
+            manager = new GameManager();
+            String gameId = manager.createGame("bench");
+            for (String id : PLAYERS) {
+                manager.joinGame(gameId, id, "Jugador " + id);
+            }
+            manager.startGame(gameId, "p1", seed++);
+            game = manager.getGame(gameId);
+            // El color de arriba nunca es WILD al empezar, y un número del mismo color siempre vale
+            Card.Color color = game.getTopCard().getColor();
+            Card.Type[] numbers = {Card.Type.ONE, Card.Type.TWO, Card.Type.THREE, Card.Type.FOUR, Card.Type.FIVE};
+            for (Player player : game.getPlayers()) {
+                for (int i = 0; i < PLAYS / PLAYERS.length; i++) {
+                    player.addCard(new Card(color, numbers[i % numbers.length]));
+                }
+            }
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            log.close();
+            delete(dir);
+        }
+    }
+
+    /** Log con 10k partidas empezadas; cada invocación recupera una copia. */
+    @State(Scope.Thread)
+    public static class Recovery {
+        @Param({"10000"})
+        public int games;
+
+        Path source;
+        Path dir;
+        UnoWebSocketServer server;
+
+        @Setup
+        public void writeLog() throws IOException {
+            source = Files.createTempDirectory("uno-wal-recover");
+            ActionLog log = new ActionLog(walConfig(source));
+            log.replay(entry -> { });
+            log.start();
+            for (int i = 0; i < games; i++) {
+                playLogged(log, "G" + i, i);
+            }
+            log.close();
+        }
+
+        @Setup(Level.Invocation)
+        public void copyLog() throws IOException {
+            dir = Files.createTempDirectory("uno-wal-recover-copy");
+            try (Stream<Path> files = Files.list(source)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().startsWith("wal-")) {
+                        Files.copy(file, dir.resolve(file.getFileName()), StandardCopyOption.COPY_ATTRIBUTES);
+                    }
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void stopServer() throws IOException {
+            if (server != null) {
+                server.discard();
+                server = null;
+            }
+            delete(dir);
+        }
+
+        @TearDown
+        public void deleteLog() throws IOException {
+            delete(source);
+        }
+    }
+
+    @Benchmark
+    public void append(OpenLog state) {
+        state.log.played("G1", "p1", 3, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYS)
+    public boolean playCard(Table table) {
+        boolean played = true;
+        for (int i = 0; i < PLAYS; i++) {
+            Player player = table.game.getCurrentPlayer();
+            int cardIndex = player.getHandSize() - 1;
+            played &= table.manager.playCard(player.getId(), cardIndex, null).isSuccess();
+            table.log.played("bench", player.getId(), cardIndex, null);
+        }
+        return played;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    public int recover(Recovery state) {
+        state.server = new UnoWebSocketServer(walConfig(state.dir));
+        return state.server.getGameCount();
+    }
+
+    private static ServerConfig walConfig(Path dir) {
+        return new ServerConfig().setPort(0).setMetricsPort(0).setWalEnabled(true).setWalDir(dir.toString());
+    }
+
+    /** Crea, llena y empieza una partida y juega TURNS turnos, anotando lo aceptado como el servidor. */
+    private static void playLogged(ActionLog log, String gameId, long seed) {
+        GameManager manager = new GameManager();
+        manager.createGame(gameId);
+        log.created(gameId, "Sala " + gameId, gameId + PLAYERS[0], "Host", 4, seed);
+        for (String id : PLAYERS) {
+            manager.joinGame(gameId, gameId + id, "Jugador " + id);
+            log.joined(gameId, gameId + id, "Jugador " + id);
+        }
+        manager.startGame(gameId, gameId + PLAYERS[0], seed);
+        log.started(gameId, gameId + PLAYERS[0], seed);
+
+        UnoGame game = manager.getGame(gameId);
+        for (int turn = 0; turn < TURNS && game.getState() == GameState.IN_PROGRESS; turn++) {
+            if (game.isWaitingForColorChoice()) {
+                String chooser = game.getColorChoicePlayerId();
+                Card.Color color = game.suggestColor(chooser);
+                manager.chooseColor(chooser, color);
+                log.choseColor(gameId, chooser, color);
+                continue;
+            }
+            String playerId = game.getCurrentPlayer().getId();
+            int hand = game.getCurrentPlayer().getHandSize();
+            boolean played = false;
+            for (int i = 0; i < hand && !played; i++) {
+                if (manager.playCard(playerId, i, null).isSuccess()) {
+                    log.played(gameId, playerId, i, null);
+                    played = true;
+                }
+            }
+            if (!played && manager.drawCard(playerId).isSuccess()) {
+                log.drew(gameId, playerId);
+            }
+        }
+    }
+
+    private static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
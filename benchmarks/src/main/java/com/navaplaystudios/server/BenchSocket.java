@@ -0,0 +1,183 @@
+package com.navaplaystudios.server;
+
+/**
+ * WebSocket sin red para llevar mensajes por onMessage: lo que el servidor
+ * le manda se cuenta y se descarta (salvo el último texto, para leer
+ * respuestas del setup). frames lo incrementa el hilo que envía, así el
+ * benchmark puede esperar la respuesta de un shard.
+ */
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import javax.net.ssl.SSLSession;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+
+final class BenchSocket implements WebSocket {
+    private final InetSocketAddress address;
+    private volatile long frames;
+    private volatile String lastText;
+    private Object attachment;
+
+    BenchSocket(int id) {
+        this.address = new InetSocketAddress("127.0.0.1", 40000 + id);
+    }
+
+    long frames() {
+        return frames;
+    }
+
+    String lastText() {
+        return lastText;
+    }
+
+    /** Espera a que lleguen más de after frames; cede el CPU para que el shard avance. */
+    void awaitFrames(long after) {
+        while (frames <= after) {
+            Thread.yield();
+        }
+    }
+
+    private void received(Framedata frame) {
+        if (frame.getOpcode() == Opcode.TEXT) {
+            lastText = StandardCharsets.UTF_8.decode(frame.getPayloadData().duplicate()).toString();
+        }
+        frames++; // un solo hilo envía a la vez: el del shard o el del benchmark
+    }
+
+    @Override
+    public void sendFrame(Framedata frame) {
+        received(frame);
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> batch) {
+        for (Framedata frame : batch) {
+            received(frame);
+        }
+    }
+
+    @Override
+    public void send(String text) {
+        lastText = text;
+        frames++;
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        frames++;
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        frames++;
+    }
+
+    @Override
+    public void sendPing() {
+    }
+
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {
+        if (fin) {
+            frames++;
+        }
+    }
+
+    @Override
+    public void close(int code, String message) {
+    }
+
+    @Override
+    public void close(int code) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return false;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return address;
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return false;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return false;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return false;
+    }
+
+    @Override
+    public Draft getDraft() {
+        return null;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        return ReadyState.OPEN;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return "/";
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("Sin SSL");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.navaplaystudios.server;
+
+/**
+ * Ancho de banda ahorrado contra CPU gastada por permessage-deflate. Los
+ * frames son los game_state_update JSON que recibe un jugador a lo largo
+ * de una partida real (hasta 64 turnos jugados en el setup, con 2, 3 o 6
+ * jugadores) y se comprimen en orden con DeflateExtension, igual que en
+ * una conexión: con context takeover cada estado se comprime contra los
+ * anteriores. Al terminar la secuencia se reinicia el contexto, como en una
+ * conexión que empieza otra partida; si no, el compresor encontraría los
+ * mismos frames de la vuelta anterior y el ahorro saldría inflado.
+ *
+ * El tiempo por operación es lo que cuesta comprimir un frame; los bytes
+ * de entrada y salida de toda la medición se imprimen en el teardown, de
+ * donde sale el ahorro para cada nivel y modo.
+ */
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.GameState;
+import com.navaplaystudios.server.clases.Player;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DeflateBenchmark {
+    private static final int TURNS = 64;
+
+    @Param({"2", "3", "6"})
+    public int players;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    @Param({"false", "true"})
+    public boolean contextTakeover;
+
+    private ByteBuffer[] frames;
+    private OutboundStats stats;
+    private DeflateExtension deflate;
+    private int next;
+
+    @Setup
+    public void setup() {
+        frames = playGame(players);
+        stats = new OutboundStats();
+        ServerConfig config = new ServerConfig().setDeflateLevel(level).setDeflateContextTakeover(contextTakeover);
+        deflate = (DeflateExtension) new DeflateExtension(config, stats).copyInstance();
+    }
+
+    @TearDown
+    public void tearDown() {
+        long in = stats.getCompressedBytesIn();
+        long out = stats.getCompressedBytesOut();
+        System.out.printf("%n[deflate] %d jugadores, nivel %d, contexto %s: %d frames, %d -> %d bytes (%.1f%% ahorrado)%n",
+            players, level, contextTakeover, stats.getCompressedFrames(), in, out,
+            in == 0 ? 0.0 : 100.0 * (in - out) / in);
+    }
+
+    @Benchmark
+    public Framedata compress() {
+        TextFrame frame = new TextFrame();
+        frame.setPayload(frames[next].duplicate());
+        deflate.encodeFrame(frame);
+        if (++next == frames.length) {
+            next = 0;
+            if (contextTakeover) {
+                deflate.getDeflater().reset(); // partida nueva: sin repetir frames ya vistos
+            }
+        }
+        return frame;
+    }
+
+    /** Estados que recibe p1 mientras se juega una partida con estrategia mínima. */
+    private static ByteBuffer[] playGame(int players) {
+        GameManager manager = new GameManager();
+        String gameId = manager.createGame("bench");
+        for (int i = 1; i <= players; i++) {
+            manager.joinGame(gameId, "p" + i, "Jugador " + i);
+        }
+        manager.startGame(gameId, "p1", 42);
+        UnoGame game = manager.getGame(gameId);
+        Player p1 = game.getPlayers().get(0);
+
+        List<ByteBuffer> frames = new ArrayList<>();
+        for (int turn = 0; turn < TURNS && game.getState() == GameState.IN_PROGRESS; turn++) {
+            if (game.isWaitingForColorChoice()) {
+                String chooser = game.getColorChoicePlayerId();
+                game.chooseColor(chooser, game.suggestColor(chooser));
+            } else {
+                Player current = game.getCurrentPlayer();
+                boolean played = false;
+                for (int i = 0; i < current.getHandSize() && !played; i++) {
+                    played = game.playCard(current.getId(), i, null);
+                }
+                if (!played) {
+                    game.drawCard(current.getId());
+                }
+            }
+            frames.add(GameStateFrame.encode(game).forPlayer("p1", p1.getHand(), false, true));
+        }
+        return frames.toArray(new ByteBuffer[0]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.navaplaystudios.server;
+
+/**
+ * getGamePlayers, que se llama en cada broadcast, con distintas cantidades
+ * de partidas cargadas (3 jugadores cada una): el índice juego -> jugadores
+ * no debería depender de cuántas haya. Las consultas recorren las partidas
+ * en un orden al azar para no medir siempre la misma entrada en caché.
+ *
+ * El servidor se arma sin abrir puertos ni log de acciones.
+ */
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class GamePlayersBenchmark {
+    private static final int LOOKUPS = 1 << 16; // potencia de 2 para recorrer con una máscara
+
+    @Param({"10", "1000", "100000"})
+    public int games;
+
+    private UnoWebSocketServer server;
+    private String[] lookups;
+
+    @Setup
+    public void setup() {
+        ServerConfig config = new ServerConfig().setPort(0).setMetricsPort(0).setWalEnabled(false);
+        server = new UnoWebSocketServer(config);
+        String[] gameIds = new String[games];
+        for (int i = 0; i < games; i++) {
+            gameIds[i] = server.getGameManager().createGame("G" + i);
+            for (int p = 0; p < 3; p++) {
+                String playerId = "G" + i + "P" + p;
+                server.getGameManager().joinGame(gameIds[i], playerId, playerId);
+            }
+        }
+        Random random = new Random(42);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = gameIds[random.nextInt(games)];
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.discard();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Set<String> getGamePlayers(Cursor cursor) {
+        return server.getGamePlayers(lookups[cursor.next++ & (LOOKUPS - 1)]);
+    }
+}
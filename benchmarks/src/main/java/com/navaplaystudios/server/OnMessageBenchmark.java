@@ -0,0 +1,99 @@
+package com.navaplaystudios.server;
+
+/**
+ * Un get_game_state completo por onMessage (peek del rate limiter, decode,
+ * salto al shard, handler y envío) con el log en tres modos: off es el
+ * nivel INFO de producción, donde las dos líneas por mensaje ("Mensaje
+ * completo" y "Acción recibida") no hacen nada; sampled es DEBUG con
+ * debugSample=100; all es DEBUG registrando todo. Cada operación espera la
+ * respuesta en el socket, así el tiempo incluye el shard.
+ *
+ * Las conexiones son BenchSocket (sin red) y la partida se arma con los
+ * mismos mensajes que manda un cliente. El log escribe en target/ y no a
+ * consola, para medir lo que paga el hilo que atiende y no la terminal.
+ */
+import java.util.concurrent.TimeUnit;
+import org.java_websocket.handshake.HandshakeImpl1Client;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Duno.log.console=false", "-Duno.log.dir=target/bench-logs"})
+@State(Scope.Thread)
+public class OnMessageBenchmark {
+    private static final String GAME_ID = "bench";
+
+    @Param({"off", "sampled", "all"})
+    public String logging;
+
+    private UnoWebSocketServer server;
+    private BenchSocket host;
+    private String getGameState;
+
+    @Setup
+    public void setup() {
+        ServerConfig config = new ServerConfig().setPort(0).setMetricsPort(0).setWalEnabled(false)
+                .setRateLimitEnabled(false).setHeartbeatSeconds(0).setTurnSeconds(0);
+        server = new UnoWebSocketServer(config);
+
+        host = connect(1);
+        BenchSocket guest = connect(2);
+        request(host, "{\"action\":\"create_game\",\"gameId\":\"" + GAME_ID + "\",\"hostPlayerId\":\"p1\"}");
+        if (!host.lastText().contains("\"success\":true")) {
+            throw new IllegalStateException("No se pudo crear la partida: " + host.lastText());
+        }
+        request(host, "{\"action\":\"join_game\",\"gameId\":\"" + GAME_ID + "\",\"playerId\":\"p1\",\"playerName\":\"A\"}");
+        request(guest, "{\"action\":\"join_game\",\"gameId\":\"" + GAME_ID + "\",\"playerId\":\"p2\",\"playerName\":\"B\"}");
+        request(host, "{\"action\":\"start_game\",\"gameId\":\"" + GAME_ID + "\",\"playerId\":\"p1\"}");
+        getGameState = "{\"action\":\"get_game_state\",\"playerId\":\"p1\"}";
+        // Las notificaciones de los pasos anteriores pueden seguir llegando: la última respuesta es el estado
+        server.onMessage(host, getGameState);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (host.lastText() == null || !host.lastText().startsWith("{\"type\":\"game_state\"")) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Respuesta inesperada: " + host.lastText());
+            }
+            Thread.yield();
+        }
+
+        switch (logging) {
+            case "off" -> Log.setLevel(Log.Level.INFO);
+            case "sampled" -> {
+                Log.setLevel(Log.Level.DEBUG);
+                Log.setDebugSample(100);
+            }
+            case "all" -> {
+                Log.setLevel(Log.Level.DEBUG);
+                Log.setDebugSample(1);
+            }
+            default -> throw new IllegalArgumentException(logging);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Log.setLevel(Log.Level.INFO);
+        server.discard();
+    }
+
+    @Benchmark
+    public long getGameState() {
+        return request(host, getGameState);
+    }
+
+    private BenchSocket connect(int id) {
+        BenchSocket socket = new BenchSocket(id);
+        server.onOpen(socket, new HandshakeImpl1Client());
+        return socket;
+    }
+
+    /** Manda el mensaje y espera al menos un frame de respuesta. */
+    private long request(BenchSocket socket, String message) {
+        long before = socket.frames();
+        server.onMessage(socket, message);
+        socket.awaitFrames(before);
+        return socket.frames();
+    }
+}
@@ -0,0 +1,61 @@
+package com.navaplaystudios.server;
+
+/**
+ * Escalado de GameExecutor con el número de shards: cuatro hilos
+ * productores encolan tareas con trabajo de CPU repartidas en 64 partidas
+ * y esperan a que corran. Con 4 núcleos libres, 4 shards deberían acercarse
+ * a 4x el throughput de 1; con menos núcleos el techo es el de la máquina.
+ * Reemplaza al chequeo de escalado de GameExecutorTest, que con reloj de
+ * pared daba falsos negativos en máquinas cargadas.
+ */
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ShardScalingBenchmark {
+    private static final int GAMES = 64;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"2000"})
+    public int work; // tokens de Blackhole.consumeCPU por tarea, unos pocos microsegundos
+
+    private GameExecutor executor;
+    private String[] gameIds;
+
+    @Setup
+    public void setup() {
+        executor = new GameExecutor(shards);
+        gameIds = new String[GAMES];
+        for (int i = 0; i < GAMES; i++) {
+            gameIds[i] = "game_" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(GAMES)
+    public void tasks() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(GAMES);
+        for (String gameId : gameIds) {
+            executor.execute(gameId, () -> {
+                Blackhole.consumeCPU(work);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,50 @@
+package com.navaplaystudios.server;
+
+/**
+ * Del GameResponse al texto que sale por el socket: createGameResponse
+ * copia los datos a un JSONObject (wrap de listas y mapas anidados) y
+ * toString lo serializa. Los datos son los de un game_state_update.
+ */
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.GameResponse;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class UnoWebSocketServerBenchmark {
+    private GameResponse state;
+    private JSONObject response;
+
+    @Setup
+    public void setup() {
+        GameManager manager = new GameManager();
+        String gameId = manager.createGame("bench");
+        for (String id : new String[] {"p1", "p2", "p3"}) {
+            manager.joinGame(gameId, id, "Jugador " + id);
+        }
+        manager.startGame(gameId, "p1", 42);
+        state = manager.getGameState("p1");
+        response = UnoWebSocketServer.createGameResponse("game_state_update", state);
+    }
+
+    @Benchmark
+    public JSONObject createGameResponse() {
+        return UnoWebSocketServer.createGameResponse("game_state_update", state);
+    }
+
+    @Benchmark
+    public String createGameResponseToString() {
+        return UnoWebSocketServer.createGameResponse("game_state_update", state).toString();
+    }
+
+    @Benchmark
+    public String toStringOnly() {
+        return response.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.navaplaystudios.server;
+
+/**
+ * Formato binario contra JSON en los dos sentidos del socket. Hacia el
+ * cliente, el game_state_update de un destinatario: el camino anterior
+ * (createGameResponse + toString + UTF-8), el JSON armado desde
+ * GameStateFrame y el frame binario; encodeFrame es la parte compartida
+ * que se paga una vez por broadcast. Hacia el servidor, un play_card
+ * decodificado desde texto y desde binario.
+ *
+ * Los tamaños en bytes de cada variante se imprimen en el setup; con el
+ * perfilador de GC se ven además los bytes asignados por mensaje.
+ */
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+    @Param({"2", "6"})
+    public int players;
+
+    private GameManager manager;
+    private UnoGame game;
+    private GameStateFrame frame;
+    private List<Card> hand;
+    private String jsonAction;
+    private ByteBuffer binaryAction;
+
+    @Setup
+    public void setup() {
+        manager = new GameManager();
+        String gameId = manager.createGame("bench");
+        for (int i = 1; i <= players; i++) {
+            manager.joinGame(gameId, "p" + i, "Jugador " + i);
+        }
+        manager.startGame(gameId, "p1", 42);
+        game = manager.getGame(gameId);
+        frame = GameStateFrame.encode(game);
+        hand = game.getPlayers().get(0).getHand();
+
+        jsonAction = "{\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":3,\"chosenColor\":\"RED\"}";
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_PLAY_CARD);
+        out.string("p1");
+        out.varint(3);
+        out.u8(Card.Color.RED.ordinal());
+        binaryAction = out.toBuffer();
+
+        System.out.printf("%n[bytes] %d jugadores: estado legacy=%d json=%d binario=%d; play_card json=%d binario=%d%n",
+            players, legacyState().length, jsonState().remaining(), binaryState().remaining(),
+            jsonAction.getBytes(StandardCharsets.UTF_8).length, binaryAction.remaining());
+    }
+
+    @Benchmark
+    public byte[] legacyState() {
+        return UnoWebSocketServer.createGameResponse("game_state_update", manager.getGameState("p1"))
+            .toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public GameStateFrame encodeFrame() {
+        return GameStateFrame.encode(game);
+    }
+
+    @Benchmark
+    public ByteBuffer jsonState() {
+        return frame.forPlayer("p1", hand, false, true);
+    }
+
+    @Benchmark
+    public ByteBuffer binaryState() {
+        return frame.forPlayer("p1", hand, true, true);
+    }
+
+    @Benchmark
+    public GameAction decodeJsonAction() {
+        GameAction out = ActionDecoder.scratch();
+        ActionDecoder.decode(jsonAction, out);
+        return out;
+    }
+
+    @Benchmark
+    public GameAction decodeBinaryAction() {
+        GameAction out = ActionDecoder.scratch();
+        BinaryCodec.decodeAction(binaryAction.duplicate(), out);
+        return out;
+    }
+}
@@ -0,0 +1,35 @@
+package com.navaplaystudios.server.clases;
+
+/**
+ * El mazo de 108 cartas: armarlo (cada startGame y cada replay del log) y
+ * barajarlo (también en cada rebaraje del descarte).
+ */
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class DeckBenchmark {
+    private long seed;
+    private Deck deck;
+
+    @Setup
+    public void setup() {
+        deck = new Deck(42);
+    }
+
+    @Benchmark
+    public Deck construct() {
+        return new Deck(seed++); // incluye el primer shuffle, como en startGame
+    }
+
+    @Benchmark
+    public Deck shuffle() {
+        deck.shuffle();
+        return deck;
+    }
+}
@@ -0,0 +1,36 @@
+package com.navaplaystudios.server.clases;
+
+/**
+ * El mapa de estado que se arma para cada jugador en cada game_state_update
+ * (antes de pasar a JSON): 3 jugadores con la mano inicial.
+ */
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class GameManagerBenchmark {
+    private GameManager manager;
+    private UnoGame game;
+
+    @Setup
+    public void setup() {
+        manager = new GameManager();
+        String gameId = manager.createGame("bench");
+        for (String id : new String[] {"p1", "p2", "p3"}) {
+            manager.joinGame(gameId, id, "Jugador " + id);
+        }
+        manager.startGame(gameId, "p1", 42);
+        game = manager.getGame(gameId);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildGameState() {
+        return manager.buildGameState(game, "p1");
+    }
+}
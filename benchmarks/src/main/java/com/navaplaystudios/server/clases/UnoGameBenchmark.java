@@ -0,0 +1,124 @@
+package com.navaplaystudios.server.clases;
+
+/**
+ * Jugadas sobre una partida de 3 jugadores recién empezada. Cada
+ * invocación arranca de una partida nueva (armada fuera de la medición) y
+ * hace una tanda de jugadas, así el costo de Level.Invocation se reparte.
+ *
+ * Para que todas las jugadas valgan sin estrategia dentro de la medición,
+ * cada jugador recibe al final de la mano números del color de la carta
+ * de arriba y juega siempre la última: no hay efectos ni elección de color.
+ *
+ * El profiler de GC cuenta también lo que asigna el setup de cada
+ * invocación. newGame y fullDiscard miden solo ese setup: lo propio de
+ * playCard/drawCard es la diferencia con newGame repartida entre las
+ * jugadas de la tanda, y lo de reshuffleDiscardPile, la diferencia con
+ * fullDiscard.
+ */
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class UnoGameBenchmark {
+    private static final String[] PLAYERS = {"p1", "p2", "p3"};
+    private static final int PLAYS = 60; // 20 por jugador: nadie se queda sin cartas
+    private static final int DRAWS = 60; // quedan ~86 en el mazo tras repartir
+
+    private long seed;
+
+    /** Partida nueva con las manos listas para PLAYS jugadas. */
+    @State(Scope.Thread)
+    public static class FreshGame {
+        UnoGame game;
+        long seed;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            game = newGame(seed++);
+        }
+    }
+
+    /** Mazo vacío y descarte con 61 cartas: lo que encuentra el robo que dispara el rebaraje. */
+    @State(Scope.Thread)
+    public static class FullDiscard {
+        UnoGame game;
+        long seed;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            game = fullDiscard(seed++);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYS)
+    public void playCard(FreshGame state) {
+        UnoGame game = state.game;
+        for (int i = 0; i < PLAYS; i++) {
+            Player player = game.getCurrentPlayer();
+            game.playCard(player.getId(), player.getHandSize() - 1, null);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DRAWS)
+    public boolean drawCard(FreshGame state) {
+        UnoGame game = state.game;
+        boolean drawn = true;
+        for (int i = 0; i < DRAWS; i++) {
+            drawn &= game.drawCard(game.getCurrentPlayer().getId());
+        }
+        return drawn;
+    }
+
+    @Benchmark
+    public UnoGame reshuffleDiscardPile(FullDiscard state) {
+        state.game.reshuffleDiscardPile();
+        return state.game;
+    }
+
+    @Benchmark
+    public UnoGame newGame() {
+        return newGame(seed++);
+    }
+
+    @Benchmark
+    public UnoGame fullDiscard() {
+        return fullDiscard(seed++);
+    }
+
+    static UnoGame newGame(long seed) {
+        UnoGame game = new UnoGame("bench");
+        for (String id : PLAYERS) {
+            game.addPlayer(new Player(id, "Jugador " + id));
+        }
+        game.startGame(seed);
+        // El color de arriba nunca es WILD al empezar, y un número del mismo color siempre vale
+        Card.Color color = game.getTopCard().getColor();
+        Card.Type[] numbers = {Card.Type.ONE, Card.Type.TWO, Card.Type.THREE, Card.Type.FOUR, Card.Type.FIVE};
+        for (Player player : game.getPlayers()) {
+            for (int i = 0; i < PLAYS / PLAYERS.length; i++) {
+                player.addCard(new Card(color, numbers[i % numbers.length]));
+            }
+        }
+        return game;
+    }
+
+    static UnoGame fullDiscard(long seed) {
+        UnoGame game = newGame(seed);
+        for (int i = 0; i < PLAYS; i++) {
+            Player player = game.getCurrentPlayer();
+            game.playCard(player.getId(), player.getHandSize() - 1, null);
+        }
+        // Los robos van al final de la mano, así que después de las jugadas; el último no rebaraja
+        while (game.getDrawPileSize() > 0) {
+            game.drawCard(game.getCurrentPlayer().getId());
+        }
+        return game;
+    }
+}
@@ -26,6 +26,7 @@ interface WebSocketMessage {
     hostPlayerName?: string;
     maxPlayers?: number;
     currentPlayers?: number;
+    events?: WebSocketMessage[]; // solo en 'batch'
 }
 
 const HostPlayersTable: React.FC = () => {
@@ -86,25 +87,24 @@ const HostPlayersTable: React.FC = () => {
                 setLoading(false);
                 reconnectAttempts.current = 0;
 
+                // Las notificaciones de cada acción llegan juntas en un único frame 'batch'
+                sendMessage({ action: 'client_options', batchFrames: true });
+
                 // TEMPORAL: Comentado hasta que el servidor soporte list_games
                 // requestGamesList();
 
-                // Hacer ping cada 30 segundos para mantener la conexión
-                const pingInterval = setInterval(() => {
-                    if (wsRef.current?.readyState === WebSocket.OPEN) {
-                        sendMessage({ action: 'ping' });
-                    }
-                }, 30000);
-
-                wsRef.current?.addEventListener('close', () => {
-                    clearInterval(pingInterval);
-                });
+                // El servidor mantiene viva la conexión con frames ping de WebSocket;
+                // el navegador responde el pong solo, no hace falta mandar 'ping'
             };
 
             wsRef.current.onmessage = (event) => {
                 try {
                     const message: WebSocketMessage = JSON.parse(event.data);
-                    handleWebSocketMessage(message);
+                    if (message.type === 'batch') {
+                        message.events?.forEach(handleWebSocketMessage);
+                    } else {
+                        handleWebSocketMessage(message);
+                    }
                 } catch (error) {
                     console.error('Error parsing WebSocket message:', error);
                 }
@@ -288,6 +288,9 @@ const HostPlayersTable: React.FC = () => {
                 }
                 break;
 
+            case 'client_options':
+                break;
+
             default:
                 console.log('Mensaje no manejado:', message);
         }
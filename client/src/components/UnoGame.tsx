@@ -55,6 +55,7 @@ interface WebSocketMessage {
     gameId?: string;
     data?: any;
     timestamp?: number;
+    events?: WebSocketMessage[]; // solo en 'batch'
 }
 
 interface UnoGameProps {
@@ -300,25 +301,24 @@ const UnoGame: React.FC<UnoGameProps> = ({
                 setLoading(false);
                 addGameMessage('Conectado al servidor');
 
+                // Las notificaciones de cada acción llegan juntas en un único frame 'batch'
+                sendMessage({ action: 'client_options', batchFrames: true });
+
                 // Solicitar el estado del juego
                 requestGameState();
 
-                // Ping cada 30 segundos
-                const pingInterval = setInterval(() => {
-                    if (wsRef.current?.readyState === WebSocket.OPEN) {
-                        sendMessage({ action: 'ping' });
-                    }
-                }, 30000);
-
-                wsRef.current?.addEventListener('close', () => {
-                    clearInterval(pingInterval);
-                });
+                // El servidor mantiene viva la conexión con frames ping de WebSocket;
+                // el navegador responde el pong solo, no hace falta mandar 'ping'
             };
 
             wsRef.current.onmessage = (event) => {
                 try {
                     const message: WebSocketMessage = JSON.parse(event.data);
-                    handleWebSocketMessage(message);
+                    if (message.type === 'batch') {
+                        message.events?.forEach(handleWebSocketMessage);
+                    } else {
+                        handleWebSocketMessage(message);
+                    }
                 } catch (error) {
                     console.error('Error parsing WebSocket message:', error);
                 }
@@ -424,6 +424,9 @@ const UnoGame: React.FC<UnoGameProps> = ({
                 // Respuesta al ping, no hacer nada
                 break;
 
+            case 'client_options':
+                break;
+
             default:
                 console.log('Mensaje no manejado:', message);
         }
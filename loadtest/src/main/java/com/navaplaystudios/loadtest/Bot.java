@@ -0,0 +1,324 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Un jugador con su propia conexión WebSocket. Habla el protocolo real:
+ * se une, y con cada game_state_update decide (tras el think time) si le
+ * toca elegir color, jugar la primera carta válida o robar.
+ *
+ * El Listener de java.net.http se llama en orden para cada conexión, así
+ * que el estado de la decisión no necesita locks; solo los envíos, que
+ * pueden salir también del scheduler del think time.
+ */
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+public class Bot implements WebSocket.Listener {
+    private final Table table;
+    private final LoadStats stats;
+    final String playerId;
+    final String playerName;
+    private final StringBuilder partial = new StringBuilder();
+    private final Object sendLock = new Object();
+    private CompletableFuture<WebSocket> lastSend; // java.net.http no admite dos envíos a la vez
+    private volatile WebSocket socket;
+    private volatile boolean closing;
+
+    // Acción en vuelo: una a la vez por bot
+    private volatile String pendingAction;
+    private volatile long pendingSince;
+    private volatile long pendingVersion = Long.MAX_VALUE; // la confirma un estado con versión mayor
+    private long lastDecidedVersion = -1;
+
+    Bot(Table table, LoadStats stats, String playerId, String playerName) {
+        this.table = table;
+        this.stats = stats;
+        this.playerId = playerId;
+        this.playerName = playerName;
+    }
+
+    // ---- Conexión ----
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        socket = webSocket;
+        synchronized (sendLock) {
+            lastSend = CompletableFuture.completedFuture(webSocket);
+        }
+        stats.connectionsOpened.increment();
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last && closing) {
+            partial.setLength(0); // la mesa ya siguió: lo que llegue tarde no cuenta
+        } else if (last) {
+            stats.messagesReceived.increment();
+            stats.charsReceived.add(partial.length());
+            JSONObject message = new JSONObject(partial.toString());
+            partial.setLength(0);
+            table.touch();
+            try {
+                handle(message);
+            } catch (RuntimeException e) {
+                table.fail(playerId + ": " + e);
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        if (!closing) {
+            stats.unexpectedCloses.increment();
+            table.fail(playerId + " cerrada por el servidor: " + statusCode + " " + reason);
+        }
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        if (!closing) {
+            stats.unexpectedCloses.increment();
+            table.fail(playerId + ": " + error);
+        }
+    }
+
+    /** timeouts=false al terminar la partida: lo que quedó en vuelo ya no tiene respuesta. */
+    void close(boolean timeouts) {
+        closing = true;
+        String action = pendingAction;
+        if (timeouts && action != null && pendingSince != 0) {
+            stats.timedOut(action); // salió y nunca llegó la respuesta
+        }
+        pendingAction = null;
+        WebSocket webSocket = socket;
+        if (webSocket != null) {
+            synchronized (sendLock) {
+                lastSend.thenCompose(ws -> ws.sendClose(WebSocket.NORMAL_CLOSURE, ""))
+                        .exceptionally(e -> {
+                            webSocket.abort();
+                            return null;
+                        });
+            }
+        }
+    }
+
+    // ---- Mensajes del servidor ----
+
+    private void handle(JSONObject message) {
+        String type = message.optString("type");
+        switch (type) {
+            case "connection":
+                table.onConnected(this);
+                break;
+            case "game_created":
+                complete("create_game");
+                table.onCreated(this, message.getString("gameId"));
+                break;
+            case "player_joined":
+                complete("join_game");
+                table.onJoined(this);
+                break;
+            case "game_state_update":
+                stats.stateUpdates.increment();
+                onState(message.getJSONObject("data"));
+                break;
+            case "game_ended":
+                // La jugada ganadora: game_ended puede llegar antes que el último estado
+                if ("play_card".equals(pendingAction)) {
+                    complete("play_card");
+                }
+                table.onGameEnded();
+                break;
+            default:
+                if (type.equals("error") || type.endsWith("_failed")) {
+                    onFailure(type, message.optString("message"));
+                }
+                break;
+        }
+    }
+
+    private void onState(JSONObject state) {
+        long version = state.optLong("version", -1);
+        String action = pendingAction;
+        if (action != null && version > pendingVersion) {
+            complete(action);
+        }
+        if (!"IN_PROGRESS".equals(state.optString("gameState")) || pendingAction != null
+                || version <= lastDecidedVersion) {
+            return;
+        }
+
+        JSONArray hand = hand(state);
+        JSONObject request;
+        if (state.optBoolean("shouldChooseColor")) {
+            request = action("choose_color").put("color", favoriteColor(hand));
+        } else if (state.optBoolean("waitingForColorChoice")) {
+            return; // con +4 el turno ya pasó, pero hasta que elija el otro no se juega
+        } else if (state.optBoolean("isMyTurn")) {
+            int index = playableIndex(hand, state.optString("topCard"));
+            request = index >= 0
+                    ? action("play_card").put("cardIndex", index).put("chosenColor", favoriteColor(hand))
+                    : action("draw_card");
+        } else {
+            return;
+        }
+        lastDecidedVersion = version;
+        pendingVersion = version;
+        pendingSince = 0; // se mide desde que sale, no desde que se decide
+        pendingAction = request.getString("action");
+        table.think(() -> sendAction(request));
+    }
+
+    private void onFailure(String type, String detail) {
+        String action = pendingAction;
+        if (action == null) {
+            return;
+        }
+        pendingAction = null;
+        stats.failed(action);
+        switch (action) {
+            case "create_game":
+            case "join_game":
+            case "start_game":
+                table.fail(playerId + " " + type + ": " + detail);
+                break;
+            case "play_card":
+                // La carta no valía (p. ej. el estado cambió): robar
+                JSONObject draw = action("draw_card");
+                pendingAction = "draw_card";
+                sendAction(draw);
+                break;
+            default:
+                // draw/choose: se decide de nuevo con el próximo estado
+                break;
+        }
+    }
+
+    private void complete(String action) {
+        if (!action.equals(pendingAction) || pendingSince == 0) {
+            return; // todavía pensando: ese estado no es la respuesta
+        }
+        pendingAction = null;
+        stats.completed(action, System.nanoTime() - pendingSince);
+    }
+
+    // ---- Envíos ----
+
+    void createGame(String roomName, int maxPlayers) {
+        pendingAction = "create_game";
+        pendingVersion = Long.MAX_VALUE; // la confirma su respuesta, no un estado
+        sendAction(new JSONObject().put("action", "create_game").put("roomName", roomName)
+                .put("hostPlayerId", playerId).put("hostPlayerName", playerName).put("maxPlayers", maxPlayers));
+    }
+
+    void joinGame(String gameId) {
+        pendingAction = "join_game";
+        pendingVersion = Long.MAX_VALUE; // la confirma su respuesta, no un estado
+        sendAction(new JSONObject().put("action", "join_game").put("gameId", gameId)
+                .put("playerId", playerId).put("playerName", playerName));
+    }
+
+    void startGame(String gameId) {
+        pendingAction = "start_game";
+        pendingVersion = lastDecidedVersion; // cualquier estado nuevo confirma el inicio
+        sendAction(new JSONObject().put("action", "start_game").put("gameId", gameId).put("playerId", playerId));
+    }
+
+    private JSONObject action(String name) {
+        return new JSONObject().put("action", name).put("playerId", playerId);
+    }
+
+    private void sendAction(JSONObject request) {
+        if (closing) {
+            return;
+        }
+        String text = request.toString();
+        stats.sent(request.getString("action"));
+        synchronized (sendLock) {
+            pendingSince = System.nanoTime();
+            lastSend = lastSend.thenCompose(ws -> ws.sendText(text, true));
+            lastSend.exceptionally(e -> {
+                table.fail(playerId + " no pudo enviar: " + e);
+                return null;
+            });
+        }
+    }
+
+    // ---- Estrategia ----
+
+    // La mano propia viaja dentro de la entrada del jugador en "players"
+    private JSONArray hand(JSONObject state) {
+        JSONArray players = state.optJSONArray("players");
+        for (int i = 0; players != null && i < players.length(); i++) {
+            JSONObject player = players.getJSONObject(i);
+            if (playerId.equals(player.optString("id"))) {
+                return player.optJSONArray("hand");
+            }
+        }
+        return null;
+    }
+
+    /** Primera carta jugable sobre la del descarte; los comodines al final. */
+    static int playableIndex(JSONArray hand, String topCard) {
+        if (hand == null || topCard.isEmpty()) {
+            return -1;
+        }
+        String topColor = color(topCard);
+        String topType = type(topCard);
+        int wild = -1;
+        for (int i = 0; i < hand.length(); i++) {
+            String card = hand.getString(i);
+            String type = type(card);
+            if (type.equals("WILD") || type.equals("WILD_DRAW_FOUR")) {
+                if (wild < 0) {
+                    wild = i;
+                }
+            } else if (color(card).equals(topColor) || type.equals(topType)) {
+                return i;
+            }
+        }
+        return wild;
+    }
+
+    /** Color más repetido en la mano, para comodines. */
+    static String favoriteColor(JSONArray hand) {
+        String[] colors = {"RED", "BLUE", "GREEN", "YELLOW"};
+        int[] counts = new int[colors.length];
+        if (hand != null) {
+            for (int i = 0; i < hand.length(); i++) {
+                String color = color(hand.getString(i));
+                for (int c = 0; c < colors.length; c++) {
+                    if (colors[c].equals(color)) {
+                        counts[c]++;
+                    }
+                }
+            }
+        }
+        int best = ThreadLocalRandom.current().nextInt(colors.length);
+        for (int c = 0; c < colors.length; c++) {
+            if (counts[c] > counts[best]) {
+                best = c;
+            }
+        }
+        return colors[best];
+    }
+
+    // Las cartas viajan como COLOR_TIPO (Card.toString); el tipo puede tener '_'
+    private static String color(String card) {
+        int separator = card.indexOf('_');
+        return separator < 0 ? card : card.substring(0, separator);
+    }
+
+    private static String type(String card) {
+        int separator = card.indexOf('_');
+        return separator < 0 ? "" : card.substring(separator + 1);
+    }
+}
@@ -0,0 +1,270 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Modo idle (load.mode=idle): abre load.connections conexiones contra el
+ * endpoint TCP del servidor (load.tcpHost:load.tcpPort), repartidas en
+ * load.rampUpSeconds, y las sostiene sin jugar hasta load.durationSeconds.
+ * Cada conexión manda un frame vacío para abrir su sesión, así el servidor
+ * le lleva heartbeat como a cualquier cliente, y contesta sus pings.
+ * Al final pide un ping al servidor y, con load.serverPid, lee hilos y RSS
+ * del proceso en /proc; todo va al reporte JSON (load.report).
+ *
+ * Corrida de 50k en una máquina:
+ *
+ *   ulimit -n 200000   # en las dos terminales: una fd por conexión
+ *   sudo sysctl -w net.ipv4.ip_local_port_range="1024 65535"
+ *   (cd server && mvn -q compile exec:java -Duno.tcp.port=9000) &
+ *   (cd loadtest && mvn -q compile exec:java -Dload.mode=idle -Dload.connections=50000 \
+ *       -Dload.rampUpSeconds=60 -Dload.durationSeconds=180 -Dload.serverPid=<pid del servidor>)
+ *
+ * Desde una sola IP de origen hay como mucho ~64k puertos efímeros hacia
+ * un mismo puerto del servidor (el rango por defecto de Linux da ~28k).
+ * Mientras corre, `ps -o nlwp,rss -p <pid>` muestra los hilos y la memoria
+ * del servidor; con hilos virtuales los hilos del sistema no deben crecer
+ * con las conexiones.
+ */
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.json.JSONObject;
+
+public class IdleConnections {
+    private static final long PROGRESS_MILLIS = 5000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+    private static final int PING_TIMEOUT_MILLIS = 10_000;
+
+    private final LoadConfig config;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final LatencyHistogram connectTime = new LatencyHistogram();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder closedByServer = new LongAdder();
+    private final LongAdder pingsAnswered = new LongAdder();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicInteger peakOpen = new AtomicInteger();
+    private volatile boolean stopping;
+    private volatile String firstError;
+
+    public IdleConnections(LoadConfig config) {
+        this.config = config;
+    }
+
+    /** Una conexión ociosa: su hilo virtual solo lee y contesta pings. */
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(socket.getOutputStream());
+        }
+
+        synchronized void sendEmpty() throws IOException {
+            out.writeInt(0);
+            out.flush();
+        }
+
+        void read() {
+            try {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    int length = in.readInt() & Integer.MAX_VALUE; // sin el bit de formato binario
+                    if (length == 0) {
+                        sendEmpty(); // ping del heartbeat
+                        pingsAnswered.increment();
+                    } else {
+                        in.skipNBytes(length); // la bienvenida; una conexión ociosa no recibe otra cosa
+                    }
+                }
+            } catch (IOException e) {
+                if (!stopping) {
+                    closedByServer.increment();
+                }
+            } finally {
+                connections.remove(this);
+                open.decrementAndGet();
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public JSONObject run() {
+        JSONObject before = config.getServerPid() > 0 ? processStats(config.getServerPid()) : null;
+        long startedAt = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long endNanos = startNanos + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+        long rampNanos = TimeUnit.SECONDS.toNanos(config.getRampUpSeconds());
+        long nextProgress = startNanos + TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+        Thread.Builder threads = Thread.ofVirtual().name("idle-", 0);
+
+        int launched = 0;
+        while (launched < config.getConnections()) {
+            long now = System.nanoTime();
+            if (now >= endNanos) {
+                System.err.println("Se cumplió load.durationSeconds antes de abrir todas las conexiones");
+                break;
+            }
+            long due = startNanos + rampNanos * launched / config.getConnections();
+            if (now < due) {
+                LockSupport.parkNanos(Math.min(due, nextProgress) - now);
+            } else {
+                threads.start(this::connect);
+                launched++;
+            }
+            if (System.nanoTime() >= nextProgress) {
+                progress(startNanos);
+                nextProgress += TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+            }
+        }
+        for (long now = System.nanoTime(); now < endNanos; now = System.nanoTime()) {
+            LockSupport.parkNanos(Math.min(endNanos, nextProgress) - now);
+            if (System.nanoTime() >= nextProgress) {
+                progress(startNanos);
+                nextProgress += TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS);
+            }
+        }
+
+        // Con todas abiertas todavía: lo que ve el servidor
+        int openAtEnd = open.get();
+        JSONObject server = serverPing();
+        JSONObject after = before != null ? processStats(config.getServerPid()) : null;
+        long elapsedNanos = System.nanoTime() - startNanos;
+        stopping = true;
+        for (Connection connection : connections) {
+            connection.close();
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("config", config.toJson());
+        report.put("startedAt", startedAt);
+        report.put("elapsedSeconds", Math.round(elapsedNanos / 1e6) / 1000.0);
+        JSONObject counts = new JSONObject();
+        counts.put("target", config.getConnections());
+        counts.put("launched", launched);
+        counts.put("opened", opened.sum());
+        counts.put("failed", failed.sum());
+        counts.put("closedByServer", closedByServer.sum());
+        counts.put("openAtEnd", openAtEnd);
+        counts.put("peakOpen", peakOpen.get());
+        counts.put("pingsAnswered", pingsAnswered.sum());
+        counts.put("connectTime", connectTime.toJson());
+        if (firstError != null) {
+            counts.put("firstError", firstError);
+        }
+        report.put("connections", counts);
+        if (server != null) {
+            report.put("server", server);
+        }
+        if (before != null) {
+            JSONObject process = new JSONObject();
+            process.put("before", before);
+            process.put("after", after);
+            if (openAtEnd > 0 && before.has("rssKb") && after.has("rssKb")) {
+                process.put("rssKbPerConnection",
+                        Math.round((after.getLong("rssKb") - before.getLong("rssKb")) * 100.0 / openAtEnd) / 100.0);
+            }
+            report.put("process", process);
+        }
+        return report;
+    }
+
+    private void connect() {
+        long start = System.nanoTime();
+        Socket socket = new Socket();
+        Connection connection;
+        try {
+            socket.connect(new InetSocketAddress(config.getTcpHost(), config.getTcpPort()), CONNECT_TIMEOUT_MILLIS);
+            connection = new Connection(socket);
+            connection.sendEmpty(); // abre la sesión
+        } catch (IOException e) {
+            failed.increment();
+            if (firstError == null) {
+                firstError = e.toString();
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        connectTime.recordNanos(System.nanoTime() - start);
+        opened.increment();
+        peakOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+        connections.add(connection);
+        if (stopping) {
+            connection.close();
+        }
+        connection.read();
+    }
+
+    private void progress(long startNanos) {
+        System.out.printf("[%4ds] abiertas %d, fallidas %d, cerradas por el servidor %d%n",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos), open.get(), failed.sum(),
+                closedByServer.sum());
+    }
+
+    /** Respuesta a {"action":"ping"} por una conexión aparte (tcp.connections la incluye). */
+    private JSONObject serverPing() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(config.getTcpHost(), config.getTcpPort()), CONNECT_TIMEOUT_MILLIS);
+            socket.setSoTimeout(PING_TIMEOUT_MILLIS);
+            byte[] ping = "{\"action\":\"ping\"}".getBytes(StandardCharsets.UTF_8);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ping.length);
+            out.write(ping);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte[] frame = new byte[in.readInt() & Integer.MAX_VALUE];
+                in.readFully(frame);
+                JSONObject pong = new JSONObject(new String(frame, StandardCharsets.UTF_8));
+                if ("pong".equals(pong.optString("type"))) {
+                    JSONObject server = new JSONObject();
+                    server.put("connectedPlayers", pong.opt("connectedPlayers"));
+                    server.put("tcp", pong.opt("tcp"));
+                    server.put("heartbeat", pong.opt("heartbeat"));
+                    return server;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("No se pudo pedir el ping al servidor: " + e);
+            return null;
+        }
+    }
+
+    /** Hilos del sistema y RSS del servidor, de /proc/<pid>/status (solo Linux). */
+    private static JSONObject processStats(int pid) {
+        JSONObject process = new JSONObject();
+        try (InputStream status = Files.newInputStream(Path.of("/proc", String.valueOf(pid), "status"))) {
+            for (String line : new String(status.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (line.startsWith("Threads:")) {
+                    process.put("threads", Integer.parseInt(line.substring(8).trim()));
+                } else if (line.startsWith("VmRSS:")) {
+                    process.put("rssKb", Long.parseLong(line.substring(6).replace("kB", "").trim()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("No se pudo leer /proc/" + pid + "/status: " + e);
+        }
+        return process;
+    }
+}
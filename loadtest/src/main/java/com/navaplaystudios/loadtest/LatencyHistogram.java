@@ -0,0 +1,91 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Histograma de latencias en microsegundos, log-lineal: exacto hasta
+ * 64 us y después 32 cubetas por cada potencia de dos (error < 3 %).
+ * Los límites fijos del Histogram del servidor sirven para Prometheus
+ * pero son demasiado gruesos para comparar percentiles entre corridas.
+ */
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+public class LatencyHistogram {
+    private static final int LINEAR = 64;
+    private static final int SUB_BUCKETS = 32;
+    private static final int MAX_EXPONENT = 40; // ~12 días: más que cualquier corrida
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + (MAX_EXPONENT - 5) * SUB_BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(micros));
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    private static int index(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT - 1); // >= 6
+        int sub = (int) (micros >>> (exponent - 5)) - SUB_BUCKETS; // 0..31
+        return LINEAR + (exponent - 6) * SUB_BUCKETS + Math.min(sub, SUB_BUCKETS - 1);
+    }
+
+    // Mayor valor que cae en la cubeta
+    private static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 6;
+        int sub = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((long) (sub + 1) << (exponent - 5)) - 1;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /** Percentil q (0..1) en microsegundos, acotado por el máximo visto. */
+    public long percentile(double q) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** count, mean y percentiles en milisegundos. */
+    public JSONObject toJson() {
+        long count = getCount();
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("meanMillis", count == 0 ? 0 : millis(sum.sum() / (double) count));
+        json.put("p50Millis", millis(percentile(0.50)));
+        json.put("p90Millis", millis(percentile(0.90)));
+        json.put("p99Millis", millis(percentile(0.99)));
+        json.put("p999Millis", millis(percentile(0.999)));
+        json.put("maxMillis", millis(max.get()));
+        return json;
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Configuración de la prueba de carga. Los valores se leen de propiedades
+ * del sistema (-Dload.xxx=valor) y todos tienen un valor por defecto.
+ *
+ * load.mode elige la prueba: "game" (mesas de bots, ver LoadTest) o
+ * "idle" (conexiones TCP ociosas contra uno.tcp.port, ver IdleConnections).
+ */
+import org.json.JSONObject;
+
+public class LoadConfig {
+    private String mode = "game"; // "game" o "idle"
+    private String url = "ws://localhost:8080";
+    private int tables = 100;
+    private int playersPerTable = 2;
+    private int gamesPerTable = 1; // cada partida nueva usa conexiones y jugadores nuevos
+    private int rampUpSeconds = 10; // las mesas arrancan repartidas en este tiempo
+    private int thinkMillis = 200; // pausa media antes de cada jugada (±50 %)
+    private int durationSeconds = 300; // corte duro: lo que no terminó cuenta como sin terminar
+    private int stallSeconds = 30; // mesa sin mensajes este tiempo = trabada
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    // Modo idle
+    private String tcpHost = "localhost";
+    private int tcpPort = 9000; // el uno.tcp.port del servidor
+    private int connections = 50_000;
+    private int serverPid; // si el servidor corre en esta máquina: hilos y RSS de /proc; 0 = no se miden
+    private String report = "loadtest-report.json";
+
+    public static LoadConfig fromSystemProperties() {
+        LoadConfig config = new LoadConfig();
+        config.setMode(System.getProperty("load.mode", config.mode).trim());
+        config.url = System.getProperty("load.url", config.url).trim();
+        config.setTables(intProperty("load.tables", config.tables));
+        config.setPlayersPerTable(intProperty("load.playersPerTable", config.playersPerTable));
+        config.setGamesPerTable(intProperty("load.gamesPerTable", config.gamesPerTable));
+        config.setRampUpSeconds(intProperty("load.rampUpSeconds", config.rampUpSeconds));
+        config.setThinkMillis(intProperty("load.thinkMillis", config.thinkMillis));
+        config.setDurationSeconds(intProperty("load.durationSeconds", config.durationSeconds));
+        config.setStallSeconds(intProperty("load.stallSeconds", config.stallSeconds));
+        config.setIoThreads(intProperty("load.ioThreads", config.ioThreads));
+        config.tcpHost = System.getProperty("load.tcpHost", config.tcpHost).trim();
+        config.setTcpPort(intProperty("load.tcpPort", config.tcpPort));
+        config.setConnections(intProperty("load.connections", config.connections));
+        config.setServerPid(intProperty("load.serverPid", config.serverPid));
+        config.report = System.getProperty("load.report", config.report).trim();
+        return config;
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Valor inválido para " + name + ": " + value + " (se usa " + defaultValue + ")");
+            return defaultValue;
+        }
+    }
+
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("mode", mode);
+        if (isIdle()) {
+            json.put("tcpHost", tcpHost);
+            json.put("tcpPort", tcpPort);
+            json.put("connections", connections);
+            json.put("rampUpSeconds", rampUpSeconds);
+            json.put("durationSeconds", durationSeconds);
+            json.put("serverPid", serverPid);
+            return json;
+        }
+        json.put("url", url);
+        json.put("tables", tables);
+        json.put("playersPerTable", playersPerTable);
+        json.put("gamesPerTable", gamesPerTable);
+        json.put("rampUpSeconds", rampUpSeconds);
+        json.put("thinkMillis", thinkMillis);
+        json.put("durationSeconds", durationSeconds);
+        json.put("stallSeconds", stallSeconds);
+        json.put("ioThreads", ioThreads);
+        return json;
+    }
+
+    public String getMode() { return mode; }
+    public LoadConfig setMode(String mode) { this.mode = "idle".equalsIgnoreCase(mode) ? "idle" : "game"; return this; }
+    public boolean isIdle() { return "idle".equals(mode); }
+    public String getUrl() { return url; }
+    public LoadConfig setUrl(String url) { this.url = url; return this; }
+    public int getTables() { return tables; }
+    public LoadConfig setTables(int tables) { this.tables = Math.max(1, tables); return this; }
+    public int getPlayersPerTable() { return playersPerTable; }
+    // UnoGame admite hasta 3 jugadores
+    public LoadConfig setPlayersPerTable(int playersPerTable) { this.playersPerTable = Math.max(2, Math.min(3, playersPerTable)); return this; }
+    public int getGamesPerTable() { return gamesPerTable; }
+    public LoadConfig setGamesPerTable(int gamesPerTable) { this.gamesPerTable = Math.max(1, gamesPerTable); return this; }
+    public int getRampUpSeconds() { return rampUpSeconds; }
+    public LoadConfig setRampUpSeconds(int rampUpSeconds) { this.rampUpSeconds = Math.max(0, rampUpSeconds); return this; }
+    public int getThinkMillis() { return thinkMillis; }
+    public LoadConfig setThinkMillis(int thinkMillis) { this.thinkMillis = Math.max(0, thinkMillis); return this; }
+    public int getDurationSeconds() { return durationSeconds; }
+    public LoadConfig setDurationSeconds(int durationSeconds) { this.durationSeconds = Math.max(1, durationSeconds); return this; }
+    public int getStallSeconds() { return stallSeconds; }
+    public LoadConfig setStallSeconds(int stallSeconds) { this.stallSeconds = Math.max(1, stallSeconds); return this; }
+    public int getIoThreads() { return ioThreads; }
+    public LoadConfig setIoThreads(int ioThreads) { this.ioThreads = Math.max(1, ioThreads); return this; }
+    public String getTcpHost() { return tcpHost; }
+    public LoadConfig setTcpHost(String tcpHost) { this.tcpHost = tcpHost; return this; }
+    public int getTcpPort() { return tcpPort; }
+    public LoadConfig setTcpPort(int tcpPort) { this.tcpPort = Math.max(1, Math.min(65535, tcpPort)); return this; }
+    public int getConnections() { return connections; }
+    public LoadConfig setConnections(int connections) { this.connections = Math.max(1, connections); return this; }
+    public int getServerPid() { return serverPid; }
+    public LoadConfig setServerPid(int serverPid) { this.serverPid = Math.max(0, serverPid); return this; }
+    public String getReport() { return report; }
+    public LoadConfig setReport(String report) { this.report = report; return this; }
+}
@@ -0,0 +1,97 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Contadores y latencias de la corrida, compartidos por todos los bots.
+ * La latencia de una acción va de enviarla a la respuesta que la confirma:
+ * game_created, player_joined o, para start/play/draw/choose, el primer
+ * game_state_update con una versión posterior a la que vio el bot (la
+ * jugada ganadora puede confirmarla antes game_ended).
+ */
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+public class LoadStats {
+    static final String[] ACTIONS = {
+        "create_game", "join_game", "start_game", "play_card", "draw_card", "choose_color"
+    };
+
+    final Map<String, ActionStats> actions = new LinkedHashMap<>();
+    final LatencyHistogram allLatency = new LatencyHistogram();
+    final LatencyHistogram gameDuration = new LatencyHistogram();
+    final LongAdder connectionsOpened = new LongAdder();
+    final LongAdder connectionFailures = new LongAdder();
+    final LongAdder unexpectedCloses = new LongAdder();
+    final LongAdder messagesReceived = new LongAdder();
+    final LongAdder charsReceived = new LongAdder(); // texto recibido, en caracteres
+    final LongAdder stateUpdates = new LongAdder();
+    final LongAdder gamesCompleted = new LongAdder();
+    final LongAdder tablesCompleted = new LongAdder();
+    final LongAdder tablesStalled = new LongAdder();
+    final LongAdder tablesFailed = new LongAdder();
+
+    LoadStats() {
+        for (String action : ACTIONS) {
+            actions.put(action, new ActionStats());
+        }
+    }
+
+    ActionStats action(String name) {
+        return actions.get(name);
+    }
+
+    void sent(String action) {
+        actions.get(action).sent.increment();
+    }
+
+    void completed(String action, long nanos) {
+        ActionStats stats = actions.get(action);
+        stats.latency.recordNanos(nanos);
+        allLatency.recordNanos(nanos);
+    }
+
+    void failed(String action) {
+        actions.get(action).errors.increment();
+    }
+
+    void timedOut(String action) {
+        ActionStats stats = actions.get(action);
+        stats.errors.increment();
+        stats.timeouts.increment();
+    }
+
+    long totalSent() {
+        long total = 0;
+        for (ActionStats stats : actions.values()) {
+            total += stats.sent.sum();
+        }
+        return total;
+    }
+
+    long totalErrors() {
+        long total = 0;
+        for (ActionStats stats : actions.values()) {
+            total += stats.errors.sum();
+        }
+        return total;
+    }
+
+    static final class ActionStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder sent = new LongAdder();
+        final LongAdder errors = new LongAdder(); // *_failed, error o sin respuesta (timeouts)
+        final LongAdder timeouts = new LongAdder();
+
+        JSONObject toJson() {
+            long count = sent.sum();
+            JSONObject json = new JSONObject();
+            json.put("sent", count);
+            json.put("errors", errors.sum());
+            json.put("timeouts", timeouts.sum());
+            json.put("errorRate", count == 0 ? 0 : errors.sum() / (double) count);
+            json.put("latency", latency.toJson());
+            return json;
+        }
+    }
+}
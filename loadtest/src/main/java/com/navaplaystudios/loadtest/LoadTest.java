@@ -0,0 +1,193 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Generador de carga: miles de mesas de bots contra un UnoWebSocketServer
+ * (load.url), arrancadas a lo largo de load.rampUpSeconds. Al terminar
+ * escribe un reporte JSON (load.report) con acciones por segundo,
+ * percentiles de latencia por acción y tasas de error.
+ *
+ * Todos los bots comparten un HttpClient: las conexiones las atiende un
+ * puñado de hilos (load.ioThreads), no uno o dos por bot como haría un
+ * cliente de Java-WebSocket, así que la máquina que genera la carga no es
+ * el cuello de botella. Ejemplo:
+ *
+ *   mvn -q compile exec:java -Dload.tables=2000 -Dload.rampUpSeconds=60
+ *
+ * Con -Dload.mode=idle mide conexiones ociosas en vez de partidas (ver
+ * IdleConnections).
+ */
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONObject;
+
+public class LoadTest {
+    private static final long PROGRESS_MILLIS = 5000;
+
+    private final LoadConfig config;
+    private final LoadStats stats = new LoadStats();
+    private final List<Table> tables = new ArrayList<>();
+    private ExecutorService io;
+    private ScheduledExecutorService scheduler;
+    private long startedAt;
+    private long startNanos;
+    private long lastProgressNanos;
+    private long lastProgressSent;
+
+    public LoadTest(LoadConfig config) {
+        this.config = config;
+    }
+
+    public JSONObject run() throws InterruptedException {
+        io = Executors.newFixedThreadPool(config.getIoThreads(), daemon("load-io"));
+        scheduler = Executors.newScheduledThreadPool(2, daemon("load-scheduler"));
+        HttpClient http = HttpClient.newBuilder().executor(io).build();
+
+        startedAt = System.currentTimeMillis();
+        startNanos = System.nanoTime();
+        lastProgressNanos = startNanos;
+        long rampNanos = TimeUnit.SECONDS.toNanos(config.getRampUpSeconds());
+        for (int i = 0; i < config.getTables(); i++) {
+            Table table = new Table(i, config, stats, http, scheduler);
+            tables.add(table);
+            scheduler.schedule(table::start, rampNanos * i / config.getTables(), TimeUnit.NANOSECONDS);
+        }
+        scheduler.scheduleAtFixedRate(this::watch, 1, 1, TimeUnit.SECONDS);
+
+        CompletableFuture<Void> all = CompletableFuture.allOf(
+                tables.stream().map(Table::done).toArray(CompletableFuture[]::new));
+        try {
+            all.get(config.getDurationSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("Se cumplió load.durationSeconds: se cortan las mesas sin terminar");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        int unfinished = 0;
+        for (Table table : tables) {
+            if (!table.done().isDone()) {
+                unfinished++;
+                table.abort();
+            }
+        }
+        JSONObject report = report(elapsedNanos, unfinished);
+        scheduler.shutdownNow();
+        io.shutdownNow();
+        return report;
+    }
+
+    // Mesas trabadas y progreso cada PROGRESS_MILLIS
+    private void watch() {
+        long now = System.nanoTime();
+        for (Table table : tables) {
+            if (table.isStalled(now)) {
+                table.stall();
+            }
+        }
+        if (now - lastProgressNanos >= TimeUnit.MILLISECONDS.toNanos(PROGRESS_MILLIS)) {
+            long sent = stats.totalSent();
+            double seconds = (now - lastProgressNanos) / 1e9;
+            System.out.printf("[%4ds] acciones/s %.0f, partidas %d, p99 %.1f ms, errores %d%n",
+                    TimeUnit.NANOSECONDS.toSeconds(now - startNanos), (sent - lastProgressSent) / seconds,
+                    stats.gamesCompleted.sum(), stats.allLatency.percentile(0.99) / 1000.0, stats.totalErrors());
+            lastProgressNanos = now;
+            lastProgressSent = sent;
+        }
+    }
+
+    private JSONObject report(long elapsedNanos, int unfinished) {
+        double seconds = elapsedNanos / 1e9;
+        long sent = stats.totalSent();
+        long errors = stats.totalErrors();
+
+        JSONObject report = new JSONObject();
+        report.put("config", config.toJson());
+        report.put("startedAt", startedAt);
+        report.put("elapsedSeconds", Math.round(seconds * 1000) / 1000.0);
+
+        JSONObject tableStats = new JSONObject();
+        tableStats.put("total", config.getTables());
+        tableStats.put("completed", stats.tablesCompleted.sum());
+        tableStats.put("stalled", stats.tablesStalled.sum());
+        tableStats.put("failed", stats.tablesFailed.sum());
+        tableStats.put("unfinished", unfinished);
+        report.put("tables", tableStats);
+
+        JSONObject games = new JSONObject();
+        games.put("completed", stats.gamesCompleted.sum());
+        games.put("perSecond", stats.gamesCompleted.sum() / seconds);
+        games.put("duration", stats.gameDuration.toJson());
+        report.put("games", games);
+
+        JSONObject connections = new JSONObject();
+        connections.put("opened", stats.connectionsOpened.sum());
+        connections.put("failed", stats.connectionFailures.sum());
+        connections.put("closedUnexpectedly", stats.unexpectedCloses.sum());
+        report.put("connections", connections);
+
+        JSONObject actions = new JSONObject();
+        actions.put("sent", sent);
+        actions.put("perSecond", sent / seconds);
+        actions.put("errors", errors);
+        actions.put("errorRate", sent == 0 ? 0 : errors / (double) sent);
+        actions.put("latency", stats.allLatency.toJson());
+        JSONObject byAction = new JSONObject();
+        for (String action : LoadStats.ACTIONS) {
+            byAction.put(action, stats.action(action).toJson());
+        }
+        actions.put("byAction", byAction);
+        report.put("actions", actions);
+
+        JSONObject messages = new JSONObject();
+        messages.put("received", stats.messagesReceived.sum());
+        messages.put("stateUpdates", stats.stateUpdates.sum());
+        messages.put("chars", stats.charsReceived.sum());
+        report.put("messages", messages);
+        return report;
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        System.out.println("Prueba de carga: " + config.toJson());
+        if (config.isIdle()) {
+            JSONObject report = new IdleConnections(config).run();
+            Files.writeString(Path.of(config.getReport()), report.toString(2));
+            JSONObject connections = report.getJSONObject("connections");
+            System.out.printf("Conexiones abiertas %d de %d, fallidas %d, cerradas por el servidor %d -> %s%n",
+                    connections.getInt("openAtEnd"), connections.getInt("target"), connections.getLong("failed"),
+                    connections.getLong("closedByServer"), config.getReport());
+            return;
+        }
+        JSONObject report = new LoadTest(config).run();
+        Files.writeString(Path.of(config.getReport()), report.toString(2));
+
+        JSONObject actions = report.getJSONObject("actions");
+        JSONObject latency = actions.getJSONObject("latency");
+        System.out.printf("Partidas %d, acciones/s %.0f, p50 %.2f ms, p99 %.2f ms, errores %.3f %% -> %s%n",
+                report.getJSONObject("games").getLong("completed"), actions.getDouble("perSecond"),
+                latency.getDouble("p50Millis"), latency.getDouble("p99Millis"),
+                actions.getDouble("errorRate") * 100, config.getReport());
+    }
+}
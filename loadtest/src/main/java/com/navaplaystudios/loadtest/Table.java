@@ -0,0 +1,178 @@
+package com.navaplaystudios.loadtest;
+
+/**
+ * Una mesa: sus bots conectan, el primero crea la partida, todos se unen,
+ * el primero la inicia y juegan hasta game_ended. Con load.gamesPerTable
+ * mayor que 1 repite con conexiones y jugadores nuevos.
+ *
+ * Los callbacks llegan desde los hilos de java.net.http de varios bots a
+ * la vez; todo lo que cambia la mesa va sincronizado. Los bots no toman
+ * locks propios al llamar acá, así que no hay orden de locks que cuidar.
+ */
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class Table {
+    private final int id;
+    private final LoadConfig config;
+    private final LoadStats stats;
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final List<Bot> bots = new ArrayList<>();
+    private final List<Bot> connected = new ArrayList<>(); // ya recibieron la bienvenida
+    private volatile long lastActivity; // 0 = todavía no arrancó (rampa)
+    private int round;
+    private int joined;
+    private String gameId;
+    private long gameStartedAt;
+    private boolean gameEnded;
+
+    Table(int id, LoadConfig config, LoadStats stats, HttpClient http, ScheduledExecutorService scheduler) {
+        this.id = id;
+        this.config = config;
+        this.stats = stats;
+        this.http = http;
+        this.scheduler = scheduler;
+    }
+
+    CompletableFuture<Void> done() {
+        return done;
+    }
+
+    synchronized void start() {
+        if (done.isDone()) {
+            return;
+        }
+        bots.clear();
+        connected.clear();
+        joined = 0;
+        gameId = null;
+        gameEnded = false;
+        gameStartedAt = System.nanoTime();
+        touch();
+        URI uri = URI.create(config.getUrl());
+        for (int i = 0; i < config.getPlayersPerTable(); i++) {
+            String playerId = "lt" + id + "g" + round + "p" + i;
+            Bot bot = new Bot(this, stats, playerId, "Bot " + id + "-" + i);
+            bots.add(bot);
+            http.newWebSocketBuilder()
+                    .connectTimeout(Duration.ofSeconds(config.getStallSeconds()))
+                    .buildAsync(uri, bot)
+                    .exceptionally(e -> {
+                        stats.connectionFailures.increment();
+                        fail("no conectó " + playerId + ": " + e.getMessage());
+                        return null;
+                    });
+        }
+    }
+
+    void touch() {
+        lastActivity = System.nanoTime();
+    }
+
+    boolean isStalled(long now) {
+        long last = lastActivity;
+        return last != 0 && !done.isDone() && now - last > TimeUnit.SECONDS.toNanos(config.getStallSeconds());
+    }
+
+    void think(Runnable action) {
+        long delay = config.getThinkMillis() == 0 ? 0
+                : (long) (config.getThinkMillis() * (0.5 + ThreadLocalRandom.current().nextDouble()));
+        scheduler.schedule(action, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Flujo de la partida ----
+
+    synchronized void onConnected(Bot bot) {
+        if (done.isDone()) {
+            return;
+        }
+        connected.add(bot);
+        if (bot == bots.get(0)) {
+            bot.createGame("load-" + id + "-" + round, config.getPlayersPerTable());
+        } else if (gameId != null) {
+            bot.joinGame(gameId);
+        }
+    }
+
+    synchronized void onCreated(Bot host, String gameId) {
+        if (done.isDone()) {
+            return;
+        }
+        this.gameId = gameId;
+        // El creador no queda sentado: se une como los demás
+        for (Bot bot : connected) {
+            bot.joinGame(gameId);
+        }
+    }
+
+    synchronized void onJoined(Bot bot) {
+        if (done.isDone()) {
+            return;
+        }
+        joined++;
+        if (joined == bots.size()) {
+            bots.get(0).startGame(gameId);
+        }
+    }
+
+    synchronized void onGameEnded() {
+        if (gameEnded || done.isDone()) {
+            return; // cada bot recibe su game_ended
+        }
+        gameEnded = true;
+        stats.gamesCompleted.increment();
+        stats.gameDuration.recordNanos(System.nanoTime() - gameStartedAt);
+        closeBots(false);
+        round++;
+        if (round < config.getGamesPerTable()) {
+            scheduler.execute(this::start);
+        } else {
+            stats.tablesCompleted.increment();
+            done.complete(null);
+        }
+    }
+
+    synchronized void stall() {
+        if (done.isDone()) {
+            return;
+        }
+        System.err.println("Mesa " + id + " sin mensajes hace " + config.getStallSeconds() + " s (juego " + gameId + ")");
+        stats.tablesStalled.increment();
+        closeBots(true);
+        done.complete(null);
+    }
+
+    synchronized void fail(String reason) {
+        if (done.isDone()) {
+            return;
+        }
+        System.err.println("Mesa " + id + ": " + reason);
+        stats.tablesFailed.increment();
+        closeBots(true);
+        done.complete(null);
+    }
+
+    /** Corte por load.durationSeconds: no cuenta como terminada ni como error de mesa. */
+    synchronized void abort() {
+        if (done.isDone()) {
+            return;
+        }
+        closeBots(true);
+        done.complete(null);
+    }
+
+    private void closeBots(boolean timeouts) {
+        for (Bot bot : bots) {
+            bot.close(timeouts);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.navaplaystudios.server;
+
+/**
+ * Decodificador JSON de requests que no arma el árbol de JSONObject. Recorre
+ * el texto una vez y guarda la acción y los campos conocidos (playerId,
+ * gameId, playerName, cardIndex, chosenColor, color, version,
+ * deltaUpdates, resumeToken) en un GameAction reutilizable. Los campos desconocidos se
+ * saltan sin crear objetos; acción y colores se resuelven a enum comparando
+ * caracteres, sin substring ni valueOf.
+ *
+ * Las acciones frías (create_game, list_games, client_options) tienen
+ * campos propios que cambian con el tiempo: para ellas se conserva además
+ * el JSONObject completo en payload.
+ */
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import org.json.JSONObject;
+
+public final class ActionDecoder {
+    private static final String[] KEYS = {
+        "action", "playerId", "gameId", "playerName", "cardIndex", "chosenColor", "color", "version", "deltaUpdates",
+        "resumeToken"
+    };
+    private static final int K_ACTION = 0;
+    private static final int K_PLAYER_ID = 1;
+    private static final int K_GAME_ID = 2;
+    private static final int K_PLAYER_NAME = 3;
+    private static final int K_CARD_INDEX = 4;
+    private static final int K_CHOSEN_COLOR = 5;
+    private static final int K_COLOR = 6;
+    private static final int K_VERSION = 7;
+    private static final int K_DELTA_UPDATES = 8;
+    private static final int K_RESUME_TOKEN = 9;
+
+    private static final Card.Color[] COLORS = Card.Color.values();
+
+    private static final ThreadLocal<GameAction> SCRATCH = ThreadLocal.withInitial(GameAction::new);
+
+    private ActionDecoder() {
+    }
+
+    /** GameAction del hilo actual; hay que copiarlo antes de pasarlo a otro hilo. */
+    public static GameAction scratch() {
+        GameAction action = SCRATCH.get();
+        action.reset();
+        return action;
+    }
+
+    public static void decode(String json, GameAction out) {
+        new Cursor(json).readRequest(out);
+        if (out.getType() != null && out.getType().isCold()) {
+            out.setPayload(new JSONObject(json));
+        }
+    }
+
+    /**
+     * Solo el tipo de acción, sin decodificar el resto ni crear objetos. Lo
+     * usa el rate limiter para rechazar antes de decodificar, así que mira
+     * solo las claves del primer nivel y se queda con la última "action",
+     * igual que decode: un "action" anidado o dentro de un texto no cuenta.
+     * null si no se encuentra o el mensaje está mal formado (el decode
+     * completo dará el error).
+     */
+    public static GameAction.Type peekType(String json) {
+        try {
+            return new Cursor(json).peekActionType();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Estado del recorrido; vive en la pila (escape analysis lo elimina)
+    private static final class Cursor {
+        private final String s;
+        private int pos;
+        private boolean escaped; // el último texto saltado tenía secuencias de escape
+
+        Cursor(String s) {
+            this.s = s;
+        }
+
+        void readRequest(GameAction out) {
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                throw error("Falta el campo action");
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = pos;
+                int keyEnd = skipStringBody();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                readField(keyIndex(keyStart, keyEnd), out);
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    break;
+                }
+                if (c != ',') {
+                    throw error("Se esperaba ',' o '}'");
+                }
+            }
+            if (out.getType() == null && out.getActionName() == null) {
+                throw error("Falta el campo action");
+            }
+        }
+
+        GameAction.Type peekActionType() {
+            GameAction.Type type = null;
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                return null;
+            }
+            while (true) {
+                skipWhitespace();
+                expect('"');
+                int keyStart = pos;
+                int keyEnd = skipStringBody();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (keyIndex(keyStart, keyEnd) == K_ACTION) {
+                    expect('"');
+                    int start = pos;
+                    int end = skipStringBody();
+                    type = GameAction.Type.fromWire(s, start, end);
+                } else {
+                    skipValue();
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return type;
+                }
+                if (c != ',') {
+                    throw error("Se esperaba ',' o '}'");
+                }
+            }
+        }
+
+        private void readField(int key, GameAction out) {
+            switch (key) {
+                case K_ACTION: {
+                    expect('"');
+                    int start = pos;
+                    int end = skipStringBody();
+                    GameAction.Type type = GameAction.Type.fromWire(s, start, end);
+                    out.setType(type);
+                    if (type == null) {
+                        out.setActionName(s.substring(start, end)); // solo para el mensaje de error
+                    }
+                    break;
+                }
+                case K_PLAYER_ID:
+                    out.setPlayerId(readStringOrNull());
+                    break;
+                case K_GAME_ID:
+                    out.setGameId(readStringOrNull());
+                    break;
+                case K_PLAYER_NAME:
+                    out.setPlayerName(readStringOrNull());
+                    break;
+                case K_CARD_INDEX:
+                    if (!skipNull()) {
+                        out.setCardIndex(readInt());
+                    }
+                    break;
+                case K_VERSION:
+                    if (!skipNull()) {
+                        out.setVersion(readLong());
+                    }
+                    break;
+                case K_CHOSEN_COLOR:
+                    out.setChosenColor(readColor());
+                    break;
+                case K_COLOR:
+                    out.setColor(readColor());
+                    break;
+                case K_DELTA_UPDATES:
+                    out.setDeltaUpdates(readBoolean());
+                    break;
+                case K_RESUME_TOKEN:
+                    out.setResumeToken(readStringOrNull());
+                    break;
+                default:
+                    skipValue();
+                    break;
+            }
+        }
+
+        private int keyIndex(int start, int end) {
+            int length = end - start;
+            for (int k = 0; k < KEYS.length; k++) {
+                if (KEYS[k].length() == length && s.regionMatches(start, KEYS[k], 0, length)) {
+                    return k;
+                }
+            }
+            return -1;
+        }
+
+        // ---- Valores ----
+
+        private String readStringOrNull() {
+            if (skipNull()) {
+                return null;
+            }
+            if (peek() != '"') {
+                // org.json aceptaba números donde se esperaba texto
+                int start = pos;
+                skipValue();
+                return s.substring(start, pos).trim();
+            }
+            pos++;
+            int start = pos;
+            int end = skipStringBody();
+            return escaped ? unescape(start, end) : s.substring(start, end);
+        }
+
+        private long readLong() {
+            boolean quoted = peek() == '"';
+            if (quoted) {
+                pos++;
+            }
+            boolean negative = peek() == '-';
+            if (negative) {
+                pos++;
+            }
+            int start = pos;
+            long value = 0;
+            while (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+                pos++;
+            }
+            if (pos == start) {
+                throw error("Se esperaba un número");
+            }
+            if (pos - start > 18) { // 18 dígitos siempre entran en un long
+                throw error("Número fuera de rango");
+            }
+            // Decimales/exponente: se truncan, como getInt de org.json
+            while (pos < s.length() && "0123456789.eE+-".indexOf(s.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (quoted) {
+                expect('"');
+            }
+            return negative ? -value : value;
+        }
+
+        private int readInt() {
+            long value = readLong();
+            if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw error("Número fuera de rango"); // como getInt de org.json, en vez de truncar
+            }
+            return (int) value;
+        }
+
+        private Card.Color readColor() {
+            if (skipNull()) {
+                return null;
+            }
+            expect('"');
+            int start = pos;
+            int end = skipStringBody();
+            int length = end - start;
+            for (Card.Color color : COLORS) {
+                String name = color.name();
+                if (name.length() == length && s.regionMatches(start, name, 0, length)) {
+                    return color;
+                }
+            }
+            throw new IllegalArgumentException("Color inválido: " + s.substring(start, end));
+        }
+
+        private boolean readBoolean() {
+            if (s.startsWith("true", pos)) {
+                pos += 4;
+                return true;
+            }
+            if (s.startsWith("false", pos)) {
+                pos += 5;
+                return false;
+            }
+            if (skipNull()) {
+                return false;
+            }
+            throw error("Se esperaba true o false");
+        }
+
+        private boolean skipNull() {
+            if (s.startsWith("null", pos)) {
+                pos += 4;
+                return true;
+            }
+            return false;
+        }
+
+        /** Salta cualquier valor JSON (anidados incluidos) sin crear objetos. */
+        private void skipValue() {
+            char c = peek();
+            if (c == '"') {
+                pos++;
+                skipStringBody();
+                return;
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                while (pos < s.length()) {
+                    char d = s.charAt(pos++);
+                    if (d == '"') {
+                        skipStringBody();
+                    } else if (d == '{' || d == '[') {
+                        depth++;
+                    } else if (d == '}' || d == ']') {
+                        if (--depth == 0) {
+                            return;
+                        }
+                    }
+                }
+                throw error("Objeto sin cerrar");
+            }
+            // número, true, false o null
+            while (pos < s.length()) {
+                char d = s.charAt(pos);
+                if (d == ',' || d == '}' || d == ']' || Character.isWhitespace(d)) {
+                    break;
+                }
+                pos++;
+            }
+        }
+
+        /** Avanza hasta después de la comilla de cierre; devuelve dónde termina el contenido. */
+        private int skipStringBody() {
+            escaped = false;
+            while (pos < s.length()) {
+                char c = s.charAt(pos++);
+                if (c == '"') {
+                    return pos - 1;
+                }
+                if (c == '\\') {
+                    escaped = true;
+                    pos++;
+                }
+            }
+            throw error("Texto sin cerrar");
+        }
+
+        private String unescape(int start, int end) {
+            StringBuilder out = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c != '\\') {
+                    out.append(c);
+                    continue;
+                }
+                char e = s.charAt(++i);
+                switch (e) {
+                    case 'n': out.append('\n'); break;
+                    case 't': out.append('\t'); break;
+                    case 'r': out.append('\r'); break;
+                    case 'b': out.append('\b'); break;
+                    case 'f': out.append('\f'); break;
+                    case 'u':
+                        out.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default: out.append(e); break; // \" \\ \/
+                }
+            }
+            return out.toString();
+        }
+
+        // ---- Básicos ----
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= s.length()) {
+                throw error("Fin inesperado del mensaje");
+            }
+            return s.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw error("Se esperaba '" + expected + "'");
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " (posición " + pos + ")");
+        }
+    }
+}
@@ -0,0 +1,914 @@
+package com.navaplaystudios.server;
+
+/**
+ * Log de escritura anticipada de las acciones aceptadas, para recuperar
+ * las partidas en curso tras un reinicio o una caída. Se anota solo lo que
+ * cambió una partida (crear, unirse, el resumeToken del asiento, empezar
+ * con la semilla del mazo, jugar, robar, color, plazo vencido, salir,
+ * borrar); al arrancar se repite todo en orden y, como el mazo sale de la
+ * semilla, se llega al mismo estado, rebarajes incluidos.
+ *
+ * Escribir no toca el disco en el hilo del shard: el registro se codifica
+ * bajo un lock en un buffer compartido y el hilo "uno-wal" lo escribe con
+ * FileChannel junto con todos los que llegaron mientras tanto (group
+ * commit). fsyncMillis decide cuánto se puede perder:
+ * - 0: fsync después de cada escritura (un fsync para todo el lote);
+ * - > 0: como mucho un fsync cada fsyncMillis;
+ * - < 0: nunca; lo decide el sistema operativo.
+ * Solo si el disco no da abasto y se juntan MAX_PENDING bytes los shards
+ * esperan.
+ *
+ * Formato: segmentos wal-NNNNNNNN.log con una cabecera (magic, versión y
+ * el primer segmento que cubre) y registros [largo][CRC32C][cuerpo]. Al
+ * leer, un registro cortado o con CRC inválido al final del último
+ * segmento es una escritura a medias: se trunca ahí. En un segmento
+ * anterior es daño: se saltea el resto del segmento y las partidas a las
+ * que les pueden faltar acciones (las vivas en ese punto y las que
+ * aparecen después sin su CREATE) no se recuperan; se borran al final del
+ * replay en vez de seguir con un estado que ya no es el que se jugó.
+ *
+ * Compactación: al pasar al segmento siguiente, los segmentos cerrados se
+ * reescriben en uno solo con los registros de las partidas que siguen
+ * vivas. El nuevo reemplaza al último (rename atómico) y dice desde qué
+ * segmento cubre; si se corta a mitad, al arrancar se borran los viejos
+ * que ya estaban incluidos.
+ *
+ * Réplicas (Follower): reciben lo que ya está en disco y después cada
+ * lote en el mismo orden, desde el hilo del log. Un lock en wal.lock evita
+ * que dos procesos usen el mismo directorio; por eso el directorio por
+ * defecto sale del puerto (ver ServerConfig.getWalDir).
+ */
+import com.navaplaystudios.server.clases.Card;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+public class ActionLog {
+    public enum Op {
+        CREATE, JOIN, SEAT, START, PLAY, DRAW, COLOR, TIMEOUT, LEAVE, REMOVE
+    }
+
+    private static final Op[] OPS = Op.values();
+    private static final Card.Color[] COLORS = Card.Color.values();
+    private static final int MAGIC = 0x554E4F4C; // "UNOL"
+    private static final int VERSION = 1;
+    static final int SEGMENT_HEADER = 16; // magic, versión, primer segmento cubierto
+    private static final int RECORD_HEADER = 8; // largo y CRC32C del cuerpo
+    private static final int MAX_RECORD = 64 * 1024;
+    private static final int MAX_STRING_CHARS = 4096; // nombres más largos se recortan
+    private static final int MAX_PENDING = 64 * 1024 * 1024;
+    private static final short NULL_STRING = -1;
+
+    /**
+     * Sigue el log desde el hilo del log: primero los segmentos ya escritos
+     * (cada uno desde la cabecera hasta ends[i]; el follower cierra los
+     * canales) y después cada lote nuevo. No debe bloquear.
+     */
+    interface Follower {
+        void start(List<FileChannel> segments, long[] ends);
+
+        /** false para dejar de recibir lotes. */
+        boolean batch(ByteBuffer records, long writtenAt);
+    }
+
+    /** Un registro; los campos que la operación no usa quedan en null / 0. */
+    public static final class Entry {
+        public final Op op;
+        public final String gameId;
+        public final String playerId;
+        public final String text; // roomName, playerName o resumeToken
+        public final String text2; // hostPlayerName
+        public final int number; // maxPlayers, cardIndex o color
+        public final long value; // createdAt, semilla del mazo o color elegido (-1 = ninguno)
+
+        Entry(Op op, String gameId, String playerId, String text, String text2, int number, long value) {
+            this.op = op;
+            this.gameId = gameId;
+            this.playerId = playerId;
+            this.text = text;
+            this.text2 = text2;
+            this.number = number;
+            this.value = value;
+        }
+
+        public Card.Color color() {
+            long ordinal = op == Op.COLOR ? number : value;
+            return ordinal >= 0 && ordinal < COLORS.length ? COLORS[(int) ordinal] : null;
+        }
+    }
+
+    private final boolean enabled;
+    private final Path dir;
+    private final long segmentBytes;
+    private final int fsyncMillis;
+    private final Object lock = new Object();
+    private final CRC32C crc = new CRC32C(); // protegido por lock
+    private ByteBuffer staging; // registros por escribir; protegido por lock
+    private ByteBuffer writing; // el lote que escribe el hilo del log
+    private final Set<String> liveGames = ConcurrentHashMap.newKeySet();
+    private boolean damaged; // replay: se salteó parte de un segmento que no era el último
+    private volatile int unrecoverableGames;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean(); // también frena la compactación al sumar un follower
+    private final List<Follower> joining = new ArrayList<>(); // protegido por lock
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private FileChannel lockChannel;
+    private FileLock dirLock;
+    private Thread writer;
+    private volatile boolean running;
+    // Segmento activo: solo el hilo del log (y replay/start antes de arrancarlo)
+    private FileChannel channel;
+    private long activeNumber = 1;
+    private long activeSize;
+    private volatile long firstNumber = 1; // primer segmento en disco
+    // Estadísticas
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+    private final LongAdder syncNanos = new LongAdder();
+    private final LongAccumulator maxSyncNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder compactions = new LongAdder();
+    private volatile long recoveredRecords;
+    private volatile long recoveryMillis;
+
+    public ActionLog(ServerConfig config) {
+        this.enabled = config.isWalEnabled();
+        this.dir = Paths.get(config.getWalDir());
+        this.segmentBytes = config.getWalSegmentMegabytes() * 1024L * 1024L;
+        this.fsyncMillis = config.getWalFsyncMillis();
+        this.staging = ByteBuffer.allocateDirect(enabled ? 256 * 1024 : 0);
+        this.writing = ByteBuffer.allocateDirect(enabled ? 256 * 1024 : 0);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread t = new Thread(runnable, "uno-wal-compact");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ---- Registros (desde los shards) ----
+
+    public void created(String gameId, String roomName, String hostPlayerId, String hostPlayerName,
+                        int maxPlayers, long createdAt) {
+        append(Op.CREATE, gameId, hostPlayerId, roomName, hostPlayerName, maxPlayers, createdAt);
+    }
+
+    public void joined(String gameId, String playerId, String playerName) {
+        append(Op.JOIN, gameId, playerId, playerName, null, 0, 0);
+    }
+
+    public void seated(String gameId, String playerId, String resumeToken) {
+        append(Op.SEAT, gameId, playerId, resumeToken, null, 0, 0);
+    }
+
+    public void started(String gameId, String playerId, long deckSeed) {
+        append(Op.START, gameId, playerId, null, null, 0, deckSeed);
+    }
+
+    public void played(String gameId, String playerId, int cardIndex, Card.Color chosenColor) {
+        append(Op.PLAY, gameId, playerId, null, null, cardIndex, chosenColor != null ? chosenColor.ordinal() : -1);
+    }
+
+    public void drew(String gameId, String playerId) {
+        append(Op.DRAW, gameId, playerId, null, null, 0, 0);
+    }
+
+    public void choseColor(String gameId, String playerId, Card.Color color) {
+        append(Op.COLOR, gameId, playerId, null, null, color.ordinal(), 0);
+    }
+
+    public void timedOut(String gameId, String playerId) {
+        append(Op.TIMEOUT, gameId, playerId, null, null, 0, 0);
+    }
+
+    public void left(String gameId, String playerId) {
+        append(Op.LEAVE, gameId, playerId, null, null, 0, 0);
+    }
+
+    public void removed(String gameId) {
+        append(Op.REMOVE, gameId, null, null, null, 0, 0);
+    }
+
+    private void append(Op op, String gameId, String playerId, String text, String text2, int number, long value) {
+        if (!enabled) {
+            return;
+        }
+        // Cota del tamaño: UTF-8 usa como mucho 3 bytes por char
+        int bound = RECORD_HEADER + 1 + 4 * 2 + 4 + 8
+                + 3 * (chars(gameId) + chars(playerId) + chars(text) + chars(text2));
+        synchronized (lock) {
+            while (staging.position() > MAX_PENDING && running) {
+                try {
+                    lock.wait(); // el disco no da abasto
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            ensureCapacity(bound);
+            int start = staging.position();
+            staging.position(start + RECORD_HEADER);
+            staging.put((byte) op.ordinal());
+            putString(staging, gameId);
+            putString(staging, playerId);
+            putString(staging, text);
+            putString(staging, text2);
+            staging.putInt(number);
+            staging.putLong(value);
+            int end = staging.position();
+
+            crc.reset();
+            staging.limit(end).position(start + RECORD_HEADER);
+            crc.update(staging);
+            staging.limit(staging.capacity()).position(end);
+            staging.putInt(start, end - start - RECORD_HEADER);
+            staging.putInt(start + 4, (int) crc.getValue());
+            if (start == 0) {
+                lock.notifyAll(); // el hilo del log espera el primer registro
+            }
+        }
+        records.increment();
+        if (op == Op.CREATE) {
+            liveGames.add(gameId);
+        } else if (op == Op.REMOVE) {
+            liveGames.remove(gameId);
+        }
+    }
+
+    /** Registro ya codificado que llega del primario (standby): se copia tal cual. */
+    void appendReplicated(ByteBuffer record, Entry entry) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            ensureCapacity(record.remaining());
+            boolean wasEmpty = staging.position() == 0;
+            staging.put(record.duplicate());
+            if (wasEmpty) {
+                lock.notifyAll();
+            }
+        }
+        records.increment();
+        if (entry.op == Op.CREATE) {
+            liveGames.add(entry.gameId);
+        } else if (entry.op == Op.REMOVE) {
+            liveGames.remove(entry.gameId);
+        }
+    }
+
+    /**
+     * Siguiente registro completo de un stream de registros (avanza la
+     * posición), o null si todavía no llegó entero.
+     */
+    static ByteBuffer nextRecord(ByteBuffer data, CRC32C check) throws IOException {
+        int start = data.position();
+        if (data.remaining() < RECORD_HEADER) {
+            return null;
+        }
+        int length = data.getInt(start);
+        if (length <= 0 || length > MAX_RECORD) {
+            throw new IOException("Largo de registro inválido: " + length);
+        }
+        if (data.remaining() < RECORD_HEADER + length) {
+            return null;
+        }
+        if (!validRecord(data, check)) {
+            throw new IOException("CRC inválido en el registro");
+        }
+        data.position(start + RECORD_HEADER + length);
+        return data.slice(start, RECORD_HEADER + length);
+    }
+
+    static Entry decodeRecord(ByteBuffer record) {
+        return decode(record.slice(RECORD_HEADER, record.remaining() - RECORD_HEADER));
+    }
+
+    private void ensureCapacity(int needed) {
+        if (staging.remaining() >= needed) {
+            return;
+        }
+        ByteBuffer bigger = ByteBuffer.allocateDirect(Math.max(staging.capacity() * 2, staging.position() + needed));
+        staging.flip();
+        bigger.put(staging);
+        staging = bigger;
+    }
+
+    private static int chars(String value) {
+        return value != null ? Math.min(value.length(), MAX_STRING_CHARS) : 0;
+    }
+
+    // UTF-8 directo al buffer, sin arreglos intermedios
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort(NULL_STRING);
+            return;
+        }
+        int lengthAt = out.position();
+        out.position(lengthAt + 2);
+        int n = Math.min(value.length(), MAX_STRING_CHARS);
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | cp >> 18));
+                out.put((byte) (0x80 | cp >> 12 & 0x3F));
+                out.put((byte) (0x80 | cp >> 6 & 0x3F));
+                out.put((byte) (0x80 | cp & 0x3F));
+            } else {
+                out.put((byte) (0xE0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3F));
+                out.put((byte) (0x80 | c & 0x3F));
+            }
+        }
+        out.putShort(lengthAt, (short) (out.position() - lengthAt - 2));
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == (NULL_STRING & 0xFFFF)) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static Entry decode(ByteBuffer body) {
+        int op = body.get() & 0xFF;
+        if (op >= OPS.length) {
+            throw new IllegalArgumentException("Operación desconocida: " + op);
+        }
+        String gameId = getString(body);
+        String playerId = getString(body);
+        String text = getString(body);
+        String text2 = getString(body);
+        return new Entry(OPS[op], gameId, playerId, text, text2, body.getInt(), body.getLong());
+    }
+
+    // ---- Arranque ----
+
+    /**
+     * Repite el log en orden (antes de start, en un solo hilo). Devuelve
+     * la cantidad de registros aplicados.
+     */
+    public long replay(Consumer<Entry> apply) throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        long startNanos = System.nanoTime();
+        lockDirectory();
+        try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(dir, "wal-*.tmp")) {
+            for (Path leftover : leftovers) {
+                Files.delete(leftover); // compactación cortada antes del rename
+            }
+        }
+        List<Long> numbers = dropCovered(listSegments());
+
+        long applied = 0;
+        Set<String> unrecoverable = new LinkedHashSet<>();
+        for (int i = 0; i < numbers.size(); i++) {
+            long number = numbers.get(i);
+            boolean last = i == numbers.size() - 1;
+            applied += replaySegment(number, last, apply, unrecoverable);
+        }
+        dropUnrecoverable(unrecoverable, apply);
+        if (!numbers.isEmpty()) {
+            firstNumber = numbers.get(0);
+            activeNumber = numbers.get(numbers.size() - 1) + 1;
+        }
+        recoveredRecords = applied;
+        recoveryMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+        return applied;
+    }
+
+    private void lockDirectory() throws IOException {
+        if (dirLock != null) {
+            return;
+        }
+        Files.createDirectories(dir);
+        lockChannel = FileChannel.open(dir.resolve("wal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            dirLock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            dirLock = null;
+        }
+        if (dirLock == null) {
+            lockChannel.close();
+            lockChannel = null;
+            throw new IOException("El directorio del log ya está en uso: " + dir.toAbsolutePath()
+                    + " (cada proceso necesita su propio uno.wal.dir)");
+        }
+    }
+
+    /** Borra los segmentos del directorio: el standby arranca de cero con lo que manda el primario. */
+    public static void clear(ServerConfig config) throws IOException {
+        ActionLog log = new ActionLog(config);
+        if (!log.enabled) {
+            return;
+        }
+        log.lockDirectory();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(log.dir, "wal-*.{log,tmp}")) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        } finally {
+            log.unlockDirectory();
+        }
+    }
+
+    private void unlockDirectory() {
+        try {
+            if (dirLock != null) {
+                dirLock.release();
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            Log.warn("No se pudo liberar el lock del log: {}", e.getMessage());
+        }
+        dirLock = null;
+        lockChannel = null;
+    }
+
+    /**
+     * Hubo daño: las partidas que ya se crearon se borran con un REMOVE
+     * (no va al log; el próximo replay llega a la misma decisión y la
+     * compactación descarta sus registros porque ya no están vivas).
+     */
+    private void dropUnrecoverable(Set<String> unrecoverable, Consumer<Entry> apply) {
+        if (unrecoverable.isEmpty()) {
+            return;
+        }
+        for (String gameId : unrecoverable) {
+            if (liveGames.remove(gameId)) {
+                try {
+                    apply.accept(new Entry(Op.REMOVE, gameId, null, null, null, 0, -1));
+                } catch (RuntimeException e) {
+                    Log.warn("No se pudo borrar la partida dañada {}: {}", gameId, e.getMessage());
+                }
+            }
+        }
+        unrecoverableGames = unrecoverable.size();
+        Log.error("Log dañado: {} partidas no se pueden recuperar y se descartan: {}", unrecoverable.size(), unrecoverable);
+    }
+
+    private long replaySegment(long number, boolean last, Consumer<Entry> apply, Set<String> unrecoverable)
+            throws IOException {
+        Path path = segmentPath(number);
+        long applied = 0;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            if (data.remaining() < SEGMENT_HEADER || data.getInt() != MAGIC || data.getInt() != VERSION) {
+                Log.error("Segmento del log inválido, se ignora: {}", path);
+                return 0;
+            }
+            data.getLong();
+            CRC32C check = new CRC32C();
+            while (data.remaining() > 0) {
+                int recordStart = data.position();
+                if (!validRecord(data, check)) {
+                    if (last) {
+                        Log.warn("Log cortado en {} (byte {}): se descarta el final", path, recordStart);
+                        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                            out.truncate(recordStart);
+                        }
+                    } else {
+                        Log.error("Registro dañado en {} (byte {}): se saltea el resto del segmento", path, recordStart);
+                        damaged = true;
+                        unrecoverable.addAll(liveGames); // les puede faltar cualquier acción desde acá
+                    }
+                    break;
+                }
+                int length = data.getInt(recordStart);
+                ByteBuffer body = data.slice(recordStart + RECORD_HEADER, length);
+                data.position(recordStart + RECORD_HEADER + length);
+                Entry entry = decode(body);
+                if (damaged && entry.gameId != null && (unrecoverable.contains(entry.gameId)
+                        || (entry.op != Op.CREATE && !liveGames.contains(entry.gameId)))) {
+                    unrecoverable.add(entry.gameId); // su CREATE estaba en la parte perdida
+                    if (entry.op == Op.REMOVE) {
+                        liveGames.remove(entry.gameId);
+                    }
+                    continue;
+                }
+                if (entry.op == Op.CREATE) {
+                    liveGames.add(entry.gameId);
+                } else if (entry.op == Op.REMOVE) {
+                    liveGames.remove(entry.gameId);
+                }
+                try {
+                    apply.accept(entry);
+                } catch (RuntimeException e) {
+                    Log.warn("No se pudo aplicar {} de {}: {}", entry.op, entry.gameId, e.getMessage());
+                }
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    // Deja la posición al principio del registro
+    private static boolean validRecord(ByteBuffer data, CRC32C check) {
+        int start = data.position();
+        if (data.remaining() < RECORD_HEADER) {
+            return false;
+        }
+        int length = data.getInt(start);
+        if (length <= 0 || length > MAX_RECORD || data.remaining() < RECORD_HEADER + length) {
+            return false;
+        }
+        check.reset();
+        check.update(data.slice(start + RECORD_HEADER, length));
+        return (int) check.getValue() == data.getInt(start + 4);
+    }
+
+    /** Abre un segmento nuevo y arranca el hilo del log. */
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        lockDirectory();
+        openSegment(activeNumber, activeNumber);
+        running = true;
+        writer = new Thread(this::run, "uno-wal");
+        writer.setDaemon(true);
+        writer.start();
+        Log.info("Log de acciones en {} (fsync {} ms, segmentos de {} MB)", dir.toAbsolutePath(),
+                fsyncMillis, segmentBytes / (1024 * 1024));
+    }
+
+    public void close() {
+        if (!enabled || writer == null) {
+            return;
+        }
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        unlockDirectory();
+    }
+
+    /** Suma un follower; el hilo del log le pasa la foto en disco entre dos lotes. */
+    void addFollower(Follower follower) {
+        if (!enabled) {
+            throw new IllegalStateException("El log de acciones está desactivado");
+        }
+        synchronized (lock) {
+            joining.add(follower);
+            lock.notifyAll();
+        }
+    }
+
+    void removeFollower(Follower follower) {
+        followers.remove(follower);
+        synchronized (lock) {
+            joining.remove(follower);
+        }
+    }
+
+    // Hilo del log, justo después de escribir un lote: la foto llega hasta ahí
+    private void startFollowers() {
+        List<Follower> newcomers;
+        synchronized (lock) {
+            if (joining.isEmpty()) {
+                return;
+            }
+            if (!compacting.compareAndSet(false, true)) {
+                return; // se reintenta cuando termine la compactación
+            }
+            newcomers = new ArrayList<>(joining);
+            joining.clear();
+        }
+        try {
+            for (Follower follower : newcomers) {
+                List<FileChannel> segments = new ArrayList<>();
+                List<Long> ends = new ArrayList<>();
+                try {
+                    for (long number = firstNumber; number <= activeNumber; number++) {
+                        Path path = segmentPath(number);
+                        if (!Files.exists(path)) {
+                            continue;
+                        }
+                        FileChannel segment = FileChannel.open(path, StandardOpenOption.READ);
+                        segments.add(segment);
+                        ends.add(number == activeNumber ? activeSize : segment.size());
+                    }
+                } catch (IOException e) {
+                    Log.error("No se pudo leer el log para una réplica: {}", e.getMessage());
+                    for (FileChannel segment : segments) {
+                        try {
+                            segment.close();
+                        } catch (IOException ignored) {
+                            // ya falló la lectura
+                        }
+                    }
+                    continue;
+                }
+                follower.start(segments, ends.stream().mapToLong(Long::longValue).toArray());
+                followers.add(follower);
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    // ---- Hilo del log ----
+
+    private void run() {
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        while (true) {
+            boolean stopping;
+            synchronized (lock) {
+                while (staging.position() == 0 && running) {
+                    if (!joining.isEmpty()) {
+                        if (!compacting.get()) {
+                            break; // sumar followers
+                        }
+                        waitQuietly(20);
+                        continue;
+                    }
+                    if (!unsynced || fsyncMillis < 0) {
+                        waitQuietly(0);
+                        continue;
+                    }
+                    long remaining = fsyncMillis - (System.nanoTime() - lastSync) / 1_000_000L;
+                    if (remaining <= 0) {
+                        break; // toca el fsync de lo ya escrito
+                    }
+                    waitQuietly(remaining);
+                }
+                stopping = !running && staging.position() == 0;
+                ByteBuffer full = staging;
+                staging = writing;
+                writing = full;
+                lock.notifyAll(); // shards frenados por MAX_PENDING
+            }
+            try {
+                writing.flip();
+                if (writing.hasRemaining()) {
+                    int length = writing.remaining();
+                    ByteBuffer copy = followers.isEmpty() ? null : ByteBuffer.allocate(length).put(writing.duplicate()).flip();
+                    while (writing.hasRemaining()) {
+                        channel.write(writing);
+                    }
+                    activeSize += length;
+                    bytes.add(length);
+                    writes.increment();
+                    unsynced = true;
+                    if (copy != null) {
+                        long writtenAt = System.currentTimeMillis();
+                        for (Follower follower : followers) {
+                            if (!follower.batch(copy.duplicate(), writtenAt)) {
+                                followers.remove(follower);
+                            }
+                        }
+                    }
+                }
+                writing.clear();
+                startFollowers();
+                long now = System.nanoTime();
+                if (unsynced && (stopping || fsyncMillis == 0
+                        || fsyncMillis > 0 && now - lastSync >= fsyncMillis * 1_000_000L)) {
+                    sync();
+                    lastSync = System.nanoTime();
+                    unsynced = false;
+                }
+                if (stopping) {
+                    channel.close();
+                    return;
+                }
+                if (activeSize >= segmentBytes) {
+                    rotate();
+                    lastSync = System.nanoTime();
+                    unsynced = false;
+                }
+            } catch (IOException e) {
+                // Sin disco no hay durabilidad, pero el juego sigue
+                Log.error("Error escribiendo el log de acciones: {}", e.getMessage(), e);
+                writing.clear();
+                if (stopping) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            lock.wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sync() throws IOException {
+        long start = System.nanoTime();
+        channel.force(false);
+        long elapsed = System.nanoTime() - start;
+        syncs.increment();
+        syncNanos.add(elapsed);
+        maxSyncNanos.accumulate(elapsed);
+    }
+
+    private void rotate() throws IOException {
+        sync();
+        channel.close();
+        long closed = activeNumber;
+        openSegment(activeNumber + 1, activeNumber + 1);
+        if (closed > firstNumber && compacting.compareAndSet(false, true)) {
+            long from = firstNumber;
+            compactor.execute(() -> {
+                try {
+                    compact(from, closed);
+                } catch (IOException e) {
+                    Log.error("Error compactando el log: {}", e.getMessage(), e);
+                } finally {
+                    compacting.set(false);
+                }
+            });
+        }
+    }
+
+    private void openSegment(long number, long firstCovered) throws IOException {
+        channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+        header.putInt(MAGIC).putInt(VERSION).putLong(firstCovered).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        activeNumber = number;
+        activeSize = SEGMENT_HEADER;
+    }
+
+    // ---- Compactación ----
+
+    /** Reescribe los segmentos from..to (cerrados) con los registros de las partidas vivas. */
+    private void compact(long from, long to) throws IOException {
+        Path tmp = dir.resolve(String.format("wal-%08d.tmp", to));
+        long kept = 0;
+        long dropped = 0;
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(from).flip();
+            out.write(header);
+            CRC32C check = new CRC32C();
+            for (long number = from; number <= to; number++) {
+                Path path = segmentPath(number);
+                if (!Files.exists(path)) {
+                    continue;
+                }
+                try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                    ByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                    data.position(SEGMENT_HEADER);
+                    while (data.remaining() > 0 && validRecord(data, check)) {
+                        int recordStart = data.position();
+                        int length = data.getInt(recordStart);
+                        ByteBuffer body = data.slice(recordStart + RECORD_HEADER, length);
+                        body.get(); // op
+                        String gameId = getString(body);
+                        ByteBuffer record = data.slice(recordStart, RECORD_HEADER + length);
+                        data.position(recordStart + RECORD_HEADER + length);
+                        if (gameId != null && liveGames.contains(gameId)) {
+                            while (record.hasRemaining()) {
+                                out.write(record);
+                            }
+                            kept++;
+                        } else {
+                            dropped++;
+                        }
+                    }
+                }
+            }
+            out.force(false);
+        }
+        Files.move(tmp, segmentPath(to), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long number = from; number < to; number++) {
+            Files.deleteIfExists(segmentPath(number));
+        }
+        firstNumber = to;
+        compactions.increment();
+        Log.info("Log compactado hasta el segmento {}: {} registros vivos, {} descartados",
+                to, kept, dropped);
+    }
+
+    private List<Long> listSegments() throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path segment : segments) {
+                String name = segment.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(4, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    Log.warn("Archivo inesperado en el log: {}", segment);
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    // Un segmento compactado que cubre desde f deja de más a f..n-1 (si el borrado no llegó a hacerse)
+    private List<Long> dropCovered(List<Long> numbers) throws IOException {
+        for (int i = numbers.size() - 1; i >= 0; i--) {
+            long number = numbers.get(i);
+            long firstCovered = readFirstCovered(segmentPath(number));
+            if (firstCovered < number) {
+                for (long covered = firstCovered; covered < number; covered++) {
+                    Files.deleteIfExists(segmentPath(covered));
+                }
+            }
+        }
+        return listSegments();
+    }
+
+    private static long readFirstCovered(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+            while (header.hasRemaining() && in.read(header) > 0) {
+                // leer la cabecera completa
+            }
+            header.flip();
+            if (header.remaining() < SEGMENT_HEADER || header.getInt() != MAGIC) {
+                return Long.MAX_VALUE;
+            }
+            header.getInt();
+            return header.getLong();
+        }
+    }
+
+    private Path segmentPath(long number) {
+        return dir.resolve(String.format("wal-%08d.log", number));
+    }
+
+    // ---- Estadísticas ----
+
+    public long getRecords() { return records.sum(); }
+    public long getBytes() { return bytes.sum(); }
+    public long getSyncs() { return syncs.sum(); }
+    public long getCompactions() { return compactions.sum(); }
+    public int getLiveGames() { return liveGames.size(); }
+
+    public int getPendingBytes() {
+        synchronized (lock) {
+            return staging.position();
+        }
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        long syncCount = getSyncs();
+        stats.put("records", getRecords());
+        stats.put("bytes", getBytes());
+        stats.put("writes", writes.sum());
+        stats.put("fsyncs", syncCount);
+        stats.put("fsyncAvgMicros", syncCount > 0 ? syncNanos.sum() / syncCount / 1000 : 0);
+        stats.put("fsyncMaxMicros", maxSyncNanos.get() / 1000);
+        stats.put("pendingBytes", getPendingBytes());
+        stats.put("liveGames", getLiveGames());
+        stats.put("segments", activeNumber - firstNumber + 1);
+        stats.put("compactions", getCompactions());
+        stats.put("recovered", Map.of("records", recoveredRecords, "millis", recoveryMillis,
+                "unrecoverableGames", unrecoverableGames));
+        return stats;
+    }
+}
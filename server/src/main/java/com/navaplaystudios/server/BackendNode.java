@@ -0,0 +1,153 @@
+package com.navaplaystudios.server;
+
+/**
+ * Un nodo de juego visto desde el gateway. Mantiene una conexión de
+ * control suscrita al lobby del nodo: la foto y los deltas que llegan por
+ * ahí alimentan el lobby combinado del gateway y dicen qué partidas viven
+ * en el nodo. El nodo entra al anillo cuando llega su primera foto y sale
+ * cuando se cae la conexión; desde entonces se reintenta cada
+ * RECONNECT_MILLIS.
+ *
+ * Si falta un lobby_delta (el nodo los descarta con la cola llena) se
+ * vuelve a pedir la foto completa.
+ */
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class BackendNode implements WebSocket.Listener {
+    private static final long RECONNECT_MILLIS = 2000;
+    private static final String SUBSCRIBE = new JSONObject().put("action", "subscribe_lobby").toString();
+
+    private final URI uri;
+    private final GatewayServer gateway;
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler;
+    private final StringBuilder partial = new StringBuilder(); // frame de texto en partes
+    private volatile WebSocket socket;
+    private volatile boolean up;
+    private volatile boolean stopped;
+    private long seq = -1; // último lobby_delta aplicado; solo el hilo del listener
+    private boolean resyncing; // se pidió la foto; los deltas se ignoran hasta que llegue
+
+    BackendNode(URI uri, GatewayServer gateway, HttpClient http, ScheduledExecutorService scheduler) {
+        this.uri = uri;
+        this.gateway = gateway;
+        this.http = http;
+        this.scheduler = scheduler;
+    }
+
+    public String getId() { return uri.toString(); }
+    public URI getUri() { return uri; }
+    public boolean isUp() { return up; }
+
+    void connect() {
+        if (stopped) {
+            return;
+        }
+        http.newWebSocketBuilder()
+                .header(GatewayServer.GATEWAY_HEADER, "1")
+                .connectTimeout(Duration.ofMillis(RECONNECT_MILLIS))
+                .buildAsync(uri, this)
+                .whenComplete((ws, error) -> {
+                    if (error != null) {
+                        Log.debug("Nodo {} no disponible: {}", uri, error.getMessage());
+                        scheduleReconnect();
+                    }
+                });
+    }
+
+    void stop() {
+        stopped = true;
+        WebSocket ws = socket;
+        if (ws != null) {
+            ws.abort();
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        socket = webSocket;
+        webSocket.sendText(SUBSCRIBE, true);
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            String text = partial.toString();
+            partial.setLength(0);
+            try {
+                handle(webSocket, new JSONObject(text));
+            } catch (Exception e) {
+                Log.warn("Mensaje inválido del nodo {}: {}", uri, e.getMessage());
+            }
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    private void handle(WebSocket webSocket, JSONObject message) {
+        String type = message.optString("type");
+        if ("lobby_snapshot".equals(type)) {
+            seq = message.optLong("seq");
+            resyncing = false;
+            if (!up) {
+                up = true;
+                Log.info("Nodo de juego disponible: {}", uri);
+                gateway.nodeUp(this);
+            }
+            gateway.lobbySnapshot(this, message.getJSONArray("games"));
+        } else if ("lobby_delta".equals(type) && up && !resyncing) {
+            long deltaSeq = message.optLong("seq");
+            if (deltaSeq != seq + 1) {
+                // Se perdió un delta: foto nueva
+                Log.warn("Nodo {}: lobby_delta {} tras {}, se pide la foto", uri, deltaSeq, seq);
+                resyncing = true;
+                webSocket.sendText(SUBSCRIBE, true);
+                return;
+            }
+            seq = deltaSeq;
+            JSONArray changes = message.getJSONArray("changes");
+            for (int i = 0; i < changes.length(); i++) {
+                gateway.lobbyChange(this, changes.getJSONObject(i));
+            }
+        }
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        lost("cerrada (" + statusCode + ")");
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        lost(error.getMessage());
+    }
+
+    private void lost(String reason) {
+        socket = null;
+        partial.setLength(0);
+        resyncing = false;
+        if (up) {
+            up = false;
+            Log.warn("Nodo de juego perdido: {} ({})", uri, reason);
+            gateway.nodeDown(this);
+        }
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        if (!stopped) {
+            scheduler.schedule(this::connect, RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
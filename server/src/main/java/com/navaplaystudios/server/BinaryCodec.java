@@ -0,0 +1,507 @@
+package com.navaplaystudios.server;
+
+/**
+ * Protocolo binario compacto, negociado con el subprotocolo "uno.bin.v1".
+ * Cada frame empieza con un byte de opcode y sigue un layout fijo:
+ *
+ *   - Cadenas: longitud varint + bytes UTF-8.
+ *   - Números: varint sin signo (versiones, tamaños, índices).
+ *   - Cartas: un byte, color en el nibble alto y tipo en el bajo
+ *     (0xFF = sin carta). Colores: RED=0..WILD=4; tipos en el orden de
+ *     Card.Type.
+ *   - Colores sueltos: un byte con el ordinal (0xFF = ninguno).
+ *
+ * Cliente -> servidor: los opcodes 0x01..0x0D corresponden a las acciones
+ * JSON (ver ACTIONS). Servidor -> cliente: estado completo, delta de estado,
+ * eventos y errores tienen layout propio; cualquier otro mensaje viaja como
+ * OP_JSON (UTF-8 del JSON) para no perder funcionalidad.
+ *
+ * Los mensajes se decodifican al mismo GameAction que los JSON, así los
+ * handlers del servidor no distinguen el formato.
+ */
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import com.navaplaystudios.server.clases.GameState;
+import com.navaplaystudios.server.clases.Player;
+import com.navaplaystudios.server.clases.UnoGame;
+import org.json.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class BinaryCodec {
+    public static final String SUBPROTOCOL = "uno.bin.v1";
+
+    // Cliente -> servidor
+    public static final byte OP_CREATE_GAME = 0x01;
+    public static final byte OP_JOIN_GAME = 0x02;
+    public static final byte OP_START_GAME = 0x03;
+    public static final byte OP_PLAY_CARD = 0x04;
+    public static final byte OP_DRAW_CARD = 0x05;
+    public static final byte OP_CHOOSE_COLOR = 0x06;
+    public static final byte OP_GET_GAME_STATE = 0x07;
+    public static final byte OP_LIST_GAMES = 0x08;
+    public static final byte OP_PING = 0x09;
+    public static final byte OP_ACK_STATE = 0x0A;
+    public static final byte OP_RESYNC = 0x0B;
+    public static final byte OP_SUBSCRIBE_LOBBY = 0x0C;
+    public static final byte OP_UNSUBSCRIBE_LOBBY = 0x0D;
+    public static final byte OP_RESUME = 0x0E; // token, varint versión + 1 (0 = sin versión)
+
+    // Servidor -> cliente
+    public static final byte OP_STATE_UPDATE = (byte) 0x81;
+    public static final byte OP_STATE = (byte) 0x82;
+    public static final byte OP_STATE_DELTA = (byte) 0x83;
+    public static final byte OP_EVENT = (byte) 0x84;
+    public static final byte OP_ERROR = (byte) 0x85;
+    public static final byte OP_BATCH = (byte) 0x86; // varint n + n x (varint len + frame)
+
+    // Ambos sentidos: JSON envuelto en un frame binario
+    public static final byte OP_JSON = (byte) 0xFF;
+
+    private static final GameAction.Type[] ACTIONS = {
+        null, GameAction.Type.CREATE_GAME, GameAction.Type.JOIN_GAME, GameAction.Type.START_GAME,
+        GameAction.Type.PLAY_CARD, GameAction.Type.DRAW_CARD, GameAction.Type.CHOOSE_COLOR,
+        GameAction.Type.GET_GAME_STATE, GameAction.Type.LIST_GAMES, GameAction.Type.PING,
+        GameAction.Type.ACK_STATE, GameAction.Type.RESYNC, GameAction.Type.SUBSCRIBE_LOBBY,
+        GameAction.Type.UNSUBSCRIBE_LOBBY, GameAction.Type.RESUME
+    };
+
+    // Eventos con layout propio (el índice es el código)
+    private static final String[] EVENTS = {
+        "card_played", "card_drawn", "color_chosen", "game_started", "game_ended",
+        "player_disconnected", "player_joined_game"
+    };
+
+    private static final int NO_VALUE = 0xFF;
+
+    // Bits del delta de estado
+    private static final int D_GAME_STATE = 1;
+    private static final int D_DRAW_PILE = 1 << 1;
+    private static final int D_TOP_CARD = 1 << 2;
+    private static final int D_CURRENT_PLAYER = 1 << 3;
+    private static final int D_COLOR_CHOICE = 1 << 4;
+    private static final int D_WINNER = 1 << 5;
+    private static final int D_PLAYERS = 1 << 6;
+    private static final int D_HAND_SIZES = 1 << 7;
+    private static final int D_CONNECTED = 1 << 8;
+    private static final int D_HAND_REMOVED = 1 << 9;
+    private static final int D_HAND_ADDED = 1 << 10;
+
+    private static final Card.Color[] COLORS = Card.Color.values();
+    private static final Card.Type[] TYPES = Card.Type.values();
+
+    // ---- Decodificación (cliente -> servidor) ----
+
+    /** Tipo de acción según el opcode, sin leer el resto; null para OP_JSON u opcodes inválidos. */
+    public static GameAction.Type peekType(ByteBuffer frame) {
+        if (!frame.hasRemaining()) {
+            return null;
+        }
+        int op = frame.get(frame.position()) & 0xFF;
+        return op > 0 && op < ACTIONS.length ? ACTIONS[op] : null;
+    }
+
+    public static void decodeAction(ByteBuffer frame, GameAction out) {
+        Reader in = new Reader(frame);
+        int op = in.u8();
+
+        if (op == (OP_JSON & 0xFF)) {
+            ActionDecoder.decode(in.rest(), out);
+            return;
+        }
+        if (op <= 0 || op >= ACTIONS.length) {
+            throw new IllegalArgumentException("Opcode desconocido: " + op);
+        }
+
+        out.setType(ACTIONS[op]);
+        switch (op) {
+            case OP_CREATE_GAME:
+                // Acción fría: los handlers leen sus campos del payload
+                JSONObject request = new JSONObject();
+                request.put("action", ACTIONS[op].getWireName());
+                putIfPresent(request, "roomName", in.string());
+                putIfPresent(request, "hostPlayerId", in.string());
+                putIfPresent(request, "hostPlayerName", in.string());
+                int maxPlayers = in.u8();
+                if (maxPlayers != 0) {
+                    request.put("maxPlayers", maxPlayers);
+                }
+                out.setPayload(request);
+                break;
+            case OP_JOIN_GAME:
+                out.setGameId(in.string());
+                out.setPlayerId(in.string());
+                out.setPlayerName(in.string());
+                out.setDeltaUpdates((in.u8() & 1) != 0);
+                break;
+            case OP_START_GAME:
+                out.setGameId(in.string());
+                out.setPlayerId(in.string());
+                break;
+            case OP_PLAY_CARD:
+                out.setPlayerId(in.string());
+                out.setCardIndex(in.intVarint());
+                int chosen = in.u8();
+                if (chosen != NO_VALUE) {
+                    out.setChosenColor(COLORS[chosen]);
+                }
+                break;
+            case OP_CHOOSE_COLOR:
+                out.setPlayerId(in.string());
+                out.setColor(COLORS[in.u8()]);
+                break;
+            case OP_ACK_STATE:
+                out.setPlayerId(in.string());
+                out.setVersion(in.varint());
+                break;
+            case OP_RESUME:
+                out.setResumeToken(in.string());
+                long version = in.varint();
+                if (version > 0) {
+                    out.setVersion(version - 1);
+                }
+                break;
+            case OP_DRAW_CARD:
+            case OP_GET_GAME_STATE:
+            case OP_RESYNC:
+                out.setPlayerId(in.string());
+                break;
+            case OP_LIST_GAMES:
+                // Sin filtros: la lista completa (los filtros van por OP_JSON)
+                out.setPayload(new JSONObject().put("action", ACTIONS[op].getWireName()));
+                break;
+            default:
+                // ping y (un)subscribe_lobby no llevan campos
+                break;
+        }
+    }
+
+    private static void putIfPresent(JSONObject target, String key, String value) {
+        if (!value.isEmpty()) {
+            target.put(key, value);
+        }
+    }
+
+    // ---- Codificación (servidor -> cliente) ----
+
+    public static ByteBuffer encode(JSONObject message) {
+        String type = message.optString("type");
+        Writer out = new Writer(64);
+
+        // El estado completo no pasa por aquí: lo arma GameStateFrame
+        if (type.equals("game_state_delta")) {
+            out.u8(OP_STATE_DELTA);
+            writeDelta(out, message);
+        } else if (eventCode(type) >= 0) {
+            out.u8(OP_EVENT);
+            out.u8(eventCode(type));
+            out.string(message.optString("gameId"));
+            out.string(message.has("data") ? String.valueOf(message.get("data")) : "");
+        } else if (!message.optBoolean("success", true) && !message.has("data")) {
+            // Errores: {type, success=false, message, timestamp}
+            out.u8(OP_ERROR);
+            out.string(type);
+            out.string(message.getString("message"));
+        } else {
+            out.u8(OP_JSON);
+            out.raw(message.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toBuffer();
+    }
+
+    private static int eventCode(String type) {
+        for (int i = 0; i < EVENTS.length; i++) {
+            if (EVENTS[i].equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Estado completo, en dos partes para que la pública se codifique una
+     * sola vez por versión (ver GameStateFrame):
+     *
+     *   pública: gameId, version, gameState, drawPileSize, topCard,
+     *            flags (bit1 waitingForColorChoice), índice del jugador
+     *            actual, del que elige color y del ganador, y jugadores
+     *            (id, name, handSize, isConnected).
+     *   privada: flags (bit0 isMyTurn, bit2 shouldChooseColor) y la mano.
+     */
+    static void writePublicState(Writer out, UnoGame game) {
+        List<Player> players = game.getPlayers();
+
+        out.string(game.getGameId());
+        out.varint(game.getStateVersion());
+        out.u8(game.getState().ordinal());
+        out.varint(game.getDrawPileSize());
+        Card topCard = game.getTopCard();
+        out.u8(topCard != null ? cardCode(topCard.getColor(), topCard.getType()) : NO_VALUE);
+        out.u8(game.isWaitingForColorChoice() ? 2 : 0);
+
+        Player current = game.getCurrentPlayer();
+        out.u8(current != null ? players.indexOf(current) : NO_VALUE);
+        out.u8(game.isWaitingForColorChoice() ? playerIndex(players, game.getColorChoicePlayerId()) : NO_VALUE);
+        out.u8(game.getWinner() != null ? players.indexOf(game.getWinner()) : NO_VALUE);
+
+        out.varint(players.size());
+        for (Player player : players) {
+            out.string(player.getId());
+            out.string(player.getName());
+            out.varint(player.getHandSize());
+            out.u8(player.isConnected() ? 1 : 0);
+        }
+    }
+
+    static void writePrivateState(Writer out, boolean isMyTurn, boolean shouldChooseColor, List<Card> hand) {
+        out.u8((isMyTurn ? 1 : 0) | (shouldChooseColor ? 4 : 0));
+        out.varint(hand.size());
+        for (Card card : hand) {
+            out.u8(cardCode(card.getColor(), card.getType()));
+        }
+    }
+
+    private static int playerIndex(List<Player> players, String playerId) {
+        for (int i = 0; i < players.size(); i++) {
+            if (players.get(i).getId().equals(playerId)) {
+                return i;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    private static void writePlayers(Writer out, JSONArray players) {
+        int count = players != null ? players.length() : 0;
+        out.varint(count);
+        for (int i = 0; i < count; i++) {
+            JSONObject player = players.getJSONObject(i);
+            out.string(player.getString("id"));
+            out.string(player.optString("name"));
+            out.varint(player.optInt("handSize"));
+            out.u8(player.optBoolean("isConnected", true) ? 1 : 0);
+        }
+    }
+
+    /*
+     * Delta: gameId, baseVersion, version, máscara de campos (varint) y los
+     * campos presentes en el orden de los bits. Los jugadores se referencian
+     * por id porque el delta no siempre trae la lista completa.
+     */
+    private static void writeDelta(Writer out, JSONObject message) {
+        JSONObject data = message.getJSONObject("data");
+        int mask = 0;
+        if (data.has("gameState")) mask |= D_GAME_STATE;
+        if (data.has("drawPileSize")) mask |= D_DRAW_PILE;
+        if (data.has("topCard")) mask |= D_TOP_CARD;
+        if (data.has("currentPlayer")) mask |= D_CURRENT_PLAYER;
+        if (data.has("waitingForColorChoice")) mask |= D_COLOR_CHOICE;
+        if (data.has("winner")) mask |= D_WINNER;
+        if (data.has("players")) mask |= D_PLAYERS;
+        if (data.has("handSizes")) mask |= D_HAND_SIZES;
+        if (data.has("connected")) mask |= D_CONNECTED;
+        if (data.has("handRemoved")) mask |= D_HAND_REMOVED;
+        if (data.has("handAdded")) mask |= D_HAND_ADDED;
+
+        out.string(message.optString("gameId"));
+        out.varint(message.optLong("baseVersion"));
+        out.varint(message.optLong("version"));
+        out.varint(mask);
+
+        if ((mask & D_GAME_STATE) != 0) {
+            out.u8(GameState.valueOf(data.getString("gameState")).ordinal());
+        }
+        if ((mask & D_DRAW_PILE) != 0) {
+            out.varint(data.getInt("drawPileSize"));
+        }
+        if ((mask & D_TOP_CARD) != 0) {
+            out.u8(cardCode(data.optString("topCard", null)));
+        }
+        if ((mask & D_CURRENT_PLAYER) != 0) {
+            out.string(data.optString("currentPlayer"));
+            out.u8(data.optBoolean("isMyTurn") ? 1 : 0);
+        }
+        if ((mask & D_COLOR_CHOICE) != 0) {
+            int flags = (data.optBoolean("waitingForColorChoice") ? 1 : 0)
+                    | (data.optBoolean("shouldChooseColor") ? 2 : 0);
+            out.u8(flags);
+            out.string(data.optString("colorChoicePlayer"));
+        }
+        if ((mask & D_WINNER) != 0) {
+            out.string(data.optString("winner"));
+            out.string(data.optString("winnerName"));
+        }
+        if ((mask & D_PLAYERS) != 0) {
+            writePlayers(out, data.getJSONArray("players"));
+        }
+        if ((mask & D_HAND_SIZES) != 0) {
+            JSONObject sizes = data.getJSONObject("handSizes");
+            out.varint(sizes.length());
+            for (String id : sizes.keySet()) {
+                out.string(id);
+                out.varint(sizes.getInt(id));
+            }
+        }
+        if ((mask & D_CONNECTED) != 0) {
+            JSONObject connected = data.getJSONObject("connected");
+            out.varint(connected.length());
+            for (String id : connected.keySet()) {
+                out.string(id);
+                out.u8(connected.getBoolean(id) ? 1 : 0);
+            }
+        }
+        if ((mask & D_HAND_REMOVED) != 0) {
+            JSONArray removed = data.getJSONArray("handRemoved");
+            out.varint(removed.length());
+            for (int i = 0; i < removed.length(); i++) {
+                out.varint(removed.getInt(i));
+            }
+        }
+        if ((mask & D_HAND_ADDED) != 0) {
+            JSONArray added = data.getJSONArray("handAdded");
+            out.varint(added.length());
+            for (int i = 0; i < added.length(); i++) {
+                out.u8(cardCode(added.getString(i)));
+            }
+        }
+    }
+
+    public static int cardCode(Card.Color color, Card.Type type) {
+        return (color.ordinal() << 4) | type.ordinal();
+    }
+
+    // Las cartas viajan en JSON como "COLOR_TIPO" (Card.toString)
+    public static int cardCode(String card) {
+        if (card == null) {
+            return NO_VALUE;
+        }
+        int separator = card.indexOf('_');
+        return cardCode(Card.Color.valueOf(card.substring(0, separator)),
+                Card.Type.valueOf(card.substring(separator + 1)));
+    }
+
+    public static String cardName(int code) {
+        if (code == NO_VALUE) {
+            return null;
+        }
+        return COLORS[code >> 4] + "_" + TYPES[code & 0x0F];
+    }
+
+    // ---- Lectura / escritura de primitivas ----
+
+    static class Reader {
+        static final int MAX_STRING_BYTES = 4096; // como las cadenas del log de acciones
+
+        private final ByteBuffer buffer;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        int u8() {
+            return buffer.get() & 0xFF;
+        }
+
+        long varint() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Varint demasiado largo");
+                }
+                b = u8();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        /** varint que tiene que entrar en un int: truncarlo cambiaría la carta jugada. */
+        int intVarint() {
+            long value = varint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Número fuera de rango: " + value);
+            }
+            return (int) value;
+        }
+
+        String string() {
+            // La longitud la manda el cliente: validarla antes de reservar memoria
+            long length = varint();
+            if (length < 0 || length > MAX_STRING_BYTES || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Longitud de cadena inválida: " + length);
+            }
+            byte[] bytes = new byte[(int) length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String rest() {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    static class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void u8(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void varint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void string(String value) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            varint(encoded.length);
+            raw(encoded);
+        }
+
+        void raw(byte[] value) {
+            raw(value, 0, value.length);
+        }
+
+        void raw(byte[] value, int offset, int length) {
+            ensure(length);
+            System.arraycopy(value, offset, bytes, size, length);
+            size += length;
+        }
+
+        void text(String value) {
+            raw(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+    }
+}
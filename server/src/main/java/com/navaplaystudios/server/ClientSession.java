@@ -0,0 +1,332 @@
+package com.navaplaystudios.server;
+
+/**
+ * Estado propio de cada conexión WebSocket. Se guarda como attachment del
+ * socket para leerlo en O(1) sin mapas adicionales.
+ *
+ * También guarda los mensajes pendientes mientras el shard procesa una
+ * acción (ver OutboundBatcher): al terminar se mandan juntos en un solo
+ * frame si el cliente lo acepta (binario siempre; JSON con batchFrames).
+ *
+ * La cola de salida es acotada. Solo se le pasa a Java-WebSocket lo que
+ * cabe en socketBufferBytes; el resto espera aquí, donde un estado
+ * completo nuevo reemplaza a la cadena de estado encolada del mismo juego
+ * (el completo anterior y los deltas que venían detrás). Si se pasa del
+ * límite se descartan primero los mensajes no críticos sueltos y después
+ * cadenas de estado enteras: un delta sin su base dejaría al cliente con
+ * otro estado sin que se entere, así que la cadena queda cortada, sus
+ * deltas siguientes se descartan y se avisa (pollBrokenChain) para mandar
+ * un estado completo. Si lo que no se puede descartar (game_ended, etc.)
+ * no cabe, se desconecta.
+ */
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.TextFrame;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class ClientSession {
+    public enum WireFormat {
+        JSON, BINARY
+    }
+
+    private static final byte[] JSON_BATCH_PREFIX = "{\"type\":\"batch\",\"events\":[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_BATCH_SUFFIX = "]}".getBytes(StandardCharsets.UTF_8);
+
+    private final WebSocket socket;
+    private final WireFormat format;
+    private volatile boolean batchFrames;
+    private final ArrayDeque<OutboundMessage> pending;
+    private long firstPendingAt;
+    private long pendingBytes;
+    private long overHighWaterSince; // 0 = por debajo de la marca
+    private boolean closing;
+    private Set<String> brokenChains; // cadenas de estado cortadas; null si no hay
+    private ArrayDeque<String> unreportedChains; // cortes que todavía no se avisaron
+    private volatile RateLimiter.Buckets rateLimits; // null hasta onOpen
+    private volatile long lastActivity = System.nanoTime(); // último mensaje o pong recibido
+    private volatile TimingWheel.Timeout heartbeat; // null sin heartbeat
+
+    public ClientSession(WebSocket socket, WireFormat format) {
+        this.socket = socket;
+        this.format = format;
+        this.batchFrames = format == WireFormat.BINARY;
+        this.pending = new ArrayDeque<>(4);
+    }
+
+    public static ClientSession of(WebSocket socket) {
+        ClientSession session = socket.getAttachment();
+        if (session == null) {
+            // Conexiones sin onOpen todavía (no debería pasar): JSON por defecto
+            session = new ClientSession(socket, WireFormat.JSON);
+            socket.setAttachment(session);
+        }
+        return session;
+    }
+
+    public WebSocket getSocket() { return socket; }
+    public WireFormat getFormat() { return format; }
+    public boolean isBinary() { return format == WireFormat.BINARY; }
+    public boolean isBatchFrames() { return batchFrames; }
+    public void setBatchFrames(boolean batchFrames) { this.batchFrames = batchFrames || isBinary(); }
+    public RateLimiter.Buckets getRateLimits() { return rateLimits; }
+    public void setRateLimits(RateLimiter.Buckets rateLimits) { this.rateLimits = rateLimits; }
+    public long getLastActivity() { return lastActivity; }
+    public void markActivity() { lastActivity = System.nanoTime(); }
+    public TimingWheel.Timeout getHeartbeat() { return heartbeat; }
+    public void setHeartbeat(TimingWheel.Timeout heartbeat) { this.heartbeat = heartbeat; }
+
+    // ---- Cola de salida ----
+
+    /**
+     * Encola un mensaje respetando los límites. Devuelve true si la cola
+     * estaba vacía (hay que registrar la sesión en el batch).
+     */
+    synchronized boolean addPending(OutboundMessage message, ServerConfig config, OutboundStats stats) {
+        if (closing) {
+            return false;
+        }
+        boolean first = pending.isEmpty();
+        String key = message.getSupersedeKey();
+        if (key != null) {
+            if (message.isDelta()) {
+                if (brokenChains != null && brokenChains.contains(key)) {
+                    // Su base no llegó: espera al estado completo que ya se pidió
+                    stats.recordDropped();
+                    return false;
+                }
+            } else {
+                if (brokenChains != null) {
+                    brokenChains.remove(key);
+                }
+                // El estado nuevo va al final, detrás de los eventos que lo preceden
+                for (int removed = removeChain(key); removed > 0; removed--) {
+                    stats.recordSuperseded();
+                }
+            }
+        }
+
+        pending.addLast(message);
+        pendingBytes += message.size(isBinary());
+        if (pending.size() == 1) {
+            firstPendingAt = System.nanoTime();
+        }
+        enforceLimits(config, stats);
+        return first;
+    }
+
+    private void enforceLimits(ServerConfig config, OutboundStats stats) {
+        if (!overLimits(config)) {
+            return;
+        }
+        // Primero se descartan los no críticos sueltos más viejos; el último siempre se queda
+        Iterator<OutboundMessage> it = pending.iterator();
+        while (it.hasNext() && overLimits(config)) {
+            OutboundMessage queued = it.next();
+            if (!queued.isCritical() && queued.getSupersedeKey() == null && queued != pending.peekLast()) {
+                it.remove();
+                pendingBytes -= queued.size(isBinary());
+                stats.recordDropped();
+            }
+        }
+        // Después cadenas de estado enteras, de la más vieja; un estado
+        // completo recién encolado se queda (es el que repara la cadena)
+        while (overLimits(config)) {
+            String key = oldestDroppableChain();
+            if (key == null) {
+                break;
+            }
+            for (int removed = removeChain(key); removed > 0; removed--) {
+                stats.recordDropped();
+            }
+            breakChain(key);
+        }
+        if (overLimits(config)) {
+            stats.recordOverflowDisconnect();
+            disconnect(CloseFrame.TRY_AGAIN_LATER, "Cola de salida llena");
+        }
+    }
+
+    private boolean overLimits(ServerConfig config) {
+        return pending.size() > config.getOutboundQueueMessages() || pendingBytes > config.getOutboundQueueBytes();
+    }
+
+    private String oldestDroppableChain() {
+        OutboundMessage last = pending.peekLast();
+        for (OutboundMessage queued : pending) {
+            String key = queued.getSupersedeKey();
+            if (key != null && !queued.isCritical()
+                    && !(key.equals(last.getSupersedeKey()) && !last.isDelta())) {
+                return key;
+            }
+        }
+        return null;
+    }
+
+    /** Saca de la cola todos los mensajes de la cadena; devuelve cuántos. */
+    private int removeChain(String key) {
+        int removed = 0;
+        Iterator<OutboundMessage> it = pending.iterator();
+        while (it.hasNext()) {
+            OutboundMessage queued = it.next();
+            if (key.equals(queued.getSupersedeKey())) {
+                it.remove();
+                pendingBytes -= queued.size(isBinary());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    private void breakChain(String key) {
+        if (brokenChains == null) {
+            brokenChains = new HashSet<>(2);
+            unreportedChains = new ArrayDeque<>(2);
+        }
+        if (brokenChains.add(key)) {
+            unreportedChains.addLast(key);
+        }
+    }
+
+    /**
+     * Siguiente cadena de estado cortada por cola llena que todavía no se
+     * avisó, o null. Hasta que llegue un estado completo de esa cadena sus
+     * deltas se descartan.
+     */
+    synchronized String pollBrokenChain() {
+        return unreportedChains != null ? unreportedChains.pollFirst() : null;
+    }
+
+    /**
+     * Pasa a Java-WebSocket lo pendiente si su buffer tiene espacio. Devuelve
+     * la espera del primer mensaje en nanos, o -1 si la sesión sigue
+     * atrasada (queda pendiente para el siguiente drenado).
+     */
+    synchronized long flushPending(ServerConfig config, OutboundStats stats) {
+        if (pending.isEmpty()) {
+            overHighWaterSince = 0;
+            return 0;
+        }
+        if (closing || !socket.isOpen()) {
+            pending.clear();
+            pendingBytes = 0;
+            return 0;
+        }
+        if (socketBufferedBytes() >= config.getSocketBufferBytes()) {
+            checkHighWater(config, stats);
+            return -1;
+        }
+
+        long waited = System.nanoTime() - firstPendingAt;
+        if (pending.size() == 1 || !batchFrames) {
+            List<Framedata> frames = new ArrayList<>(pending.size());
+            for (OutboundMessage message : pending) {
+                frames.add(frame(message.payload(isBinary()), stats));
+            }
+            socket.sendFrame(frames);
+        } else {
+            ByteBuffer batch = isBinary() ? binaryBatch() : jsonBatch();
+            socket.sendFrame(frame(batch, stats));
+        }
+        stats.recordMessages(pending.size());
+        pending.clear();
+        pendingBytes = 0;
+        overHighWaterSince = 0;
+        return waited;
+    }
+
+    private void checkHighWater(ServerConfig config, OutboundStats stats) {
+        if (pendingBytes < config.getOutboundHighWaterBytes()) {
+            overHighWaterSince = 0;
+            return;
+        }
+        long now = System.nanoTime();
+        if (overHighWaterSince == 0) {
+            overHighWaterSince = now;
+        } else if (now - overHighWaterSince > config.getSlowConsumerMillis() * 1_000_000L) {
+            stats.recordSlowConsumerDisconnect();
+            disconnect(CloseFrame.POLICY_VALIDATION, "Cliente demasiado lento");
+        }
+    }
+
+    private void disconnect(int code, String reason) {
+        closing = true;
+        pending.clear();
+        pendingBytes = 0;
+        brokenChains = null;
+        unreportedChains = null;
+        socket.close(code, reason);
+    }
+
+    long socketBufferedBytes() {
+        if (socket instanceof TcpConnection tcp) {
+            return tcp.getBufferedBytes();
+        }
+        if (!(socket instanceof WebSocketImpl impl)) {
+            return socket.hasBufferedData() ? Long.MAX_VALUE : 0;
+        }
+        long bytes = 0;
+        for (ByteBuffer buffer : impl.outQueue) {
+            bytes += buffer.remaining();
+        }
+        return bytes;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private Framedata frame(ByteBuffer payload, OutboundStats stats) {
+        stats.recordFrame(payload.remaining());
+        if (isBinary()) {
+            BinaryFrame frame = new BinaryFrame();
+            frame.setPayload(payload);
+            frame.setFin(true);
+            return frame;
+        }
+        // Frame de texto armado con los bytes ya codificados (sin pasar por String)
+        TextFrame frame = new TextFrame();
+        frame.setPayload(payload);
+        frame.setFin(true);
+        return frame;
+    }
+
+    private ByteBuffer jsonBatch() {
+        int size = JSON_BATCH_PREFIX.length + JSON_BATCH_SUFFIX.length + pending.size();
+        List<ByteBuffer> payloads = new ArrayList<>(pending.size());
+        for (OutboundMessage message : pending) {
+            ByteBuffer payload = message.payload(false);
+            payloads.add(payload);
+            size += payload.remaining();
+        }
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        batch.put(JSON_BATCH_PREFIX);
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i > 0) {
+                batch.put((byte) ',');
+            }
+            batch.put(payloads.get(i));
+        }
+        batch.put(JSON_BATCH_SUFFIX);
+        batch.flip();
+        return batch;
+    }
+
+    private ByteBuffer binaryBatch() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(64 * pending.size());
+        out.u8(BinaryCodec.OP_BATCH);
+        out.varint(pending.size());
+        for (OutboundMessage message : pending) {
+            ByteBuffer payload = message.payload(true);
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            out.varint(bytes.length);
+            out.raw(bytes);
+        }
+        return out.toBuffer();
+    }
+}
@@ -0,0 +1,157 @@
+package com.navaplaystudios.server;
+
+/**
+ * permessage-deflate (RFC 7692) para los frames de salida. Extiende la
+ * extensión de Java-WebSocket y reemplaza lo que en la 1.5.4 no sirve aquí:
+ *
+ * - copyInstance() devolvía una instancia por defecto, perdiendo umbral y
+ *   nivel en cada conexión.
+ * - encodeFrame comprimía payload.array() completo, ignorando position y
+ *   limit (nuestros payloads son vistas de buffers más grandes).
+ * - El handshake siempre anunciaba server_no_context_takeover, aunque se
+ *   conservara el contexto, y con contexto desactivado creaba un Deflater
+ *   nuevo por mensaje.
+ *
+ * Los frames más chicos que el umbral (pong, acks, errores) salen sin
+ * comprimir. Sin context takeover (por defecto) cada mensaje se comprime
+ * solo y se usa un Deflater por hilo emisor en vez de uno por conexión
+ * (~256 KB de memoria nativa cada uno). Con context takeover los estados
+ * sucesivos comprimen mucho mejor, a costa de ese Deflater por conexión.
+ *
+ * La descompresión de entrada la sigue haciendo la clase base.
+ */
+import org.java_websocket.extensions.ExtensionRequestData;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.ContinuousFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.FramedataImpl1;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+public class DeflateExtension extends PerMessageDeflateExtension {
+    private static final String NAME = "permessage-deflate";
+
+    /** Configuración compartida por todas las copias (una por conexión). */
+    private static final class Settings {
+        final int threshold;
+        final int level;
+        final boolean contextTakeover;
+        final OutboundStats stats;
+        final ThreadLocal<Deflater> shared; // sin context takeover: uno por hilo emisor
+
+        Settings(int threshold, int level, boolean contextTakeover, OutboundStats stats) {
+            this.threshold = threshold;
+            this.level = level;
+            this.contextTakeover = contextTakeover;
+            this.stats = stats;
+            this.shared = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        }
+    }
+
+    private final Settings settings;
+
+    public DeflateExtension(ServerConfig config, OutboundStats stats) {
+        this(new Settings(config.getDeflateThreshold(), config.getDeflateLevel(),
+                config.isDeflateContextTakeover(), stats));
+    }
+
+    private DeflateExtension(Settings settings) {
+        this.settings = settings;
+        setThreshold(settings.threshold);
+        setServerNoContextTakeover(!settings.contextTakeover);
+        // La clase base crea un Deflater por instancia; solo se usa con contexto
+        getDeflater().end();
+        if (settings.contextTakeover) {
+            setDeflater(new Deflater(settings.level, true));
+        }
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new DeflateExtension(settings);
+    }
+
+    @Override
+    public boolean acceptProvidedExtensionAsServer(String inputExtension) {
+        for (String offer : inputExtension.split(",")) {
+            ExtensionRequestData request = ExtensionRequestData.parseExtensionRequest(offer);
+            if (!NAME.equalsIgnoreCase(request.getExtensionName())) {
+                continue;
+            }
+            Map<String, String> parameters = request.getExtensionParameters();
+            String maxWindowBits = parameters.get("server_max_window_bits");
+            if (maxWindowBits != null && !"15".equals(maxWindowBits.trim())) {
+                continue; // el Deflater del JDK no permite achicar la ventana
+            }
+            setServerNoContextTakeover(!settings.contextTakeover || parameters.containsKey("server_no_context_takeover"));
+            setClientNoContextTakeover(parameters.containsKey("client_no_context_takeover"));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String getProvidedExtensionAsServer() {
+        return NAME
+                + (isServerNoContextTakeover() ? "; server_no_context_takeover" : "")
+                + (isClientNoContextTakeover() ? "; client_no_context_takeover" : "");
+    }
+
+    @Override
+    public void encodeFrame(Framedata frame) {
+        if (!(frame instanceof DataFrame)) {
+            return;
+        }
+        ByteBuffer payload = frame.getPayloadData();
+        int size = payload.remaining();
+        if (size < settings.threshold) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean reset = isServerNoContextTakeover();
+        Deflater deflater = reset ? settings.shared.get() : getDeflater();
+        deflater.setInput(payload.duplicate());
+        byte[] out = new byte[size / 2 + 64];
+        int length = 0;
+        while (true) {
+            // Con SYNC_FLUSH, si llena el arreglo puede quedar salida pendiente
+            length += deflater.deflate(out, length, out.length - length, Deflater.SYNC_FLUSH);
+            if (length < out.length) {
+                break;
+            }
+            out = Arrays.copyOf(out, out.length * 2);
+        }
+        if (frame.isFin()) {
+            if (endsWithTail(out, length)) {
+                length -= 4; // 00 00 ff ff lo agrega el receptor (RFC 7692 7.2.1)
+            }
+            if (reset) {
+                deflater.reset();
+            }
+        }
+
+        if (!(frame instanceof ContinuousFrame)) {
+            ((DataFrame) frame).setRSV1(true);
+        }
+        ((FramedataImpl1) frame).setPayload(ByteBuffer.wrap(out, 0, length));
+        if (settings.stats != null) {
+            settings.stats.recordCompressed(size, length, System.nanoTime() - start);
+        }
+    }
+
+    private static boolean endsWithTail(byte[] data, int length) {
+        return length >= 4 && data[length - 4] == 0 && data[length - 3] == 0
+                && data[length - 2] == (byte) 0xFF && data[length - 1] == (byte) 0xFF;
+    }
+
+    @Override
+    public String toString() {
+        return "DeflateExtension(threshold=" + settings.threshold + ", level=" + settings.level
+                + ", contextTakeover=" + settings.contextTakeover + ")";
+    }
+}
@@ -0,0 +1,164 @@
+package com.navaplaystudios.server;
+
+/**
+ * Ejecución de acciones en N shards de un solo hilo. Cada juego se asigna
+ * a un shard según su gameId, así que todas sus mutaciones las hace siempre
+ * el mismo hilo, en orden y sin locks. Los hilos de WebSocket solo
+ * decodifican y encolan.
+ *
+ * Cada shard lleva la profundidad de su cola y la latencia de espera
+ * (encolado -> inicio) y de ejecución de sus tareas.
+ */
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+public class GameExecutor {
+    private static final ThreadLocal<Shard> CURRENT = new ThreadLocal<>();
+
+    private final Shard[] shards;
+    private volatile IntConsumer afterTask; // se llama en el hilo del shard al terminar cada tarea
+
+    public GameExecutor(int shardCount) {
+        this.shards = new Shard[Math.max(1, shardCount)];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    public int shardFor(String gameId) {
+        int hash = gameId.hashCode();
+        hash ^= (hash >>> 16); // mezcla como HashMap para ids parecidos
+        return Math.floorMod(hash, shards.length);
+    }
+
+    public void execute(String gameId, Runnable task) {
+        shards[shardFor(gameId)].submit(task);
+    }
+
+    public boolean isShardThread(String gameId) {
+        return Thread.currentThread() == shards[shardFor(gameId)].thread;
+    }
+
+    /** Índice del shard del hilo actual, o -1 si no es un hilo de shard. */
+    public int currentShard() {
+        Shard shard = CURRENT.get();
+        return shard != null ? shard.index : -1;
+    }
+
+    public void schedule(int shard, Runnable task, long delayNanos) {
+        shards[shard].schedule(task, delayNanos);
+    }
+
+    public void setAfterTask(IntConsumer afterTask) {
+        this.afterTask = afterTask;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /** Tareas en cola sumando todos los shards. */
+    public long getQueueDepth() {
+        long depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.executor.getQueue().size();
+        }
+        return depth;
+    }
+
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        for (Shard shard : shards) {
+            stats.add(shard.stats());
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private class Shard {
+        private final int index;
+        private final ScheduledThreadPoolExecutor executor;
+        private volatile Thread thread;
+
+        // Solo los escribe el hilo del shard; AtomicLong para leerlos desde ping
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+
+        Shard(int index) {
+            this.index = index;
+            this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread t = new Thread(() -> {
+                    CURRENT.set(this);
+                    runnable.run();
+                }, "uno-shard-" + index);
+                t.setDaemon(true);
+                thread = t;
+                return t;
+            });
+        }
+
+        void schedule(Runnable task, long delayNanos) {
+            executor.schedule(() -> run(task), delayNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void run(Runnable task) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.error("Error en shard {}: {}", index, e.getMessage(), e);
+            } finally {
+                IntConsumer hook = afterTask;
+                if (hook != null) {
+                    hook.accept(index);
+                }
+            }
+        }
+
+        void submit(Runnable task) {
+            long enqueuedAt = System.nanoTime();
+            executor.execute(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    run(task);
+                } finally {
+                    long wait = startedAt - enqueuedAt;
+                    completed.lazySet(completed.get() + 1);
+                    totalWaitNanos.lazySet(totalWaitNanos.get() + wait);
+                    totalRunNanos.lazySet(totalRunNanos.get() + (System.nanoTime() - startedAt));
+                    if (wait > maxWaitNanos.get()) {
+                        maxWaitNanos.lazySet(wait);
+                    }
+                }
+            });
+        }
+
+        Map<String, Object> stats() {
+            long done = completed.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("shard", index);
+            stats.put("queueDepth", executor.getQueue().size());
+            stats.put("completed", done);
+            stats.put("avgWaitMicros", done > 0 ? totalWaitNanos.get() / done / 1000 : 0);
+            stats.put("maxWaitMicros", maxWaitNanos.get() / 1000);
+            stats.put("avgRunMicros", done > 0 ? totalRunNanos.get() / done / 1000 : 0);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.navaplaystudios.server;
+
+/**
+ * Información de una sala para el frontend (lista de juegos y lobby).
+ * Los cambios pasan por Lobby para que los suscriptores reciban el delta.
+ */
+import org.json.JSONObject;
+
+public class GameInfo {
+    public final String gameId;
+    public final String roomName;
+    public final String hostPlayerId;
+    public final String hostPlayerName;
+    public final int maxPlayers;
+    public volatile int currentPlayers;
+    public volatile String status; // "waiting", "full", "playing", "finished"
+    public final long createdAt;
+
+    public GameInfo(String gameId, String roomName, String hostPlayerId, String hostPlayerName, int maxPlayers) {
+        this(gameId, roomName, hostPlayerId, hostPlayerName, maxPlayers, System.currentTimeMillis());
+    }
+
+    public GameInfo(String gameId, String roomName, String hostPlayerId, String hostPlayerName, int maxPlayers,
+                    long createdAt) {
+        this.gameId = gameId;
+        this.roomName = roomName;
+        this.hostPlayerId = hostPlayerId;
+        this.hostPlayerName = hostPlayerName;
+        this.maxPlayers = maxPlayers;
+        this.currentPlayers = 0;
+        this.status = "waiting";
+        this.createdAt = createdAt;
+    }
+
+    /** Sala de otro nodo (lobby del gateway); sin hostPlayerId, que no viaja. */
+    public static GameInfo fromJson(JSONObject game) {
+        GameInfo info = new GameInfo(game.getString("gameId"), game.optString("roomName", ""), null,
+                game.optString("hostPlayerName", ""), game.optInt("maxPlayers", 4),
+                game.optLong("createdAt", System.currentTimeMillis()));
+        info.currentPlayers = game.optInt("currentPlayers", 0);
+        info.status = game.optString("status", "waiting");
+        return info;
+    }
+
+    public JSONObject toJson() {
+        JSONObject game = new JSONObject();
+        game.put("gameId", gameId);
+        game.put("roomName", roomName);
+        game.put("hostPlayerName", hostPlayerName);
+        game.put("currentPlayers", currentPlayers);
+        game.put("maxPlayers", maxPlayers);
+        game.put("status", status);
+        game.put("createdAt", createdAt);
+        return game;
+    }
+}
@@ -0,0 +1,194 @@
+package com.navaplaystudios.server;
+
+/**
+ * Ciclo de vida de las partidas: cuándo se pueden borrar y cuánto ocupan.
+ * Cada partida tiene un Timeout en la rueda compartida con el plazo de su
+ * situación actual:
+ *
+ * - terminada: finishedTtl desde la última jugada;
+ * - vacía (nadie conectado): emptyTtl;
+ * - abandonada (en espera o en curso sin jugadas de nadie): abandonedTtl.
+ *
+ * Solo cuentan como actividad las acciones de los jugadores; las jugadas
+ * automáticas por tiempo (TurnTimers) no mantienen viva una mesa. El
+ * Timeout se reprograma solo cuando cambia la situación; al vencer, el
+ * shard del juego revisa de nuevo y, si todavía no corresponde, lo vuelve
+ * a programar por lo que falta.
+ *
+ * También guarda una estimación de los bytes que retiene cada partida
+ * (calculada en su shard tras cada cambio) para el ping y las métricas.
+ */
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+public class GameLifecycle {
+    public enum Reason {
+        FINISHED("finished"), EMPTY("empty"), ABANDONED("abandoned");
+
+        private final String key;
+
+        Reason(String key) {
+            this.key = key;
+        }
+
+        public String getKey() { return key; }
+    }
+
+    private static final Reason[] REASONS = Reason.values();
+
+    /** Plazo de una partida; lo tocan su shard y la rueda. */
+    public class Entry extends TimingWheel.Timeout {
+        private final String gameId;
+        private volatile long lastActivity = System.nanoTime();
+        private volatile long retainedBytes;
+        private volatile Reason scheduledFor; // situación con la que se programó
+
+        Entry(String gameId) {
+            this.gameId = gameId;
+        }
+
+        public String getGameId() { return gameId; }
+        public long getRetainedBytes() { return retainedBytes; }
+
+        @Override
+        protected void expire() {
+            onExpired.accept(this);
+        }
+    }
+
+    private final TimingWheel wheel;
+    private final long[] ttlNanos = new long[REASONS.length];
+    private final Map<String, Entry> entries;
+    private final LongAdder[] evicted;
+    private volatile Consumer<Entry> onExpired = entry -> { };
+
+    public GameLifecycle(TimingWheel wheel, ServerConfig config) {
+        this.wheel = wheel;
+        ttlNanos[Reason.FINISHED.ordinal()] = config.getFinishedTtlSeconds() * 1_000_000_000L;
+        ttlNanos[Reason.EMPTY.ordinal()] = config.getEmptyTtlSeconds() * 1_000_000_000L;
+        ttlNanos[Reason.ABANDONED.ordinal()] = config.getAbandonedTtlSeconds() * 1_000_000_000L;
+        this.entries = new ConcurrentHashMap<>();
+        this.evicted = new LongAdder[REASONS.length];
+        for (int i = 0; i < evicted.length; i++) {
+            evicted[i] = new LongAdder();
+        }
+    }
+
+    /** Qué hacer con un plazo vencido; se llama desde el hilo de la rueda. */
+    public void setOnExpired(Consumer<Entry> onExpired) {
+        this.onExpired = onExpired;
+    }
+
+    /** Partida nueva, todavía sin jugadores. */
+    public void track(String gameId, long retainedBytes) {
+        Entry entry = entries.computeIfAbsent(gameId, Entry::new);
+        entry.retainedBytes = retainedBytes;
+        entry.scheduledFor = Reason.EMPTY;
+        wheel.schedule(entry, ttlNanos[Reason.EMPTY.ordinal()]);
+    }
+
+    /**
+     * Tras un cambio en la partida (en su shard). playerAction indica si lo
+     * causó un jugador; la situación solo reprograma el plazo si cambió.
+     */
+    public void touch(String gameId, Reason situation, boolean playerAction, long retainedBytes) {
+        Entry entry = entries.get(gameId);
+        if (entry == null) {
+            return;
+        }
+        entry.retainedBytes = retainedBytes;
+        if (playerAction) {
+            entry.lastActivity = System.nanoTime();
+        }
+        if (situation != entry.scheduledFor) {
+            entry.scheduledFor = situation;
+            long remaining = ttlNanos[situation.ordinal()] - (System.nanoTime() - entry.lastActivity);
+            wheel.schedule(entry, remaining);
+        }
+    }
+
+    /**
+     * Al vencer el plazo (en el shard): devuelve el motivo si hay que
+     * borrar la partida, o null si se reprogramó por lo que falta.
+     */
+    public Reason check(Entry entry, Reason situation) {
+        long remaining = ttlNanos[situation.ordinal()] - (System.nanoTime() - entry.lastActivity);
+        if (remaining <= 0) {
+            return situation;
+        }
+        entry.scheduledFor = situation;
+        wheel.schedule(entry, remaining);
+        return null;
+    }
+
+    public Entry get(String gameId) {
+        return entries.get(gameId);
+    }
+
+    /** La partida ya no existe; reason != null si fue por vencimiento. */
+    public void untrack(String gameId, Reason reason) {
+        Entry entry = entries.remove(gameId);
+        if (entry != null) {
+            wheel.cancel(entry);
+        }
+        if (reason != null) {
+            evicted[reason.ordinal()].increment();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvicted(Reason reason) {
+        return evicted[reason.ordinal()].sum();
+    }
+
+    public long getEvictedTotal() {
+        long total = 0;
+        for (LongAdder count : evicted) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getRetainedBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.retainedBytes;
+        }
+        return total;
+    }
+
+    /** Las partidas que más ocupan, de mayor a menor. */
+    public List<Map<String, Object>> getLargest(int limit) {
+        PriorityQueue<Entry> top = new PriorityQueue<>(Comparator.comparingLong(Entry::getRetainedBytes));
+        for (Entry entry : entries.values()) {
+            top.add(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map<String, Object>> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            Entry entry = top.poll();
+            result.add(0, Map.of("gameId", entry.gameId, "retainedBytes", entry.retainedBytes));
+        }
+        return result;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tracked", size());
+        stats.put("retainedBytes", getRetainedBytes());
+        Map<String, Object> evictions = new LinkedHashMap<>();
+        for (Reason reason : REASONS) {
+            evictions.put(reason.getKey(), getEvicted(reason));
+        }
+        stats.put("evicted", evictions);
+        stats.put("largest", getLargest(10));
+        return stats;
+    }
+}
@@ -0,0 +1,164 @@
+package com.navaplaystudios.server;
+
+/**
+ * Estado de un juego codificado una sola vez por versión. La parte pública
+ * (jugadores, tamaños de mano, carta superior, mazo, turno) es igual para
+ * todos los destinatarios; a cada uno solo se le agrega su parte privada
+ * (su mano, isMyTurn y shouldChooseColor).
+ *
+ * JSON: la mano va dentro del objeto del propio jugador, así que se guardan
+ * las posiciones (en bytes) donde se inserta ,"hand":[...] para cada jugador
+ * y la parte privada restante se pega al final. El resultado es el mismo
+ * JSON que arma GameManager.buildGameState, con el orden de claves distinto.
+ *
+ * Binario: la parte pública va completa y la privada se agrega al final
+ * (ver BinaryCodec.writePublicState / writePrivateState).
+ *
+ * Así, actualizar a N jugadores serializa O(N) en vez de O(N²).
+ */
+import com.navaplaystudios.server.clases.*;
+import org.json.JSONObject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class GameStateFrame {
+    private static final byte[] JSON_UPDATE_PREFIX = "{\"type\":\"game_state_update\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_STATE_PREFIX = "{\"type\":\"game_state\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_HAND_KEY = ",\"hand\":[".getBytes(StandardCharsets.UTF_8);
+
+    private final String gameId;
+    private final long version;
+    private final String[] playerIds;
+    private final String currentPlayerId;
+    private final String colorChoicePlayerId;
+    private final byte[] json; // desde ,"success" hasta el ] de players
+    private final int[] jsonHandOffsets; // posición del } de cada jugador
+    private final byte[] binary; // parte pública sin opcode
+
+    private GameStateFrame(UnoGame game) {
+        List<Player> players = game.getPlayers();
+        this.gameId = game.getGameId();
+        this.version = game.getStateVersion();
+        this.playerIds = new String[players.size()];
+        for (int i = 0; i < players.size(); i++) {
+            playerIds[i] = players.get(i).getId();
+        }
+        Player current = game.getCurrentPlayer();
+        this.currentPlayerId = current != null ? current.getId() : null;
+        this.colorChoicePlayerId = game.isWaitingForColorChoice() ? game.getColorChoicePlayerId() : null;
+        this.jsonHandOffsets = new int[players.size()];
+
+        // ---- JSON público ----
+        BinaryCodec.Writer out = new BinaryCodec.Writer(256 + 96 * players.size());
+        out.text(",\"success\":true,\"message\":\"Estado del juego\",\"timestamp\":");
+        out.text(Long.toString(System.currentTimeMillis()));
+        out.text(",\"data\":{\"gameId\":");
+        out.text(JSONObject.quote(gameId));
+        out.text(",\"version\":" + version);
+        out.text(",\"gameState\":\"" + game.getState() + "\"");
+        out.text(",\"drawPileSize\":" + game.getDrawPileSize());
+        if (game.getTopCard() != null) {
+            out.text(",\"topCard\":\"" + game.getTopCard() + "\"");
+        }
+        if (currentPlayerId != null) {
+            out.text(",\"currentPlayer\":");
+            out.text(JSONObject.quote(currentPlayerId));
+        }
+        out.text(",\"waitingForColorChoice\":" + game.isWaitingForColorChoice());
+        if (colorChoicePlayerId != null) {
+            out.text(",\"colorChoicePlayer\":");
+            out.text(JSONObject.quote(colorChoicePlayerId));
+        }
+        if (game.getWinner() != null) {
+            out.text(",\"winner\":");
+            out.text(JSONObject.quote(game.getWinner().getId()));
+            out.text(",\"winnerName\":");
+            out.text(JSONObject.quote(game.getWinner().getName()));
+        }
+        out.text(",\"players\":[");
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            out.text(i == 0 ? "{\"id\":" : ",{\"id\":");
+            out.text(JSONObject.quote(player.getId()));
+            out.text(",\"name\":");
+            out.text(JSONObject.quote(player.getName()));
+            out.text(",\"handSize\":" + player.getHandSize());
+            out.text(",\"isConnected\":" + player.isConnected());
+            jsonHandOffsets[i] = out.size();
+            out.text("}");
+        }
+        out.text("]");
+        this.json = out.toByteArray();
+
+        // ---- Binario público ----
+        BinaryCodec.Writer bin = new BinaryCodec.Writer(64 + 24 * players.size());
+        BinaryCodec.writePublicState(bin, game);
+        this.binary = bin.toByteArray();
+    }
+
+    public static GameStateFrame encode(UnoGame game) {
+        return new GameStateFrame(game);
+    }
+
+    public String getGameId() { return gameId; }
+    public long getVersion() { return version; }
+
+    /** Bytes aproximados que retiene en caché (payloads y arreglos). */
+    public int retainedBytes() {
+        return 96 + json.length + binary.length + 4 * jsonHandOffsets.length + 4 * playerIds.length;
+    }
+
+    /**
+     * Frame completo para un destinatario. update=true genera
+     * game_state_update; false, game_state (respuesta a get_game_state).
+     */
+    public ByteBuffer forPlayer(String playerId, List<Card> hand, boolean binaryFormat, boolean update) {
+        boolean isMyTurn = playerId.equals(currentPlayerId);
+        boolean shouldChooseColor = playerId.equals(colorChoicePlayerId);
+
+        if (binaryFormat) {
+            BinaryCodec.Writer out = new BinaryCodec.Writer(binary.length + 8 + hand.size());
+            out.u8(update ? BinaryCodec.OP_STATE_UPDATE : BinaryCodec.OP_STATE);
+            out.raw(binary);
+            BinaryCodec.writePrivateState(out, isMyTurn, shouldChooseColor, hand);
+            return out.toBuffer();
+        }
+
+        byte[] prefix = update ? JSON_UPDATE_PREFIX : JSON_STATE_PREFIX;
+        int index = indexOf(playerId);
+        BinaryCodec.Writer out = new BinaryCodec.Writer(prefix.length + json.length + 64 + 20 * hand.size());
+        out.raw(prefix);
+        if (index < 0) {
+            out.raw(json);
+        } else {
+            int offset = jsonHandOffsets[index];
+            out.raw(json, 0, offset);
+            out.raw(JSON_HAND_KEY);
+            for (int i = 0; i < hand.size(); i++) {
+                out.text(i == 0 ? "\"" : ",\"");
+                out.text(hand.get(i).toString());
+                out.text("\"");
+            }
+            out.text("]");
+            out.raw(json, offset, json.length - offset);
+        }
+        if (currentPlayerId != null) {
+            out.text(",\"isMyTurn\":" + isMyTurn);
+        }
+        if (colorChoicePlayerId != null) {
+            out.text(",\"shouldChooseColor\":" + shouldChooseColor);
+        }
+        out.text("}}");
+        return out.toBuffer();
+    }
+
+    private int indexOf(String playerId) {
+        for (int i = 0; i < playerIds.length; i++) {
+            if (playerIds[i].equals(playerId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,582 @@
+package com.navaplaystudios.server;
+
+/**
+ * Modo gateway (-Duno.mode=gateway): acepta los WebSocket de los clientes
+ * y reparte las partidas entre varios nodos de juego (UnoWebSocketServer
+ * normales, -Duno.gateway.nodes=ws://host:8081,ws://host:8082).
+ *
+ * - create_game: el gateway elige el gameId y lo manda al nodo que le
+ *   toca en el anillo de hashing consistente; el nodo crea la partida con
+ *   ese id.
+ * - join_game / start_game: al nodo donde vive la partida según el lobby
+ *   combinado (o el anillo, si todavía no apareció ahí).
+ * - resume: el token empieza con el gameId, así que va al mismo nodo.
+ * - El resto de las acciones de juego: al nodo de la última partida del
+ *   cliente.
+ * - list_games, subscribe_lobby y ping los atiende el gateway: su Lobby
+ *   junta los de todos los nodos y manda sus propios deltas.
+ *
+ * Cada cliente tiene una conexión por nodo que usa (se abre al primer
+ * mensaje para ese nodo, con el mismo subprotocolo) y las respuestas del
+ * nodo se reenvían tal cual, sin decodificar. Solo se pide el siguiente
+ * frame al nodo cuando el socket del cliente tiene lugar, así un cliente
+ * lento frena su conexión con el nodo y ahí actúa el control de colas
+ * normal; si sigue trabado más de slowConsumerMillis se lo desconecta.
+ *
+ * Las partidas que ya existen quedan en su nodo: cuando un nodo entra o
+ * sale del anillo solo cambia a dónde van las partidas nuevas. Las de un
+ * nodo caído desaparecen del lobby hasta que vuelve.
+ *
+ * El gateway no tiene log de acciones; cada nodo de juego tiene el suyo.
+ * Varios nodos en la misma máquina toman wal-<uno.port> por defecto; si
+ * se fija uno.wal.dir tiene que ser distinto por nodo:
+ *
+ *   -Duno.port=8081 -Duno.wal.dir=/var/lib/uno/node-8081
+ *   -Duno.port=8082 -Duno.wal.dir=/var/lib/uno/node-8082
+ *   -Duno.mode=gateway -Duno.port=8080 -Duno.gateway.nodes=ws://localhost:8081,ws://localhost:8082
+ */
+import com.navaplaystudios.server.clases.GameAction;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class GatewayServer extends WebSocketServer {
+    /** Cabecera del handshake de las conexiones del gateway a un nodo. */
+    static final String GATEWAY_HEADER = "X-Uno-Gateway";
+    /** batchFrames del cliente, para que el nodo arme los frames igual. */
+    static final String BATCH_FRAMES_HEADER = "X-Uno-Batch-Frames";
+
+    private final ServerConfig config;
+    private final HttpClient http;
+    private final ScheduledExecutorService scheduler; // reconexiones y reintentos de lectura
+    private final List<BackendNode> nodes;
+    private final HashRing<BackendNode> ring; // solo nodos disponibles
+    private final Map<String, BackendNode> owners; // gameId -> nodo donde vive
+    private final GameExecutor executor; // solo para el OutboundBatcher
+    private final OutboundBatcher outbound; // mensajes propios del gateway (lobby, errores, pong)
+    private final Lobby lobby; // lobby combinado de todos los nodos
+    private final RateLimiter rateLimiter; // solo para lo que atiende el gateway
+    private final Map<WebSocket, Route> routes;
+
+    public GatewayServer(ServerConfig config) {
+        this(config, new OutboundStats());
+    }
+
+    private GatewayServer(ServerConfig config, OutboundStats outboundStats) {
+        super(new InetSocketAddress(config.getPort()), UnoWebSocketServer.createDrafts(config, outboundStats));
+        if (config.getGatewayNodes().isEmpty()) {
+            throw new IllegalArgumentException("Falta uno.gateway.nodes");
+        }
+        this.config = config;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "uno-gateway");
+            t.setDaemon(true);
+            return t;
+        });
+        this.http = HttpClient.newHttpClient();
+        this.ring = new HashRing<>();
+        this.owners = new ConcurrentHashMap<>();
+        this.executor = new GameExecutor(1);
+        this.outbound = new OutboundBatcher(executor, config, outboundStats);
+        this.lobby = new Lobby(outbound, config.getLobbyTickMillis());
+        this.rateLimiter = new RateLimiter(config);
+        this.routes = new ConcurrentHashMap<>();
+        List<BackendNode> list = new ArrayList<>();
+        for (String node : config.getGatewayNodes()) {
+            list.add(new BackendNode(URI.create(node), this, http, scheduler));
+        }
+        this.nodes = List.copyOf(list);
+    }
+
+    @Override
+    public void onStart() {
+        Log.info("Gateway UNO iniciado en puerto {} con {} nodos", config.getPort(), nodes.size());
+        for (BackendNode node : nodes) {
+            node.connect();
+        }
+    }
+
+    @Override
+    public void stop(int timeout, String closeMessage) throws InterruptedException {
+        super.stop(timeout, closeMessage);
+        for (BackendNode node : nodes) {
+            node.stop();
+        }
+        scheduler.shutdownNow();
+        executor.shutdown();
+        outbound.shutdown();
+        lobby.shutdown();
+    }
+
+    // ---- Clientes ----
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        IProtocol protocol = conn.getProtocol();
+        boolean binary = protocol != null && BinaryCodec.SUBPROTOCOL.equals(protocol.getProvidedProtocol());
+        ClientSession session = new ClientSession(conn,
+                binary ? ClientSession.WireFormat.BINARY : ClientSession.WireFormat.JSON);
+        session.setRateLimits(rateLimiter.newBuckets(String.valueOf(conn.getRemoteSocketAddress())));
+        conn.setAttachment(session);
+        routes.put(conn, new Route(binary));
+
+        JSONObject welcome = new JSONObject();
+        welcome.put("type", "connection");
+        welcome.put("message", "Conectado al servidor UNO");
+        welcome.put("timestamp", System.currentTimeMillis());
+        welcome.put("protocol", binary ? BinaryCodec.SUBPROTOCOL : "json");
+        send(conn, welcome);
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        lobby.unsubscribe(conn);
+        Route route = routes.remove(conn);
+        if (route != null) {
+            for (Upstream upstream : route.upstreams.values()) {
+                upstream.close();
+            }
+        }
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        Log.error("Error en WebSocket del gateway: {}", ex.getMessage(), ex);
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String message) {
+        try {
+            GameAction action = ActionDecoder.scratch();
+            ActionDecoder.decode(message, action);
+            dispatch(conn, action, message);
+        } catch (Exception e) {
+            Log.warn("Error procesando mensaje en el gateway: {}", e.getMessage());
+            sendError(conn, "bad_request", "Error procesando solicitud: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        try {
+            // Copia: el frame se reenvía después de que Java-WebSocket reutilice el buffer
+            ByteBuffer frame = ByteBuffer.allocate(message.remaining()).put(message.duplicate()).flip();
+            GameAction action = ActionDecoder.scratch();
+            BinaryCodec.decodeAction(message, action);
+            dispatch(conn, action, frame);
+        } catch (Exception e) {
+            Log.warn("Error procesando mensaje binario en el gateway: {}", e.getMessage());
+            sendError(conn, "bad_request", "Error procesando solicitud: " + e.getMessage());
+        }
+    }
+
+    private void dispatch(WebSocket conn, GameAction action, Object frame) {
+        Route route = routes.get(conn);
+        if (route == null) {
+            return;
+        }
+        GameAction.Type type = action.getType();
+        if (type == null) {
+            forward(conn, route, route.current, frame);
+            return;
+        }
+        switch (type) {
+            case LIST_GAMES:
+            case SUBSCRIBE_LOBBY:
+            case UNSUBSCRIBE_LOBBY:
+            case PING:
+            case METRICS:
+                if (allow(conn, type)) {
+                    handleLocal(conn, action);
+                }
+                break;
+            case CREATE_GAME:
+                handleCreateGame(conn, route, action);
+                break;
+            case JOIN_GAME:
+            case START_GAME:
+                forward(conn, route, nodeFor(action.getGameId()), frame);
+                break;
+            case RESUME:
+                forward(conn, route, nodeFor(SeatReservations.gameIdOf(action.getResumeToken())), frame);
+                break;
+            case CLIENT_OPTIONS:
+                JSONObject request = action.getPayload();
+                if (request.has("batchFrames")) {
+                    ClientSession.of(conn).setBatchFrames(request.getBoolean("batchFrames"));
+                    route.batchFrames = request.getBoolean("batchFrames");
+                }
+                if (route.current != null) {
+                    forward(conn, route, route.current, frame); // responde el nodo
+                } else {
+                    JSONObject response = new JSONObject();
+                    response.put("type", "client_options");
+                    response.put("success", true);
+                    response.put("batchFrames", ClientSession.of(conn).isBatchFrames());
+                    response.put("timestamp", System.currentTimeMillis());
+                    send(conn, response);
+                }
+                break;
+            default:
+                // Acciones de juego: al nodo de la partida del cliente
+                forward(conn, route, route.current, frame);
+                break;
+        }
+    }
+
+    private void handleLocal(WebSocket conn, GameAction action) {
+        switch (action.getType()) {
+            case LIST_GAMES:
+                JSONObject response = new JSONObject();
+                response.put("type", "games_list");
+                response.put("success", true);
+                response.put("data", lobby.listGames(action.getPayload()));
+                response.put("timestamp", System.currentTimeMillis());
+                send(conn, response);
+                break;
+            case SUBSCRIBE_LOBBY:
+                lobby.subscribe(conn);
+                break;
+            case UNSUBSCRIBE_LOBBY:
+                lobby.unsubscribe(conn);
+                break;
+            default:
+                handlePing(conn);
+                break;
+        }
+    }
+
+    private void handleCreateGame(WebSocket conn, Route route, GameAction action) {
+        String gameId = "GAME_" + System.currentTimeMillis() + "_" + Integer.toHexString(ThreadLocalRandom.current().nextInt(1 << 20));
+        BackendNode node = ring.get(gameId);
+        // El nodo recibe JSON aunque el cliente use binario: el layout binario no lleva gameId
+        JSONObject request = action.getPayload();
+        request.put("gameId", gameId);
+        forward(conn, route, node, request.toString());
+    }
+
+    private void handlePing(WebSocket conn) {
+        JSONArray nodeList = new JSONArray();
+        Map<BackendNode, Integer> games = new HashMap<>();
+        for (BackendNode node : owners.values()) {
+            games.merge(node, 1, Integer::sum);
+        }
+        for (BackendNode node : nodes) {
+            nodeList.put(new JSONObject()
+                    .put("uri", node.getId())
+                    .put("up", node.isUp())
+                    .put("games", games.getOrDefault(node, 0)));
+        }
+        int upstreams = 0;
+        for (Route route : routes.values()) {
+            upstreams += route.upstreams.size();
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("type", "pong");
+        response.put("status", "OK");
+        response.put("gateway", true);
+        response.put("activeGames", lobby.size());
+        response.put("lobbySubscribers", lobby.getSubscriberCount());
+        response.put("connectedClients", routes.size());
+        response.put("upstreams", upstreams);
+        response.put("nodes", nodeList);
+        response.put("timestamp", System.currentTimeMillis());
+        send(conn, response);
+    }
+
+    private boolean allow(WebSocket conn, GameAction.Type type) {
+        ClientSession session = ClientSession.of(conn);
+        if (rateLimiter.tryAcquire(session.getRateLimits(), null, type)) {
+            return true;
+        }
+        if (rateLimiter.shouldReply(session.getRateLimits())) {
+            sendError(conn, "rate_limited", "Demasiadas solicitudes, espera un momento");
+        }
+        return false;
+    }
+
+    /** Nodo de una partida existente, o el que le toca en el anillo. */
+    private BackendNode nodeFor(String gameId) {
+        if (gameId == null) {
+            return null;
+        }
+        BackendNode owner = owners.get(gameId);
+        return owner != null ? owner : ring.get(gameId);
+    }
+
+    private void forward(WebSocket conn, Route route, BackendNode node, Object frame) {
+        if (node == null) {
+            if (ring.isEmpty()) {
+                sendError(conn, "node_unavailable", "No hay nodos de juego disponibles");
+            } else {
+                sendError(conn, "no_game", "Primero hay que unirse a un juego");
+            }
+            return;
+        }
+        Upstream upstream = route.upstreams.computeIfAbsent(node, n -> new Upstream(conn, route, n));
+        route.current = node;
+        upstream.send(frame);
+    }
+
+    private void send(WebSocket conn, JSONObject message) {
+        outbound.send(ClientSession.of(conn), OutboundMessage.of(message));
+    }
+
+    private void sendError(WebSocket conn, String code, String message) {
+        JSONObject error = new JSONObject();
+        error.put("type", "error");
+        error.put("success", false);
+        error.put("code", code);
+        error.put("message", message);
+        error.put("timestamp", System.currentTimeMillis());
+        send(conn, error);
+    }
+
+    // ---- Nodos (hilos del HttpClient; un nodo a la vez) ----
+
+    void nodeUp(BackendNode node) {
+        ring.add(node.getId(), node);
+    }
+
+    void nodeDown(BackendNode node) {
+        ring.remove(node.getId());
+        owners.entrySet().removeIf(entry -> {
+            if (entry.getValue() == node) {
+                lobby.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    void lobbySnapshot(BackendNode node, JSONArray games) {
+        Set<String> present = new HashSet<>();
+        for (int i = 0; i < games.length(); i++) {
+            GameInfo info = GameInfo.fromJson(games.getJSONObject(i));
+            present.add(info.gameId);
+            owners.put(info.gameId, node);
+            lobby.add(info);
+        }
+        owners.entrySet().removeIf(entry -> {
+            if (entry.getValue() == node && !present.contains(entry.getKey())) {
+                lobby.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    void lobbyChange(BackendNode node, JSONObject change) {
+        switch (change.optString("kind")) {
+            case "room_added":
+                GameInfo added = GameInfo.fromJson(change.getJSONObject("room"));
+                owners.put(added.gameId, node);
+                lobby.add(added);
+                break;
+            case "room_removed":
+                String gameId = change.getString("gameId");
+                if (owners.remove(gameId, node)) {
+                    lobby.remove(gameId);
+                }
+                break;
+            case "players_changed":
+                GameInfo info = lobby.get(change.getString("gameId"));
+                if (info != null) {
+                    lobby.setPlayers(info, change.getInt("currentPlayers"));
+                }
+                break;
+            case "status_changed":
+                info = lobby.get(change.getString("gameId"));
+                if (info != null) {
+                    lobby.setStatus(info, change.getString("status"));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // ---- Conexiones cliente -> nodo ----
+
+    /** Nodos que usa un cliente y el de su partida actual. */
+    private static final class Route {
+        final boolean binary;
+        final Map<BackendNode, Upstream> upstreams = new ConcurrentHashMap<>();
+        volatile BackendNode current;
+        volatile boolean batchFrames;
+
+        Route(boolean binary) {
+            this.binary = binary;
+        }
+    }
+
+    /**
+     * Conexión de un cliente con un nodo (java.net.http, sin hilo propio).
+     * Los envíos se encadenan: el WebSocket del JDK admite uno pendiente.
+     */
+    private final class Upstream implements java.net.http.WebSocket.Listener {
+        private final WebSocket client;
+        private final Route route;
+        private final BackendNode node;
+        private CompletableFuture<java.net.http.WebSocket> tail; // último envío; protegido por this
+        private final StringBuilder text = new StringBuilder();
+        private final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        private long stalledSince; // 0 = el cliente no está atrasado
+        private volatile boolean closing;
+
+        Upstream(WebSocket client, Route route, BackendNode node) {
+            this.client = client;
+            this.route = route;
+            this.node = node;
+            java.net.http.WebSocket.Builder builder = http.newWebSocketBuilder()
+                    .header(GATEWAY_HEADER, "1")
+                    .header(BATCH_FRAMES_HEADER, String.valueOf(route.batchFrames));
+            if (route.binary) {
+                builder.subprotocols(BinaryCodec.SUBPROTOCOL);
+            }
+            this.tail = builder.buildAsync(node.getUri(), this);
+            tail.whenComplete((ws, error) -> {
+                if (error != null) {
+                    closed(CloseFrame.GOING_AWAY, "No se pudo conectar al nodo");
+                }
+            });
+        }
+
+        synchronized void send(Object frame) {
+            tail = tail.thenCompose(ws -> frame instanceof ByteBuffer bytes
+                    ? ws.sendBinary(bytes, true)
+                    : ws.sendText((String) frame, true));
+        }
+
+        synchronized void close() {
+            closing = true;
+            tail.thenCompose(ws -> ws.sendClose(java.net.http.WebSocket.NORMAL_CLOSURE, ""));
+        }
+
+        @Override
+        public CompletionStage<?> onText(java.net.http.WebSocket ws, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                String message = text.toString();
+                text.setLength(0);
+                if (client.isOpen()) {
+                    client.send(message);
+                }
+            }
+            requestMore(ws);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(java.net.http.WebSocket ws, ByteBuffer data, boolean last) {
+            if (last && binary.size() == 0) {
+                if (client.isOpen()) {
+                    client.send(copy(data));
+                }
+            } else {
+                byte[] part = new byte[data.remaining()];
+                data.get(part);
+                binary.writeBytes(part);
+                if (last) {
+                    if (client.isOpen()) {
+                        client.send(binary.toByteArray());
+                    }
+                    binary.reset();
+                }
+            }
+            requestMore(ws);
+            return null;
+        }
+
+        /** Siguiente frame del nodo solo si el socket del cliente tiene lugar. */
+        private void requestMore(java.net.http.WebSocket ws) {
+            if (!client.isOpen() || ClientSession.of(client).socketBufferedBytes() < config.getSocketBufferBytes()) {
+                stalledSince = 0;
+                ws.request(1);
+                return;
+            }
+            long now = System.nanoTime();
+            if (stalledSince == 0) {
+                stalledSince = now;
+            } else if (now - stalledSince > config.getSlowConsumerMillis() * 1_000_000L) {
+                Log.warn("Cliente lento en el gateway, cerrando: {}", client.getRemoteSocketAddress());
+                client.close(CloseFrame.TRY_AGAIN_LATER, "Cliente lento");
+                ws.request(1);
+                return;
+            }
+            scheduler.schedule(() -> requestMore(ws), config.getDrainIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public CompletionStage<?> onClose(java.net.http.WebSocket ws, int statusCode, String reason) {
+            closed(statusCode, reason);
+            return null;
+        }
+
+        @Override
+        public void onError(java.net.http.WebSocket ws, Throwable error) {
+            closed(CloseFrame.GOING_AWAY, "Se perdió la conexión con el nodo");
+        }
+
+        /**
+         * El nodo cerró (o se cayó). Si era el de la partida actual el
+         * cliente se cierra igual, para que reconecte y use resume.
+         */
+        private void closed(int code, String reason) {
+            route.upstreams.remove(node, this);
+            if (closing || !client.isOpen()) {
+                return;
+            }
+            if (route.current == node) {
+                route.current = null;
+                // 1005, 1006 y 1015 no se pueden mandar en un frame de cierre
+                int clientCode = code == CloseFrame.NOCODE || code == CloseFrame.ABNORMAL_CLOSE
+                        || code == CloseFrame.TLS_ERROR ? CloseFrame.GOING_AWAY : code;
+                client.close(clientCode, reason);
+            }
+        }
+
+        private byte[] copy(ByteBuffer data) {
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            return bytes;
+        }
+    }
+
+    static void run(ServerConfig config) {
+        GatewayServer gateway = new GatewayServer(config);
+        gateway.setReuseAddr(true);
+        try {
+            gateway.start();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                Log.info("Deteniendo gateway...");
+                try {
+                    gateway.stop();
+                } catch (Exception e) {
+                    Log.error("Error deteniendo gateway: {}", e.getMessage());
+                }
+            }));
+
+            Thread.currentThread().join();
+        } catch (Exception e) {
+            Log.error("Error al iniciar el gateway: {}", e.getMessage(), e);
+        }
+    }
+
+    public static void main(String[] args) {
+        run(ServerConfig.fromSystemProperties().setGatewayMode(true));
+    }
+}
@@ -0,0 +1,62 @@
+package com.navaplaystudios.server;
+
+/**
+ * Hashing consistente para repartir partidas entre nodos. Cada nodo ocupa
+ * VIRTUAL_NODES puntos del anillo; una clave va al primer punto a partir
+ * de su hash. Al entrar o salir un nodo solo cambian de dueño las claves
+ * de los tramos que tocan sus puntos (~1/n del total).
+ *
+ * El gateway solo consulta el anillo para partidas nuevas: las que ya
+ * existen quedan fijadas al nodo que las tiene.
+ */
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+public class HashRing<N> {
+    private static final int VIRTUAL_NODES = 160;
+
+    private final ConcurrentSkipListMap<Long, N> ring = new ConcurrentSkipListMap<>();
+
+    public synchronized void add(String nodeId, N node) {
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            ring.put(hash(nodeId + "#" + i), node);
+        }
+    }
+
+    public synchronized void remove(String nodeId) {
+        for (int i = 0; i < VIRTUAL_NODES; i++) {
+            ring.remove(hash(nodeId + "#" + i));
+        }
+    }
+
+    /** Nodo dueño de la clave, o null si el anillo está vacío. */
+    public N get(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, N> entry = ring.ceilingEntry(hash(key));
+        if (entry == null) {
+            entry = ring.firstEntry(); // el anillo da la vuelta
+        }
+        return entry != null ? entry.getValue() : null;
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    // FNV-1a de 64 bits con la mezcla final de MurmurHash3 para repartir mejor
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
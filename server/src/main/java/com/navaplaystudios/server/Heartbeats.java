@@ -0,0 +1,147 @@
+package com.navaplaystudios.server;
+
+/**
+ * Detección de conexiones muertas con frames ping/pong de WebSocket (no
+ * mensajes JSON). Cada conexión tiene un Timeout en la rueda que se
+ * reutiliza: cualquier mensaje entrante o pong solo actualiza
+ * lastActivity en su ClientSession, sin tocar la rueda.
+ *
+ * Cuando vence el Timeout:
+ * - si hubo actividad en el intervalo, se reprograma por lo que falta;
+ * - si no, se manda un ping y se espera pongTimeout;
+ * - si tampoco llegó el pong, la conexión pasa a la cola de cierre.
+ *
+ * Los cierres se hacen al final del tick, como mucho reapBatch por tick,
+ * para que una caída de red masiva no atrase el resto de los plazos.
+ * Reemplaza al chequeo de Java-WebSocket (setConnectionLostTimeout), que
+ * recorre todas las conexiones en cada intervalo.
+ */
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Heartbeats {
+    private final TimingWheel wheel;
+    private final long intervalNanos;
+    private final long pongTimeoutNanos;
+    private final int reapBatch;
+    private final ArrayDeque<Check> dead; // solo el hilo de la rueda
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+    private volatile int pendingReap;
+
+    public Heartbeats(TimingWheel wheel, ServerConfig config) {
+        this.wheel = wheel;
+        this.intervalNanos = config.getHeartbeatSeconds() * 1_000_000_000L;
+        this.pongTimeoutNanos = config.getPongTimeoutSeconds() * 1_000_000_000L;
+        this.reapBatch = config.getReapBatch();
+        this.dead = new ArrayDeque<>();
+        wheel.setAfterTick(this::reap);
+    }
+
+    public boolean isEnabled() {
+        return intervalNanos > 0;
+    }
+
+    /** Al abrir la conexión. */
+    public void register(ClientSession session) {
+        if (!isEnabled()) {
+            return;
+        }
+        Check check = new Check(session);
+        session.setHeartbeat(check);
+        session.markActivity();
+        wheel.schedule(check, intervalNanos);
+    }
+
+    /** Al cerrar la conexión. */
+    public void unregister(ClientSession session) {
+        TimingWheel.Timeout check = session.getHeartbeat();
+        if (check != null) {
+            wheel.cancel(check);
+        }
+    }
+
+    public long getPings() { return pings.sum(); }
+    public long getReaped() { return reaped.sum(); }
+    public int getPendingReap() { return pendingReap; }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("intervalSeconds", intervalNanos / 1_000_000_000L);
+        stats.put("pings", getPings());
+        stats.put("reaped", getReaped());
+        stats.put("pendingReap", getPendingReap());
+        stats.put("timers", wheel.size());
+        stats.put("maxTickLagMicros", wheel.getMaxLagNanos() / 1000);
+        return stats;
+    }
+
+    private void reap() {
+        int closed = 0;
+        Check check;
+        while (closed < reapBatch && (check = dead.poll()) != null) {
+            WebSocket socket = check.session.getSocket();
+            // Pudo responder mientras esperaba en la cola
+            if (socket.isOpen() && !check.answered()) {
+                Log.info("Conexión sin respuesta a ping, cerrando: {}", socket.getRemoteSocketAddress());
+                if (socket instanceof WebSocketImpl || socket instanceof TcpConnection) {
+                    // Sin handshake de cierre ni flush: del otro lado no hay nadie
+                    socket.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Sin respuesta a ping");
+                } else {
+                    socket.close(CloseFrame.GOING_AWAY, "Sin respuesta a ping");
+                }
+                reaped.increment();
+            }
+            closed++;
+        }
+        pendingReap = dead.size();
+    }
+
+    /** Timeout de una conexión; su estado solo lo toca el hilo de la rueda. */
+    private class Check extends TimingWheel.Timeout {
+        private final ClientSession session;
+        private boolean awaitingPong;
+        private long pingSentAt;
+
+        Check(ClientSession session) {
+            this.session = session;
+        }
+
+        @Override
+        protected void expire() {
+            WebSocket socket = session.getSocket();
+            if (!socket.isOpen()) {
+                return; // cerrando: onClose cancela
+            }
+            if (awaitingPong) {
+                if (!answered()) {
+                    dead.add(this);
+                    return;
+                }
+                awaitingPong = false;
+            }
+            long now = System.nanoTime();
+            long idle = now - session.getLastActivity();
+            if (idle < intervalNanos) {
+                wheel.schedule(this, intervalNanos - idle);
+            } else {
+                awaitingPong = true;
+                pingSentAt = now;
+                socket.sendPing();
+                pings.increment();
+                wheel.schedule(this, pongTimeoutNanos);
+            }
+        }
+
+        /** Hubo un pong (o cualquier mensaje) después del último ping. */
+        boolean answered() {
+            return session.getLastActivity() - pingSentAt > 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.navaplaystudios.server;
+
+/**
+ * Histograma con límites fijos, sin locks: cada cubeta es un LongAdder, así
+ * que varios hilos registran a la vez sin contención y sin crear objetos.
+ * Los percentiles son aproximados (límite superior de la cubeta), que es lo
+ * que también haría Prometheus con histogram_quantile.
+ */
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Histogram {
+    // Latencias en nanos: 10 us .. 1 s
+    public static final long[] LATENCY_BOUNDS_NANOS = {
+        10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+        1_000_000, 2_500_000, 5_000_000, 10_000_000, 25_000_000, 50_000_000,
+        100_000_000, 250_000_000, 500_000_000, 1_000_000_000
+    };
+
+    private final long[] bounds;
+    private final LongAdder[] counts; // una más que bounds: +Inf
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram(long[] bounds) {
+        this.bounds = bounds;
+        this.counts = new LongAdder[bounds.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public static Histogram latency() {
+        return new Histogram(LATENCY_BOUNDS_NANOS);
+    }
+
+    public void record(long value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        counts[i].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (LongAdder count : counts) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public long getSum() { return sum.sum(); }
+    public long getMax() { return max.get(); }
+
+    /** Límite superior de la cubeta donde cae el percentil q (0..1); max si cae en +Inf. */
+    public long percentile(double q) {
+        long[] snapshot = new long[counts.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bounds[i], getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Serie de Prometheus: _bucket acumulado por le, _sum y _count. scale
+     * convierte la unidad registrada a la exportada (1e9 para nanos -> s).
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels, double scale) {
+        String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket").append(prefix).append("le=\"")
+                    .append(bounds[i] / scale).append("\"} ").append(cumulative).append('\n');
+        }
+        cumulative += counts[bounds.length].sum();
+        out.append(name).append("_bucket").append(prefix).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        String plain = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(plain).append(' ').append(sum.sum() / scale).append('\n');
+        out.append(name).append("_count").append(plain).append(' ').append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,441 @@
+package com.navaplaystudios.server;
+
+/**
+ * Salas visibles en el lobby. Todos los cambios de GameInfo pasan por aquí:
+ * se aplican y se anotan como cambio pendiente. Cada tick los pendientes se
+ * mandan como un solo lobby_delta, serializado una vez para todos los
+ * suscriptores (subscribe_lobby), en vez de que cada cliente pida la lista
+ * completa con list_games.
+ *
+ * Varios cambios de la misma sala dentro de un tick se juntan: una sala
+ * creada y llena en el mismo tick sale como un único room_added con los
+ * valores finales, y una creada y borrada no sale.
+ *
+ * Para list_games hay índices secundarios ordenados por createdAt
+ * descendente (y gameId para desempatar): uno con todas las salas y uno
+ * por estado. "Salas abiertas, más nuevas primero, 20 por página" recorre
+ * solo la página pedida en el índice de "waiting"; el cursor es la clave
+ * "createdAt:gameId" de la última sala devuelta. Los filtros sin índice
+ * (asientos libres, prefijo del nombre) se aplican al recorrer, con un
+ * límite de salas revisadas por consulta.
+ */
+import com.navaplaystudios.server.jfr.LobbyEvent;
+import org.java_websocket.WebSocket;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class Lobby {
+    private static final int ADDED = 1;
+    private static final int PLAYERS = 2;
+    private static final int STATUS = 4;
+    private static final int REMOVED = 8;
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SCANNED = 2000; // por consulta con filtros sin índice
+
+    private final Map<String, GameInfo> games;
+    private final ConcurrentSkipListMap<IndexKey, GameInfo> byCreated;
+    private final Map<String, ConcurrentSkipListMap<IndexKey, GameInfo>> byStatus;
+    private final OutboundBatcher outbound;
+    private final Set<WebSocket> subscribers;
+    private final Map<String, Integer> pending; // gameId -> cambios del tick (bits); protegido por this
+    private final ScheduledExecutorService ticker;
+    private long seq; // último lobby_delta enviado; protegido por this
+
+    public Lobby(OutboundBatcher outbound, int tickMillis) {
+        this.games = new ConcurrentHashMap<>();
+        this.byCreated = new ConcurrentSkipListMap<>();
+        this.byStatus = new ConcurrentHashMap<>();
+        this.outbound = outbound;
+        this.subscribers = ConcurrentHashMap.newKeySet();
+        this.pending = new LinkedHashMap<>();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "uno-lobby");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, tickMillis);
+        ticker.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- Cambios ----
+
+    public synchronized GameInfo create(String gameId, String roomName, String hostPlayerId, String hostPlayerName, int maxPlayers) {
+        GameInfo info = new GameInfo(gameId, roomName, hostPlayerId, hostPlayerName, maxPlayers);
+        games.put(gameId, info);
+        byCreated.put(IndexKey.of(info), info);
+        statusIndex(info.status).put(IndexKey.of(info), info);
+        mark(gameId, ADDED);
+        return info;
+    }
+
+    /** Sala ya creada en otro lado (lobby combinado del gateway); reemplaza a la anterior. */
+    public synchronized void add(GameInfo info) {
+        GameInfo previous = games.put(info.gameId, info);
+        if (previous != null) {
+            byCreated.remove(IndexKey.of(previous));
+            statusIndex(previous.status).remove(IndexKey.of(previous));
+        }
+        byCreated.put(IndexKey.of(info), info);
+        statusIndex(info.status).put(IndexKey.of(info), info);
+        mark(info.gameId, ADDED);
+    }
+
+    public GameInfo get(String gameId) {
+        return games.get(gameId);
+    }
+
+    public synchronized void playerJoined(GameInfo info) {
+        info.currentPlayers++;
+        mark(info.gameId, PLAYERS);
+        updateStatus(info);
+    }
+
+    public synchronized void playerLeft(GameInfo info) {
+        info.currentPlayers = Math.max(0, info.currentPlayers - 1);
+        mark(info.gameId, PLAYERS);
+        updateStatus(info);
+    }
+
+    /** Cantidad informada por el nodo dueño de la sala (gateway). */
+    public synchronized void setPlayers(GameInfo info, int currentPlayers) {
+        if (info.currentPlayers != currentPlayers) {
+            info.currentPlayers = currentPlayers;
+            mark(info.gameId, PLAYERS);
+        }
+    }
+
+    public synchronized void setStatus(GameInfo info, String status) {
+        if (!status.equals(info.status)) {
+            // Se saca del índice viejo antes de cambiar el campo
+            IndexKey key = IndexKey.of(info);
+            statusIndex(info.status).remove(key);
+            info.status = status;
+            if (games.containsKey(info.gameId)) {
+                statusIndex(status).put(key, info);
+            }
+            mark(info.gameId, STATUS);
+        }
+    }
+
+    public synchronized GameInfo remove(String gameId) {
+        GameInfo info = games.remove(gameId);
+        if (info != null) {
+            IndexKey key = IndexKey.of(info);
+            byCreated.remove(key);
+            statusIndex(info.status).remove(key);
+            mark(gameId, REMOVED);
+        }
+        return info;
+    }
+
+    private void updateStatus(GameInfo info) {
+        if (info.currentPlayers >= info.maxPlayers && !"playing".equals(info.status)) {
+            setStatus(info, "full");
+        } else if (info.currentPlayers < info.maxPlayers && "full".equals(info.status)) {
+            setStatus(info, "waiting");
+        }
+    }
+
+    private void mark(String gameId, int change) {
+        Integer previous = pending.get(gameId);
+        if (previous == null) {
+            pending.put(gameId, change);
+        } else if (change == REMOVED && (previous & ADDED) != 0) {
+            // Creada y borrada en el mismo tick: nadie la llegó a ver
+            pending.remove(gameId);
+        } else if (change == REMOVED) {
+            pending.put(gameId, REMOVED);
+        } else {
+            pending.put(gameId, previous | change);
+        }
+    }
+
+    private ConcurrentSkipListMap<IndexKey, GameInfo> statusIndex(String status) {
+        return byStatus.computeIfAbsent(status, s -> new ConcurrentSkipListMap<>());
+    }
+
+    // ---- Lecturas ----
+
+    /** Todas las salas, las más nuevas primero. */
+    public Collection<GameInfo> getGames() {
+        return Collections.unmodifiableCollection(byCreated.values());
+    }
+
+    /**
+     * Una página de salas, más nuevas primero. Con estado se recorre su
+     * índice; sin estado, el índice general.
+     */
+    public Page query(Query query) {
+        LobbyEvent event = new LobbyEvent();
+        event.begin();
+        ConcurrentSkipListMap<IndexKey, GameInfo> index = byCreated;
+        if (query.status != null) {
+            index = byStatus.get(query.status);
+            if (index == null) {
+                return new Page(Collections.emptyList(), null);
+            }
+        }
+
+        IndexKey after = IndexKey.parse(query.cursor);
+        Collection<GameInfo> candidates = after != null ? index.tailMap(after, false).values() : index.values();
+
+        List<GameInfo> page = new ArrayList<>(query.pageSize);
+        GameInfo last = null;
+        int scanned = 0;
+        boolean more = false;
+        for (GameInfo info : candidates) {
+            if (page.size() == query.pageSize || scanned == MAX_SCANNED) {
+                more = true;
+                break;
+            }
+            scanned++;
+            last = info;
+            if (query.matches(info)) {
+                page.add(info);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.operation = "query";
+            event.rooms = page.size();
+            event.subscribers = subscribers.size();
+            event.commit();
+        }
+        // El cursor apunta a lo último revisado: la siguiente página sigue desde ahí
+        return new Page(page, more && last != null ? IndexKey.of(last).toString() : null);
+    }
+
+    /** data de games_list: la lista completa, o una página si hay filtros. */
+    public JSONObject listGames(JSONObject request) {
+        JSONArray gamesList = new JSONArray();
+        String nextCursor = null;
+        if (Query.hasParameters(request)) {
+            Page page = query(Query.fromRequest(request));
+            for (GameInfo info : page.games) {
+                gamesList.put(info.toJson());
+            }
+            nextCursor = page.nextCursor;
+        } else {
+            for (GameInfo info : getGames()) {
+                gamesList.put(info.toJson());
+            }
+        }
+        JSONObject data = new JSONObject();
+        data.put("games", gamesList);
+        if (nextCursor != null) {
+            data.put("nextCursor", nextCursor);
+        }
+        return data;
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // ---- Suscripciones ----
+
+    /**
+     * Manda la foto actual y registra al suscriptor bajo el mismo lock que
+     * el tick, así el primer delta que recibe es justo el siguiente a la foto.
+     */
+    public synchronized void subscribe(WebSocket conn) {
+        LobbyEvent event = new LobbyEvent();
+        event.begin();
+        JSONArray rooms = new JSONArray();
+        for (GameInfo info : games.values()) {
+            rooms.put(info.toJson());
+        }
+
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("type", "lobby_snapshot");
+        snapshot.put("success", true);
+        snapshot.put("seq", seq);
+        snapshot.put("games", rooms);
+        snapshot.put("timestamp", System.currentTimeMillis());
+
+        subscribers.add(conn);
+        ClientSession session = ClientSession.of(conn);
+        OutboundMessage message = OutboundMessage.of(snapshot);
+        outbound.send(session, message);
+        if (event.shouldCommit()) {
+            event.operation = "subscribe";
+            event.rooms = rooms.length();
+            event.subscribers = subscribers.size();
+            event.payloadBytes = message.size(session.isBinary());
+            event.commit();
+        }
+    }
+
+    public void unsubscribe(WebSocket conn) {
+        subscribers.remove(conn);
+    }
+
+    private synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (subscribers.isEmpty()) {
+            pending.clear();
+            return;
+        }
+
+        LobbyEvent event = new LobbyEvent();
+        event.begin();
+        JSONArray changes = new JSONArray();
+        for (Map.Entry<String, Integer> entry : pending.entrySet()) {
+            String gameId = entry.getKey();
+            int change = entry.getValue();
+            GameInfo info = games.get(gameId);
+
+            if (change == REMOVED || info == null) {
+                changes.put(new JSONObject().put("kind", "room_removed").put("gameId", gameId));
+                continue;
+            }
+            if ((change & ADDED) != 0) {
+                changes.put(new JSONObject().put("kind", "room_added").put("room", info.toJson()));
+                continue;
+            }
+            if ((change & PLAYERS) != 0) {
+                changes.put(new JSONObject().put("kind", "players_changed").put("gameId", gameId)
+                        .put("currentPlayers", info.currentPlayers));
+            }
+            if ((change & STATUS) != 0) {
+                changes.put(new JSONObject().put("kind", "status_changed").put("gameId", gameId)
+                        .put("status", info.status));
+            }
+        }
+        pending.clear();
+
+        JSONObject delta = new JSONObject();
+        delta.put("type", "lobby_delta");
+        delta.put("seq", ++seq);
+        delta.put("changes", changes);
+        delta.put("timestamp", System.currentTimeMillis());
+
+        // Un solo OutboundMessage: se codifica una vez por formato para todos
+        OutboundMessage message = OutboundMessage.of(delta);
+        for (WebSocket conn : subscribers) {
+            if (conn.isOpen()) {
+                outbound.send(ClientSession.of(conn), message);
+            } else {
+                subscribers.remove(conn);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.operation = "delta";
+            event.rooms = changes.length();
+            event.subscribers = subscribers.size();
+            event.payloadBytes = message.size(false);
+            event.commit();
+        }
+    }
+
+    /** Filtros de list_games; todos opcionales. */
+    public static class Query {
+        String status;
+        int minFreeSeats;
+        String namePrefix; // en minúsculas
+        String cursor;
+        int pageSize = DEFAULT_PAGE_SIZE;
+
+        public static Query fromRequest(JSONObject request) {
+            Query query = new Query();
+            query.status = request.optString("status", null);
+            query.minFreeSeats = Math.max(0, request.optInt("minFreeSeats", 0));
+            String prefix = request.optString("namePrefix", "");
+            query.namePrefix = prefix.isEmpty() ? null : prefix.toLowerCase(Locale.ROOT);
+            query.cursor = request.optString("cursor", null);
+            query.pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, request.optInt("pageSize", DEFAULT_PAGE_SIZE)));
+            return query;
+        }
+
+        /** list_games sin ningún parámetro: la lista completa de siempre. */
+        public static boolean hasParameters(JSONObject request) {
+            return request.has("status") || request.has("minFreeSeats") || request.has("namePrefix")
+                    || request.has("cursor") || request.has("pageSize");
+        }
+
+        boolean matches(GameInfo info) {
+            if (minFreeSeats > 0 && info.maxPlayers - info.currentPlayers < minFreeSeats) {
+                return false;
+            }
+            return namePrefix == null || info.roomName.toLowerCase(Locale.ROOT).startsWith(namePrefix);
+        }
+    }
+
+    public static class Page {
+        public final List<GameInfo> games;
+        public final String nextCursor; // null = no hay más
+
+        Page(List<GameInfo> games, String nextCursor) {
+            this.games = games;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    // Orden de los índices: createdAt descendente, luego gameId
+    private static final class IndexKey implements Comparable<IndexKey> {
+        final long createdAt;
+        final String gameId;
+
+        IndexKey(long createdAt, String gameId) {
+            this.createdAt = createdAt;
+            this.gameId = gameId;
+        }
+
+        static IndexKey of(GameInfo info) {
+            return new IndexKey(info.createdAt, info.gameId);
+        }
+
+        static IndexKey parse(String cursor) {
+            if (cursor == null || cursor.isEmpty()) {
+                return null;
+            }
+            int colon = cursor.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+            try {
+                return new IndexKey(Long.parseLong(cursor.substring(0, colon)), cursor.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursor inválido: " + cursor);
+            }
+        }
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int byTime = Long.compare(other.createdAt, createdAt);
+            return byTime != 0 ? byTime : gameId.compareTo(other.gameId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IndexKey other && createdAt == other.createdAt && gameId.equals(other.gameId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(createdAt) * 31 + gameId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return createdAt + ":" + gameId;
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,356 @@
+package com.navaplaystudios.server;
+
+/**
+ * Log asíncrono. Los hilos de WebSocket y de los shards solo copian el
+ * nivel, la plantilla y hasta tres argumentos a una entrada de un buffer
+ * circular preasignado; el formateo y la escritura los hace un único hilo
+ * de fondo, que escribe en archivos rotativos (y opcionalmente a consola).
+ * Nadie que atiende mensajes espera por I/O ni por el lock de System.out.
+ *
+ * Si el buffer está lleno la entrada se descarta y se cuenta: el log nunca
+ * frena al servidor. Las líneas por mensaje van con debugSampled, que con
+ * uno.log.debugSample=N registra una de cada N en promedio.
+ *
+ * Las plantillas usan {} como marcador: Log.info("Juego {} creado", id).
+ * Un Throwable como último argumento sin marcador se imprime con su traza.
+ *
+ * Propiedades: uno.log.level (DEBUG, INFO, WARN, ERROR), uno.log.dir,
+ * uno.log.maxBytes, uno.log.maxFiles, uno.log.ringSize,
+ * uno.log.debugSample, uno.log.console.
+ */
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public final class Log {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final class Entry {
+        volatile long published = -1; // secuencia de la entrada ya escrita
+        long time;
+        Level level;
+        String thread;
+        String template;
+        Object arg1;
+        Object arg2;
+        Object arg3;
+        int argCount;
+    }
+
+    private static final Entry[] RING;
+    private static final int MASK;
+    private static final AtomicLong CLAIMED = new AtomicLong(); // siguiente secuencia a reservar
+    private static final AtomicLong CONSUMED = new AtomicLong(); // siguiente secuencia que lee el hilo de fondo
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final LongAdder WRITTEN = new LongAdder();
+
+    private static volatile Level level;
+    private static volatile int debugSample;
+    private static final Writer WRITER;
+    private static final Thread DRAINER;
+    private static volatile boolean running = true;
+
+    static {
+        level = parseLevel(System.getProperty("uno.log.level"), Level.INFO);
+        debugSample = Math.max(1, intProperty("uno.log.debugSample", 1));
+
+        int size = Integer.highestOneBit(Math.max(64, intProperty("uno.log.ringSize", 8192)));
+        RING = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            RING[i] = new Entry();
+        }
+        MASK = size - 1;
+
+        WRITER = new Writer(
+                new File(System.getProperty("uno.log.dir", "logs")),
+                intProperty("uno.log.maxBytes", 10 * 1024 * 1024),
+                Math.max(1, intProperty("uno.log.maxFiles", 5)),
+                !"false".equalsIgnoreCase(System.getProperty("uno.log.console", "true")));
+
+        DRAINER = new Thread(Log::drain, "uno-log");
+        DRAINER.setDaemon(true);
+        DRAINER.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "uno-log-shutdown"));
+    }
+
+    private Log() {
+    }
+
+    // ---- API ----
+
+    public static boolean isDebugEnabled() { return level == Level.DEBUG; }
+    public static void setLevel(Level newLevel) { level = newLevel; }
+    public static Level getLevel() { return level; }
+    public static void setDebugSample(int everyN) { debugSample = Math.max(1, everyN); }
+    public static long getDropped() { return DROPPED.sum(); }
+    public static long getWritten() { return WRITTEN.sum(); }
+
+    public static void debug(String template) { log(Level.DEBUG, template, null, null, null, 0); }
+    public static void debug(String template, Object a) { log(Level.DEBUG, template, a, null, null, 1); }
+    public static void debug(String template, Object a, Object b) { log(Level.DEBUG, template, a, b, null, 2); }
+    public static void debug(String template, Object a, Object b, Object c) { log(Level.DEBUG, template, a, b, c, 3); }
+
+    /** Debug por mensaje: solo una de cada uno.log.debugSample llamadas llega al buffer. */
+    public static void debugSampled(String template, Object a) {
+        if (level == Level.DEBUG && sampled()) {
+            log(Level.DEBUG, template, a, null, null, 1);
+        }
+    }
+
+    public static void debugSampled(String template, Object a, Object b) {
+        if (level == Level.DEBUG && sampled()) {
+            log(Level.DEBUG, template, a, b, null, 2);
+        }
+    }
+
+    public static void info(String template) { log(Level.INFO, template, null, null, null, 0); }
+    public static void info(String template, Object a) { log(Level.INFO, template, a, null, null, 1); }
+    public static void info(String template, Object a, Object b) { log(Level.INFO, template, a, b, null, 2); }
+    public static void info(String template, Object a, Object b, Object c) { log(Level.INFO, template, a, b, c, 3); }
+
+    public static void warn(String template) { log(Level.WARN, template, null, null, null, 0); }
+    public static void warn(String template, Object a) { log(Level.WARN, template, a, null, null, 1); }
+    public static void warn(String template, Object a, Object b) { log(Level.WARN, template, a, b, null, 2); }
+    public static void warn(String template, Object a, Object b, Object c) { log(Level.WARN, template, a, b, c, 3); }
+
+    public static void error(String template) { log(Level.ERROR, template, null, null, null, 0); }
+    public static void error(String template, Object a) { log(Level.ERROR, template, a, null, null, 1); }
+    public static void error(String template, Object a, Object b) { log(Level.ERROR, template, a, b, null, 2); }
+    public static void error(String template, Object a, Object b, Object c) { log(Level.ERROR, template, a, b, c, 3); }
+
+    private static boolean sampled() {
+        int every = debugSample;
+        return every <= 1 || ThreadLocalRandom.current().nextInt(every) == 0;
+    }
+
+    private static void log(Level entryLevel, String template, Object a, Object b, Object c, int argCount) {
+        if (entryLevel.ordinal() < level.ordinal()) {
+            return;
+        }
+
+        long seq;
+        do {
+            seq = CLAIMED.get();
+            if (seq - CONSUMED.get() >= RING.length) {
+                DROPPED.increment();
+                return;
+            }
+        } while (!CLAIMED.compareAndSet(seq, seq + 1));
+
+        Entry entry = RING[(int) seq & MASK];
+        entry.time = System.currentTimeMillis();
+        entry.level = entryLevel;
+        entry.thread = Thread.currentThread().getName();
+        entry.template = template;
+        entry.arg1 = a;
+        entry.arg2 = b;
+        entry.arg3 = c;
+        entry.argCount = argCount;
+        entry.published = seq; // publica la entrada al hilo de fondo
+    }
+
+    // ---- Hilo de fondo ----
+
+    private static void drain() {
+        StringBuilder line = new StringBuilder(256);
+        long next = 0;
+        boolean dirty = false;
+        while (true) {
+            Entry entry = RING[(int) next & MASK];
+            if (entry.published != next) {
+                if (dirty) {
+                    WRITER.flush();
+                    dirty = false;
+                }
+                if (!running && CLAIMED.get() == next) {
+                    return;
+                }
+                LockSupport.parkNanos(1_000_000);
+                continue;
+            }
+
+            line.setLength(0);
+            Throwable thrown = format(entry, line);
+            entry.template = null;
+            entry.arg1 = entry.arg2 = entry.arg3 = null; // no retener objetos del servidor
+            CONSUMED.lazySet(next + 1);
+            next++;
+
+            WRITER.write(line, thrown);
+            WRITTEN.increment();
+            dirty = true;
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static Throwable format(Entry entry, StringBuilder out) {
+        TIME_FORMAT.formatTo(Instant.ofEpochMilli(entry.time), out);
+        out.append(' ').append(entry.level.name());
+        if (entry.level.name().length() == 4) {
+            out.append(' ');
+        }
+        out.append(" [").append(entry.thread).append("] ");
+
+        Object[] args = {entry.arg1, entry.arg2, entry.arg3};
+        String template = entry.template;
+        int used = 0;
+        int from = 0;
+        int marker;
+        while (used < entry.argCount && (marker = template.indexOf("{}", from)) >= 0) {
+            out.append(template, from, marker).append(args[used++]);
+            from = marker + 2;
+        }
+        out.append(template, from, template.length());
+
+        Throwable thrown = null;
+        if (used < entry.argCount && args[entry.argCount - 1] instanceof Throwable t) {
+            thrown = t;
+        }
+        return thrown;
+    }
+
+    private static void shutdown() {
+        running = false;
+        try {
+            DRAINER.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        WRITER.close();
+    }
+
+    // ---- Configuración ----
+
+    private static Level parseLevel(String value, Level defaultLevel) {
+        if (value == null || value.isBlank()) {
+            return defaultLevel;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultLevel;
+        }
+    }
+
+    // ServerConfig loguea sus errores aquí, así que esto no puede usarlo
+    private static int intProperty(String name, int defaultValue) {
+        try {
+            String value = System.getProperty(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /** Archivo rotativo uno.log, uno.log.1 ... uno.log.(maxFiles-1). Solo lo usa el hilo de fondo. */
+    private static final class Writer {
+        private final File dir;
+        private final long maxBytes;
+        private final int maxFiles;
+        private final boolean console;
+        private java.io.Writer out;
+        private long bytes;
+
+        Writer(File dir, long maxBytes, int maxFiles, boolean console) {
+            this.dir = dir;
+            this.maxBytes = maxBytes;
+            this.maxFiles = maxFiles;
+            this.console = console;
+            open();
+        }
+
+        private void open() {
+            try {
+                dir.mkdirs();
+                File file = new File(dir, "uno.log");
+                bytes = file.length();
+                out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8), 64 * 1024);
+            } catch (IOException e) {
+                System.err.println("No se pudo abrir el log en " + dir + ": " + e.getMessage());
+                out = null;
+            }
+        }
+
+        void write(CharSequence line, Throwable thrown) {
+            String trace = null;
+            if (thrown != null) {
+                StringWriter stack = new StringWriter();
+                thrown.printStackTrace(new PrintWriter(stack));
+                trace = stack.toString();
+            }
+            if (console) {
+                System.out.println(line);
+                if (trace != null) {
+                    System.out.print(trace);
+                }
+            }
+            if (out == null) {
+                return;
+            }
+            try {
+                out.append(line).append('\n');
+                bytes += line.length() + 1;
+                if (trace != null) {
+                    out.write(trace);
+                    bytes += trace.length();
+                }
+                if (bytes >= maxBytes) {
+                    rotate();
+                }
+            } catch (IOException e) {
+                System.err.println("Error escribiendo el log: " + e.getMessage());
+            }
+        }
+
+        private void rotate() throws IOException {
+            out.close();
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                File from = new File(dir, i == 1 ? "uno.log" : "uno.log." + (i - 1));
+                File to = new File(dir, "uno.log." + i);
+                if (from.exists()) {
+                    to.delete();
+                    from.renameTo(to);
+                }
+            }
+            if (maxFiles == 1) {
+                new File(dir, "uno.log").delete();
+            }
+            open();
+            bytes = 0;
+        }
+
+        void flush() {
+            try {
+                if (out != null) {
+                    out.flush();
+                }
+            } catch (IOException e) {
+                System.err.println("Error escribiendo el log: " + e.getMessage());
+            }
+            if (console) {
+                System.out.flush();
+            }
+        }
+
+        void close() {
+            flush();
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException ignored) {
+                // cerrando: no hay dónde reportarlo
+            }
+        }
+    }
+}
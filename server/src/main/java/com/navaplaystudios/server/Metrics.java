@@ -0,0 +1,181 @@
+package com.navaplaystudios.server;
+
+/**
+ * Métricas del servidor. Por cada tipo de acción hay tres histogramas de
+ * latencia: decode (texto/binario -> GameAction), handle (el handler
+ * completo en su shard, broadcast incluido) y broadcast (armar y encolar el
+ * estado para todos los jugadores). Además: errores por acción, fan-out de
+ * cada broadcast y los contadores que otros componentes registran con
+ * gauge/counter (frames y bytes de salida, conexiones, colas...).
+ *
+ * Todo se registra con LongAdder, sin locks ni objetos nuevos. Presupuesto
+ * en play_card: 3 latencias + 1 fan-out por acción, unas 6 lecturas de
+ * System.nanoTime y 12 incrementos de LongAdder, menos de 0.5 us por acción
+ * (medido ~0.3-0.35 us, frente a milisegundos del handler). Si un cambio
+ * lo supera, hay que medir con MetricsBenchmark (módulo benchmarks) antes
+ * de subirlo.
+ *
+ * Se exporta en formato de texto de Prometheus (ver MetricsHttpServer) y
+ * como resumen JSON con la acción metrics.
+ */
+import com.navaplaystudios.server.clases.GameAction;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+public class Metrics {
+    public enum Stage {
+        DECODE, HANDLE, BROADCAST
+    }
+
+    private static final GameAction.Type[] TYPES = GameAction.Type.values();
+    private static final Stage[] STAGES = Stage.values();
+    private static final long[] FAN_OUT_BOUNDS = {1, 2, 3, 4, 6, 8, 10, 16};
+
+    private final Histogram[][] latency; // [tipo][etapa]
+    private final LongAdder[] errors; // por tipo, más uno para acciones no reconocidas
+    private final Histogram fanOut;
+    private final List<Exported> exported;
+
+    private static class Exported {
+        final String name;
+        final String help;
+        final String type; // "gauge" o "counter"
+        final LongSupplier value;
+
+        Exported(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    public Metrics() {
+        this.latency = new Histogram[TYPES.length][STAGES.length];
+        for (int t = 0; t < TYPES.length; t++) {
+            for (int s = 0; s < STAGES.length; s++) {
+                latency[t][s] = Histogram.latency();
+            }
+        }
+        this.errors = new LongAdder[TYPES.length + 1];
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = new LongAdder();
+        }
+        this.fanOut = new Histogram(FAN_OUT_BOUNDS);
+        this.exported = new CopyOnWriteArrayList<>();
+    }
+
+    // ---- Registro (camino caliente) ----
+
+    public void recordLatency(GameAction.Type type, Stage stage, long nanos) {
+        if (type != null) {
+            latency[type.ordinal()][stage.ordinal()].record(nanos);
+        }
+    }
+
+    public void recordError(GameAction.Type type) {
+        errors[type != null ? type.ordinal() : TYPES.length].increment();
+    }
+
+    public void recordFanOut(int recipients) {
+        fanOut.record(recipients);
+    }
+
+    // ---- Valores de otros componentes ----
+
+    public void gauge(String name, String help, LongSupplier value) {
+        exported.add(new Exported(name, help, "gauge", value));
+    }
+
+    public void counter(String name, String help, LongSupplier value) {
+        exported.add(new Exported(name, help, "counter", value));
+    }
+
+    // ---- Exportación ----
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(8192);
+
+        out.append("# HELP uno_action_latency_seconds Latencia por acción y etapa (decode, handle, broadcast)\n");
+        out.append("# TYPE uno_action_latency_seconds histogram\n");
+        for (int t = 0; t < TYPES.length; t++) {
+            for (int s = 0; s < STAGES.length; s++) {
+                Histogram histogram = latency[t][s];
+                if (histogram.getCount() > 0) {
+                    String labels = "action=\"" + TYPES[t].getWireName() + "\",stage=\"" + STAGES[s].name().toLowerCase() + "\"";
+                    histogram.writePrometheus(out, "uno_action_latency_seconds", labels, 1e9);
+                }
+            }
+        }
+
+        out.append("# HELP uno_action_errors_total Respuestas de error por acción\n");
+        out.append("# TYPE uno_action_errors_total counter\n");
+        for (int i = 0; i < errors.length; i++) {
+            long count = errors[i].sum();
+            if (count > 0) {
+                String action = i < TYPES.length ? TYPES[i].getWireName() : "unknown";
+                out.append("uno_action_errors_total{action=\"").append(action).append("\"} ").append(count).append('\n');
+            }
+        }
+
+        out.append("# HELP uno_broadcast_fanout Destinatarios por broadcast de estado\n");
+        out.append("# TYPE uno_broadcast_fanout histogram\n");
+        fanOut.writePrometheus(out, "uno_broadcast_fanout", "", 1);
+
+        for (Exported metric : exported) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+            out.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /** Resumen para la acción metrics: count/p50/p99/max en micros por acción y etapa. */
+    public Map<String, Object> toMap() {
+        Map<String, Object> actions = new LinkedHashMap<>();
+        for (int t = 0; t < TYPES.length; t++) {
+            Map<String, Object> stages = new LinkedHashMap<>();
+            for (int s = 0; s < STAGES.length; s++) {
+                Histogram histogram = latency[t][s];
+                long count = histogram.getCount();
+                if (count == 0) {
+                    continue;
+                }
+                Map<String, Object> summary = new LinkedHashMap<>();
+                summary.put("count", count);
+                summary.put("avgMicros", histogram.getSum() / count / 1000);
+                summary.put("p50Micros", histogram.percentile(0.5) / 1000);
+                summary.put("p99Micros", histogram.percentile(0.99) / 1000);
+                summary.put("maxMicros", histogram.getMax() / 1000);
+                stages.put(STAGES[s].name().toLowerCase(), summary);
+            }
+            long errorCount = errors[t].sum();
+            if (errorCount > 0) {
+                stages.put("errors", errorCount);
+            }
+            if (!stages.isEmpty()) {
+                actions.put(TYPES[t].getWireName(), stages);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("actions", actions);
+        result.put("unknownActions", errors[TYPES.length].sum());
+
+        long broadcasts = fanOut.getCount();
+        Map<String, Object> fan = new LinkedHashMap<>();
+        fan.put("broadcasts", broadcasts);
+        fan.put("avgRecipients", broadcasts > 0 ? (double) fanOut.getSum() / broadcasts : 0);
+        fan.put("maxRecipients", fanOut.getMax());
+        result.put("fanOut", fan);
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Exported metric : exported) {
+            values.put(metric.name, metric.value.getAsLong());
+        }
+        result.put("values", values);
+        return result;
+    }
+}
@@ -0,0 +1,62 @@
+package com.navaplaystudios.server;
+
+/**
+ * Endpoint HTTP mínimo para que Prometheus lea las métricas: GET /metrics
+ * en el puerto uno.metricsPort (0 o negativo lo desactiva). Usa el
+ * HttpServer del JDK con un solo hilo; no toca los hilos del juego.
+ *
+ * No tiene autenticación, así que escucha solo en loopback salvo que
+ * uno.metricsBind diga otra cosa (p. ej. la IP de la red del scraper).
+ */
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class MetricsHttpServer {
+    private final Metrics metrics;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsHttpServer(Metrics metrics, String bind, int port) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread t = new Thread(runnable, "uno-metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        Log.info("Métricas Prometheus en http://{}:{}/metrics", server.getAddress().getHostString(),
+                server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
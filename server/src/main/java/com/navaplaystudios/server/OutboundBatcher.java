@@ -0,0 +1,153 @@
+package com.navaplaystudios.server;
+
+/**
+ * Agrupa los mensajes que produce una acción. Mientras un shard procesa
+ * una tarea, lo que se manda a cada sesión queda pendiente; al terminar la
+ * tarea (o al vencer la ventana configurada, en microsegundos) cada sesión
+ * recibe todo en un solo frame. Una jugada que antes eran card_played +
+ * game_state_update + game_ended (tres frames por jugador) sale como uno.
+ *
+ * Fuera de un shard (list_games, ping, errores de decodificación) no hay
+ * nada que agrupar y el envío es inmediato.
+ *
+ * Las sesiones cuyo socket no acepta más datos quedan en backlogged y un
+ * hilo aparte reintenta drenarlas cada drainIntervalMillis; ahí también se
+ * detecta a los clientes que siguen atrasados demasiado tiempo.
+ *
+ * Si una cola llena corta la cadena de estado de un juego, se avisa a
+ * onStateChainBroken (fuera del lock de la sesión) para que el servidor
+ * mande un estado completo.
+ */
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+public class OutboundBatcher {
+    private final GameExecutor executor;
+    private final ServerConfig config;
+    private final long windowNanos;
+    private final OutboundStats stats;
+    private final Batch[] batches; // uno por shard, solo lo toca el hilo del shard
+    private final Set<ClientSession> backlogged;
+    private final ScheduledExecutorService drainer;
+    private volatile BiConsumer<ClientSession, String> onStateChainBroken = (session, gameId) -> { };
+
+    private static class Batch {
+        final List<ClientSession> sessions = new ArrayList<>();
+        boolean flushScheduled;
+    }
+
+    public OutboundBatcher(GameExecutor executor, ServerConfig config, OutboundStats stats) {
+        this.executor = executor;
+        this.config = config;
+        this.windowNanos = Math.max(0, config.getBatchWindowMicros()) * 1000L;
+        this.stats = stats;
+        this.batches = new Batch[executor.getShardCount()];
+        for (int i = 0; i < batches.length; i++) {
+            batches[i] = new Batch();
+        }
+        this.backlogged = ConcurrentHashMap.newKeySet();
+        this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread t = new Thread(runnable, "uno-outbound-drain");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = config.getDrainIntervalMillis();
+        drainer.scheduleWithFixedDelay(this::drainBacklogged, interval, interval, TimeUnit.MILLISECONDS);
+        executor.setAfterTask(this::onTaskFinished);
+    }
+
+    public void send(ClientSession session, OutboundMessage message) {
+        int shard = executor.currentShard();
+        boolean first = session.addPending(message, config, stats);
+        for (String key = session.pollBrokenChain(); key != null; key = session.pollBrokenChain()) {
+            String gameId = OutboundMessage.gameIdOf(key);
+            if (gameId != null) {
+                stats.recordStateResync();
+                onStateChainBroken.accept(session, gameId);
+            }
+        }
+        if (shard < 0) {
+            flush(session);
+            return;
+        }
+
+        Batch batch = batches[shard];
+        if (first) {
+            batch.sessions.add(session);
+        }
+        if (windowNanos > 0 && !batch.flushScheduled) {
+            batch.flushScheduled = true;
+            executor.schedule(shard, () -> flush(shard), windowNanos);
+        }
+    }
+
+    /** Recibe la sesión y el gameId cuya cadena de estado se cortó. */
+    public void setOnStateChainBroken(BiConsumer<ClientSession, String> onStateChainBroken) {
+        this.onStateChainBroken = onStateChainBroken;
+    }
+
+    private void onTaskFinished(int shard) {
+        // Con ventana, el flush lo hace la tarea programada
+        if (windowNanos == 0) {
+            flush(shard);
+        }
+    }
+
+    private void flush(int shard) {
+        Batch batch = batches[shard];
+        batch.flushScheduled = false;
+        if (batch.sessions.isEmpty()) {
+            return;
+        }
+        for (ClientSession session : batch.sessions) {
+            flush(session);
+        }
+        batch.sessions.clear();
+    }
+
+    private void flush(ClientSession session) {
+        long waited = session.flushPending(config, stats);
+        if (waited >= 0) {
+            stats.recordFlush(waited);
+        } else if (backlogged.add(session)) {
+            stats.recordBacklogged();
+        }
+    }
+
+    private void drainBacklogged() {
+        for (ClientSession session : backlogged) {
+            try {
+                long waited = session.flushPending(config, stats);
+                if (waited >= 0) {
+                    backlogged.remove(session);
+                    stats.recordFlush(waited);
+                    // Pudo llegar algo entre el flush y el remove
+                    if (session.getPendingCount() > 0) {
+                        flush(session);
+                    }
+                }
+            } catch (Exception e) {
+                backlogged.remove(session);
+                Log.warn("Error drenando cola de salida: {}", e.getMessage());
+            }
+        }
+    }
+
+    public int getBackloggedCount() {
+        return backlogged.size();
+    }
+
+    public void shutdown() {
+        drainer.shutdownNow();
+    }
+
+    public OutboundStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,91 @@
+package com.navaplaystudios.server;
+
+/**
+ * Mensaje de salida. Un mensaje construido desde JSON se codifica como
+ * mucho una vez por formato (texto o binario) aunque vaya a muchos
+ * destinatarios; los frames de estado ya vienen codificados por jugador.
+ *
+ * Los mensajes críticos nunca se descartan de una cola llena. Los de
+ * estado de un juego (game_state_update y game_state_delta) comparten la
+ * supersedeKey "state:<gameId>" y forman una cadena en la cola de cada
+ * sesión: un estado completo reemplaza a toda la cadena encolada y un
+ * delta se agrega detrás, porque depende de lo anterior (ver ClientSession).
+ */
+import org.json.JSONObject;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+public class OutboundMessage {
+    // Sin estos el cliente no puede reconstruir la partida con un resync
+    private static final Set<String> CRITICAL_TYPES = Set.of(
+            "game_created", "player_joined", "game_started", "game_ended", "error", "lobby_snapshot");
+    private static final String STATE_KEY_PREFIX = "state:";
+
+    private final String type;
+    private final JSONObject json;
+    private final String supersedeKey;
+    private ByteBuffer text;
+    private ByteBuffer binary;
+
+    private OutboundMessage(String type, JSONObject json, String supersedeKey, ByteBuffer text, ByteBuffer binary) {
+        this.type = type;
+        this.json = json;
+        this.supersedeKey = supersedeKey;
+        this.text = text;
+        this.binary = binary;
+    }
+
+    public static OutboundMessage of(JSONObject message) {
+        return of(message, null);
+    }
+
+    public static OutboundMessage of(JSONObject message, String supersedeKey) {
+        return new OutboundMessage(message.optString("type"), message, supersedeKey, null, null);
+    }
+
+    /** Clave de la cadena de estado de un juego. */
+    public static String stateKey(String gameId) {
+        return STATE_KEY_PREFIX + gameId;
+    }
+
+    /** gameId de una clave de stateKey, o null si la clave es de otra cosa. */
+    public static String gameIdOf(String supersedeKey) {
+        return supersedeKey != null && supersedeKey.startsWith(STATE_KEY_PREFIX)
+                ? supersedeKey.substring(STATE_KEY_PREFIX.length()) : null;
+    }
+
+    public static OutboundMessage encoded(String type, ByteBuffer payload, boolean binaryFormat) {
+        return encoded(type, payload, binaryFormat, null);
+    }
+
+    public static OutboundMessage encoded(String type, ByteBuffer payload, boolean binaryFormat, String supersedeKey) {
+        return binaryFormat
+                ? new OutboundMessage(type, null, supersedeKey, null, payload)
+                : new OutboundMessage(type, null, supersedeKey, payload, null);
+    }
+
+    public String getType() { return type; }
+    public String getSupersedeKey() { return supersedeKey; }
+    public boolean isCritical() { return CRITICAL_TYPES.contains(type); }
+    /** Delta sobre el estado anterior de la cadena: solo sirve si el cliente recibió todo lo previo. */
+    public boolean isDelta() { return "game_state_delta".equals(type); }
+
+    public int size(boolean binaryFormat) {
+        return payload(binaryFormat).remaining();
+    }
+
+    /** Payload listo para enviar; cada llamada devuelve una vista independiente. */
+    public synchronized ByteBuffer payload(boolean binaryFormat) {
+        if (binaryFormat) {
+            if (binary == null) {
+                binary = BinaryCodec.encode(json);
+            }
+            return binary.duplicate();
+        }
+        if (text == null) {
+            text = ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return text.duplicate();
+    }
+}
@@ -0,0 +1,110 @@
+package com.navaplaystudios.server;
+
+/**
+ * Contadores de salida: mensajes lógicos, frames WebSocket realmente
+ * enviados, bytes de payload y cuánto esperó un mensaje en el batch antes
+ * de mandarse. messages / frames indica cuánto se está agrupando.
+ *
+ * Las colas acotadas cuentan cada caso por separado: estados reemplazados
+ * por uno más nuevo, mensajes descartados por cola llena, estados completos
+ * pedidos porque se descartó parte de una cadena de deltas, y desconexiones
+ * por cola llena de críticos o por pasar demasiado tiempo atrasado.
+ *
+ * Con permessage-deflate se cuentan los frames comprimidos, los bytes antes
+ * y después y el tiempo de CPU que costó (ver DeflateExtension).
+ */
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class OutboundStats {
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushWaitNanos = new LongAdder();
+    private final LongAccumulator maxFlushWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder stateResyncs = new LongAdder();
+    private final LongAdder overflowDisconnects = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+    private final LongAdder backlogged = new LongAdder();
+    private final LongAdder compressedFrames = new LongAdder();
+    private final LongAdder compressedBytesIn = new LongAdder();
+    private final LongAdder compressedBytesOut = new LongAdder();
+    private final LongAdder compressNanos = new LongAdder();
+
+    public void recordMessages(int count) {
+        messages.add(count);
+    }
+
+    public void recordFrame(int payloadBytes) {
+        frames.increment();
+        bytes.add(payloadBytes);
+    }
+
+    public void recordFlush(long waitedNanos) {
+        flushes.increment();
+        flushWaitNanos.add(waitedNanos);
+        maxFlushWaitNanos.accumulate(waitedNanos);
+    }
+
+    public void recordSuperseded() { superseded.increment(); }
+    public void recordDropped() { dropped.increment(); }
+    public void recordStateResync() { stateResyncs.increment(); }
+    public void recordOverflowDisconnect() { overflowDisconnects.increment(); }
+    public void recordSlowConsumerDisconnect() { slowConsumerDisconnects.increment(); }
+    public void recordBacklogged() { backlogged.increment(); }
+
+    public void recordCompressed(int bytesIn, int bytesOut, long nanos) {
+        compressedFrames.increment();
+        compressedBytesIn.add(bytesIn);
+        compressedBytesOut.add(bytesOut);
+        compressNanos.add(nanos);
+    }
+
+    public long getMessages() { return messages.sum(); }
+    public long getFrames() { return frames.sum(); }
+    public long getBytes() { return bytes.sum(); }
+    public long getSuperseded() { return superseded.sum(); }
+    public long getDropped() { return dropped.sum(); }
+    public long getStateResyncs() { return stateResyncs.sum(); }
+    public long getOverflowDisconnects() { return overflowDisconnects.sum(); }
+    public long getSlowConsumerDisconnects() { return slowConsumerDisconnects.sum(); }
+    public long getCompressedFrames() { return compressedFrames.sum(); }
+    public long getCompressedBytesIn() { return compressedBytesIn.sum(); }
+    public long getCompressedBytesOut() { return compressedBytesOut.sum(); }
+    public long getCompressNanos() { return compressNanos.sum(); }
+
+    public Map<String, Object> toMap() {
+        long flushCount = flushes.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("messages", messages.sum());
+        stats.put("frames", frames.sum());
+        stats.put("bytes", bytes.sum());
+        stats.put("flushes", flushCount);
+        stats.put("avgFlushWaitMicros", flushCount > 0 ? flushWaitNanos.sum() / flushCount / 1000 : 0);
+        stats.put("maxFlushWaitMicros", maxFlushWaitNanos.get() / 1000);
+        stats.put("superseded", superseded.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("stateResyncs", stateResyncs.sum());
+        stats.put("backlogged", backlogged.sum());
+        stats.put("overflowDisconnects", overflowDisconnects.sum());
+        stats.put("slowConsumerDisconnects", slowConsumerDisconnects.sum());
+
+        long compressed = compressedFrames.sum();
+        if (compressed > 0) {
+            long in = compressedBytesIn.sum();
+            Map<String, Object> deflate = new LinkedHashMap<>();
+            deflate.put("frames", compressed);
+            deflate.put("bytesIn", in);
+            deflate.put("bytesOut", compressedBytesOut.sum());
+            deflate.put("ratio", in > 0 ? (double) compressedBytesOut.sum() / in : 1.0);
+            deflate.put("avgMicros", compressNanos.sum() / compressed / 1000.0);
+            stats.put("deflate", deflate);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,226 @@
+package com.navaplaystudios.server;
+
+/**
+ * Límite de mensajes por conexión y por jugador con token buckets. Cada
+ * acción cae en una clase (acciones de juego, lecturas de estado, lecturas
+ * de lobby) y cada clase tiene su propio bucket, así un cliente que pide
+ * get_game_state en bucle no le quita cupo a sus jugadas.
+ *
+ * La clase se obtiene antes de decodificar (peekType sobre el texto u
+ * opcode binario), y el chequeo no crea objetos: los buckets de la conexión
+ * viven en su ClientSession y los del jugador se crean una vez al unirse.
+ *
+ * Los rechazos se cuentan por clase; la primera vez que una conexión es
+ * limitada en una ventana de reporte se registra en el log y la conexión
+ * aparece en getThrottled() (ping) hasta que pasa la ventana sin rechazos.
+ */
+import com.navaplaystudios.server.clases.GameAction;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RateLimiter {
+    public enum ActionClass {
+        GAME("game"), STATE_READ("stateRead"), LOBBY_READ("lobbyRead");
+
+        private final String key;
+
+        ActionClass(String key) {
+            this.key = key;
+        }
+
+        public String getKey() { return key; }
+    }
+
+    private static final ActionClass[] CLASSES = ActionClass.values();
+    private static final long MICROS_PER_TOKEN = 1_000_000;
+    private static final long REPORT_WINDOW_NANOS = 10_000_000_000L;
+
+    private final boolean enabled;
+    private final long[] ratePerSecond = new long[CLASSES.length];
+    private final long[] burst = new long[CLASSES.length];
+    private final Map<String, Buckets> playerBuckets;
+    private final Set<Buckets> throttled;
+    private final LongAdder[] rejected;
+
+    public RateLimiter(ServerConfig config) {
+        this.enabled = config.isRateLimitEnabled();
+        ratePerSecond[ActionClass.GAME.ordinal()] = config.getGameRatePerSecond();
+        burst[ActionClass.GAME.ordinal()] = config.getGameBurst();
+        ratePerSecond[ActionClass.STATE_READ.ordinal()] = config.getStateReadRatePerSecond();
+        burst[ActionClass.STATE_READ.ordinal()] = config.getStateReadBurst();
+        ratePerSecond[ActionClass.LOBBY_READ.ordinal()] = config.getLobbyReadRatePerSecond();
+        burst[ActionClass.LOBBY_READ.ordinal()] = config.getLobbyReadBurst();
+        this.playerBuckets = new ConcurrentHashMap<>();
+        this.throttled = ConcurrentHashMap.newKeySet();
+        this.rejected = new LongAdder[CLASSES.length];
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    public static ActionClass classify(GameAction.Type type) {
+        if (type == null) {
+            return ActionClass.GAME; // ilegible o desconocida: cuenta como la más cara
+        }
+        switch (type) {
+            case GET_GAME_STATE:
+            case RESYNC:
+            case ACK_STATE:
+            case PING:
+            case METRICS:
+                return ActionClass.STATE_READ;
+            case LIST_GAMES:
+            case SUBSCRIBE_LOBBY:
+            case UNSUBSCRIBE_LOBBY:
+                return ActionClass.LOBBY_READ;
+            default:
+                return ActionClass.GAME;
+        }
+    }
+
+    /** Buckets nuevos para una conexión (se guardan en su ClientSession). */
+    public Buckets newBuckets(String label) {
+        return new Buckets(label);
+    }
+
+    /**
+     * true si el mensaje entra en el cupo de la conexión y, si hay jugador
+     * asociado, también en el del jugador.
+     */
+    public boolean tryAcquire(Buckets connection, String playerId, GameAction.Type type) {
+        if (!enabled) {
+            return true;
+        }
+        int c = classify(type).ordinal();
+        long now = System.nanoTime();
+        boolean allowed = connection == null || connection.tryAcquire(c, now);
+        if (allowed && playerId != null) {
+            Buckets player = playerBuckets.get(playerId);
+            if (player != null && !player.tryAcquire(c, now)) {
+                // El cupo del jugador se comparte entre todas sus conexiones
+                allowed = false;
+            }
+        }
+        if (!allowed) {
+            rejected[c].increment();
+            if (connection != null) {
+                connection.recordRejected(c, now);
+            }
+        }
+        return allowed;
+    }
+
+    /** Al unirse a un juego: todas las conexiones del jugador comparten este cupo. */
+    public void registerPlayer(String playerId) {
+        if (enabled) {
+            playerBuckets.computeIfAbsent(playerId, id -> new Buckets("jugador " + id));
+        }
+    }
+
+    public void removePlayer(String playerId) {
+        playerBuckets.remove(playerId);
+    }
+
+    public void removeConnection(Buckets connection) {
+        throttled.remove(connection);
+    }
+
+    /** Un aviso rate_limited por segundo como mucho; el resto se descarta en silencio. */
+    public boolean shouldReply(Buckets connection) {
+        return connection != null && connection.shouldReply(System.nanoTime());
+    }
+
+    public int getThrottledCount() {
+        return throttled.size();
+    }
+
+    public long getRejected(ActionClass actionClass) {
+        return rejected[actionClass.ordinal()].sum();
+    }
+
+    /** Conexiones limitadas en la última ventana de reporte. */
+    public List<Map<String, Object>> getThrottled() {
+        long now = System.nanoTime();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Buckets buckets : throttled) {
+            if (now - buckets.lastRejectedAt > REPORT_WINDOW_NANOS) {
+                throttled.remove(buckets);
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("connection", buckets.label);
+            for (ActionClass actionClass : CLASSES) {
+                long count = buckets.rejected[actionClass.ordinal()];
+                if (count > 0) {
+                    entry.put(actionClass.getKey(), count);
+                }
+            }
+            result.add(entry);
+        }
+        return result;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        for (ActionClass actionClass : CLASSES) {
+            stats.put(actionClass.getKey() + "Rejected", getRejected(actionClass));
+        }
+        stats.put("throttled", getThrottled());
+        return stats;
+    }
+
+    /** Un bucket por clase de acción. Tokens en millonésimas para no usar double. */
+    public class Buckets {
+        private final String label;
+        private final long[] tokens = new long[CLASSES.length];
+        private final long[] lastRefill = new long[CLASSES.length];
+        private final long[] rejected = new long[CLASSES.length];
+        private long lastRejectedAt;
+        private long lastReplyAt;
+
+        Buckets(String label) {
+            this.label = label;
+            long now = System.nanoTime();
+            for (int c = 0; c < CLASSES.length; c++) {
+                tokens[c] = burst[c] * MICROS_PER_TOKEN;
+                lastRefill[c] = now;
+            }
+        }
+
+        synchronized boolean tryAcquire(int c, long now) {
+            long capacity = burst[c] * MICROS_PER_TOKEN;
+            long elapsed = now - lastRefill[c];
+            if (elapsed > 0) {
+                // rate tokens/s = rate/1000 millonésimas por nano; se acota para no desbordar
+                long refill = Math.min(elapsed, 10_000_000_000L) * ratePerSecond[c] / 1000;
+                tokens[c] = Math.min(capacity, tokens[c] + refill);
+                lastRefill[c] = now;
+            }
+            if (tokens[c] >= MICROS_PER_TOKEN) {
+                tokens[c] -= MICROS_PER_TOKEN;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void recordRejected(int c, long now) {
+            rejected[c]++;
+            boolean firstInWindow = now - lastRejectedAt > REPORT_WINDOW_NANOS;
+            lastRejectedAt = now;
+            if (firstInWindow && throttled.add(this)) {
+                Log.warn("Conexión limitada por exceso de mensajes: {} ({})", label, CLASSES[c].getKey());
+            }
+        }
+
+        // Responder a cada rechazo amplificaría el flood
+        synchronized boolean shouldReply(long now) {
+            if (now - lastReplyAt >= 1_000_000_000L) {
+                lastReplyAt = now;
+                return true;
+            }
+            return false;
+        }
+    }
+}
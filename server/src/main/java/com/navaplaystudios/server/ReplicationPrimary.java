@@ -0,0 +1,411 @@
+package com.navaplaystudios.server;
+
+/**
+ * Lado primario de la réplica en caliente: escucha en uno.replication.port
+ * y a cada standby le manda el log de acciones. Primero va lo que ya está
+ * en disco y después cada lote que escribe el hilo del log, sin esperar
+ * confirmaciones (pipeline). Los ACK solo sirven para medir el atraso.
+ *
+ * Escucha solo en loopback salvo que uno.replication.bind diga otra cosa:
+ * el log lleva los tokens de resume de todos los jugadores. El standby
+ * abre con HELLO y la clave (uno.replication.secret); si no coincide se
+ * corta sin mandar nada.
+ *
+ * Frames: [tipo u8][largo u32][datos]
+ * - HELLO (del standby): la clave en UTF-8;
+ * - REJECTED: la clave no coincide; el primario corta después;
+ * - DATA: long escritoEn + registros tal cual están en el log;
+ * - CAUGHT_UP: terminó la foto, lo que sigue es en vivo;
+ * - HEARTBEAT: long enviadoEn, cada HEARTBEAT_MILLIS sin datos;
+ * - ACK (del standby): long bytes aplicados + long atraso en ms.
+ *
+ * Si un standby se atrasa más de uno.replication.queueMB se le corta la
+ * conexión; al reconectar empieza de nuevo con la foto completa.
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ReplicationPrimary {
+    static final int DATA = 1;
+    static final int CAUGHT_UP = 2;
+    static final int HEARTBEAT = 3;
+    static final int ACK = 4;
+    static final int HELLO = 5;
+    static final int REJECTED = 6;
+    static final int MAX_SECRET_BYTES = 1024;
+    private static final int HELLO_TIMEOUT_MILLIS = 5000;
+    static final int HEARTBEAT_MILLIS = 500;
+    private static final int CHUNK_BYTES = 256 * 1024;
+
+    private final ActionLog log;
+    private final int port;
+    private final String bind;
+    private final byte[] secret;
+    private final long maxQueueBytes;
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationPrimary(ActionLog log, ServerConfig config) {
+        this.log = log;
+        this.port = config.getReplicationPort();
+        this.bind = config.getReplicationBind();
+        this.secret = config.getReplicationSecret().getBytes(StandardCharsets.UTF_8);
+        this.maxQueueBytes = config.getReplicationQueueMegabytes() * 1024L * 1024L;
+    }
+
+    public boolean isEnabled() {
+        return port > 0 && log.isEnabled();
+    }
+
+    public void start() {
+        if (port <= 0) {
+            return;
+        }
+        if (!log.isEnabled()) {
+            Log.warn("Réplica desactivada: necesita el log de acciones (uno.wal=1)");
+            return;
+        }
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(bind, port));
+        } catch (IOException e) {
+            Log.error("No se pudo abrir el puerto de réplica {}: {}", port, e.getMessage());
+            return;
+        }
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "uno-repl-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Log.info("Réplica: esperando standbys en {}:{}", bind, port);
+        if (secret.length == 0 && !serverSocket.getInetAddress().isLoopbackAddress()) {
+            Log.warn("Réplica abierta en {} sin uno.replication.secret: cualquiera que llegue al puerto lee el log", bind);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+                // cerrando
+            }
+        }
+        for (Replica replica : replicas) {
+            replica.close("primario detenido");
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                // El saludo en otro hilo: uno que no manda nada no frena al resto
+                Thread hello = new Thread(() -> admit(socket), "uno-repl-hello");
+                hello.setDaemon(true);
+                hello.start();
+            } catch (IOException e) {
+                if (running) {
+                    Log.warn("Error aceptando un standby: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void admit(Socket socket) {
+        String address = String.valueOf(socket.getRemoteSocketAddress());
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+            if (!checkHello(new DataInputStream(socket.getInputStream()))) {
+                Log.warn("Standby rechazado desde {}: clave de réplica incorrecta", address);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(REJECTED);
+                out.writeInt(0);
+                out.flush();
+                socket.close();
+                return;
+            }
+            socket.setSoTimeout(0);
+            if (!running) {
+                socket.close();
+                return;
+            }
+            Replica replica = new Replica(socket);
+            replicas.add(replica);
+            Log.info("Standby conectado: {}", replica.address);
+            log.addFollower(replica);
+        } catch (IOException e) {
+            Log.warn("Standby rechazado desde {}: {}", address, e.getMessage());
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // ya estaba cerrada
+            }
+        }
+    }
+
+    // Se lee el frame entero aunque la clave no coincida, y se compara en tiempo constante
+    private boolean checkHello(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        int length = in.readInt();
+        if (type != HELLO || length < 0 || length > MAX_SECRET_BYTES) {
+            return false;
+        }
+        byte[] received = new byte[length];
+        in.readFully(received);
+        return MessageDigest.isEqual(received, secret);
+    }
+
+    public int size() {
+        return replicas.size();
+    }
+
+    /** Mayor atraso en bytes entre los standbys (enviado o en cola y todavía sin ACK). */
+    public long getMaxLagBytes() {
+        long max = 0;
+        for (Replica replica : replicas) {
+            max = Math.max(max, replica.lagBytes());
+        }
+        return max;
+    }
+
+    public long getMaxLagMillis() {
+        long max = 0;
+        for (Replica replica : replicas) {
+            max = Math.max(max, replica.lagMillis);
+        }
+        return max;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        List<Map<String, Object>> standbys = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("address", replica.address);
+            entry.put("caughtUp", replica.caughtUp);
+            entry.put("sentBytes", replica.sentBytes.get());
+            entry.put("ackedBytes", replica.ackedBytes);
+            entry.put("queuedBytes", replica.queuedBytes.get());
+            entry.put("lagBytes", replica.lagBytes());
+            entry.put("lagMillis", replica.lagMillis);
+            standbys.add(entry);
+        }
+        stats.put("standbys", standbys);
+        return stats;
+    }
+
+    /** Un standby conectado: un hilo que manda y otro que lee los ACK. */
+    private final class Replica implements ActionLog.Follower {
+        private final Socket socket;
+        private final String address;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>(); // foto primero, después lotes
+        private final AtomicLong queuedBytes = new AtomicLong();
+        private final AtomicLong sentBytes = new AtomicLong();
+        private volatile long ackedBytes;
+        private volatile long lagMillis;
+        private volatile boolean caughtUp;
+        private volatile boolean closed;
+        private final Thread sender;
+
+        Replica(Socket socket) throws IOException {
+            this.socket = socket;
+            this.address = String.valueOf(socket.getRemoteSocketAddress());
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.sender = new Thread(this::sendLoop, "uno-repl-send-" + address);
+            sender.setDaemon(true);
+            sender.start();
+            Thread reader = new Thread(this::ackLoop, "uno-repl-ack-" + address);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        // ---- Hilo del log ----
+
+        @Override
+        public void start(List<FileChannel> segments, long[] ends) {
+            queue.add(new Snapshot(segments, ends));
+        }
+
+        @Override
+        public boolean batch(ByteBuffer records, long writtenAt) {
+            if (closed) {
+                return false;
+            }
+            if (queuedBytes.addAndGet(records.remaining()) > maxQueueBytes) {
+                close("se atrasó más de " + maxQueueBytes / (1024 * 1024) + " MB");
+                return false;
+            }
+            queue.add(new Batch(records, writtenAt));
+            return true;
+        }
+
+        // ---- Hilo de envío ----
+
+        private void sendLoop() {
+            try {
+                while (!closed) {
+                    Object next = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        out.writeByte(HEARTBEAT);
+                        out.writeInt(8);
+                        out.writeLong(System.currentTimeMillis());
+                    } else if (next instanceof Snapshot) {
+                        sendSnapshot((Snapshot) next);
+                    } else {
+                        Batch batch = (Batch) next;
+                        queuedBytes.addAndGet(-batch.records.remaining());
+                        sendData(batch.records, batch.writtenAt);
+                    }
+                    if (queue.isEmpty()) {
+                        out.flush(); // lo que se juntó sale en un solo envío
+                    }
+                }
+            } catch (IOException e) {
+                close(String.valueOf(e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void sendSnapshot(Snapshot snapshot) throws IOException {
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+            try {
+                for (int i = 0; i < snapshot.segments.size(); i++) {
+                    FileChannel segment = snapshot.segments.get(i);
+                    long position = ActionLog.SEGMENT_HEADER;
+                    while (position < snapshot.ends[i]) {
+                        chunk.clear().limit((int) Math.min(CHUNK_BYTES, snapshot.ends[i] - position));
+                        int read = segment.read(chunk, position);
+                        if (read < 0) {
+                            throw new IOException("Segmento más corto de lo esperado");
+                        }
+                        position += read;
+                        chunk.flip();
+                        sendData(chunk, System.currentTimeMillis());
+                    }
+                }
+            } finally {
+                for (FileChannel segment : snapshot.segments) {
+                    segment.close();
+                }
+            }
+            out.writeByte(CAUGHT_UP);
+            out.writeInt(0);
+            caughtUp = true;
+            Log.info("Standby {}: foto enviada ({} bytes), sigue en vivo", address, sentBytes.get());
+        }
+
+        private void sendData(ByteBuffer records, long writtenAt) throws IOException {
+            int length = records.remaining();
+            out.writeByte(DATA);
+            out.writeInt(8 + length);
+            out.writeLong(writtenAt);
+            if (records.hasArray()) {
+                out.write(records.array(), records.arrayOffset() + records.position(), length);
+            } else {
+                byte[] copy = new byte[length];
+                records.duplicate().get(copy);
+                out.write(copy);
+            }
+            sentBytes.addAndGet(length);
+        }
+
+        // ---- Hilo de ACK ----
+
+        private void ackLoop() {
+            try {
+                while (!closed) {
+                    int type = in.readUnsignedByte();
+                    int length = in.readInt();
+                    if (type != ACK || length != 16) {
+                        throw new IOException("Frame inesperado del standby: " + type);
+                    }
+                    ackedBytes = in.readLong();
+                    lagMillis = in.readLong();
+                }
+            } catch (EOFException e) {
+                close("cerró la conexión");
+            } catch (IOException e) {
+                close(String.valueOf(e.getMessage()));
+            }
+        }
+
+        long lagBytes() {
+            return Math.max(0, sentBytes.get() + queuedBytes.get() - ackedBytes);
+        }
+
+        void close(String reason) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            replicas.remove(this);
+            log.removeFollower(this);
+            sender.interrupt();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // ya estaba cerrado
+            }
+            for (Object pending : queue) {
+                if (pending instanceof Snapshot) {
+                    for (FileChannel segment : ((Snapshot) pending).segments) {
+                        try {
+                            segment.close();
+                        } catch (IOException ignored) {
+                            // se descarta
+                        }
+                    }
+                }
+            }
+            Log.warn("Standby desconectado: {} ({})", address, reason);
+        }
+    }
+
+    private static final class Snapshot {
+        final List<FileChannel> segments;
+        final long[] ends;
+
+        Snapshot(List<FileChannel> segments, long[] ends) {
+            this.segments = segments;
+            this.ends = ends;
+        }
+    }
+
+    private static final class Batch {
+        final ByteBuffer records;
+        final long writtenAt;
+
+        Batch(ByteBuffer records, long writtenAt) {
+            this.records = records;
+            this.writtenAt = writtenAt;
+        }
+    }
+}
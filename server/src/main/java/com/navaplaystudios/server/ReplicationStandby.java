@@ -0,0 +1,232 @@
+package com.navaplaystudios.server;
+
+/**
+ * Standby de la réplica en caliente (uno.mode=standby). Se conecta al
+ * primario (uno.replication.primary), recibe su log de acciones y lo
+ * aplica con las mismas reglas que la recuperación al arrancar, así que
+ * su GameManager va al día. También lo copia en su propio log, que se
+ * vacía al empezar cada conexión porque el primario manda la foto
+ * completa. Cada conexión abre con HELLO y uno.replication.secret, que
+ * tiene que coincidir con la del primario.
+ *
+ * Mientras es standby no abre el puerto WebSocket. Si pasa
+ * uno.replication.failoverMillis sin noticias del primario (sin datos ni
+ * heartbeats, y sin poder reconectar) se promueve: arma plazos y
+ * reservas como tras una caída y empieza a atender en uno.port. El
+ * primario viejo no se entera; al volver tiene que arrancar como standby
+ * del nuevo.
+ *
+ * El standby tiene su propio log: en la misma máquina que el primario
+ * necesita otro uno.port (y por lo tanto otro wal-<puerto>) o un
+ * uno.wal.dir explícito; si comparte directorio con el primario no
+ * arranca. Por ejemplo:
+ *
+ *   -Duno.mode=standby -Duno.port=8081 -Duno.wal.dir=/var/lib/uno/standby
+ *   -Duno.replication.primary=10.0.0.5:7070 -Duno.replication.secret=...
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+public class ReplicationStandby {
+    private static final long RETRY_MILLIS = 250;
+    private static final long REPORT_MILLIS = 30_000;
+
+    private final ServerConfig config;
+    private final String host;
+    private final int port;
+    private final long failoverMillis;
+    private final CRC32C check = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(512 * 1024); // registros a medio llegar
+    private UnoWebSocketServer server;
+    private long lastHeard; // último frame del primario; 0 = todavía ninguno
+    private long appliedBytes;
+    private long lagMillis;
+    private long lastReport;
+
+    public ReplicationStandby(ServerConfig config) {
+        this.config = config;
+        String primary = config.getReplicationPrimary();
+        // Sin valor por defecto: cualquiera podría chocar con otro servicio (p. ej. métricas en 9090)
+        if (primary.isEmpty()) {
+            throw new IllegalArgumentException("uno.mode=standby necesita uno.replication.primary (host:puerto del primario)");
+        }
+        int colon = primary.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("uno.replication.primary debe ser host:puerto: " + primary);
+        }
+        this.host = primary.substring(0, colon);
+        this.port = Integer.parseInt(primary.substring(colon + 1));
+        this.failoverMillis = config.getFailoverMillis();
+    }
+
+    /** Sigue al primario mientras viva; al perderlo devuelve este servidor ya promovido. */
+    public UnoWebSocketServer follow() {
+        while (true) {
+            Socket socket = connect(lastHeard == 0 ? Long.MAX_VALUE : lastHeard + failoverMillis);
+            if (socket == null) {
+                Log.warn("Primario sin noticias hace {} ms: el standby pasa a primario",
+                        System.currentTimeMillis() - lastHeard);
+                server.promote();
+                return server;
+            }
+            reset();
+            try {
+                stream(socket);
+            } catch (EOFException e) {
+                Log.warn("El primario cerró la conexión");
+            } catch (IOException e) {
+                Log.warn("Conexión con el primario perdida: {}", e.getMessage());
+            } catch (IllegalStateException e) {
+                server.discard(); // sin hilos vivos, el proceso termina con el error
+                throw e;
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // ya estaba cerrada
+                }
+            }
+        }
+    }
+
+    private Socket connect(long deadline) {
+        boolean warned = false;
+        while (System.currentTimeMillis() < deadline) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), (int) Math.min(1000, failoverMillis));
+                socket.setTcpNoDelay(true);
+                return socket;
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // no llegó a conectar
+                }
+                if (!warned) {
+                    Log.info("Esperando al primario {}:{} ({})", host, port, e.getMessage());
+                    warned = true;
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Cada conexión empieza de cero: el primario manda todo su log
+    private void reset() {
+        if (server != null) {
+            server.discard();
+        }
+        try {
+            ActionLog.clear(config); // un error acá es de configuración (p. ej. el directorio del primario)
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo vaciar el log del standby", e);
+        }
+        server = new UnoWebSocketServer(config);
+        pending.clear();
+        appliedBytes = 0;
+        lastHeard = System.currentTimeMillis();
+    }
+
+    private void stream(Socket socket) throws IOException {
+        socket.setSoTimeout((int) failoverMillis);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        byte[] secret = config.getReplicationSecret().getBytes(StandardCharsets.UTF_8);
+        out.writeByte(ReplicationPrimary.HELLO);
+        out.writeInt(secret.length);
+        out.write(secret);
+        out.flush();
+        Log.info("Siguiendo al primario {}:{}", host, port);
+        while (true) {
+            int type = in.readUnsignedByte();
+            int length = in.readInt();
+            long now = System.currentTimeMillis();
+            lastHeard = now;
+            switch (type) {
+                case ReplicationPrimary.DATA:
+                    long writtenAt = in.readLong();
+                    readRecords(in, length - 8);
+                    lagMillis = Math.max(0, now - writtenAt);
+                    break;
+                case ReplicationPrimary.CAUGHT_UP:
+                    Log.info("Standby al día: {} partidas, {} bytes", server.getGameCount(), appliedBytes);
+                    break;
+                case ReplicationPrimary.HEARTBEAT:
+                    in.readLong();
+                    lagMillis = 0; // sin nada pendiente
+                    break;
+                case ReplicationPrimary.REJECTED:
+                    // Error de configuración: reintentar no lo arregla, y promoverse tampoco
+                    throw new IllegalStateException("El primario rechazó uno.replication.secret");
+                default:
+                    throw new IOException("Frame desconocido del primario: " + type);
+            }
+            // ACK cuando no queda nada leído por aplicar: uno por tanda, no por frame
+            if (in.available() == 0) {
+                out.writeByte(ReplicationPrimary.ACK);
+                out.writeInt(16);
+                out.writeLong(appliedBytes);
+                out.writeLong(lagMillis);
+                out.flush();
+            }
+            if (now - lastReport >= REPORT_MILLIS) {
+                lastReport = now;
+                Log.info("Standby: {} partidas, {} bytes aplicados, atraso {} ms",
+                        server.getGameCount(), appliedBytes, lagMillis);
+            }
+        }
+    }
+
+    private void readRecords(DataInputStream in, int length) throws IOException {
+        if (pending.remaining() < length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + length));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        in.readFully(pending.array(), pending.arrayOffset() + pending.position(), length);
+        pending.position(pending.position() + length);
+
+        pending.flip();
+        ByteBuffer record;
+        while ((record = ActionLog.nextRecord(pending, check)) != null) {
+            server.applyReplicated(record, ActionLog.decodeRecord(record));
+            appliedBytes += record.remaining();
+        }
+        pending.compact();
+    }
+
+    static void run(ServerConfig config) {
+        UnoWebSocketServer server = new ReplicationStandby(config).follow();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Log.info("Deteniendo servidor WebSocket...");
+            try {
+                server.stop();
+            } catch (Exception e) {
+                Log.error("Error deteniendo servidor: {}", e.getMessage());
+            }
+        }));
+        try {
+            Thread.currentThread().join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.navaplaystudios.server;
+
+/**
+ * Asientos reservados para reanudar sesiones. Al unirse a un juego el
+ * jugador recibe un resumeToken; si su conexión se cae, el asiento queda
+ * desconectado pero reservado durante graceMillis. Con la acción resume y
+ * ese token una conexión nueva vuelve al mismo asiento sin rejoin, y solo
+ * recibe lo que se perdió desde la última versión confirmada.
+ *
+ * Los cambios de estado de una reserva (detach, attach, expirar) los hace
+ * el shard del juego, así no compiten con las acciones del jugador. Este
+ * objeto solo guarda los datos y avisa cuando vence un plazo: cada reserva
+ * es su propio Timeout en la rueda, programado al desconectarse y
+ * cancelado al reanudar.
+ *
+ * El token empieza con el gameId ("gameId.aleatorio") para que un gateway
+ * pueda mandar el resume al nodo de la partida sin guardar nada.
+ */
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class SeatReservations {
+    public class Reservation extends TimingWheel.Timeout {
+        final String token;
+        final String playerId;
+        final String gameId;
+        volatile long expiresAt; // 0 = conectado
+        volatile boolean expired; // lo marca la rueda al vencer
+
+        Reservation(String token, String playerId, String gameId) {
+            this.token = token;
+            this.playerId = playerId;
+            this.gameId = gameId;
+        }
+
+        public String getToken() { return token; }
+        public String getPlayerId() { return playerId; }
+        public String getGameId() { return gameId; }
+        public boolean isDetached() { return expiresAt != 0; }
+
+        @Override
+        protected void expire() {
+            expired = true;
+            onExpired.accept(this);
+        }
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final long graceMillis;
+    private final Map<String, Reservation> byToken;
+    private final Map<String, Reservation> byPlayer;
+    private final TimingWheel wheel;
+    private volatile Consumer<Reservation> onExpired = reservation -> { };
+
+    public SeatReservations(long graceMillis, TimingWheel wheel) {
+        this.graceMillis = graceMillis;
+        this.byToken = new ConcurrentHashMap<>();
+        this.byPlayer = new ConcurrentHashMap<>();
+        this.wheel = wheel;
+    }
+
+    public boolean isEnabled() {
+        return graceMillis > 0;
+    }
+
+    public long getGraceMillis() {
+        return graceMillis;
+    }
+
+    /** Qué hacer con una reserva vencida; se llama desde el hilo de la rueda. */
+    public void setOnExpired(Consumer<Reservation> onExpired) {
+        this.onExpired = onExpired;
+    }
+
+    /** Nueva reserva al unirse; invalida el token anterior del jugador. */
+    public Reservation issue(String playerId, String gameId) {
+        byte[] bytes = new byte[18];
+        RANDOM.nextBytes(bytes);
+        String token = gameId + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return restore(playerId, gameId, token);
+    }
+
+    /** Reserva con un token ya emitido (recuperación desde el log). */
+    public Reservation restore(String playerId, String gameId, String token) {
+        Reservation reservation = new Reservation(token, playerId, gameId);
+        Reservation previous = byPlayer.put(playerId, reservation);
+        if (previous != null) {
+            byToken.remove(previous.token);
+            wheel.cancel(previous);
+        }
+        byToken.put(token, reservation);
+        return reservation;
+    }
+
+    /** gameId al que pertenece un token, o null si no tiene el formato. */
+    public static String gameIdOf(String token) {
+        int dot = token != null ? token.lastIndexOf('.') : -1;
+        return dot > 0 ? token.substring(0, dot) : null;
+    }
+
+    public Reservation get(String token) {
+        return token != null ? byToken.get(token) : null;
+    }
+
+    public Reservation getByPlayer(String playerId) {
+        return byPlayer.get(playerId);
+    }
+
+    /** El jugador perdió su conexión: el asiento se guarda hasta now + gracia. */
+    public boolean detach(String playerId) {
+        Reservation reservation = byPlayer.get(playerId);
+        if (reservation == null || graceMillis <= 0) {
+            return false;
+        }
+        reservation.expiresAt = System.currentTimeMillis() + graceMillis;
+        reservation.expired = false;
+        wheel.schedule(reservation, graceMillis * 1_000_000L);
+        return true;
+    }
+
+    public void attach(Reservation reservation) {
+        reservation.expiresAt = 0;
+        reservation.expired = false;
+        wheel.cancel(reservation);
+    }
+
+    public boolean isExpired(Reservation reservation) {
+        return reservation.isDetached() && reservation.expired;
+    }
+
+    public void remove(String playerId) {
+        Reservation reservation = byPlayer.remove(playerId);
+        if (reservation != null) {
+            byToken.remove(reservation.token);
+            wheel.cancel(reservation);
+        }
+    }
+
+    public int size() {
+        return byPlayer.size();
+    }
+
+    public int getDetachedCount() {
+        int detached = 0;
+        for (Reservation reservation : byPlayer.values()) {
+            if (reservation.isDetached()) {
+                detached++;
+            }
+        }
+        return detached;
+    }
+}
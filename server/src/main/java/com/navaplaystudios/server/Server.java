@@ -1,92 +1,134 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- */
-
 package com.navaplaystudios.server;
 
-import java.io.*;
-import java.net.*;
-import java.util.function.Consumer;
-import org.json.*;
-
 /**
+ * Endpoint TCP sin WebSocket para bots y herramientas internas
+ * (uno.tcp.port). Habla el mismo protocolo de acciones que el WebSocket,
+ * con frames de largo prefijado (ver TcpConnection), y lo atiende el
+ * mismo UnoWebSocketServer: mismo GameManager, shards, cupos y heartbeats.
  *
- * @author ferga
+ * Un hilo de plataforma acepta; cada conexión lee en un hilo virtual, así
+ * que decenas de miles de conexiones ociosas no ocupan hilos del sistema.
+ * El heartbeat empieza con la sesión, en el primer frame; hasta entonces
+ * corre un plazo en la rueda (uno.tcp.handshakeSeconds) para que una
+ * conexión que nunca manda nada no retenga su socket para siempre.
  */
-class ConexionCliente extends Thread{
-    private ObjectOutputStream salida;
-    private ObjectInputStream entrada;
-    private Socket cliente;
-    private String nombreJugador;
-    private Server servidor;
-    private boolean activo = true;
-    
-    public ConexionCliente(Socket cliente, String nombre, Server servidor) throws IOException {
-        this.cliente = cliente;
-        this.nombreJugador = nombre;
-        this.servidor = servidor;
-        this.salida = new ObjectOutputStream(this.cliente.getOutputStream());
-        this.entrada = new ObjectInputStream(this.cliente.getInputStream());
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.java_websocket.framing.CloseFrame;
+
+public class Server {
+    private static final int BACKLOG = 4096;
+
+    private final UnoWebSocketServer handler;
+    private final TimingWheel wheel;
+    private final int port;
+    private final int maxFrameBytes;
+    private final long handshakeNanos;
+    private final Set<TcpConnection> connections = ConcurrentHashMap.newKeySet();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder handshakeTimeouts = new LongAdder();
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    public Server(UnoWebSocketServer handler, TimingWheel wheel, ServerConfig config) {
+        this.handler = handler;
+        this.wheel = wheel;
+        this.port = config.getTcpPort();
+        this.maxFrameBytes = config.getTcpMaxFrameBytes();
+        this.handshakeNanos = config.getTcpHandshakeSeconds() * 1_000_000_000L;
     }
-    
-    @Override
-    public void run() {
+
+    public boolean isEnabled() {
+        return port > 0;
+    }
+
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
         try {
-            while (activo) {
-                Object mensaje = entrada.readObject();
-//                servidor.procesarMensaje(mensaje.toString(), this);
-            }
-        } catch (IOException | ClassNotFoundException e) {
-//            servidor.notificarEvento("Cliente " + nombreJugador + " desconectado");
-        } finally {
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        } catch (IOException e) {
+            Log.error("No se pudo abrir el puerto TCP {}: {}", port, e.getMessage());
+            return;
+        }
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "uno-tcp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Log.info("Endpoint TCP en el puerto {}", port);
+    }
+
+    private void acceptLoop() {
+        Thread.Builder readers = Thread.ofVirtual().name("uno-tcp-", 0);
+        while (running) {
             try {
-                cerrarConexion();
+                SocketChannel channel = serverChannel.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true); // conexiones que nunca mandan nada
+                TcpConnection connection = new TcpConnection(channel, this, wheel, maxFrameBytes);
+                connections.add(connection);
+                accepted.increment();
+                connection.armHandshake(handshakeNanos);
+                readers.start(() -> connection.readLoop(handler));
+            } catch (ClosedChannelException e) {
+                return;
             } catch (IOException e) {
-                e.printStackTrace();
+                // Sin descriptores libres: esperar un poco en vez de girar
+                Log.warn("Error aceptando conexión TCP: {}", e.getMessage());
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
             }
         }
     }
-    
-    public void cerrarConexion() throws IOException {
-        activo = false;
-        if (salida != null) {
-            salida.close();
-        }
-        if (entrada != null) {
-            entrada.close();
-        }
-        if (cliente != null) {
-            cliente.close();
-        }
-    }
 
-    public void enviarDatos(String mensaje) throws IOException {
-        if (salida != null && !cliente.isClosed()) {
-            salida.writeObject(mensaje);
-            salida.flush();
-        }
+    void removed(TcpConnection connection) {
+        connections.remove(connection);
     }
 
-    public String getNombreJugador() {
-        return nombreJugador;
+    void handshakeTimedOut() {
+        handshakeTimeouts.increment();
     }
-}
 
-public class Server {
+    public void stop() {
+        running = false;
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException ignored) {
+                // cerrando
+            }
+        }
+        for (TcpConnection connection : connections) {
+            connection.closeConnection(CloseFrame.GOING_AWAY, "Servidor detenido");
+        }
+    }
 
-    private ServerSocket servidor;
-    private Socket socket1, socket2, socket3;
-    private ConexionCliente cliente1, cliente2;
-    private Consumer<String> callbackMensaje;
-    private boolean juegoActivo = false;
-    private boolean servidorActivo = false;
-    private boolean esperandoJugada = false;
-    
-    public static void main(String[] args) {
-        System.out.println("Hello World!");
+    public int size() {
+        return connections.size();
     }
-    
-    public Server(Consumer<String> callbackMensaje) {
-        this.callbackMensaje = callbackMensaje;
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("port", port);
+        stats.put("connections", size());
+        stats.put("accepted", accepted.sum());
+        stats.put("handshakeTimeouts", handshakeTimeouts.sum());
+        return stats;
     }
 }
@@ -0,0 +1,284 @@
+package com.navaplaystudios.server;
+
+/**
+ * Configuración del servidor. Los valores se leen de propiedades del
+ * sistema (-Duno.xxx=valor) y todos tienen un valor por defecto razonable.
+ */
+import java.util.ArrayList;
+import java.util.List;
+
+public class ServerConfig {
+    // Una partida vacía vive al menos esto más que las reservas de asiento, para que un resume no llegue tarde
+    static final int EMPTY_TTL_MARGIN_SECONDS = 30;
+
+    private int port = 8080;
+    private int shardCount;
+    private int batchWindowMicros; // 0 = un frame por acción, sin esperar
+    // Cola de salida por conexión: tope duro por mensajes y bytes
+    private int outboundQueueMessages = 256;
+    private int outboundQueueBytes = 256 * 1024;
+    // Lo que se deja en el buffer de Java-WebSocket antes de retener en la cola
+    private int socketBufferBytes = 64 * 1024;
+    // Atrasado por encima de esta marca más de slowConsumerMillis = desconexión
+    private int outboundHighWaterBytes = 128 * 1024;
+    private int slowConsumerMillis = 10_000;
+    private int drainIntervalMillis = 20;
+    private int lobbyTickMillis = 200; // cada cuánto se manda el lobby_delta acumulado
+    private int metricsPort = 9090; // GET /metrics para Prometheus; <= 0 lo desactiva
+    private String metricsBind = "127.0.0.1"; // interfaz del puerto de métricas; "0.0.0.0" = todas
+    // Token buckets por conexión y por jugador: mensajes por segundo y ráfaga
+    private boolean rateLimitEnabled = true;
+    private int gameRatePerSecond = 20;
+    private int gameBurst = 40;
+    private int stateReadRatePerSecond = 10;
+    private int stateReadBurst = 20;
+    private int lobbyReadRatePerSecond = 2;
+    private int lobbyReadBurst = 10;
+    // permessage-deflate para clientes que lo ofrecen
+    private boolean deflateEnabled = true;
+    private int deflateThreshold = 256; // frames más chicos salen sin comprimir
+    private int deflateLevel = 1; // 1-9: nivel de zlib
+    private boolean deflateContextTakeover; // mejor ratio, pero un Deflater por conexión
+    private int resumeGraceSeconds = 60; // asiento reservado tras perder la conexión; 0 = sin resume
+    // Rueda de timeouts: heartbeats y plazos
+    private int wheelTickMillis = 100; // precisión de todos los plazos
+    private int wheelSize = 512; // cubetas; una vuelta = wheelSize * tick
+    private int heartbeatSeconds = 30; // inactividad antes de mandar un ping; 0 = sin heartbeat
+    private int pongTimeoutSeconds = 10; // espera del pong antes de cerrar
+    private int reapBatch = 500; // cierres por tick como mucho
+    // Plazo para jugar o robar; 0 = sin plazos. Apagado por defecto: el cliente React
+    // todavía no muestra el robo automático ni el turno perdido
+    private int turnSeconds;
+    private int colorChoiceSeconds = 15; // plazo para elegir color tras un comodín
+    // Cuándo se borran las partidas (segundos sin acciones de jugadores)
+    private int finishedTtlSeconds = 300;
+    private int emptyTtlSeconds = 120; // nadie conectado; nunca menos que resumeGraceSeconds + EMPTY_TTL_MARGIN_SECONDS
+    private int abandonedTtlSeconds = 1800;
+    // Modo gateway: nodos de juego (ws://host:puerto) entre los que se reparten las partidas
+    private boolean gatewayMode;
+    private List<String> gatewayNodes = List.of();
+    // Log de acciones para recuperar partidas tras una caída
+    private boolean walEnabled = true;
+    private String walDir = ""; // vacío = wal-<uno.port>: cada proceso de la máquina usa el suyo
+    private int walFsyncMillis = 50; // 0 = fsync por lote; < 0 = nunca
+    private int walSegmentMegabytes = 64;
+    // Réplica en caliente: el primario manda su log al standby por TCP
+    private int replicationPort; // 0 = sin réplicas
+    private String replicationBind = "127.0.0.1"; // interfaz del puerto de réplica; "0.0.0.0" = todas
+    private String replicationSecret = ""; // lo manda el standby al conectar; vacío = sin clave
+    private boolean standbyMode;
+    private String replicationPrimary = ""; // host:puerto del primario; obligatorio en modo standby
+    private int failoverMillis = 3000; // sin noticias del primario antes de promover al standby
+    private int replicationQueueMegabytes = 64; // atraso de una réplica antes de cortarla (vuelve a empezar)
+    private int tcpPort; // 0 = sin endpoint TCP
+    private int tcpMaxFrameBytes = 1024 * 1024; // frames más grandes cierran la conexión TCP
+    private int tcpHandshakeSeconds = 30; // conexión TCP sin primer frame en este plazo = cerrada; 0 = sin plazo
+
+    public ServerConfig() {
+        this.shardCount = Runtime.getRuntime().availableProcessors();
+    }
+
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.setPort(intProperty("uno.port", config.port));
+        config.setShardCount(intProperty("uno.shards", config.shardCount));
+        config.setBatchWindowMicros(intProperty("uno.batchWindowMicros", config.batchWindowMicros));
+        config.setOutboundQueueMessages(intProperty("uno.outQueueMessages", config.outboundQueueMessages));
+        config.setOutboundQueueBytes(intProperty("uno.outQueueBytes", config.outboundQueueBytes));
+        config.setSocketBufferBytes(intProperty("uno.socketBufferBytes", config.socketBufferBytes));
+        config.setOutboundHighWaterBytes(intProperty("uno.outHighWaterBytes", config.outboundHighWaterBytes));
+        config.setSlowConsumerMillis(intProperty("uno.slowConsumerMillis", config.slowConsumerMillis));
+        config.setDrainIntervalMillis(intProperty("uno.drainIntervalMillis", config.drainIntervalMillis));
+        config.setLobbyTickMillis(intProperty("uno.lobbyTickMillis", config.lobbyTickMillis));
+        config.setMetricsPort(intProperty("uno.metricsPort", config.metricsPort));
+        config.setMetricsBind(System.getProperty("uno.metricsBind", config.metricsBind).trim());
+        config.setRateLimitEnabled(intProperty("uno.rateLimit", 1) != 0);
+        config.setGameRatePerSecond(intProperty("uno.rate.game", config.gameRatePerSecond));
+        config.setGameBurst(intProperty("uno.rate.gameBurst", config.gameBurst));
+        config.setStateReadRatePerSecond(intProperty("uno.rate.stateRead", config.stateReadRatePerSecond));
+        config.setStateReadBurst(intProperty("uno.rate.stateReadBurst", config.stateReadBurst));
+        config.setLobbyReadRatePerSecond(intProperty("uno.rate.lobbyRead", config.lobbyReadRatePerSecond));
+        config.setLobbyReadBurst(intProperty("uno.rate.lobbyReadBurst", config.lobbyReadBurst));
+        config.setDeflateEnabled(intProperty("uno.deflate", 1) != 0);
+        config.setDeflateThreshold(intProperty("uno.deflate.threshold", config.deflateThreshold));
+        config.setDeflateLevel(intProperty("uno.deflate.level", config.deflateLevel));
+        config.setDeflateContextTakeover(intProperty("uno.deflate.contextTakeover", 0) != 0);
+        config.setResumeGraceSeconds(intProperty("uno.resumeGraceSeconds", config.resumeGraceSeconds));
+        config.setWheelTickMillis(intProperty("uno.wheelTickMillis", config.wheelTickMillis));
+        config.setWheelSize(intProperty("uno.wheelSize", config.wheelSize));
+        config.setHeartbeatSeconds(intProperty("uno.heartbeatSeconds", config.heartbeatSeconds));
+        config.setPongTimeoutSeconds(intProperty("uno.pongTimeoutSeconds", config.pongTimeoutSeconds));
+        config.setReapBatch(intProperty("uno.reapBatch", config.reapBatch));
+        config.setTurnSeconds(intProperty("uno.turnSeconds", config.turnSeconds));
+        config.setColorChoiceSeconds(intProperty("uno.colorChoiceSeconds", config.colorChoiceSeconds));
+        config.setFinishedTtlSeconds(intProperty("uno.ttl.finished", config.finishedTtlSeconds));
+        config.setEmptyTtlSeconds(intProperty("uno.ttl.empty", config.emptyTtlSeconds));
+        config.setAbandonedTtlSeconds(intProperty("uno.ttl.abandoned", config.abandonedTtlSeconds));
+        if (config.getEmptyTtlSeconds() != config.emptyTtlSeconds) {
+            Log.warn("uno.ttl.empty={} es menor que uno.resumeGraceSeconds + {}: se usa {}", config.emptyTtlSeconds,
+                    EMPTY_TTL_MARGIN_SECONDS, config.getEmptyTtlSeconds());
+        }
+        String mode = System.getProperty("uno.mode", "").trim();
+        config.setGatewayMode("gateway".equalsIgnoreCase(mode));
+        config.setStandbyMode("standby".equalsIgnoreCase(mode));
+        config.setGatewayNodes(System.getProperty("uno.gateway.nodes", ""));
+        config.setWalEnabled(intProperty("uno.wal", 1) != 0);
+        config.setWalDir(System.getProperty("uno.wal.dir", config.walDir));
+        config.setWalFsyncMillis(intProperty("uno.wal.fsyncMillis", config.walFsyncMillis));
+        config.setWalSegmentMegabytes(intProperty("uno.wal.segmentMB", config.walSegmentMegabytes));
+        config.setReplicationPort(intProperty("uno.replication.port", config.replicationPort));
+        config.setReplicationBind(System.getProperty("uno.replication.bind", config.replicationBind).trim());
+        config.setReplicationSecret(System.getProperty("uno.replication.secret", config.replicationSecret));
+        config.setReplicationPrimary(System.getProperty("uno.replication.primary", config.replicationPrimary).trim());
+        config.setFailoverMillis(intProperty("uno.replication.failoverMillis", config.failoverMillis));
+        config.setReplicationQueueMegabytes(intProperty("uno.replication.queueMB", config.replicationQueueMegabytes));
+        config.setTcpPort(intProperty("uno.tcp.port", config.tcpPort));
+        config.setTcpMaxFrameBytes(intProperty("uno.tcp.maxFrameBytes", config.tcpMaxFrameBytes));
+        config.setTcpHandshakeSeconds(intProperty("uno.tcp.handshakeSeconds", config.tcpHandshakeSeconds));
+        return config;
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            Log.warn("Valor inválido para {}: {} (se usa {})", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public int getPort() { return port; }
+    public ServerConfig setPort(int port) { this.port = port; return this; }
+    public int getShardCount() { return shardCount; }
+    public ServerConfig setShardCount(int shardCount) { this.shardCount = Math.max(1, shardCount); return this; }
+    public int getBatchWindowMicros() { return batchWindowMicros; }
+    public ServerConfig setBatchWindowMicros(int batchWindowMicros) { this.batchWindowMicros = Math.max(0, batchWindowMicros); return this; }
+    public int getOutboundQueueMessages() { return outboundQueueMessages; }
+    public ServerConfig setOutboundQueueMessages(int outboundQueueMessages) { this.outboundQueueMessages = Math.max(1, outboundQueueMessages); return this; }
+    public int getOutboundQueueBytes() { return outboundQueueBytes; }
+    public ServerConfig setOutboundQueueBytes(int outboundQueueBytes) { this.outboundQueueBytes = Math.max(1024, outboundQueueBytes); return this; }
+    public int getSocketBufferBytes() { return socketBufferBytes; }
+    public ServerConfig setSocketBufferBytes(int socketBufferBytes) { this.socketBufferBytes = Math.max(1, socketBufferBytes); return this; }
+    public int getOutboundHighWaterBytes() { return outboundHighWaterBytes; }
+    public ServerConfig setOutboundHighWaterBytes(int outboundHighWaterBytes) { this.outboundHighWaterBytes = Math.max(0, outboundHighWaterBytes); return this; }
+    public int getSlowConsumerMillis() { return slowConsumerMillis; }
+    public ServerConfig setSlowConsumerMillis(int slowConsumerMillis) { this.slowConsumerMillis = Math.max(0, slowConsumerMillis); return this; }
+    public int getDrainIntervalMillis() { return drainIntervalMillis; }
+    public ServerConfig setDrainIntervalMillis(int drainIntervalMillis) { this.drainIntervalMillis = Math.max(1, drainIntervalMillis); return this; }
+    public int getLobbyTickMillis() { return lobbyTickMillis; }
+    public ServerConfig setLobbyTickMillis(int lobbyTickMillis) { this.lobbyTickMillis = Math.max(1, lobbyTickMillis); return this; }
+    public int getMetricsPort() { return metricsPort; }
+    public ServerConfig setMetricsPort(int metricsPort) { this.metricsPort = metricsPort; return this; }
+    public String getMetricsBind() { return metricsBind; }
+    public ServerConfig setMetricsBind(String metricsBind) { this.metricsBind = metricsBind; return this; }
+    public boolean isRateLimitEnabled() { return rateLimitEnabled; }
+    public ServerConfig setRateLimitEnabled(boolean rateLimitEnabled) { this.rateLimitEnabled = rateLimitEnabled; return this; }
+    public int getGameRatePerSecond() { return gameRatePerSecond; }
+    public ServerConfig setGameRatePerSecond(int gameRatePerSecond) { this.gameRatePerSecond = Math.max(1, gameRatePerSecond); return this; }
+    public int getGameBurst() { return gameBurst; }
+    public ServerConfig setGameBurst(int gameBurst) { this.gameBurst = Math.max(1, gameBurst); return this; }
+    public int getStateReadRatePerSecond() { return stateReadRatePerSecond; }
+    public ServerConfig setStateReadRatePerSecond(int stateReadRatePerSecond) { this.stateReadRatePerSecond = Math.max(1, stateReadRatePerSecond); return this; }
+    public int getStateReadBurst() { return stateReadBurst; }
+    public ServerConfig setStateReadBurst(int stateReadBurst) { this.stateReadBurst = Math.max(1, stateReadBurst); return this; }
+    public int getLobbyReadRatePerSecond() { return lobbyReadRatePerSecond; }
+    public ServerConfig setLobbyReadRatePerSecond(int lobbyReadRatePerSecond) { this.lobbyReadRatePerSecond = Math.max(1, lobbyReadRatePerSecond); return this; }
+    public int getLobbyReadBurst() { return lobbyReadBurst; }
+    public ServerConfig setLobbyReadBurst(int lobbyReadBurst) { this.lobbyReadBurst = Math.max(1, lobbyReadBurst); return this; }
+    public boolean isDeflateEnabled() { return deflateEnabled; }
+    public ServerConfig setDeflateEnabled(boolean deflateEnabled) { this.deflateEnabled = deflateEnabled; return this; }
+    public int getDeflateThreshold() { return deflateThreshold; }
+    public ServerConfig setDeflateThreshold(int deflateThreshold) { this.deflateThreshold = Math.max(0, deflateThreshold); return this; }
+    public int getDeflateLevel() { return deflateLevel; }
+    public ServerConfig setDeflateLevel(int deflateLevel) { this.deflateLevel = Math.max(1, Math.min(9, deflateLevel)); return this; }
+    public boolean isDeflateContextTakeover() { return deflateContextTakeover; }
+    public ServerConfig setDeflateContextTakeover(boolean deflateContextTakeover) { this.deflateContextTakeover = deflateContextTakeover; return this; }
+    public int getResumeGraceSeconds() { return resumeGraceSeconds; }
+    public ServerConfig setResumeGraceSeconds(int resumeGraceSeconds) { this.resumeGraceSeconds = Math.max(0, resumeGraceSeconds); return this; }
+    public int getWheelTickMillis() { return wheelTickMillis; }
+    public ServerConfig setWheelTickMillis(int wheelTickMillis) { this.wheelTickMillis = Math.max(1, wheelTickMillis); return this; }
+    public int getWheelSize() { return wheelSize; }
+    public ServerConfig setWheelSize(int wheelSize) { this.wheelSize = Math.max(16, wheelSize); return this; }
+    public int getHeartbeatSeconds() { return heartbeatSeconds; }
+    public ServerConfig setHeartbeatSeconds(int heartbeatSeconds) { this.heartbeatSeconds = Math.max(0, heartbeatSeconds); return this; }
+    public int getPongTimeoutSeconds() { return pongTimeoutSeconds; }
+    public ServerConfig setPongTimeoutSeconds(int pongTimeoutSeconds) { this.pongTimeoutSeconds = Math.max(1, pongTimeoutSeconds); return this; }
+    public int getReapBatch() { return reapBatch; }
+    public ServerConfig setReapBatch(int reapBatch) { this.reapBatch = Math.max(1, reapBatch); return this; }
+    public int getTurnSeconds() { return turnSeconds; }
+    public ServerConfig setTurnSeconds(int turnSeconds) { this.turnSeconds = Math.max(0, turnSeconds); return this; }
+    public int getColorChoiceSeconds() { return colorChoiceSeconds; }
+    public ServerConfig setColorChoiceSeconds(int colorChoiceSeconds) { this.colorChoiceSeconds = Math.max(1, colorChoiceSeconds); return this; }
+    public int getFinishedTtlSeconds() { return finishedTtlSeconds; }
+    public ServerConfig setFinishedTtlSeconds(int finishedTtlSeconds) { this.finishedTtlSeconds = Math.max(1, finishedTtlSeconds); return this; }
+
+    /**
+     * TTL de una partida vacía, nunca menor que la gracia de resume más un
+     * margen: si la partida se borrara antes, los asientos reservados
+     * seguirían vigentes pero el resume fallaría. Se ajusta al leerlo, así
+     * no importa en qué orden se llamen los setters.
+     */
+    public int getEmptyTtlSeconds() {
+        return resumeGraceSeconds > 0 ? Math.max(emptyTtlSeconds, resumeGraceSeconds + EMPTY_TTL_MARGIN_SECONDS) : emptyTtlSeconds;
+    }
+
+    public ServerConfig setEmptyTtlSeconds(int emptyTtlSeconds) { this.emptyTtlSeconds = Math.max(1, emptyTtlSeconds); return this; }
+    public int getAbandonedTtlSeconds() { return abandonedTtlSeconds; }
+    public ServerConfig setAbandonedTtlSeconds(int abandonedTtlSeconds) { this.abandonedTtlSeconds = Math.max(1, abandonedTtlSeconds); return this; }
+    public boolean isGatewayMode() { return gatewayMode; }
+    public ServerConfig setGatewayMode(boolean gatewayMode) { this.gatewayMode = gatewayMode; return this; }
+    public List<String> getGatewayNodes() { return gatewayNodes; }
+    public ServerConfig setGatewayNodes(List<String> gatewayNodes) { this.gatewayNodes = List.copyOf(gatewayNodes); return this; }
+
+    /** Lista separada por comas: ws://localhost:8081,ws://localhost:8082 */
+    public ServerConfig setGatewayNodes(String nodes) {
+        List<String> parsed = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            if (!node.isBlank()) {
+                parsed.add(node.trim());
+            }
+        }
+        return setGatewayNodes(parsed);
+    }
+
+    public boolean isWalEnabled() { return walEnabled; }
+    public ServerConfig setWalEnabled(boolean walEnabled) { this.walEnabled = walEnabled; return this; }
+
+    /**
+     * Directorio del log. Sin uno.wal.dir sale del puerto (wal-8080), así
+     * los nodos detrás de un gateway y un standby en la misma máquina no
+     * comparten directorio: el lock de ActionLog no deja arrancar al
+     * segundo proceso que lo intente.
+     */
+    public String getWalDir() { return walDir.isEmpty() ? "wal-" + port : walDir; }
+
+    public ServerConfig setWalDir(String walDir) { this.walDir = walDir != null ? walDir.trim() : ""; return this; }
+    public int getWalFsyncMillis() { return walFsyncMillis; }
+    public ServerConfig setWalFsyncMillis(int walFsyncMillis) { this.walFsyncMillis = walFsyncMillis; return this; }
+    public int getWalSegmentMegabytes() { return walSegmentMegabytes; }
+    public ServerConfig setWalSegmentMegabytes(int walSegmentMegabytes) { this.walSegmentMegabytes = Math.max(1, walSegmentMegabytes); return this; }
+    public int getReplicationPort() { return replicationPort; }
+    public ServerConfig setReplicationPort(int replicationPort) { this.replicationPort = replicationPort; return this; }
+    public String getReplicationBind() { return replicationBind; }
+    public ServerConfig setReplicationBind(String replicationBind) { this.replicationBind = replicationBind; return this; }
+    public String getReplicationSecret() { return replicationSecret; }
+    public ServerConfig setReplicationSecret(String replicationSecret) { this.replicationSecret = replicationSecret != null ? replicationSecret : ""; return this; }
+    public boolean isStandbyMode() { return standbyMode; }
+    public ServerConfig setStandbyMode(boolean standbyMode) { this.standbyMode = standbyMode; return this; }
+    public String getReplicationPrimary() { return replicationPrimary; }
+    public ServerConfig setReplicationPrimary(String replicationPrimary) { this.replicationPrimary = replicationPrimary != null ? replicationPrimary.trim() : ""; return this; }
+    public int getFailoverMillis() { return failoverMillis; }
+    public ServerConfig setFailoverMillis(int failoverMillis) { this.failoverMillis = Math.max(500, failoverMillis); return this; }
+    public int getReplicationQueueMegabytes() { return replicationQueueMegabytes; }
+    public ServerConfig setReplicationQueueMegabytes(int replicationQueueMegabytes) { this.replicationQueueMegabytes = Math.max(1, replicationQueueMegabytes); return this; }
+    public int getTcpPort() { return tcpPort; }
+    public ServerConfig setTcpPort(int tcpPort) { this.tcpPort = tcpPort; return this; }
+    public int getTcpMaxFrameBytes() { return tcpMaxFrameBytes; }
+    public ServerConfig setTcpMaxFrameBytes(int tcpMaxFrameBytes) { this.tcpMaxFrameBytes = Math.max(1024, tcpMaxFrameBytes); return this; }
+    public int getTcpHandshakeSeconds() { return tcpHandshakeSeconds; }
+    public ServerConfig setTcpHandshakeSeconds(int tcpHandshakeSeconds) { this.tcpHandshakeSeconds = Math.max(0, tcpHandshakeSeconds); return this; }
+}
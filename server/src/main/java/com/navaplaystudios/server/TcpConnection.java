@@ -0,0 +1,419 @@
+package com.navaplaystudios.server;
+
+/**
+ * Conexión del endpoint TCP (Server) vista como un WebSocket de
+ * Java-WebSocket, para que UnoWebSocketServer la atienda igual que a las
+ * demás: mismos handlers, ClientSession, cupos y heartbeats.
+ *
+ * Frames: [u32 largo][datos]. El bit alto del largo marca datos en el
+ * formato binario (BinaryCodec); sin él son JSON en UTF-8. Un frame vacío
+ * es el ping y su respuesta. El primer frame del cliente decide el formato
+ * de la sesión y recibe la bienvenida.
+ *
+ * Lee un hilo virtual por conexión (bloqueado en el socket no ocupa un
+ * hilo de plataforma). Escribe otro hilo virtual que solo existe mientras
+ * hay datos en cola, así los shards nunca esperan al socket.
+ *
+ * Un solo Timeout en la rueda compartida cubre los dos plazos de la
+ * conexión: el del primer frame (sin él no hay sesión ni heartbeat) y,
+ * tras close(), el de vaciar la cola antes de cortar. Se cancela cuando
+ * llega el primer frame y cuando el canal se cierra.
+ */
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.enums.ReadyState;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.protocols.IProtocol;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TcpConnection implements WebSocket {
+    static final int BINARY_FLAG = 0x80000000;
+    private static final ByteBuffer[] CLOSE = new ByteBuffer[0]; // en la cola: cerrar después de lo anterior
+    private static final int MAX_GATHER = 64; // buffers por write
+    private static final long CLOSE_TIMEOUT_NANOS = 5_000_000_000L; // si el cliente no lee, se corta igual
+
+    private final SocketChannel channel;
+    private final Server server;
+    private final TimingWheel wheel;
+    private final Deadline deadline = new Deadline();
+    private final int maxFrameBytes;
+    private final InetSocketAddress remoteAddress;
+    private final InetSocketAddress localAddress;
+    private final ConcurrentLinkedQueue<ByteBuffer[]> out = new ConcurrentLinkedQueue<>();
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private volatile ReadyState state = ReadyState.OPEN;
+    private volatile Object attachment;
+    private volatile int closeCode = CloseFrame.ABNORMAL_CLOSE;
+    private volatile String closeReason = "";
+    private volatile boolean closedLocally;
+    private volatile boolean opened; // llegó el primer frame: hay sesión
+    // sendFragmentedFrame: los fragmentos se juntan y salen como un solo frame
+    private final Object fragmentLock = new Object();
+    private ByteBuffer fragments;
+    private boolean fragmentsBinary;
+
+    TcpConnection(SocketChannel channel, Server server, TimingWheel wheel, int maxFrameBytes) throws IOException {
+        this.channel = channel;
+        this.server = server;
+        this.wheel = wheel;
+        this.maxFrameBytes = maxFrameBytes;
+        this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+        this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    /** Plazo de la conexión en la rueda: primer frame o, si está cerrando, vaciar la cola. */
+    private class Deadline extends TimingWheel.Timeout {
+        @Override
+        protected void expire() {
+            if (state == ReadyState.CLOSING) {
+                closeChannel(); // el cliente no lee: se corta igual
+            } else if (state == ReadyState.OPEN && !opened) {
+                server.handshakeTimedOut();
+                closeConnection(CloseFrame.POLICY_VALIDATION, "Sin primer frame");
+            }
+        }
+    }
+
+    /** Al aceptar: sin primer frame en handshakeNanos se cierra (0 = sin plazo). */
+    void armHandshake(long handshakeNanos) {
+        if (handshakeNanos > 0) {
+            wheel.schedule(deadline, handshakeNanos);
+        }
+    }
+
+    // ---- Lectura (hilo virtual de la conexión) ----
+
+    void readLoop(UnoWebSocketServer handler) {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        try {
+            while (true) {
+                header.clear();
+                if (!readFully(header)) {
+                    closeCode = CloseFrame.NORMAL;
+                    break;
+                }
+                int prefix = header.getInt(0);
+                boolean binary = (prefix & BINARY_FLAG) != 0;
+                int length = prefix & ~BINARY_FLAG;
+                if (length > maxFrameBytes) {
+                    close(CloseFrame.TOOBIG, "Frame de " + length + " bytes");
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(payload)) {
+                    break;
+                }
+                payload.flip();
+                if (!opened) {
+                    opened = true;
+                    wheel.cancel(deadline); // desde acá la cuida el heartbeat de la sesión
+                    handler.onTcpOpen(this, binary);
+                }
+                if (length == 0) {
+                    handler.onTcpKeepalive(this);
+                } else if (binary) {
+                    handler.onMessage(this, payload);
+                } else {
+                    handler.onMessage(this, new String(payload.array(), 0, length, StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            if (!closedLocally) {
+                closeReason = String.valueOf(e.getMessage());
+            }
+        } finally {
+            state = ReadyState.CLOSED;
+            wheel.cancel(deadline);
+            closeChannel();
+            server.removed(this);
+            handler.onClose(this, closeCode, closeReason, !closedLocally);
+        }
+    }
+
+    private boolean readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---- Escritura ----
+
+    private void enqueue(int prefix, ByteBuffer payload) {
+        if (state != ReadyState.OPEN) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(4).putInt(0, prefix);
+        buffered.addAndGet(4 + payload.remaining());
+        out.add(new ByteBuffer[] {header, payload});
+        startWriter();
+    }
+
+    private void startWriter() {
+        if (writing.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("uno-tcp-write").start(this::drain);
+        }
+    }
+
+    private void drain() {
+        List<ByteBuffer> gather = new ArrayList<>(MAX_GATHER);
+        try {
+            while (true) {
+                ByteBuffer[] frame;
+                boolean close = false;
+                while (gather.size() < MAX_GATHER && (frame = out.poll()) != null) {
+                    if (frame == CLOSE) {
+                        close = true;
+                        break;
+                    }
+                    gather.add(frame[0]);
+                    gather.add(frame[1]);
+                }
+                if (!gather.isEmpty()) {
+                    ByteBuffer[] buffers = gather.toArray(new ByteBuffer[0]);
+                    long total = 0;
+                    for (ByteBuffer buffer : buffers) {
+                        total += buffer.remaining();
+                    }
+                    long written = 0;
+                    while (written < total) {
+                        written += channel.write(buffers);
+                    }
+                    buffered.addAndGet(-total);
+                    gather.clear();
+                }
+                if (close) {
+                    closeChannel();
+                    return;
+                }
+                if (out.isEmpty()) {
+                    writing.set(false);
+                    // Alguien pudo encolar entre el poll y el set
+                    if (out.isEmpty() || !writing.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            writing.set(false);
+            closeConnection(CloseFrame.ABNORMAL_CLOSE, e.getMessage());
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close(); // despierta al lector con AsynchronousCloseException
+        } catch (IOException ignored) {
+            // ya estaba cerrado
+        }
+    }
+
+    long getBufferedBytes() {
+        return buffered.get();
+    }
+
+    // ---- WebSocket ----
+
+    @Override
+    public void send(String text) {
+        enqueue(0, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public void send(ByteBuffer bytes) {
+        enqueue(BINARY_FLAG | bytes.remaining(), bytes);
+    }
+
+    @Override
+    public void send(byte[] bytes) {
+        send(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public void sendFrame(Framedata frame) {
+        ByteBuffer payload = frame.getPayloadData();
+        if (frame.getOpcode() == Opcode.BINARY) {
+            enqueue(BINARY_FLAG | payload.remaining(), payload);
+        } else if (frame.getOpcode() == Opcode.TEXT) {
+            enqueue(payload.remaining(), payload);
+        } else if (frame.getOpcode() == Opcode.PING) {
+            sendPing();
+        }
+    }
+
+    @Override
+    public void sendFrame(Collection<Framedata> frames) {
+        for (Framedata frame : frames) {
+            sendFrame(frame);
+        }
+    }
+
+    @Override
+    public void sendPing() {
+        enqueue(0, ByteBuffer.allocate(0));
+    }
+
+    /**
+     * El framing TCP no tiene continuaciones: los fragmentos se acumulan y
+     * con fin sale un frame con el mensaje entero. Como en Java-WebSocket,
+     * el tipo (TEXT o BINARY) es el del primer fragmento.
+     */
+    @Override
+    public void sendFragmentedFrame(Opcode op, ByteBuffer buffer, boolean fin) {
+        ByteBuffer message;
+        boolean binary;
+        synchronized (fragmentLock) {
+            if (fragments == null) {
+                fragments = ByteBuffer.allocate(Math.max(256, buffer.remaining()));
+                fragmentsBinary = op == Opcode.BINARY;
+            }
+            if (fragments.remaining() < buffer.remaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(fragments.capacity() * 2,
+                        fragments.position() + buffer.remaining()));
+                fragments.flip();
+                bigger.put(fragments);
+                fragments = bigger;
+            }
+            fragments.put(buffer);
+            if (!fin) {
+                return;
+            }
+            message = fragments.flip();
+            binary = fragmentsBinary;
+            fragments = null;
+        }
+        enqueue((binary ? BINARY_FLAG : 0) | message.remaining(), message);
+    }
+
+    /** Manda lo que ya estaba en cola y cierra (TCP no tiene frame de cierre). */
+    @Override
+    public void close(int code, String message) {
+        if (state != ReadyState.OPEN) {
+            return;
+        }
+        state = ReadyState.CLOSING;
+        closedLocally = true;
+        closeCode = code;
+        closeReason = message != null ? message : "";
+        out.add(CLOSE);
+        startWriter();
+        wheel.schedule(deadline, CLOSE_TIMEOUT_NANOS);
+        if (state == ReadyState.CLOSED) {
+            wheel.cancel(deadline); // el lector ya terminó y canceló antes de que se programara
+        }
+    }
+
+    @Override
+    public void close(int code) {
+        close(code, "");
+    }
+
+    @Override
+    public void close() {
+        close(CloseFrame.NORMAL);
+    }
+
+    @Override
+    public void closeConnection(int code, String message) {
+        if (state == ReadyState.CLOSED) {
+            return;
+        }
+        state = ReadyState.CLOSING;
+        closedLocally = true;
+        closeCode = code;
+        closeReason = message != null ? message : "";
+        closeChannel();
+    }
+
+    @Override
+    public boolean hasBufferedData() {
+        return buffered.get() > 0;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteSocketAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public InetSocketAddress getLocalSocketAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return state == ReadyState.OPEN;
+    }
+
+    @Override
+    public boolean isClosing() {
+        return state == ReadyState.CLOSING;
+    }
+
+    @Override
+    public boolean isFlushAndClose() {
+        return state == ReadyState.CLOSING;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return state == ReadyState.CLOSED;
+    }
+
+    @Override
+    public Draft getDraft() {
+        return null;
+    }
+
+    @Override
+    public ReadyState getReadyState() {
+        return state;
+    }
+
+    @Override
+    public String getResourceDescriptor() {
+        return "/";
+    }
+
+    @Override
+    public <T> void setAttachment(T attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getAttachment() {
+        return (T) attachment;
+    }
+
+    @Override
+    public boolean hasSSLSupport() {
+        return false;
+    }
+
+    @Override
+    public SSLSession getSSLSession() {
+        throw new IllegalArgumentException("El transporte TCP no usa SSL");
+    }
+
+    @Override
+    public IProtocol getProtocol() {
+        return null;
+    }
+}
@@ -0,0 +1,215 @@
+package com.navaplaystudios.server;
+
+/**
+ * Timing wheel con hash (Varghese & Lauck): un arreglo de cubetas, una por
+ * tick, cada una con una lista doblemente enlazada intrusiva de Timeouts.
+ * Programar y cancelar son O(1) y avanzar un tick solo recorre la cubeta
+ * que toca, así que un único hilo maneja cientos de miles de plazos.
+ *
+ * Los Timeouts son objetos del llamador (uno por conexión, por reserva...)
+ * y se reutilizan: reprogramar uno no crea objetos. Desde otros hilos se
+ * publica la última intención (plazo o cancelación) y se encola el Timeout
+ * una sola vez; el hilo de la rueda la aplica al comienzo del tick. Desde
+ * expire(), que corre en el hilo de la rueda, se enlaza directo.
+ *
+ * Cada tick se calcula desde el arranque y no acumula deriva: un plazo se
+ * cumple como mucho un tick después de su vencimiento, más lo que tarden
+ * los expire() de ese tick (por eso deben ser cortos; el trabajo pesado se
+ * pasa a un shard o se reparte con afterTick).
+ */
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+
+public class TimingWheel {
+    private static final long CANCELLED = Long.MIN_VALUE;
+
+    public abstract static class Timeout {
+        private static final AtomicIntegerFieldUpdater<Timeout> QUEUED =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "queued");
+
+        private volatile long requested = CANCELLED; // plazo pedido en nanos (o CANCELLED)
+        private volatile int queued; // 1 = ya está en la cola de cambios
+        // Solo el hilo de la rueda
+        private long deadlineTick;
+        private Timeout prev;
+        private Timeout next;
+        private boolean linked;
+
+        /** Se ejecuta en el hilo de la rueda cuando vence el plazo. */
+        protected abstract void expire();
+    }
+
+    private final long tickNanos;
+    private final Timeout[] heads;
+    private final Timeout[] tails;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Timeout> changes;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile Runnable afterTick = () -> { };
+    private volatile boolean running = true;
+    private long tick; // último tick procesado; solo el hilo de la rueda
+    private long firstFreeTick = 1; // primer tick cuya cubeta todavía no se recorrió
+    private int size; // Timeouts enlazados; solo el hilo de la rueda
+    private volatile int sizeSnapshot;
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+    public TimingWheel(long tickMillis, int wheelSize) {
+        this.tickNanos = Math.max(1, tickMillis) * 1_000_000L;
+        int buckets = Integer.highestOneBit(Math.max(16, wheelSize - 1) << 1);
+        this.heads = new Timeout[buckets];
+        this.tails = new Timeout[buckets];
+        this.mask = buckets - 1;
+        this.changes = new ConcurrentLinkedQueue<>();
+        this.startNanos = System.nanoTime();
+        this.worker = new Thread(this::run, "uno-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // ---- API ----
+
+    /** Programa (o reprograma) el Timeout para dentro de delayNanos. */
+    public void schedule(Timeout timeout, long delayNanos) {
+        timeout.requested = System.nanoTime() + Math.max(0, delayNanos);
+        if (Thread.currentThread() == worker) {
+            apply(timeout);
+        } else {
+            publish(timeout);
+        }
+    }
+
+    public void cancel(Timeout timeout) {
+        timeout.requested = CANCELLED;
+        if (Thread.currentThread() == worker) {
+            apply(timeout);
+        } else {
+            publish(timeout);
+        }
+    }
+
+    /** Trabajo que se hace al final de cada tick (p. ej. cierres por lotes). */
+    public void setAfterTick(Runnable afterTick) {
+        this.afterTick = afterTick;
+    }
+
+    public long getTickMillis() { return tickNanos / 1_000_000L; }
+    public int size() { return sizeSnapshot; }
+    public long getMaxLagNanos() { return maxLagNanos.get(); }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    // ---- Hilo de la rueda ----
+
+    private void publish(Timeout timeout) {
+        if (Timeout.QUEUED.compareAndSet(timeout, 0, 1)) {
+            changes.offer(timeout);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            long target = startNanos + (tick + 1) * tickNanos;
+            long wait;
+            while ((wait = target - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!running) {
+                break;
+            }
+            maxLagNanos.accumulate(-wait);
+            tick++;
+
+            try {
+                // Los cambios pendientes que ya vencieron entran en la cubeta de este tick
+                firstFreeTick = tick;
+                applyChanges();
+                firstFreeTick = tick + 1;
+                expireBucket();
+                afterTick.run();
+            } catch (Throwable t) {
+                Log.error("Error en la rueda de timeouts: {}", t.getMessage(), t);
+            }
+            sizeSnapshot = size;
+        }
+    }
+
+    private void applyChanges() {
+        Timeout timeout;
+        while ((timeout = changes.poll()) != null) {
+            // Primero se libera la marca: un cambio posterior se vuelve a encolar
+            timeout.queued = 0;
+            apply(timeout);
+        }
+    }
+
+    private void apply(Timeout timeout) {
+        if (timeout.linked) {
+            unlink(timeout);
+        }
+        long requested = timeout.requested;
+        if (requested == CANCELLED) {
+            return;
+        }
+        // Tick en que vence (redondeado hacia arriba); nunca uno ya recorrido
+        long deadlineTick = Math.max(firstFreeTick, (requested - startNanos + tickNanos - 1) / tickNanos);
+        timeout.deadlineTick = deadlineTick;
+        int index = (int) (deadlineTick & mask);
+        timeout.prev = tails[index];
+        timeout.next = null;
+        if (tails[index] != null) {
+            tails[index].next = timeout;
+        } else {
+            heads[index] = timeout;
+        }
+        tails[index] = timeout;
+        timeout.linked = true;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        int index = (int) (timeout.deadlineTick & mask);
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            heads[index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        } else {
+            tails[index] = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.linked = false;
+        size--;
+    }
+
+    private void expireBucket() {
+        int index = (int) (tick & mask);
+        Timeout timeout = heads[index];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            // Los de vueltas futuras comparten cubeta; se quedan
+            if (timeout.deadlineTick <= tick) {
+                unlink(timeout);
+                if (timeout.queued != 0) {
+                    // Se reprogramó o canceló durante este tick: manda ese cambio
+                    timeout = next;
+                    continue;
+                }
+                try {
+                    timeout.expire();
+                } catch (Throwable t) {
+                    Log.error("Error en un timeout: {}", t.getMessage(), t);
+                }
+            }
+            timeout = next;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.navaplaystudios.server;
+
+/**
+ * Plazos de turno y de elección de color. Cada partida en curso tiene un
+ * único Timeout en la rueda compartida (no un hilo ni una tarea por
+ * partida), que se rearma cada vez que cambia el estado: el plazo corre
+ * desde la última jugada.
+ *
+ * Al vencer, la rueda solo encola el aviso en el shard del juego. Ahí se
+ * compara la versión del estado con la que tenía al armarse y se revisa
+ * que el plazo de verdad haya pasado; si el jugador alcanzó a jugar entre
+ * medio (o el plazo se rearmó), el aviso se ignora.
+ *
+ * Todo lo demás (armar, leer el plazo) pasa en el shard del juego.
+ */
+import com.navaplaystudios.server.clases.GameState;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+public class TurnTimers {
+    public enum Kind {
+        TURN, COLOR_CHOICE
+    }
+
+    /** Plazo de una partida; se reutiliza en cada turno. */
+    public class Deadline extends TimingWheel.Timeout {
+        private final String gameId;
+        private Kind kind;
+        private String playerId;
+        private long version;
+        private long dueNanos;
+
+        Deadline(String gameId) {
+            this.gameId = gameId;
+        }
+
+        public String getGameId() { return gameId; }
+        public Kind getKind() { return kind; }
+        public String getPlayerId() { return playerId; }
+        public long getVersion() { return version; }
+
+        @Override
+        protected void expire() {
+            onExpired.accept(this);
+        }
+    }
+
+    private final TimingWheel wheel;
+    private final long turnNanos;
+    private final long colorChoiceNanos;
+    private final Map<String, Deadline> deadlines; // gameId -> plazo armado
+    private volatile Consumer<Deadline> onExpired = deadline -> { };
+
+    public TurnTimers(TimingWheel wheel, ServerConfig config) {
+        this.wheel = wheel;
+        this.turnNanos = config.getTurnSeconds() * 1_000_000_000L;
+        this.colorChoiceNanos = config.getColorChoiceSeconds() * 1_000_000_000L;
+        this.deadlines = new ConcurrentHashMap<>();
+    }
+
+    public boolean isEnabled() {
+        return turnNanos > 0;
+    }
+
+    /** Qué hacer con un plazo vencido; se llama desde el hilo de la rueda. */
+    public void setOnExpired(Consumer<Deadline> onExpired) {
+        this.onExpired = onExpired;
+    }
+
+    /**
+     * Arma el plazo según el estado actual. Si la versión no cambió desde
+     * el último armado no hace nada, así se puede llamar en cada broadcast.
+     */
+    public void arm(UnoGame game) {
+        arm(game, false);
+    }
+
+    /** Plazo nuevo aunque la versión sea la misma (la jugada automática falló). */
+    public void rearm(UnoGame game) {
+        arm(game, true);
+    }
+
+    private void arm(UnoGame game, boolean force) {
+        if (!isEnabled()) {
+            return;
+        }
+        String gameId = game.getGameId();
+        if (game.getState() != GameState.IN_PROGRESS || game.getCurrentPlayer() == null) {
+            cancel(gameId);
+            return;
+        }
+        Deadline deadline = deadlines.computeIfAbsent(gameId, Deadline::new);
+        if (!force && deadline.kind != null && deadline.version == game.getStateVersion()) {
+            return;
+        }
+        boolean colorChoice = game.isWaitingForColorChoice();
+        long delay = colorChoice ? colorChoiceNanos : turnNanos;
+        deadline.kind = colorChoice ? Kind.COLOR_CHOICE : Kind.TURN;
+        deadline.playerId = colorChoice ? game.getColorChoicePlayerId() : game.getCurrentPlayer().getId();
+        deadline.version = game.getStateVersion();
+        deadline.dueNanos = System.nanoTime() + delay;
+        wheel.schedule(deadline, delay);
+    }
+
+    /** true si el plazo venció de verdad para este estado (nadie jugó desde que se armó). */
+    public boolean isDue(Deadline deadline, UnoGame game) {
+        return deadlines.get(deadline.gameId) == deadline && deadline.version == game.getStateVersion()
+                && game.getState() == GameState.IN_PROGRESS && System.nanoTime() - deadline.dueNanos >= 0;
+    }
+
+    public Deadline get(String gameId) {
+        return deadlines.get(gameId);
+    }
+
+    /** Al terminar o borrarse la partida. */
+    public void cancel(String gameId) {
+        Deadline deadline = deadlines.remove(gameId);
+        if (deadline != null) {
+            wheel.cancel(deadline);
+        }
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+}
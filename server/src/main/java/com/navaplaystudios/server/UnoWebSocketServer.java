@@ -5,173 +5,741 @@ package com.navaplaystudios.server;
  * @author alber
  */
 import com.navaplaystudios.server.clases.*;
+import com.navaplaystudios.server.jfr.ActionEvent;
+import com.navaplaystudios.server.jfr.BroadcastEvent;
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 import org.json.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
 
 public class UnoWebSocketServer extends WebSocketServer {
-    private static final int PORT = 8080;
     private GameManager gameManager;
-    private Map<WebSocket, String> playerConnections; // WebSocket -> playerId
-    private Map<String, WebSocket> playerSockets; // playerId -> WebSocket
-    private Map<String, String> playerGames; // playerId -> gameId
-    private Map<String, GameInfo> gameInfos; // gameId -> GameInfo (para el frontend)
-
-    // Clase para almacenar información del juego para el frontend
-    private static class GameInfo {
-        public String gameId;
-        public String roomName;
-        public String hostPlayerId;
-        public String hostPlayerName;
-        public int maxPlayers;
-        public int currentPlayers;
-        public String status; // "waiting", "full", "playing"
-        public long createdAt;
-
-        public GameInfo(String gameId, String roomName, String hostPlayerId, String hostPlayerName, int maxPlayers) {
-            this.gameId = gameId;
-            this.roomName = roomName;
-            this.hostPlayerId = hostPlayerId;
-            this.hostPlayerName = hostPlayerName;
-            this.maxPlayers = maxPlayers;
-            this.currentPlayers = 0;
-            this.status = "waiting";
-            this.createdAt = System.currentTimeMillis();
+    private PlayerRegistry<WebSocket> registry; // jugador <-> juego <-> WebSocket
+    private GameExecutor executor; // un hilo por shard; cada juego muta en un solo hilo
+    private OutboundBatcher outbound; // un frame por destinatario y acción
+    private Lobby lobby; // gameId -> GameInfo (para el frontend) y suscripciones al lobby
+    private Map<String, StateView> deltaViews; // playerId -> última vista enviada (solo modo delta)
+    private Set<String> deltaPlayers; // jugadores que pidieron actualizaciones delta
+    private Map<String, GameStateFrame> stateFrames; // gameId -> estado codificado de la última versión
+    private Metrics metrics; // latencias por acción y contadores (Prometheus + acción metrics)
+    private MetricsHttpServer metricsHttp; // null si uno.metricsPort <= 0
+    private final int metricsPort;
+    private final String metricsBind;
+    private final int port;
+    private RateLimiter rateLimiter; // cupos por conexión y jugador, antes de decodificar
+    private SeatReservations reservations; // resumeToken -> asiento guardado tras una desconexión
+    private final LongAdder turnTimeouts = new LongAdder();
+    private TimingWheel wheel; // todos los plazos (heartbeats, reservas) en un solo hilo
+    private Heartbeats heartbeats; // ping/pong de WebSocket y cierre de conexiones muertas
+    private TurnTimers turnTimers; // plazo de turno / elección de color de cada partida
+    private GameLifecycle lifecycle; // cuándo se borran las partidas y cuánto ocupan
+    private ActionLog actionLog; // acciones aceptadas en disco, para recuperar partidas tras una caída
+    private ReplicationPrimary replication; // manda el log a los standbys (uno.replication.port)
+    private Server tcp; // endpoint TCP con frames de largo prefijado (uno.tcp.port)
+
+    // gameId elegido por un gateway: sin '.' (separa el gameId en los resumeToken)
+    private static final Pattern GAME_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    // Acción que atiende el hilo actual, para atribuirle broadcast y errores
+    private static final ThreadLocal<GameAction.Type> CURRENT_ACTION = new ThreadLocal<>();
+
+    public UnoWebSocketServer() {
+        this(ServerConfig.fromSystemProperties());
+    }
+
+    public UnoWebSocketServer(ServerConfig config) {
+        this(config, new OutboundStats());
+    }
+
+    private UnoWebSocketServer(ServerConfig config, OutboundStats outboundStats) {
+        super(new InetSocketAddress(config.getPort()), createDrafts(config, outboundStats));
+        this.executor = new GameExecutor(config.getShardCount());
+        this.outbound = new OutboundBatcher(executor, config, outboundStats);
+        outbound.setOnStateChainBroken((session, gameId) ->
+                executor.execute(gameId, () -> resendState(session, gameId)));
+        this.registry = new PlayerRegistry<>();
+        this.gameManager = new GameManager(registry);
+        this.lobby = new Lobby(outbound, config.getLobbyTickMillis());
+        this.deltaViews = new ConcurrentHashMap<>();
+        this.deltaPlayers = ConcurrentHashMap.newKeySet();
+        this.stateFrames = new ConcurrentHashMap<>();
+        this.metrics = new Metrics();
+        this.rateLimiter = new RateLimiter(config);
+        this.wheel = new TimingWheel(config.getWheelTickMillis(), config.getWheelSize());
+        this.heartbeats = new Heartbeats(wheel, config);
+        if (heartbeats.isEnabled()) {
+            setConnectionLostTimeout(0); // lo reemplaza Heartbeats
         }
+        this.turnTimers = new TurnTimers(wheel, config);
+        turnTimers.setOnExpired(deadline ->
+                executor.execute(deadline.getGameId(), () -> handleTurnTimeout(deadline)));
+        this.lifecycle = new GameLifecycle(wheel, config);
+        lifecycle.setOnExpired(entry ->
+                executor.execute(entry.getGameId(), () -> handleLifecycleCheck(entry)));
+        this.reservations = new SeatReservations(config.getResumeGraceSeconds() * 1000L, wheel);
+        reservations.setOnExpired(reservation ->
+                executor.execute(reservation.getGameId(), () -> expireReservation(reservation)));
+        this.metricsPort = config.getMetricsPort();
+        this.metricsBind = config.getMetricsBind();
+        this.port = config.getPort();
+        this.actionLog = new ActionLog(config);
+        this.replication = new ReplicationPrimary(actionLog, config);
+        this.tcp = new Server(this, wheel, config);
+        registerMetrics();
+        recover();
     }
 
-    public UnoWebSocketServer() {
-        super(new InetSocketAddress(PORT));
-        this.gameManager = new GameManager();
-        this.playerConnections = new ConcurrentHashMap<>();
-        this.playerSockets = new ConcurrentHashMap<>();
-        this.playerGames = new ConcurrentHashMap<>();
-        this.gameInfos = new ConcurrentHashMap<>();
+    /** Rehace las partidas del log de acciones antes de aceptar conexiones. */
+    private void recover() {
+        try {
+            long start = System.nanoTime();
+            long records = actionLog.replay(this::apply);
+            resumeRecoveredGames();
+            if (records > 0) {
+                Log.info("Recuperadas {} partidas ({} acciones) en {} ms", gameManager.getActiveGames().size(),
+                        records, (System.nanoTime() - start) / 1_000_000L);
+            }
+            actionLog.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el log de acciones", e);
+        }
+    }
+
+    // Nadie está conectado: los asientos esperan el resume como tras una desconexión
+    private void resumeRecoveredGames() {
+        for (String gameId : gameManager.getActiveGames()) {
+            UnoGame game = gameManager.getGame(gameId);
+            for (String playerId : registry.getGamePlayers(gameId)) {
+                reservations.detach(playerId);
+            }
+            lifecycle.track(gameId, retainedBytes(game));
+            turnTimers.arm(game);
+        }
+    }
+
+    /** Standby: aplica un registro del primario y lo copia en el log propio (un solo hilo, sin clientes). */
+    void applyReplicated(ByteBuffer record, ActionLog.Entry entry) {
+        try {
+            apply(entry);
+        } catch (RuntimeException e) {
+            Log.warn("No se pudo aplicar {} de {}: {}", entry.op, entry.gameId, e.getMessage());
+        }
+        actionLog.appendReplicated(record, entry);
+    }
+
+    /** Standby promovido: las partidas replicadas pasan a correr y se abre el puerto. */
+    void promote() {
+        resumeRecoveredGames();
+        Log.info("Promovido con {} partidas", gameManager.getActiveGames().size());
+        setReuseAddr(true);
+        start();
+    }
+
+    int getGameCount() {
+        return gameManager.getActiveGames().size();
+    }
+
+    // Para los benchmarks: cargar partidas sin pasar por conexiones
+    GameManager getGameManager() {
+        return gameManager;
+    }
+
+    /** Standby que vuelve a empezar: libera hilos y el log sin haber abierto el puerto. */
+    void discard() {
+        shutdownServices();
+    }
+
+    /** Repite una acción del log; mismo orden y mismas reglas que cuando se aceptó. */
+    private void apply(ActionLog.Entry entry) {
+        String gameId = entry.gameId;
+        GameInfo gameInfo = lobby.get(gameId);
+        switch (entry.op) {
+            case CREATE:
+                if (gameManager.createGame(gameId) != null) {
+                    lobby.add(new GameInfo(gameId, entry.text, entry.playerId, entry.text2, entry.number, entry.value));
+                }
+                break;
+            case JOIN:
+                if (gameInfo != null && gameManager.joinGame(gameId, entry.playerId, entry.text).isSuccess()) {
+                    lobby.playerJoined(gameInfo);
+                }
+                break;
+            case SEAT:
+                reservations.restore(entry.playerId, gameId, entry.text);
+                break;
+            case START:
+                if (gameInfo != null && gameManager.startGame(gameId, entry.playerId, entry.value).isSuccess()) {
+                    lobby.setStatus(gameInfo, "playing");
+                }
+                break;
+            case PLAY:
+                GameResponse played = gameManager.playCard(entry.playerId, entry.number, entry.color());
+                if (played.isSuccess() && played.getData().containsKey("winner") && gameInfo != null) {
+                    lobby.setStatus(gameInfo, "finished");
+                }
+                break;
+            case DRAW:
+                gameManager.drawCard(entry.playerId);
+                break;
+            case COLOR:
+                gameManager.chooseColor(entry.playerId, entry.color());
+                break;
+            case TIMEOUT:
+                gameManager.timeoutTurn(gameId, entry.playerId);
+                break;
+            case LEAVE:
+                if (gameInfo != null) {
+                    lobby.playerLeft(gameInfo);
+                }
+                forgetPlayer(entry.playerId);
+                gameManager.removePlayer(entry.playerId);
+                break;
+            case REMOVE:
+                lobby.remove(gameId);
+                for (String playerId : gameManager.removeGame(gameId)) {
+                    forgetPlayer(playerId);
+                }
+                break;
+        }
+    }
+
+    private void registerMetrics() {
+        OutboundStats out = outbound.getStats();
+        metrics.gauge("uno_connected_players", "Jugadores con conexión", registry::getConnectionCount);
+        metrics.gauge("uno_active_games", "Salas en el lobby", lobby::size);
+        metrics.gauge("uno_lobby_subscribers", "Conexiones suscritas al lobby", lobby::getSubscriberCount);
+        metrics.gauge("uno_shard_queue_depth", "Tareas esperando en todos los shards", executor::getQueueDepth);
+        metrics.gauge("uno_outbound_backlogged_sessions", "Sesiones con la cola de salida atrasada", outbound::getBackloggedCount);
+        metrics.counter("uno_outbound_messages_total", "Mensajes lógicos enviados", out::getMessages);
+        metrics.counter("uno_outbound_frames_total", "Frames WebSocket enviados", out::getFrames);
+        metrics.counter("uno_outbound_bytes_total", "Bytes de payload enviados", out::getBytes);
+        metrics.counter("uno_outbound_superseded_total", "Estados reemplazados en cola por uno más nuevo", out::getSuperseded);
+        metrics.counter("uno_outbound_dropped_total", "Mensajes descartados por cola llena", out::getDropped);
+        metrics.counter("uno_outbound_state_resyncs_total",
+                "Estados completos reenviados por una cadena de deltas cortada", out::getStateResyncs);
+        metrics.counter("uno_outbound_disconnects_total", "Desconexiones por cola llena o cliente lento",
+                () -> out.getOverflowDisconnects() + out.getSlowConsumerDisconnects());
+        metrics.counter("uno_deflate_frames_total", "Frames comprimidos con permessage-deflate", out::getCompressedFrames);
+        metrics.counter("uno_deflate_bytes_in_total", "Bytes antes de comprimir", out::getCompressedBytesIn);
+        metrics.counter("uno_deflate_bytes_out_total", "Bytes después de comprimir", out::getCompressedBytesOut);
+        metrics.counter("uno_deflate_nanos_total", "Tiempo de CPU comprimiendo", out::getCompressNanos);
+        metrics.counter("uno_rate_limited_game_total", "Acciones de juego rechazadas por exceso",
+                () -> rateLimiter.getRejected(RateLimiter.ActionClass.GAME));
+        metrics.counter("uno_rate_limited_state_read_total", "Lecturas de estado rechazadas por exceso",
+                () -> rateLimiter.getRejected(RateLimiter.ActionClass.STATE_READ));
+        metrics.counter("uno_rate_limited_lobby_read_total", "Lecturas de lobby rechazadas por exceso",
+                () -> rateLimiter.getRejected(RateLimiter.ActionClass.LOBBY_READ));
+        metrics.gauge("uno_rate_limited_connections", "Conexiones limitadas en los últimos 10 s", rateLimiter::getThrottledCount);
+        metrics.gauge("uno_reserved_seats", "Asientos con resumeToken vigente", reservations::size);
+        metrics.gauge("uno_detached_seats", "Asientos guardados esperando resume", reservations::getDetachedCount);
+        metrics.counter("uno_heartbeat_pings_total", "Pings enviados a conexiones inactivas", heartbeats::getPings);
+        metrics.counter("uno_heartbeat_reaped_total", "Conexiones cerradas por no responder al ping", heartbeats::getReaped);
+        metrics.gauge("uno_timers", "Plazos programados en la rueda", wheel::size);
+        metrics.gauge("uno_turn_timers", "Partidas con plazo de turno armado", turnTimers::size);
+        metrics.counter("uno_turn_timeouts_total", "Turnos o colores resueltos por tiempo", turnTimeouts::sum);
+        metrics.gauge("uno_games_tracked", "Partidas en memoria", lifecycle::size);
+        metrics.gauge("uno_games_retained_bytes", "Heap estimado que retienen las partidas", lifecycle::getRetainedBytes);
+        metrics.counter("uno_games_evicted_total", "Partidas borradas por vencimiento", lifecycle::getEvictedTotal);
+        metrics.gauge("uno_wheel_max_lag_micros", "Máximo atraso de un tick de la rueda", () -> wheel.getMaxLagNanos() / 1000);
+        metrics.counter("uno_log_dropped_total", "Líneas de log descartadas con el buffer lleno", Log::getDropped);
+        metrics.counter("uno_wal_records_total", "Acciones anotadas en el log de acciones", actionLog::getRecords);
+        metrics.counter("uno_wal_bytes_total", "Bytes escritos en el log de acciones", actionLog::getBytes);
+        metrics.counter("uno_wal_fsyncs_total", "fsync del log de acciones", actionLog::getSyncs);
+        metrics.gauge("uno_wal_pending_bytes", "Bytes del log esperando escritura", actionLog::getPendingBytes);
+        metrics.gauge("uno_replication_standbys", "Standbys conectados", replication::size);
+        metrics.gauge("uno_replication_lag_bytes", "Mayor atraso de un standby en bytes", replication::getMaxLagBytes);
+        metrics.gauge("uno_replication_lag_millis", "Mayor atraso de un standby en ms", replication::getMaxLagMillis);
+        metrics.gauge("uno_tcp_connections", "Conexiones abiertas en el endpoint TCP", tcp::size);
+    }
+
+    static List<Draft> createDrafts(ServerConfig config, OutboundStats stats) {
+        // Subprotocolo binario opcional; "" acepta clientes que no piden ninguno (JSON)
+        List<IProtocol> protocols = List.of(new Protocol(BinaryCodec.SUBPROTOCOL), new Protocol(""));
+        // permessage-deflate solo si el cliente lo ofrece; si no, frames sin comprimir
+        List<IExtension> extensions = config.isDeflateEnabled()
+                ? List.of(new DeflateExtension(config, stats))
+                : Collections.emptyList();
+        return List.of(new Draft_6455(extensions, protocols));
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("Nueva conexión: " + conn.getRemoteSocketAddress());
+        Log.info("Nueva conexión: {}", conn.getRemoteSocketAddress());
+
+        IProtocol protocol = conn.getProtocol();
+        boolean binary = protocol != null && BinaryCodec.SUBPROTOCOL.equals(protocol.getProvidedProtocol());
+        ClientSession session = openSession(conn, binary);
+
+        // Conexión de un gateway en nombre de un cliente: el gateway ya le dio la bienvenida
+        if (handshake.hasFieldValue(GatewayServer.GATEWAY_HEADER)) {
+            session.setBatchFrames(Boolean.parseBoolean(handshake.getFieldValue(GatewayServer.BATCH_FRAMES_HEADER)));
+            return;
+        }
+        sendWelcome(conn, binary);
+    }
+
+    /**
+     * Primer frame de una conexión TCP (Server): recién ahí se sabe el
+     * formato, así que la sesión y la bienvenida llegan ahora y no al
+     * aceptar. Una conexión que nunca habla no cuesta más que el socket.
+     */
+    void onTcpOpen(TcpConnection conn, boolean binary) {
+        Log.info("Nueva conexión TCP: {}", conn.getRemoteSocketAddress());
+        openSession(conn, binary);
+        sendWelcome(conn, binary);
+    }
 
+    /** Frame vacío de un cliente TCP: hace de ping y de pong. */
+    void onTcpKeepalive(TcpConnection conn) {
+        ClientSession.of(conn).markActivity();
+    }
+
+    private ClientSession openSession(WebSocket conn, boolean binary) {
+        ClientSession session = new ClientSession(conn,
+                binary ? ClientSession.WireFormat.BINARY : ClientSession.WireFormat.JSON);
+        session.setRateLimits(rateLimiter.newBuckets(String.valueOf(conn.getRemoteSocketAddress())));
+        conn.setAttachment(session);
+        heartbeats.register(session);
+        return session;
+    }
+
+    private void sendWelcome(WebSocket conn, boolean binary) {
         // Enviar mensaje de bienvenida
         JSONObject welcome = new JSONObject();
         welcome.put("type", "connection");
         welcome.put("message", "Conectado al servidor UNO");
         welcome.put("timestamp", System.currentTimeMillis());
+        welcome.put("protocol", binary ? BinaryCodec.SUBPROTOCOL : "json");
 
-        conn.send(welcome.toString());
+        send(conn, welcome);
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        String playerId = playerConnections.get(conn);
+        lobby.unsubscribe(conn);
+        ClientSession session = conn.getAttachment();
+        if (session != null) {
+            heartbeats.unregister(session);
+            if (session.getRateLimits() != null) {
+                rateLimiter.removeConnection(session.getRateLimits());
+            }
+        }
+        String playerId = registry.unbindConnection(conn);
         if (playerId != null) {
-            System.out.println("Jugador desconectado: " + playerId);
-
-            // Limpiar mapas
-            playerConnections.remove(conn);
-            playerSockets.remove(playerId);
+            Log.info("Jugador desconectado: {}", playerId);
 
-            // Notificar a otros jugadores del juego
-            String gameId = playerGames.get(playerId);
+            // El resto se decide en el shard del juego, en orden con un posible resume
+            String gameId = registry.getGameId(playerId);
             if (gameId != null) {
-                // Actualizar contador de jugadores
-                GameInfo gameInfo = gameInfos.get(gameId);
-                if (gameInfo != null) {
-                    gameInfo.currentPlayers = Math.max(0, gameInfo.currentPlayers - 1);
-                    updateGameStatus(gameInfo);
-                }
+                executor.execute(gameId, () -> handleConnectionLost(playerId, gameId));
+            }
+        }
+    }
 
-                notifyGamePlayers(gameId, "player_disconnected", playerId);
-                playerGames.remove(playerId);
+    private void handleConnectionLost(String playerId, String gameId) {
+        if (registry.getConnection(playerId) != null) {
+            return; // ya reanudó en otra conexión
+        }
+        if (reservations.detach(playerId)) {
+            // Asiento guardado: los demás lo ven desconectado, pero sigue en la mesa
+            notifyGamePlayers(gameId, "player_disconnected", playerId);
+            return;
+        }
+        handleDisconnect(playerId, gameId, "player_disconnected");
+    }
 
-                // Si era el host y no hay más jugadores, eliminar el juego
-                if (gameInfo != null && gameInfo.hostPlayerId.equals(playerId) && gameInfo.currentPlayers == 0) {
-                    gameInfos.remove(gameId);
-                    System.out.println("Juego eliminado: " + gameId + " (host desconectado)");
-                }
+    private void expireReservation(SeatReservations.Reservation reservation) {
+        String playerId = reservation.getPlayerId();
+        if (reservations.getByPlayer(playerId) != reservation || !reservations.isExpired(reservation)
+                || registry.getConnection(playerId) != null) {
+            return; // reanudó, se volvió a unir o ya se limpió
+        }
+        Log.info("Reserva vencida: {} deja el juego {}", playerId, reservation.getGameId());
+        handleDisconnect(playerId, reservation.getGameId(), "player_left");
+    }
+
+    private void handleDisconnect(String playerId, String gameId, String eventType) {
+        // Actualizar contador de jugadores
+        GameInfo gameInfo = lobby.get(gameId);
+        if (gameInfo != null) {
+            lobby.playerLeft(gameInfo);
+        }
+
+        notifyGamePlayers(gameId, eventType, playerId);
+        actionLog.left(gameId, playerId);
+        forgetPlayer(playerId);
+        // Lo saca del registro y lo marca desconectado en la partida (o la borra si no queda nadie)
+        gameManager.removePlayer(playerId);
+
+        if (gameManager.getGame(gameId) == null) {
+            forgetGame(gameId, null);
+            Log.info("Juego eliminado: {} (sin jugadores conectados)", gameId);
+        } else if (gameInfo != null && gameInfo.hostPlayerId.equals(playerId) && gameInfo.currentPlayers == 0) {
+            // Si era el host y no hay más jugadores, eliminar el juego
+            forgetGame(gameId, null);
+            Log.info("Juego eliminado: {} (host desconectado)", gameId);
+        } else {
+            broadcastGameState(gameId);
+        }
+    }
+
+    /** Corre en el shard del juego cuando vence su plazo de vida. */
+    private void handleLifecycleCheck(GameLifecycle.Entry entry) {
+        String gameId = entry.getGameId();
+        if (lifecycle.get(gameId) != entry) {
+            return; // ya se borró
+        }
+        UnoGame game = gameManager.getGame(gameId);
+        GameLifecycle.Reason reason = game != null
+                ? lifecycle.check(entry, situation(game))
+                : GameLifecycle.Reason.EMPTY;
+        if (reason == null) {
+            return; // hubo actividad; se reprogramó
+        }
+        Log.info("Juego eliminado: {} (vencido, {})", gameId, reason.getKey());
+        notifyGamePlayers(gameId, "game_closed", reason.getKey());
+        forgetGame(gameId, reason);
+    }
+
+    private GameLifecycle.Reason situation(UnoGame game) {
+        if (game.getState() == GameState.FINISHED) {
+            return GameLifecycle.Reason.FINISHED;
+        }
+        for (String playerId : registry.getGamePlayers(game.getGameId())) {
+            if (registry.getConnection(playerId) != null) {
+                return GameLifecycle.Reason.ABANDONED; // hay alguien: solo vence si nadie juega
             }
         }
+        return GameLifecycle.Reason.EMPTY;
+    }
+
+    /** Borra la partida y todo lo que cuelga de ella: lobby, cachés, plazos y jugadores. */
+    private void forgetGame(String gameId, GameLifecycle.Reason reason) {
+        actionLog.removed(gameId);
+        lobby.remove(gameId);
+        stateFrames.remove(gameId);
+        turnTimers.cancel(gameId);
+        lifecycle.untrack(gameId, reason);
+        for (String playerId : gameManager.removeGame(gameId)) {
+            forgetPlayer(playerId);
+        }
+    }
+
+    private void forgetPlayer(String playerId) {
+        reservations.remove(playerId);
+        rateLimiter.removePlayer(playerId);
+        deltaPlayers.remove(playerId);
+        deltaViews.remove(playerId);
+    }
+
+    /** Heap estimado de una partida: el juego, su estado codificado y su entrada del lobby. */
+    private long retainedBytes(UnoGame game) {
+        long bytes = game.estimateRetainedBytes();
+        GameStateFrame frame = stateFrames.get(game.getGameId());
+        if (frame != null) {
+            bytes += frame.retainedBytes();
+        }
+        GameInfo gameInfo = lobby.get(game.getGameId());
+        if (gameInfo != null) {
+            bytes += 96 + 2L * (gameInfo.roomName.length() + gameInfo.hostPlayerName.length());
+        }
+        return bytes;
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
         try {
-            JSONObject request = new JSONObject(message);
-            String action = request.getString("action");
-
-            System.out.println("Acción recibida: '" + action + "'"); // ← IMPORTANTE: Ver si hay espacios extra
-            System.out.println("Mensaje completo: " + message); // ← Para debug
-
-            switch (action) {
-                case "create_game":
-                    handleCreateGame(conn, request);
-                    break;
-                case "join_game":
-                    handleJoinGame(conn, request);
-                    break;
-                case "start_game":
-                    handleStartGame(conn, request);
-                    break;
-                case "play_card":
-                    handlePlayCard(conn, request);
-                    break;
-                case "draw_card":
-                    handleDrawCard(conn, request);
-                    break;
-                case "choose_color":
-                    handleChooseColor(conn, request);
-                    break;
-                case "get_game_state":
-                    handleGetGameState(conn, request);
-                    break;
-                case "list_games":
-                    handleListGames(conn);
-                    break;
-                case "ping":
-                    handlePing(conn);
-                    break;
-                default:
-                    sendError(conn, "Acción no reconocida: " + action);
-                    break;
+            ClientSession.of(conn).markActivity();
+            if (!allow(conn, ActionDecoder.peekType(message))) {
+                return;
             }
+            Log.debugSampled("Mensaje completo: {}", message);
+
+            long start = System.nanoTime();
+            GameAction action = ActionDecoder.scratch();
+            ActionDecoder.decode(message, action);
+            action.setWireBytes(message.length());
+            metrics.recordLatency(action.getType(), Metrics.Stage.DECODE, System.nanoTime() - start);
+            dispatch(conn, action);
         } catch (Exception e) {
-            System.err.println("Error procesando mensaje: " + e.getMessage());
+            Log.warn("Error procesando mensaje: {}", e.getMessage());
             sendError(conn, "Error procesando solicitud: " + e.getMessage());
         }
     }
 
+    @Override
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        try {
+            ClientSession.of(conn).markActivity();
+            if (!allow(conn, BinaryCodec.peekType(message))) {
+                return;
+            }
+            // Mismo GameAction que el JSON, decodificado del layout binario
+            long start = System.nanoTime();
+            GameAction action = ActionDecoder.scratch();
+            action.setWireBytes(message.remaining());
+            BinaryCodec.decodeAction(message, action);
+            metrics.recordLatency(action.getType(), Metrics.Stage.DECODE, System.nanoTime() - start);
+            dispatch(conn, action);
+        } catch (Exception e) {
+            Log.warn("Error procesando mensaje binario: {}", e.getMessage());
+            sendError(conn, "Error procesando solicitud: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cupo de la conexión (y del jugador, si ya se unió) para la clase de la
+     * acción. Sin objetos nuevos cuando se acepta; al rechazar responde
+     * rate_limited como mucho una vez por segundo.
+     */
+    private boolean allow(WebSocket conn, GameAction.Type type) {
+        ClientSession session = ClientSession.of(conn);
+        if (rateLimiter.tryAcquire(session.getRateLimits(), registry.getPlayerId(conn), type)) {
+            return true;
+        }
+        if (rateLimiter.shouldReply(session.getRateLimits())) {
+            JSONObject error = new JSONObject();
+            error.put("type", "error");
+            error.put("success", false);
+            error.put("code", "rate_limited");
+            error.put("action", type != null ? type.getWireName() : JSONObject.NULL);
+            error.put("message", "Demasiadas solicitudes, espera un momento");
+            error.put("timestamp", System.currentTimeMillis());
+            send(conn, error);
+        }
+        return false;
+    }
+
+    @Override
+    public void onWebsocketPong(WebSocket conn, Framedata frame) {
+        ClientSession.of(conn).markActivity();
+    }
+
+    @Override
+    public void onWebsocketPing(WebSocket conn, Framedata frame) {
+        ClientSession.of(conn).markActivity();
+        super.onWebsocketPing(conn, frame);
+    }
+
+    private void dispatch(WebSocket conn, GameAction action) {
+        String gameId = routeGameId(action);
+        if (gameId == null) {
+            // Lecturas globales o sin juego: se atienden en el hilo del WebSocket
+            handleRequest(conn, action);
+            return;
+        }
+
+        // El GameAction decodificado es del hilo del WebSocket: el shard recibe una copia
+        GameAction queued = action.copy();
+        executor.execute(gameId, () -> {
+            try {
+                handleRequest(conn, queued);
+            } catch (Exception e) {
+                Log.warn("Error procesando mensaje: {}", e.getMessage());
+                sendError(conn, "Error procesando solicitud: " + e.getMessage());
+            }
+        });
+    }
+
+    private String routeGameId(GameAction action) {
+        if (action.getType() == null) {
+            return null;
+        }
+        switch (action.getType()) {
+            case JOIN_GAME:
+            case START_GAME:
+                return action.getGameId();
+            case RESUME:
+                SeatReservations.Reservation reservation = reservations.get(action.getResumeToken());
+                return reservation != null ? reservation.getGameId() : null;
+            case CREATE_GAME:
+            case LIST_GAMES:
+            case SUBSCRIBE_LOBBY:
+            case UNSUBSCRIBE_LOBBY:
+            case PING:
+            case METRICS:
+            case CLIENT_OPTIONS:
+                return null;
+            default:
+                // Acciones de juego: el juego sale del jugador
+                String playerId = action.getPlayerId();
+                return playerId != null ? registry.getGameId(playerId) : null;
+        }
+    }
+
+    private void handleRequest(WebSocket conn, GameAction action) {
+        if (action.getType() == null) {
+            sendError(conn, "Acción no reconocida: " + action.getActionName());
+            return;
+        }
+
+        Log.debugSampled("Acción recibida: '{}'", action.getActionName());
+
+        long start = System.nanoTime();
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        CURRENT_ACTION.set(action.getType());
+        try {
+            route(conn, action);
+        } finally {
+            CURRENT_ACTION.set(null);
+            metrics.recordLatency(action.getType(), Metrics.Stage.HANDLE, System.nanoTime() - start);
+            if (event.shouldCommit()) {
+                String gameId = action.getGameId() != null ? action.getGameId()
+                        : action.getPlayerId() != null ? registry.getGameId(action.getPlayerId()) : null;
+                event.gameId = gameId;
+                event.action = action.getActionName();
+                event.playerId = action.getPlayerId();
+                event.playerCount = gameId != null ? registry.getGamePlayers(gameId).size() : 0;
+                event.payloadBytes = action.getWireBytes();
+                event.commit();
+            }
+        }
+    }
+
+    private void route(WebSocket conn, GameAction action) {
+        switch (action.getType()) {
+            case CREATE_GAME:
+                handleCreateGame(conn, action);
+                break;
+            case JOIN_GAME:
+                handleJoinGame(conn, action);
+                break;
+            case START_GAME:
+                handleStartGame(conn, action);
+                break;
+            case PLAY_CARD:
+                handlePlayCard(conn, action);
+                break;
+            case DRAW_CARD:
+                handleDrawCard(conn, action);
+                break;
+            case CHOOSE_COLOR:
+                handleChooseColor(conn, action);
+                break;
+            case GET_GAME_STATE:
+                handleGetGameState(conn, action);
+                break;
+            case ACK_STATE:
+                handleAckState(conn, action);
+                break;
+            case RESYNC:
+                handleResync(conn, action);
+                break;
+            case RESUME:
+                handleResume(conn, action);
+                break;
+            case CLIENT_OPTIONS:
+                handleClientOptions(conn, action);
+                break;
+            case LIST_GAMES:
+                handleListGames(conn, action);
+                break;
+            case SUBSCRIBE_LOBBY:
+                lobby.subscribe(conn);
+                break;
+            case UNSUBSCRIBE_LOBBY:
+                lobby.unsubscribe(conn);
+                break;
+            case PING:
+                handlePing(conn);
+                break;
+            case METRICS:
+                handleMetrics(conn);
+                break;
+            default:
+                sendError(conn, "Acción no reconocida: " + action.getActionName());
+                break;
+        }
+    }
+
     @Override
     public void onError(WebSocket conn, Exception ex) {
-        System.err.println("Error en WebSocket: " + ex.getMessage());
-        ex.printStackTrace();
+        Log.error("Error en WebSocket: {}", ex.getMessage(), ex);
+    }
+
+    @Override
+    public void stop(int timeout, String closeMessage) throws InterruptedException {
+        super.stop(timeout, closeMessage);
+        shutdownServices();
+    }
+
+    private void shutdownServices() {
+        tcp.stop();
+        replication.stop();
+        executor.shutdown();
+        outbound.shutdown();
+        lobby.shutdown();
+        wheel.shutdown();
+        actionLog.close();
+        if (metricsHttp != null) {
+            metricsHttp.stop();
+        }
     }
 
     @Override
     public void onStart() {
-        System.out.println("Servidor UNO WebSocket iniciado en puerto " + PORT);
-        System.out.println("Acciones disponibles:");
-        System.out.println("- create_game: Crear nuevo juego");
-        System.out.println("- join_game: Unirse a un juego");
-        System.out.println("- start_game: Iniciar juego");
-        System.out.println("- play_card: Jugar una carta");
-        System.out.println("- draw_card: Robar carta");
-        System.out.println("- choose_color: Elegir color para comodín");
-        System.out.println("- get_game_state: Obtener estado del juego");
-        System.out.println("- list_games: Listar juegos disponibles");
-        System.out.println("- ping: Health check");
-    }
-
-    private void handleCreateGame(WebSocket conn, JSONObject request) {
+        Log.info("Servidor UNO WebSocket iniciado en puerto {}", port);
+        Log.info("Shards de juego: {}", executor.getShardCount());
+        if (metricsPort > 0) {
+            try {
+                metricsHttp = new MetricsHttpServer(metrics, metricsBind, metricsPort);
+                metricsHttp.start();
+            } catch (IOException e) {
+                Log.warn("No se pudo abrir el puerto de métricas {}:{}: {}", metricsBind, metricsPort, e.getMessage());
+            }
+        }
+        replication.start();
+        tcp.start();
+        Log.info("Acciones disponibles:");
+        Log.info("- create_game: Crear nuevo juego");
+        Log.info("- join_game: Unirse a un juego");
+        Log.info("- start_game: Iniciar juego");
+        Log.info("- play_card: Jugar una carta");
+        Log.info("- draw_card: Robar carta");
+        Log.info("- choose_color: Elegir color para comodín");
+        Log.info("- get_game_state: Obtener estado del juego");
+        Log.info("- ack_state: Confirmar versión de estado recibida (modo delta)");
+        Log.info("- resync: Pedir estado completo (modo delta)");
+        Log.info("- resume: Volver al asiento con el resumeToken tras perder la conexión");
+        Log.info("- client_options: Opciones de la conexión (batchFrames)");
+        Log.info("- list_games: Listar juegos disponibles");
+        Log.info("- subscribe_lobby: Recibir el lobby y sus cambios (lobby_delta)");
+        Log.info("- ping: Health check");
+        Log.info("- metrics: Latencias por acción y contadores");
+    }
+
+    private void handleCreateGame(WebSocket conn, GameAction action) {
         try {
+            JSONObject request = action.getPayload();
             // Generar un gameId único
             String gameId = UUID.randomUUID().toString().substring(0, 8);
+            // Detrás de un gateway el gameId ya viene elegido: decide en qué nodo vive
+            String requestedGameId = action.getGameId();
+            if (requestedGameId != null && !GAME_ID_PATTERN.matcher(requestedGameId).matches()) {
+                sendGameError(conn, "game_created_failed", "gameId inválido");
+                return;
+            }
 
             // Valores por defecto si no se proporcionan en el request
             String roomName = request.optString("roomName", "Sala de " + gameId);
@@ -180,13 +748,19 @@ public class UnoWebSocketServer extends WebSocketServer {
             int maxPlayers = request.optInt("maxPlayers", 4);
 
             // Crear el juego en el GameManager
-            String actualGameId = gameManager.createGame();
+            String actualGameId = requestedGameId != null
+                    ? gameManager.createGame(requestedGameId) : gameManager.createGame();
+            if (actualGameId == null) {
+                sendGameError(conn, "game_created_failed", "Ya existe un juego con ese id");
+                return;
+            }
 
             // Crear información del juego para el frontend
-            GameInfo gameInfo = new GameInfo(actualGameId, roomName, hostPlayerId, hostPlayerName, maxPlayers);
-            gameInfos.put(actualGameId, gameInfo);
+            GameInfo gameInfo = lobby.create(actualGameId, roomName, hostPlayerId, hostPlayerName, maxPlayers);
+            actionLog.created(actualGameId, roomName, hostPlayerId, hostPlayerName, maxPlayers, gameInfo.createdAt);
+            lifecycle.track(actualGameId, retainedBytes(gameManager.getGame(actualGameId)));
 
-            System.out.println("Juego creado: " + actualGameId + " por " + hostPlayerName);
+            Log.info("Juego creado: {} por {}", actualGameId, hostPlayerName);
 
             JSONObject response = new JSONObject();
             response.put("type", "game_created");
@@ -197,21 +771,21 @@ public class UnoWebSocketServer extends WebSocketServer {
             response.put("hostPlayerName", hostPlayerName);
             response.put("maxPlayers", maxPlayers);
 
-            conn.send(response.toString());
+            send(conn, response);
 
         } catch (Exception e) {
-            System.err.println("Error creando juego: " + e.getMessage());
+            Log.warn("Error creando juego: {}", e.getMessage());
             sendGameError(conn, "game_created_failed", "Error creando juego: " + e.getMessage());
         }
     }
 
-    private void handleJoinGame(WebSocket conn, JSONObject request) {
+    private void handleJoinGame(WebSocket conn, GameAction action) {
         try {
-            String gameId = request.getString("gameId");
-            String playerId = request.getString("playerId");
-            String playerName = request.getString("playerName");
+            String gameId = action.requireGameId();
+            String playerId = action.requirePlayerId();
+            String playerName = action.requirePlayerName();
 
-            GameInfo gameInfo = gameInfos.get(gameId);
+            GameInfo gameInfo = lobby.get(gameId);
             if (gameInfo == null) {
                 sendGameError(conn, "join_game_failed", "El juego no existe");
                 return;
@@ -222,23 +796,36 @@ public class UnoWebSocketServer extends WebSocketServer {
             GameResponse gameResponse = gameManager.joinGame(gameId, playerId, playerName);
 
             if (gameResponse.isSuccess()) {
+                actionLog.joined(gameId, playerId, playerName);
                 // Registrar conexión del jugador
-                playerConnections.put(conn, playerId);
-                playerSockets.put(playerId, conn);
-                playerGames.put(playerId, gameId);
+                // (GameManager ya lo agregó a los miembros del juego)
+                registry.bindConnection(playerId, conn);
+                rateLimiter.registerPlayer(playerId);
+                SeatReservations.Reservation reservation =
+                        reservations.isEnabled() ? reservations.issue(playerId, gameId) : null;
+                if (reservation != null) {
+                    actionLog.seated(gameId, playerId, reservation.getToken());
+                }
+                if (action.isDeltaUpdates()) {
+                    deltaPlayers.add(playerId);
+                }
+                deltaViews.remove(playerId);
 
                 // Actualizar información del juego
-                gameInfo.currentPlayers++;
-                updateGameStatus(gameInfo);
+                lobby.playerJoined(gameInfo);
 
-                System.out.println("Jugador " + playerName + " se unió al juego " + gameId);
+                Log.info("Jugador {} se unió al juego {}", playerName, gameId);
 
                 // Enviar respuesta al jugador
                 JSONObject response = createGameResponse("player_joined", gameResponse);
                 response.put("gameId", gameId);
                 response.put("currentPlayers", gameInfo.currentPlayers);
                 response.put("maxPlayers", gameInfo.maxPlayers);
-                conn.send(response.toString());
+                if (reservation != null) {
+                    response.put("resumeToken", reservation.getToken());
+                    response.put("resumeGraceSeconds", reservations.getGraceMillis() / 1000);
+                }
+                send(conn, response);
 
                 // ✅ NUEVO: Enviar estado actualizado a TODOS los jugadores
                 broadcastGameState(gameId);
@@ -250,17 +837,17 @@ public class UnoWebSocketServer extends WebSocketServer {
                 sendGameError(conn, "join_game_failed", gameResponse.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error uniéndose al juego: " + e.getMessage());
+            Log.warn("Error uniéndose al juego: {}", e.getMessage());
             sendGameError(conn, "join_game_failed", "Error uniéndose al juego: " + e.getMessage());
         }
     }
 
-    private void handleStartGame(WebSocket conn, JSONObject request) {
+    private void handleStartGame(WebSocket conn, GameAction action) {
         try {
-            String gameId = request.getString("gameId");
-            String playerId = request.getString("playerId");
+            String gameId = action.requireGameId();
+            String playerId = action.requirePlayerId();
 
-            GameInfo gameInfo = gameInfos.get(gameId);
+            GameInfo gameInfo = lobby.get(gameId);
             if (gameInfo == null) {
                 sendGameError(conn, "start_game_failed", "El juego no existe");
                 return;
@@ -268,12 +855,15 @@ public class UnoWebSocketServer extends WebSocketServer {
 
             // ... validaciones existentes ...
 
-            GameResponse gameResponse = gameManager.startGame(gameId, playerId);
+            // La semilla va al log: con ella el replay reparte el mismo mazo
+            long deckSeed = ThreadLocalRandom.current().nextLong();
+            GameResponse gameResponse = gameManager.startGame(gameId, playerId, deckSeed);
 
             if (gameResponse.isSuccess()) {
-                gameInfo.status = "playing";
+                actionLog.started(gameId, playerId, deckSeed);
+                lobby.setStatus(gameInfo, "playing");
 
-                System.out.println("Juego iniciado: " + gameId);
+                Log.info("Juego iniciado: {}", gameId);
 
                 // Notificar a todos los jugadores que el juego ha comenzado
                 notifyGamePlayers(gameId, "game_started", null);
@@ -285,70 +875,42 @@ public class UnoWebSocketServer extends WebSocketServer {
                 sendGameError(conn, "start_game_failed", gameResponse.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error iniciando juego: " + e.getMessage());
+            Log.warn("Error iniciando juego: {}", e.getMessage());
             sendGameError(conn, "start_game_failed", "Error iniciando juego: " + e.getMessage());
         }
     }
 
-    private void handleListGames(WebSocket conn) {
+    private void handleListGames(WebSocket conn, GameAction action) {
         try {
-            JSONArray gamesList = new JSONArray();
-
-            for (GameInfo gameInfo : gameInfos.values()) {
-                JSONObject game = new JSONObject();
-                game.put("gameId", gameInfo.gameId);
-                game.put("roomName", gameInfo.roomName);
-                game.put("hostPlayerName", gameInfo.hostPlayerName);
-                game.put("currentPlayers", gameInfo.currentPlayers);
-                game.put("maxPlayers", gameInfo.maxPlayers);
-                game.put("status", gameInfo.status);
-                game.put("createdAt", gameInfo.createdAt);
-
-                gamesList.put(game);
-            }
+            JSONObject data = lobby.listGames(action.getPayload());
 
             JSONObject response = new JSONObject();
             response.put("type", "games_list");
             response.put("success", true);
-
-            JSONObject data = new JSONObject();
-            data.put("games", gamesList);
             response.put("data", data);
-
             response.put("timestamp", System.currentTimeMillis());
 
-            conn.send(response.toString());
+            send(conn, response);
 
-            System.out.println("Lista de juegos enviada: " + gamesList.length() + " juegos");
+            Log.debug("Lista de juegos enviada: {} juegos", data.getJSONArray("games").length());
 
         } catch (Exception e) {
-            System.err.println("Error listando juegos: " + e.getMessage());
+            Log.warn("Error listando juegos: {}", e.getMessage());
             sendError(conn, "Error listando juegos: " + e.getMessage());
         }
     }
 
-    private void updateGameStatus(GameInfo gameInfo) {
-        if (gameInfo.currentPlayers >= gameInfo.maxPlayers && !"playing".equals(gameInfo.status)) {
-            gameInfo.status = "full";
-        } else if (gameInfo.currentPlayers < gameInfo.maxPlayers && "full".equals(gameInfo.status)) {
-            gameInfo.status = "waiting";
-        }
-    }
-
-    private void handlePlayCard(WebSocket conn, JSONObject request) {
+    private void handlePlayCard(WebSocket conn, GameAction action) {
         try {
-            String playerId = request.getString("playerId");
-            int cardIndex = request.getInt("cardIndex");
-
-            Card.Color chosenColor = null;
-            if (request.has("chosenColor") && !request.isNull("chosenColor")) {
-                chosenColor = Card.Color.valueOf(request.getString("chosenColor"));
-            }
+            String playerId = action.requirePlayerId();
+            int cardIndex = action.requireCardIndex();
+            Card.Color chosenColor = action.getChosenColor();
 
             GameResponse gameResponse = gameManager.playCard(playerId, cardIndex, chosenColor);
 
             if (gameResponse.isSuccess()) {
-                String gameId = playerGames.get(playerId);
+                String gameId = registry.getGameId(playerId);
+                actionLog.played(gameId, playerId, cardIndex, chosenColor);
 
                 // Notificar a todos los jugadores sobre la jugada
                 notifyGamePlayers(gameId, "card_played", playerId);
@@ -358,9 +920,9 @@ public class UnoWebSocketServer extends WebSocketServer {
 
                 // Verificar si el juego terminó
                 if (gameResponse.getData().containsKey("winner")) {
-                    GameInfo gameInfo = gameInfos.get(gameId);
+                    GameInfo gameInfo = lobby.get(gameId);
                     if (gameInfo != null) {
-                        gameInfo.status = "finished";
+                        lobby.setStatus(gameInfo, "finished");
                     }
                     notifyGamePlayers(gameId, "game_ended", gameResponse.getData().get("winner"));
                 }
@@ -368,19 +930,20 @@ public class UnoWebSocketServer extends WebSocketServer {
                 sendGameError(conn, "play_card_failed", gameResponse.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error jugando carta: " + e.getMessage());
+            Log.warn("Error jugando carta: {}", e.getMessage());
             sendGameError(conn, "play_card_failed", "Error jugando carta: " + e.getMessage());
         }
     }
 
-    private void handleDrawCard(WebSocket conn, JSONObject request) {
+    private void handleDrawCard(WebSocket conn, GameAction action) {
         try {
-            String playerId = request.getString("playerId");
+            String playerId = action.requirePlayerId();
 
             GameResponse gameResponse = gameManager.drawCard(playerId);
 
             if (gameResponse.isSuccess()) {
-                String gameId = playerGames.get(playerId);
+                String gameId = registry.getGameId(playerId);
+                actionLog.drew(gameId, playerId);
 
                 // Notificar a todos los jugadores
                 notifyGamePlayers(gameId, "card_drawn", playerId);
@@ -392,20 +955,21 @@ public class UnoWebSocketServer extends WebSocketServer {
                 sendGameError(conn, "draw_card_failed", gameResponse.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error robando carta: " + e.getMessage());
+            Log.warn("Error robando carta: {}", e.getMessage());
             sendGameError(conn, "draw_card_failed", "Error robando carta: " + e.getMessage());
         }
     }
 
-    private void handleChooseColor(WebSocket conn, JSONObject request) {
+    private void handleChooseColor(WebSocket conn, GameAction action) {
         try {
-            String playerId = request.getString("playerId");
-            Card.Color color = Card.Color.valueOf(request.getString("color"));
+            String playerId = action.requirePlayerId();
+            Card.Color color = action.requireColor();
 
             GameResponse gameResponse = gameManager.chooseColor(playerId, color);
 
             if (gameResponse.isSuccess()) {
-                String gameId = playerGames.get(playerId);
+                String gameId = registry.getGameId(playerId);
+                actionLog.choseColor(gameId, playerId, color);
 
                 // Notificar a todos los jugadores
                 notifyGamePlayers(gameId, "color_chosen", color.toString());
@@ -417,38 +981,191 @@ public class UnoWebSocketServer extends WebSocketServer {
                 sendGameError(conn, "choose_color_failed", gameResponse.getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error eligiendo color: " + e.getMessage());
+            Log.warn("Error eligiendo color: {}", e.getMessage());
             sendGameError(conn, "choose_color_failed", "Error eligiendo color: " + e.getMessage());
         }
     }
 
-    private void handleGetGameState(WebSocket conn, JSONObject request) {
+    /** Corre en el shard del juego cuando vence un plazo de turno o de color. */
+    private void handleTurnTimeout(TurnTimers.Deadline deadline) {
+        String gameId = deadline.getGameId();
+        UnoGame game = gameManager.getGame(gameId);
+        if (game == null) {
+            turnTimers.cancel(gameId);
+            return;
+        }
+        if (!turnTimers.isDue(deadline, game)) {
+            return; // jugó a tiempo o el plazo se rearmó
+        }
+
+        String playerId = deadline.getPlayerId();
+        GameResponse gameResponse = gameManager.timeoutTurn(gameId, playerId);
+        if (!gameResponse.isSuccess()) {
+            Log.warn("Plazo vencido sin jugada automática en {}: {}", gameId, gameResponse.getMessage());
+            turnTimers.rearm(game);
+            return;
+        }
+        actionLog.timedOut(gameId, playerId);
+        turnTimeouts.increment();
+        Log.info("Plazo vencido: {} en {} ({})", playerId, gameId, gameResponse.getData().get("action"));
+
+        JSONObject data = new JSONObject(gameResponse.getData());
+        data.put("playerId", playerId);
+        notifyGamePlayers(gameId, "turn_timeout", data);
+        // Los mismos eventos que si lo hubiera hecho el jugador
+        if (deadline.getKind() == TurnTimers.Kind.COLOR_CHOICE) {
+            notifyGamePlayers(gameId, "color_chosen", gameResponse.getData().get("color"));
+        } else {
+            notifyGamePlayers(gameId, "card_drawn", playerId);
+        }
+        broadcastGameState(gameId);
+    }
+
+    private void handleGetGameState(WebSocket conn, GameAction action) {
         try {
-            String playerId = request.getString("playerId");
+            String playerId = action.requirePlayerId();
 
-            GameResponse gameResponse = gameManager.getGameState(playerId);
+            UnoGame game = gameManager.getGameForPlayer(playerId);
 
-            if (gameResponse.isSuccess()) {
-                JSONObject response = createGameResponse("game_state", gameResponse);
-                conn.send(response.toString());
+            if (game != null) {
+                sendStateFrame(conn, getStateFrame(game), game, playerId, false);
             } else {
-                sendGameError(conn, "get_game_state_failed", gameResponse.getMessage());
+                sendGameError(conn, "get_game_state_failed", gameManager.getGameState(playerId).getMessage());
             }
         } catch (Exception e) {
-            System.err.println("Error obteniendo estado del juego: " + e.getMessage());
+            Log.warn("Error obteniendo estado del juego: {}", e.getMessage());
             sendGameError(conn, "get_game_state_failed", "Error obteniendo estado del juego: " + e.getMessage());
         }
     }
 
+    private void handleAckState(WebSocket conn, GameAction action) {
+        String playerId = action.requirePlayerId();
+        long version = action.requireVersion();
+
+        // Si el cliente confirma una versión distinta a la última enviada,
+        // perdió alguna actualización: se le manda el estado completo
+        StateView lastSent = deltaViews.get(playerId);
+        if (lastSent == null || lastSent.getVersion() != version) {
+            sendFullGameState(conn, playerId);
+        }
+    }
+
+    private void handleResync(WebSocket conn, GameAction action) {
+        String playerId = action.requirePlayerId();
+        sendFullGameState(conn, playerId);
+    }
+
+    private void handleResume(WebSocket conn, GameAction action) {
+        try {
+            SeatReservations.Reservation reservation = reservations.get(action.requireResumeToken());
+            if (reservation == null || reservations.isExpired(reservation)) {
+                sendGameError(conn, "resume_failed", "La sesión expiró, hay que volver a unirse al juego");
+                return;
+            }
+            String playerId = reservation.getPlayerId();
+            String gameId = reservation.getGameId();
+            UnoGame game = gameManager.getGame(gameId);
+            if (game == null || !gameId.equals(registry.getGameId(playerId))) {
+                reservations.remove(playerId);
+                sendGameError(conn, "resume_failed", "El juego ya no existe");
+                return;
+            }
+
+            // Una conexión anterior medio abierta se reemplaza por la nueva
+            WebSocket previous = registry.getConnection(playerId);
+            boolean wasDetached = reservation.isDetached();
+            registry.bindConnection(playerId, conn);
+            reservations.attach(reservation);
+            rateLimiter.registerPlayer(playerId);
+            if (previous != null && previous != conn) {
+                previous.close(CloseFrame.NORMAL, "Sesión reanudada en otra conexión");
+            }
+
+            JSONObject response = new JSONObject();
+            response.put("type", "resumed");
+            response.put("success", true);
+            response.put("gameId", gameId);
+            response.put("playerId", playerId);
+            response.put("version", game.getStateVersion());
+            response.put("timestamp", System.currentTimeMillis());
+            send(conn, response);
+
+            sendMissedState(conn, playerId, game, action);
+            if (wasDetached) {
+                notifyOtherGamePlayers(gameId, playerId, "player_reconnected", playerId);
+            }
+            Log.info("Jugador {} reanudó su asiento en {}", playerId, gameId);
+        } catch (Exception e) {
+            Log.warn("Error reanudando sesión: {}", e.getMessage());
+            sendGameError(conn, "resume_failed", "Error reanudando sesión: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Solo lo que el cliente no tiene. En modo delta, si su versión es la
+     * última que se le envió, basta el delta hasta el estado actual (o nada);
+     * en otro caso, o sin versión, va el estado completo.
+     */
+    private void sendMissedState(WebSocket conn, String playerId, UnoGame game, GameAction action) {
+        if (deltaPlayers.contains(playerId)) {
+            StateView lastSent = deltaViews.get(playerId);
+            if (action.hasVersion() && lastSent != null && lastSent.getVersion() == action.getVersion()) {
+                sendGameStateDelta(playerId);
+            } else {
+                sendFullGameState(conn, playerId);
+            }
+        } else if (!action.hasVersion() || action.getVersion() != game.getStateVersion()) {
+            sendStateFrame(conn, getStateFrame(game), game, playerId, true);
+        }
+    }
+
+    private void handleClientOptions(WebSocket conn, GameAction action) {
+        JSONObject request = action.getPayload();
+        ClientSession session = ClientSession.of(conn);
+        if (request.has("batchFrames")) {
+            session.setBatchFrames(request.getBoolean("batchFrames"));
+        }
+
+        JSONObject response = new JSONObject();
+        response.put("type", "client_options");
+        response.put("success", true);
+        response.put("batchFrames", session.isBatchFrames());
+        response.put("timestamp", System.currentTimeMillis());
+        send(conn, response);
+    }
+
+    private void handleMetrics(WebSocket conn) {
+        JSONObject response = new JSONObject();
+        response.put("type", "metrics");
+        response.put("success", true);
+        response.put("data", new JSONObject(metrics.toMap()));
+        response.put("timestamp", System.currentTimeMillis());
+        send(conn, response);
+    }
+
     private void handlePing(WebSocket conn) {
         JSONObject response = new JSONObject();
         response.put("type", "pong");
         response.put("status", "OK");
-        response.put("activeGames", gameInfos.size());
-        response.put("connectedPlayers", playerConnections.size());
+        response.put("activeGames", lobby.size());
+        response.put("lobbySubscribers", lobby.getSubscriberCount());
+        response.put("connectedPlayers", registry.getConnectionCount());
+        response.put("shards", executor.getStats());
+        Map<String, Object> outboundStats = outbound.getStats().toMap();
+        outboundStats.put("backloggedSessions", outbound.getBackloggedCount());
+        response.put("outbound", outboundStats);
+        response.put("rateLimit", rateLimiter.toMap());
+        response.put("reservedSeats", Map.of("total", reservations.size(), "detached", reservations.getDetachedCount()));
+        response.put("heartbeat", heartbeats.toMap());
+        response.put("turnTimers", Map.of("active", turnTimers.size(), "timeouts", turnTimeouts.sum()));
+        response.put("games", lifecycle.toMap());
+        response.put("wal", actionLog.toMap());
+        response.put("replication", replication.toMap());
+        response.put("tcp", tcp.toMap());
+        response.put("log", Map.of("level", Log.getLevel().name(), "written", Log.getWritten(), "dropped", Log.getDropped()));
         response.put("timestamp", System.currentTimeMillis());
 
-        conn.send(response.toString());
+        send(conn, response);
     }
 
     private void notifyGamePlayers(String gameId, String eventType, Object data) {
@@ -462,11 +1179,12 @@ public class UnoWebSocketServer extends WebSocketServer {
             notification.put("data", data);
         }
         notification.put("timestamp", System.currentTimeMillis());
+        OutboundMessage message = OutboundMessage.of(notification); // se codifica una vez
 
         for (String playerId : gamePlayers) {
-            WebSocket socket = playerSockets.get(playerId);
+            WebSocket socket = registry.getConnection(playerId);
             if (socket != null && socket.isOpen()) {
-                socket.send(notification.toString());
+                send(socket, message);
             }
         }
     }
@@ -481,42 +1199,175 @@ public class UnoWebSocketServer extends WebSocketServer {
             notification.put("data", data);
         }
         notification.put("timestamp", System.currentTimeMillis());
+        OutboundMessage message = OutboundMessage.of(notification); // se codifica una vez
 
         for (String playerId : gamePlayers) {
             if (!playerId.equals(excludePlayerId)) {
-                WebSocket socket = playerSockets.get(playerId);
+                WebSocket socket = registry.getConnection(playerId);
                 if (socket != null && socket.isOpen()) {
-                    socket.send(notification.toString());
+                    send(socket, message);
                 }
             }
         }
     }
 
     private void broadcastGameState(String gameId) {
-        Set<String> gamePlayers = getGamePlayers(gameId);
-
-        for (String playerId : gamePlayers) {
-            GameResponse gameResponse = gameManager.getGameState(playerId);
-            if (gameResponse.isSuccess()) {
-                JSONObject response = createGameResponse("game_state_update", gameResponse);
+        UnoGame game = gameManager.getGame(gameId);
+        if (game == null) {
+            turnTimers.cancel(gameId);
+            return;
+        }
+        // Cada cambio de estado reinicia el plazo del turno (o lo quita si terminó)
+        turnTimers.arm(game);
+
+        long start = System.nanoTime();
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        int recipients = 0;
+        long bytes = 0;
+
+        // Parte pública codificada una vez; a cada jugador solo se le agrega su mano
+        GameStateFrame frame = null;
+        for (Player player : game.getPlayers()) {
+            String playerId = player.getId();
+            if (!gameId.equals(registry.getGameId(playerId))) {
+                continue;
+            }
+            if (deltaPlayers.contains(playerId)) {
+                bytes += sendGameStateDelta(playerId);
+                recipients++;
+                continue;
+            }
 
-                WebSocket socket = playerSockets.get(playerId);
-                if (socket != null && socket.isOpen()) {
-                    socket.send(response.toString());
+            WebSocket socket = registry.getConnection(playerId);
+            if (socket != null && socket.isOpen()) {
+                if (frame == null) {
+                    frame = getStateFrame(game);
                 }
+                bytes += sendStateFrame(socket, frame, game, playerId, true);
+                recipients++;
             }
         }
+
+        metrics.recordFanOut(recipients);
+        GameAction.Type action = CURRENT_ACTION.get();
+        metrics.recordLatency(action, Metrics.Stage.BROADCAST, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.gameId = gameId;
+            event.action = action != null ? action.getWireName() : null;
+            event.stateVersion = game.getStateVersion();
+            event.recipients = recipients;
+            event.payloadBytes = bytes;
+            event.commit();
+        }
+        lifecycle.touch(gameId, situation(game), action != null, retainedBytes(game));
     }
 
-    private Set<String> getGamePlayers(String gameId) {
-        // Filtrar jugadores por gameId
-        return playerGames.entrySet().stream()
-                .filter(entry -> gameId.equals(entry.getValue()))
-                .map(Map.Entry::getKey)
-                .collect(java.util.stream.Collectors.toSet());
+    private GameStateFrame getStateFrame(UnoGame game) {
+        GameStateFrame frame = stateFrames.get(game.getGameId());
+        if (frame == null || frame.getVersion() != game.getStateVersion()) {
+            frame = GameStateFrame.encode(game);
+            stateFrames.put(game.getGameId(), frame);
+        }
+        return frame;
     }
 
-    private JSONObject createGameResponse(String type, GameResponse gameResponse) {
+    /** Encola el estado para un jugador; devuelve los bytes del payload. */
+    private int sendStateFrame(WebSocket conn, GameStateFrame frame, UnoGame game, String playerId, boolean update) {
+        List<Card> hand = Collections.emptyList();
+        for (Player player : game.getPlayers()) {
+            if (player.getId().equals(playerId)) {
+                hand = player.getHand();
+                break;
+            }
+        }
+
+        ClientSession session = ClientSession.of(conn);
+        ByteBuffer payload = frame.forPlayer(playerId, hand, session.isBinary(), update);
+        // Un game_state_update encolado deja obsoleta la cadena de estado del mismo juego
+        int bytes = payload.remaining();
+        outbound.send(session, OutboundMessage.encoded(update ? "game_state_update" : "game_state",
+                payload, session.isBinary(), update ? OutboundMessage.stateKey(game.getGameId()) : null));
+        return bytes;
+    }
+
+    /** Encola el delta (o el estado completo) para un jugador; devuelve los bytes. */
+    private int sendGameStateDelta(String playerId) {
+        WebSocket socket = registry.getConnection(playerId);
+        if (socket == null || !socket.isOpen()) {
+            return 0;
+        }
+
+        StateView base = deltaViews.get(playerId);
+        if (base == null) {
+            // Primer envío (unión o resync): estado completo
+            return sendFullGameState(socket, playerId);
+        }
+
+        StateView current = gameManager.getStateView(playerId);
+        if (current == null || current.getVersion() == base.getVersion()) {
+            return 0;
+        }
+        if (!current.getGameId().equals(base.getGameId())) {
+            return sendFullGameState(socket, playerId);
+        }
+
+        Map<String, Object> delta = current.diff(base);
+        deltaViews.put(playerId, current);
+
+        JSONObject response = new JSONObject();
+        response.put("type", "game_state_delta");
+        response.put("success", true);
+        response.put("gameId", current.getGameId());
+        response.put("baseVersion", base.getVersion());
+        response.put("version", current.getVersion());
+        response.put("data", new JSONObject(delta));
+        response.put("timestamp", System.currentTimeMillis());
+
+        ClientSession session = ClientSession.of(socket);
+        OutboundMessage message = OutboundMessage.of(response, OutboundMessage.stateKey(current.getGameId()));
+        outbound.send(session, message);
+        return message.size(session.isBinary());
+    }
+
+    /**
+     * La cola de salida descartó parte de la cadena de estado de un juego:
+     * los deltas ya no aplican sobre lo que tiene el cliente, así que se
+     * olvida la última vista y se manda el estado completo.
+     */
+    private void resendState(ClientSession session, String gameId) {
+        WebSocket conn = session.getSocket();
+        String playerId = registry.getPlayerId(conn);
+        if (playerId == null || !conn.isOpen() || !gameId.equals(registry.getGameId(playerId))) {
+            return;
+        }
+        deltaViews.remove(playerId);
+        sendFullGameState(conn, playerId);
+    }
+
+    private int sendFullGameState(WebSocket conn, String playerId) {
+        // La vista se captura antes de armar el estado: si el juego cambia en
+        // medio, el siguiente delta repite campos en vez de perderlos
+        StateView view = gameManager.getStateView(playerId);
+        UnoGame game = gameManager.getGameForPlayer(playerId);
+
+        if (view == null || game == null) {
+            sendGameError(conn, "resync_failed", gameManager.getGameState(playerId).getMessage());
+            return 0;
+        }
+
+        if (deltaPlayers.contains(playerId)) {
+            deltaViews.put(playerId, view);
+        }
+        return sendStateFrame(conn, getStateFrame(game), game, playerId, true);
+    }
+
+    Set<String> getGamePlayers(String gameId) {
+        // Índice juego -> jugadores: O(jugadores del juego)
+        return registry.getGamePlayers(gameId);
+    }
+
+    static JSONObject createGameResponse(String type, GameResponse gameResponse) {
         JSONObject response = new JSONObject();
         response.put("type", type);
         response.put("success", gameResponse.isSuccess());
@@ -525,7 +1376,10 @@ public class UnoWebSocketServer extends WebSocketServer {
         if (gameResponse.getData() != null && !gameResponse.getData().isEmpty()) {
             JSONObject dataJson = new JSONObject();
             for (Map.Entry<String, Object> entry : gameResponse.getData().entrySet()) {
-                dataJson.put(entry.getKey(), entry.getValue());
+                // wrap() convierte listas/mapas anidados en JSONArray/JSONObject
+                if (entry.getValue() != null) {
+                    dataJson.put(entry.getKey(), JSONObject.wrap(entry.getValue()));
+                }
             }
             response.put("data", dataJson);
         }
@@ -534,39 +1388,59 @@ public class UnoWebSocketServer extends WebSocketServer {
         return response;
     }
 
+    private void send(WebSocket conn, JSONObject message) {
+        send(conn, OutboundMessage.of(message));
+    }
+
+    private void send(WebSocket conn, OutboundMessage message) {
+        outbound.send(ClientSession.of(conn), message);
+    }
+
     private void sendError(WebSocket conn, String message) {
+        metrics.recordError(CURRENT_ACTION.get());
         JSONObject error = new JSONObject();
         error.put("type", "error");
         error.put("success", false);
         error.put("message", message);
         error.put("timestamp", System.currentTimeMillis());
 
-        conn.send(error.toString());
+        send(conn, error);
     }
 
     private void sendGameError(WebSocket conn, String type, String message) {
+        metrics.recordError(CURRENT_ACTION.get());
         JSONObject error = new JSONObject();
         error.put("type", type);
         error.put("success", false);
         error.put("message", message);
         error.put("timestamp", System.currentTimeMillis());
 
-        conn.send(error.toString());
+        send(conn, error);
     }
 
     public static void main(String[] args) {
-        UnoWebSocketServer server = new UnoWebSocketServer();
+        ServerConfig config = ServerConfig.fromSystemProperties();
+        if (config.isGatewayMode()) {
+            GatewayServer.run(config);
+            return;
+        }
+        if (config.isStandbyMode()) {
+            ReplicationStandby.run(config);
+            return;
+        }
+        UnoWebSocketServer server = new UnoWebSocketServer(config);
+        server.setReuseAddr(true); // reiniciar un nodo en el mismo puerto sin esperar TIME_WAIT
 
         try {
             server.start();
 
             // Hook para detener el servidor
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-                System.out.println("Deteniendo servidor WebSocket...");
+                Log.info("Deteniendo servidor WebSocket...");
                 try {
                     server.stop();
                 } catch (Exception e) {
-                    System.err.println("Error deteniendo servidor: " + e.getMessage());
+                    Log.error("Error deteniendo servidor: {}", e.getMessage());
                 }
             }));
 
@@ -574,8 +1448,7 @@ public class UnoWebSocketServer extends WebSocketServer {
             Thread.currentThread().join();
 
         } catch (Exception e) {
-            System.err.println("Error al iniciar el servidor: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Error al iniciar el servidor: {}", e.getMessage(), e);
         }
     }
 }
\ No newline at end of file
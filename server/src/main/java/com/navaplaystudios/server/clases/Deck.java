@@ -11,8 +11,13 @@ public class Deck {
     private Random random;
     
     public Deck() {
+        this(new Random().nextLong());
+    }
+    
+    // Con la semilla se repite el mismo orden, también en los rebarajes (replay del log)
+    public Deck(long seed) {
         this.cards = new ArrayList<>();
-        this.random = new Random();
+        this.random = new Random(seed);
         initializeDeck();
         shuffle();
     }
@@ -4,36 +4,203 @@ package com.navaplaystudios.server.clases;
  *
  * @author alber
  */
+import org.json.JSONObject;
+
 public class GameAction {
     public enum Type {
-        PLAY_CARD, DRAW_CARD, CHOOSE_COLOR, SAY_UNO
+        CREATE_GAME("create_game", true),
+        JOIN_GAME("join_game", false),
+        START_GAME("start_game", false),
+        PLAY_CARD("play_card", false),
+        DRAW_CARD("draw_card", false),
+        CHOOSE_COLOR("choose_color", false),
+        SAY_UNO("say_uno", false),
+        GET_GAME_STATE("get_game_state", false),
+        ACK_STATE("ack_state", false),
+        RESYNC("resync", false),
+        RESUME("resume", false),
+        CLIENT_OPTIONS("client_options", true),
+        LIST_GAMES("list_games", true),
+        SUBSCRIBE_LOBBY("subscribe_lobby", false),
+        UNSUBSCRIBE_LOBBY("unsubscribe_lobby", false),
+        PING("ping", false),
+        METRICS("metrics", false);
+
+        private static final Type[] VALUES = values();
+
+        private final String wireName;
+        private final boolean cold; // poco frecuente: se conserva el JSON completo en payload
+
+        Type(String wireName, boolean cold) {
+            this.wireName = wireName;
+            this.cold = cold;
+        }
+
+        public String getWireName() { return wireName; }
+        public boolean isCold() { return cold; }
+
+        /** Busca el tipo por nombre sin crear un String (s[start, end)). */
+        public static Type fromWire(CharSequence s, int start, int end) {
+            int length = end - start;
+            for (Type type : VALUES) {
+                String name = type.wireName;
+                if (name.length() != length) {
+                    continue;
+                }
+                int i = 0;
+                while (i < length && name.charAt(i) == s.charAt(start + i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return type;
+                }
+            }
+            return null;
+        }
     }
-    
+
     private Type type;
+    private String actionName; // solo si la acción no se reconoce (para el error)
     private String playerId;
+    private String gameId;
+    private String playerName;
     private int cardIndex;
+    private boolean hasCardIndex;
     private Card.Color chosenColor;
-    
+    private Card.Color color;
+    private long version;
+    private boolean hasVersion;
+    private boolean deltaUpdates;
+    private String resumeToken;
+    private JSONObject payload; // request completo, solo para acciones frías
+    private int wireBytes; // tamaño del mensaje recibido (métricas/JFR)
+
+    public GameAction() {
+    }
+
     public GameAction(Type type, String playerId) {
         this.type = type;
         this.playerId = playerId;
     }
-    
+
     public GameAction(Type type, String playerId, int cardIndex) {
         this.type = type;
         this.playerId = playerId;
-        this.cardIndex = cardIndex;
+        setCardIndex(cardIndex);
     }
-    
+
     public GameAction(Type type, String playerId, Card.Color chosenColor) {
         this.type = type;
         this.playerId = playerId;
         this.chosenColor = chosenColor;
     }
-    
+
+    /** Deja el objeto listo para decodificar otro mensaje. */
+    public void reset() {
+        type = null;
+        actionName = null;
+        playerId = null;
+        gameId = null;
+        playerName = null;
+        cardIndex = 0;
+        hasCardIndex = false;
+        chosenColor = null;
+        color = null;
+        version = 0;
+        hasVersion = false;
+        deltaUpdates = false;
+        resumeToken = null;
+        payload = null;
+        wireBytes = 0;
+    }
+
+    /** Copia para encolar en un shard (el original se reutiliza). */
+    public GameAction copy() {
+        GameAction copy = new GameAction();
+        copy.type = type;
+        copy.actionName = actionName;
+        copy.playerId = playerId;
+        copy.gameId = gameId;
+        copy.playerName = playerName;
+        copy.cardIndex = cardIndex;
+        copy.hasCardIndex = hasCardIndex;
+        copy.chosenColor = chosenColor;
+        copy.color = color;
+        copy.version = version;
+        copy.hasVersion = hasVersion;
+        copy.deltaUpdates = deltaUpdates;
+        copy.resumeToken = resumeToken;
+        copy.payload = payload;
+        copy.wireBytes = wireBytes;
+        return copy;
+    }
+
     // Getters
     public Type getType() { return type; }
     public String getPlayerId() { return playerId; }
+    public String getGameId() { return gameId; }
+    public String getPlayerName() { return playerName; }
     public int getCardIndex() { return cardIndex; }
+    public boolean hasCardIndex() { return hasCardIndex; }
     public Card.Color getChosenColor() { return chosenColor; }
+    public Card.Color getColor() { return color; }
+    public long getVersion() { return version; }
+    public boolean hasVersion() { return hasVersion; }
+    public boolean isDeltaUpdates() { return deltaUpdates; }
+    public String getResumeToken() { return resumeToken; }
+    public JSONObject getPayload() { return payload; }
+    public int getWireBytes() { return wireBytes; }
+
+    public String getActionName() {
+        return type != null ? type.getWireName() : actionName;
+    }
+
+    // Setters (los usan los decodificadores)
+    public void setType(Type type) { this.type = type; }
+    public void setActionName(String actionName) { this.actionName = actionName; }
+    public void setPlayerId(String playerId) { this.playerId = playerId; }
+    public void setGameId(String gameId) { this.gameId = gameId; }
+    public void setPlayerName(String playerName) { this.playerName = playerName; }
+    public void setCardIndex(int cardIndex) { this.cardIndex = cardIndex; this.hasCardIndex = true; }
+    public void setChosenColor(Card.Color chosenColor) { this.chosenColor = chosenColor; }
+    public void setColor(Card.Color color) { this.color = color; }
+    public void setVersion(long version) { this.version = version; this.hasVersion = true; }
+    public void setDeltaUpdates(boolean deltaUpdates) { this.deltaUpdates = deltaUpdates; }
+    public void setResumeToken(String resumeToken) { this.resumeToken = resumeToken; }
+    public void setPayload(JSONObject payload) { this.payload = payload; }
+    public void setWireBytes(int wireBytes) { this.wireBytes = wireBytes; }
+
+    // Campos obligatorios: el mensaje de error nombra el campo que falta
+    public String requirePlayerId() { return require(playerId, "playerId"); }
+    public String requireGameId() { return require(gameId, "gameId"); }
+    public String requirePlayerName() { return require(playerName, "playerName"); }
+    public String requireResumeToken() { return require(resumeToken, "resumeToken"); }
+
+    public int requireCardIndex() {
+        if (!hasCardIndex) {
+            throw new IllegalArgumentException("Falta el campo cardIndex");
+        }
+        return cardIndex;
+    }
+
+    public Card.Color requireColor() {
+        if (color == null) {
+            throw new IllegalArgumentException("Falta el campo color");
+        }
+        return color;
+    }
+
+    public long requireVersion() {
+        if (!hasVersion) {
+            throw new IllegalArgumentException("Falta el campo version");
+        }
+        return version;
+    }
+
+    private static String require(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Falta el campo " + field);
+        }
+        return value;
+    }
 }
@@ -4,20 +4,32 @@ package com.navaplaystudios.server.clases;
  *
  * @author alber
  */
+import com.navaplaystudios.server.jfr.GameMutationEvent;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class GameManager {
     private Map<String, UnoGame> games;
-    private Map<String, String> playerToGame; // playerId -> gameId
+    private PlayerRegistry<?> registry; // playerId <-> gameId
     
     public GameManager() {
+        this(new PlayerRegistry<>());
+    }
+    
+    public GameManager(PlayerRegistry<?> registry) {
         this.games = new ConcurrentHashMap<>();
-        this.playerToGame = new ConcurrentHashMap<>();
+        this.registry = registry;
     }
     
     public synchronized String createGame() {
-        String gameId = generateGameId();
+        return createGame(generateGameId());
+    }
+
+    /** Con un gameId elegido afuera (el gateway); null si ya existe. */
+    public synchronized String createGame(String gameId) {
+        if (games.containsKey(gameId)) {
+            return null;
+        }
         UnoGame game = new UnoGame(gameId);
         games.put(gameId, game);
         return gameId;
@@ -38,8 +50,11 @@ public class GameManager {
         }
         
         Player player = new Player(playerId, playerName);
-        if (game.addPlayer(player)) {
-            playerToGame.put(playerId, gameId);
+        GameMutationEvent event = beginMutation();
+        boolean added = game.addPlayer(player);
+        commitMutation(event, "join_game", game, added);
+        if (added) {
+            registry.addToGame(playerId, gameId);
             
             Map<String, Object> data = new HashMap<>();
             data.put("gameId", gameId);
@@ -53,6 +68,11 @@ public class GameManager {
     }
     
     public GameResponse startGame(String gameId, String playerId) {
+        return startGame(gameId, playerId, new Random().nextLong());
+    }
+    
+    /** Con la semilla del mazo elegida afuera, para poder repetir la partida desde el log. */
+    public GameResponse startGame(String gameId, String playerId, long deckSeed) {
         UnoGame game = games.get(gameId);
         if (game == null) {
             return new GameResponse(false, "Juego no encontrado");
@@ -62,16 +82,19 @@ public class GameManager {
             return new GameResponse(false, "Se necesitan al menos 2 jugadores");
         }
         
+        GameMutationEvent event = beginMutation();
         try {
-            game.startGame();
+            game.startGame(deckSeed);
+            commitMutation(event, "start_game", game, true);
             return new GameResponse(true, "Juego iniciado");
         } catch (Exception e) {
+            commitMutation(event, "start_game", game, false);
             return new GameResponse(false, "Error al iniciar el juego: " + e.getMessage());
         }
     }
     
     public GameResponse playCard(String playerId, int cardIndex, Card.Color chosenColor) {
-        String gameId = playerToGame.get(playerId);
+        String gameId = registry.getGameId(playerId);
         if (gameId == null) {
             return new GameResponse(false, "Jugador no está en ningún juego");
         }
@@ -81,15 +104,23 @@ public class GameManager {
             return new GameResponse(false, "Juego no encontrado");
         }
         
-        if (game.playCard(playerId, cardIndex, chosenColor)) {
-            return new GameResponse(true, "Carta jugada exitosamente");
+        GameMutationEvent event = beginMutation();
+        boolean played = game.playCard(playerId, cardIndex, chosenColor);
+        commitMutation(event, "play_card", game, played);
+        if (played) {
+            GameResponse response = new GameResponse(true, "Carta jugada exitosamente");
+            // El servidor avisa game_ended cuando viene el ganador
+            if (game.getWinner() != null) {
+                response.addData("winner", game.getWinner().getId());
+            }
+            return response;
         }
         
         return new GameResponse(false, "No se pudo jugar la carta");
     }
     
     public GameResponse drawCard(String playerId) {
-        String gameId = playerToGame.get(playerId);
+        String gameId = registry.getGameId(playerId);
         if (gameId == null) {
             return new GameResponse(false, "Jugador no está en ningún juego");
         }
@@ -99,7 +130,10 @@ public class GameManager {
             return new GameResponse(false, "Juego no encontrado");
         }
         
-        if (game.drawCard(playerId)) {
+        GameMutationEvent event = beginMutation();
+        boolean drawn = game.drawCard(playerId);
+        commitMutation(event, "draw_card", game, drawn);
+        if (drawn) {
             return new GameResponse(true, "Carta robada exitosamente");
         }
         
@@ -107,7 +141,7 @@ public class GameManager {
     }
     
     public GameResponse chooseColor(String playerId, Card.Color color) {
-        String gameId = playerToGame.get(playerId);
+        String gameId = registry.getGameId(playerId);
         if (gameId == null) {
             return new GameResponse(false, "Jugador no está en ningún juego");
         }
@@ -117,15 +151,65 @@ public class GameManager {
             return new GameResponse(false, "Juego no encontrado");
         }
         
-        if (game.chooseColor(playerId, color)) {
+        GameMutationEvent event = beginMutation();
+        boolean chosen = game.chooseColor(playerId, color);
+        commitMutation(event, "choose_color", game, chosen);
+        if (chosen) {
             return new GameResponse(true, "Color elegido exitosamente");
         }
         
         return new GameResponse(false, "No se pudo elegir el color");
     }
     
+    /**
+     * Plazo vencido en una partida: elige color por el jugador que lo debía
+     * o, si era su turno, roba y pasa. Recibe el gameId porque el jugador
+     * puede estar desconectado con el asiento reservado.
+     */
+    public GameResponse timeoutTurn(String gameId, String playerId) {
+        UnoGame game = games.get(gameId);
+        if (game == null) {
+            return new GameResponse(false, "Juego no encontrado");
+        }
+        
+        GameMutationEvent event = beginMutation();
+        GameResponse response;
+        if (game.isWaitingForColorChoice()) {
+            Card.Color color = game.suggestColor(playerId);
+            boolean chosen = game.chooseColor(playerId, color);
+            commitMutation(event, "timeout_choose_color", game, chosen);
+            response = new GameResponse(chosen, chosen ? "Color elegido por tiempo" : "No se pudo elegir el color");
+            response.addData("action", "choose_color");
+            response.addData("color", color.toString());
+        } else {
+            boolean forfeited = game.forfeitTurn(playerId);
+            commitMutation(event, "timeout_draw", game, forfeited);
+            response = new GameResponse(forfeited, forfeited ? "Turno pasado por tiempo" : "No se pudo pasar el turno");
+            response.addData("action", "draw");
+        }
+        return response;
+    }
+    
+    // Evento JFR de cada mutación; si JFR no lo graba, begin/commit no cuestan casi nada
+    private static GameMutationEvent beginMutation() {
+        GameMutationEvent event = new GameMutationEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void commitMutation(GameMutationEvent event, String mutation, UnoGame game, boolean success) {
+        if (event.shouldCommit()) {
+            event.gameId = game.getGameId();
+            event.mutation = mutation;
+            event.playerCount = game.getPlayers().size();
+            event.stateVersion = game.getStateVersion();
+            event.success = success;
+            event.commit();
+        }
+    }
+    
     public GameResponse getGameState(String playerId) {
-        String gameId = playerToGame.get(playerId);
+        String gameId = registry.getGameId(playerId);
         if (gameId == null) {
             return new GameResponse(false, "Jugador no está en ningún juego");
         }
@@ -139,10 +223,26 @@ public class GameManager {
         return new GameResponse(true, "Estado del juego", gameState);
     }
     
-    private Map<String, Object> buildGameState(UnoGame game, String playerId) {
+    public UnoGame getGameForPlayer(String playerId) {
+        String gameId = registry.getGameId(playerId);
+        return gameId != null ? games.get(gameId) : null;
+    }
+    
+    public StateView getStateView(String playerId) {
+        String gameId = registry.getGameId(playerId);
+        if (gameId == null) {
+            return null;
+        }
+        
+        UnoGame game = games.get(gameId);
+        return game != null ? StateView.capture(game, playerId) : null;
+    }
+    
+    Map<String, Object> buildGameState(UnoGame game, String playerId) {
         Map<String, Object> state = new HashMap<>();
         
         state.put("gameId", game.getGameId());
+        state.put("version", game.getStateVersion());
         state.put("gameState", game.getState().toString());
         state.put("drawPileSize", game.getDrawPileSize());
         state.put("topCard", game.getTopCard() != null ? game.getTopCard().toString() : null);
@@ -193,7 +293,7 @@ public class GameManager {
     }
     
     public void removePlayer(String playerId) {
-        String gameId = playerToGame.remove(playerId);
+        String gameId = registry.removePlayer(playerId);
         if (gameId != null) {
             UnoGame game = games.get(gameId);
             if (game != null) {
@@ -201,6 +301,7 @@ public class GameManager {
                 for (Player player : game.getPlayers()) {
                     if (player.getId().equals(playerId)) {
                         player.setConnected(false);
+                        game.markChanged();
                         break;
                     }
                 }
@@ -210,11 +311,20 @@ public class GameManager {
                     .allMatch(p -> !p.isConnected());
                 if (allDisconnected) {
                     games.remove(gameId);
+                    registry.removeGame(gameId);
                 }
             }
         }
     }
     
+    /** Borra la partida y la pertenencia de sus jugadores; devuelve los que tenía. */
+    public Set<String> removeGame(String gameId) {
+        Set<String> members = new HashSet<>(registry.getGamePlayers(gameId));
+        games.remove(gameId);
+        registry.removeGame(gameId);
+        return members;
+    }
+    
     private String generateGameId() {
         return "GAME_" + System.currentTimeMillis() + "_" + (int)(Math.random() * 1000);
     }
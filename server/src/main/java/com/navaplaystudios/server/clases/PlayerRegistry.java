@@ -0,0 +1,103 @@
+package com.navaplaystudios.server.clases;
+
+/**
+ * Registro único de pertenencia: jugador -> juego, juego -> jugadores y
+ * jugador <-> conexión. Todas las búsquedas son O(1) y recorrer los
+ * miembros de un juego cuesta O(jugadores del juego), sin importar
+ * cuántos juegos haya en el servidor.
+ *
+ * @param <C> tipo de la conexión (WebSocket en el servidor)
+ */
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class PlayerRegistry<C> {
+    private final Map<String, String> playerToGame; // playerId -> gameId
+    private final Map<String, Set<String>> gameMembers; // gameId -> playerIds
+    private final Map<String, C> playerConnections; // playerId -> conexión
+    private final Map<C, String> connectionPlayers; // conexión -> playerId
+
+    public PlayerRegistry() {
+        this.playerToGame = new ConcurrentHashMap<>();
+        this.gameMembers = new ConcurrentHashMap<>();
+        this.playerConnections = new ConcurrentHashMap<>();
+        this.connectionPlayers = new ConcurrentHashMap<>();
+    }
+
+    // ---- Pertenencia jugador <-> juego ----
+
+    public void addToGame(String playerId, String gameId) {
+        String previousGame = playerToGame.put(playerId, gameId);
+        if (previousGame != null && !previousGame.equals(gameId)) {
+            removeMember(previousGame, playerId);
+        }
+        gameMembers.computeIfAbsent(gameId, id -> ConcurrentHashMap.newKeySet()).add(playerId);
+    }
+
+    public String getGameId(String playerId) {
+        return playerToGame.get(playerId);
+    }
+
+    public Set<String> getGamePlayers(String gameId) {
+        Set<String> members = gameMembers.get(gameId);
+        return members != null ? Collections.unmodifiableSet(members) : Collections.emptySet();
+    }
+
+    public String removePlayer(String playerId) {
+        String gameId = playerToGame.remove(playerId);
+        if (gameId != null) {
+            removeMember(gameId, playerId);
+        }
+        return gameId;
+    }
+
+    public void removeGame(String gameId) {
+        Set<String> members = gameMembers.remove(gameId);
+        if (members != null) {
+            for (String playerId : members) {
+                playerToGame.remove(playerId, gameId);
+            }
+        }
+    }
+
+    private void removeMember(String gameId, String playerId) {
+        gameMembers.computeIfPresent(gameId, (id, members) -> {
+            members.remove(playerId);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    // ---- Conexiones ----
+
+    public void bindConnection(String playerId, C connection) {
+        String previousPlayer = connectionPlayers.put(connection, playerId);
+        if (previousPlayer != null && !previousPlayer.equals(playerId)) {
+            playerConnections.remove(previousPlayer, connection);
+        }
+        playerConnections.put(playerId, connection);
+    }
+
+    public C getConnection(String playerId) {
+        return playerConnections.get(playerId);
+    }
+
+    public String getPlayerId(C connection) {
+        return connectionPlayers.get(connection);
+    }
+
+    public String unbindConnection(C connection) {
+        String playerId = connectionPlayers.remove(connection);
+        if (playerId != null) {
+            playerConnections.remove(playerId, connection);
+        }
+        return playerId;
+    }
+
+    public int getConnectionCount() {
+        return connectionPlayers.size();
+    }
+
+    public int getGameCount() {
+        return gameMembers.size();
+    }
+}
@@ -0,0 +1,170 @@
+package com.navaplaystudios.server.clases;
+
+/**
+ * Foto inmutable de lo que un jugador ve de un juego en una versión dada.
+ * Sirve de base para calcular deltas: diff() devuelve solo los campos que
+ * cambiaron entre dos versiones.
+ *
+ * La mano cambia solo quitando cartas en cualquier posición (jugar) o
+ * agregándolas al final (robar), así que el delta de la mano se expresa como
+ * índices quitados de la mano base (handRemoved) más cartas agregadas al
+ * final (handAdded). El cliente conserva así el mismo orden que el servidor
+ * y los cardIndex siguen siendo válidos.
+ */
+import java.util.*;
+
+public class StateView {
+    private final String gameId;
+    private final long version;
+    private final String playerId;
+    private final String gameState;
+    private final int drawPileSize;
+    private final String topCard;
+    private final String currentPlayer;
+    private final boolean waitingForColorChoice;
+    private final String colorChoicePlayer;
+    private final String winner;
+    private final String winnerName;
+    private final String[] playerIds;
+    private final String[] playerNames;
+    private final int[] handSizes;
+    private final boolean[] connected;
+    private final List<String> hand;
+
+    private StateView(UnoGame game, String playerId) {
+        this.gameId = game.getGameId();
+        this.version = game.getStateVersion();
+        this.playerId = playerId;
+        this.gameState = game.getState().toString();
+        this.drawPileSize = game.getDrawPileSize();
+        this.topCard = game.getTopCard() != null ? game.getTopCard().toString() : null;
+
+        Player current = game.getCurrentPlayer();
+        this.currentPlayer = current != null ? current.getId() : null;
+        this.waitingForColorChoice = game.isWaitingForColorChoice();
+        this.colorChoicePlayer = waitingForColorChoice ? game.getColorChoicePlayerId() : null;
+        this.winner = game.getWinner() != null ? game.getWinner().getId() : null;
+        this.winnerName = game.getWinner() != null ? game.getWinner().getName() : null;
+
+        List<Player> players = game.getPlayers();
+        int count = players.size();
+        this.playerIds = new String[count];
+        this.playerNames = new String[count];
+        this.handSizes = new int[count];
+        this.connected = new boolean[count];
+        List<String> ownHand = Collections.emptyList();
+        for (int i = 0; i < count; i++) {
+            Player player = players.get(i);
+            playerIds[i] = player.getId();
+            playerNames[i] = player.getName();
+            handSizes[i] = player.getHandSize();
+            connected[i] = player.isConnected();
+            if (player.getId().equals(playerId)) {
+                ownHand = new ArrayList<>(player.getHandSize());
+                for (Card card : player.getHand()) {
+                    ownHand.add(card.toString());
+                }
+            }
+        }
+        this.hand = ownHand;
+    }
+
+    public static StateView capture(UnoGame game, String playerId) {
+        return new StateView(game, playerId);
+    }
+
+    public String getGameId() { return gameId; }
+    public long getVersion() { return version; }
+    public String getPlayerId() { return playerId; }
+    public List<String> getHand() { return hand; }
+
+    /**
+     * Campos que cambiaron desde la vista base (de la misma partida y jugador).
+     * Un mapa vacío significa que no hay nada que enviar.
+     */
+    public Map<String, Object> diff(StateView base) {
+        Map<String, Object> delta = new HashMap<>();
+
+        if (!gameState.equals(base.gameState)) {
+            delta.put("gameState", gameState);
+        }
+        if (drawPileSize != base.drawPileSize) {
+            delta.put("drawPileSize", drawPileSize);
+        }
+        if (!Objects.equals(topCard, base.topCard)) {
+            delta.put("topCard", topCard);
+        }
+        if (!Objects.equals(currentPlayer, base.currentPlayer)) {
+            delta.put("currentPlayer", currentPlayer);
+            delta.put("isMyTurn", playerId.equals(currentPlayer));
+        }
+        if (waitingForColorChoice != base.waitingForColorChoice
+                || !Objects.equals(colorChoicePlayer, base.colorChoicePlayer)) {
+            delta.put("waitingForColorChoice", waitingForColorChoice);
+            delta.put("colorChoicePlayer", colorChoicePlayer);
+            delta.put("shouldChooseColor", playerId.equals(colorChoicePlayer));
+        }
+        if (!Objects.equals(winner, base.winner)) {
+            delta.put("winner", winner);
+            delta.put("winnerName", winnerName);
+        }
+
+        if (!Arrays.equals(playerIds, base.playerIds)) {
+            // Cambió la lista de jugadores (alguien se unió): se manda completa
+            delta.put("players", playersInfo());
+        } else {
+            Map<String, Object> sizeChanges = new HashMap<>();
+            Map<String, Object> connectedChanges = new HashMap<>();
+            for (int i = 0; i < playerIds.length; i++) {
+                if (handSizes[i] != base.handSizes[i]) {
+                    sizeChanges.put(playerIds[i], handSizes[i]);
+                }
+                if (connected[i] != base.connected[i]) {
+                    connectedChanges.put(playerIds[i], connected[i]);
+                }
+            }
+            if (!sizeChanges.isEmpty()) {
+                delta.put("handSizes", sizeChanges);
+            }
+            if (!connectedChanges.isEmpty()) {
+                delta.put("connected", connectedChanges);
+            }
+        }
+
+        diffHand(base.hand, delta);
+        return delta;
+    }
+
+    private void diffHand(List<String> baseHand, Map<String, Object> delta) {
+        List<Integer> removed = new ArrayList<>();
+        int j = 0;
+        for (int i = 0; i < baseHand.size(); i++) {
+            if (j < hand.size() && baseHand.get(i).equals(hand.get(j))) {
+                j++;
+            } else {
+                removed.add(i);
+            }
+        }
+        if (!removed.isEmpty()) {
+            // De mayor a menor para que el cliente pueda quitarlos en orden
+            Collections.reverse(removed);
+            delta.put("handRemoved", removed);
+        }
+        if (j < hand.size()) {
+            delta.put("handAdded", new ArrayList<>(hand.subList(j, hand.size())));
+        }
+    }
+
+    private List<Map<String, Object>> playersInfo() {
+        List<Map<String, Object>> playersInfo = new ArrayList<>();
+        for (int i = 0; i < playerIds.length; i++) {
+            Map<String, Object> playerInfo = new HashMap<>();
+            playerInfo.put("id", playerIds[i]);
+            playerInfo.put("name", playerNames[i]);
+            playerInfo.put("handSize", handSizes[i]);
+            playerInfo.put("isConnected", connected[i]);
+            playersInfo.add(playerInfo);
+        }
+        return playersInfo;
+    }
+}
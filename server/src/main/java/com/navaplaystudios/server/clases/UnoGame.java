@@ -9,10 +9,14 @@ import java.util.*;
 public class UnoGame {
     private static final int MAX_PLAYERS = 3;
     private static final int INITIAL_HAND_SIZE = 7;
+    // Tamaños aproximados en el heap (compressed oops) para estimar lo que retiene una partida
+    private static final int GAME_BYTES = 160; // UnoGame + sus listas vacías
+    private static final int PLAYER_BYTES = 120; // Player + lista de mano
+    private static final int CARD_BYTES = 28; // Card + su referencia en una lista
     
     private String gameId;
     private List<Player> players;
-    private Deck drawPile;
+    private Deck drawPile; // null hasta startGame: las mesas en espera no cargan 108 cartas
     private List<Card> discardPile;
     private GameState state;
     private int currentPlayerIndex;
@@ -20,11 +24,11 @@ public class UnoGame {
     private Player winner;
     private boolean waitingForColorChoice;
     private String colorChoicePlayerId;
+    private long stateVersion; // Crece con cada cambio visible del estado
     
     public UnoGame(String gameId) {
         this.gameId = gameId;
         this.players = new ArrayList<>();
-        this.drawPile = new Deck();
         this.discardPile = new ArrayList<>();
         this.state = GameState.WAITING_FOR_PLAYERS;
         this.currentPlayerIndex = 0;
@@ -37,14 +41,21 @@ public class UnoGame {
             return false;
         }
         players.add(player);
+        stateVersion++;
         return true;
     }
     
     public void startGame() {
+        startGame(new Random().nextLong());
+    }
+    
+    public void startGame(long deckSeed) {
         if (players.size() < 2) {
             throw new IllegalStateException("Se necesitan al menos 2 jugadores");
         }
         
+        drawPile = new Deck(deckSeed);
+        
         // Repartir cartas iniciales
         for (Player player : players) {
             player.addCards(drawPile.drawCards(INITIAL_HAND_SIZE));
@@ -62,6 +73,7 @@ public class UnoGame {
         processCardEffect(firstCard, null);
         
         state = GameState.IN_PROGRESS;
+        stateVersion++;
     }
     
     public boolean playCard(String playerId, int cardIndex, Card.Color chosenColor) {
@@ -80,6 +92,7 @@ public class UnoGame {
         
         Card playedCard = currentPlayer.playCard(cardIndex);
         discardPile.add(playedCard);
+        stateVersion++;
         
         // Si es carta comodín, establecer el color
         if (playedCard.isWild() && chosenColor != null) {
@@ -122,6 +135,7 @@ public class UnoGame {
         if (!drawPile.isEmpty()) {
             Card drawnCard = drawPile.drawCard();
             currentPlayer.addCard(drawnCard);
+            stateVersion++;
             
             // Pasar turno después de robar
             nextTurn();
@@ -141,11 +155,49 @@ public class UnoGame {
         
         waitingForColorChoice = false;
         colorChoicePlayerId = null;
+        stateVersion++;
         
         nextTurn();
         return true;
     }
     
+    // Plazo de turno vencido: roba si puede y pasa el turno igual
+    public boolean forfeitTurn(String playerId) {
+        if (drawCard(playerId)) {
+            return true;
+        }
+        if (state != GameState.IN_PROGRESS || waitingForColorChoice) {
+            return false;
+        }
+        Player currentPlayer = getCurrentPlayer();
+        if (!currentPlayer.getId().equals(playerId)) {
+            return false;
+        }
+        // Mazo y descarte agotados: solo se salta al jugador
+        stateVersion++;
+        nextTurn();
+        return true;
+    }
+    
+    // Color que más se repite en la mano (para elegir por un jugador inactivo)
+    public Card.Color suggestColor(String playerId) {
+        int[] counts = new int[Card.Color.values().length];
+        for (Player player : players) {
+            if (player.getId().equals(playerId)) {
+                for (Card card : player.getHand()) {
+                    counts[card.getColor().ordinal()]++;
+                }
+            }
+        }
+        Card.Color best = Card.Color.RED;
+        for (Card.Color color : Card.Color.values()) {
+            if (color != Card.Color.WILD && counts[color.ordinal()] > counts[best.ordinal()]) {
+                best = color;
+            }
+        }
+        return best;
+    }
+    
     private void processCardEffect(Card card, Player player) {
         switch (card.getType()) {
             case SKIP:
@@ -193,7 +245,7 @@ public class UnoGame {
         }
     }
     
-    private void reshuffleDiscardPile() {
+    void reshuffleDiscardPile() {
         if (discardPile.size() <= 1) return;
         
         Card topCard = discardPile.remove(discardPile.size() - 1);
@@ -217,5 +269,20 @@ public class UnoGame {
     public boolean isWaitingForColorChoice() { return waitingForColorChoice; }
     public String getColorChoicePlayerId() { return colorChoicePlayerId; }
     public boolean isFull() { return players.size() >= MAX_PLAYERS; }
-    public int getDrawPileSize() { return drawPile.size(); }
+    public int getDrawPileSize() { return drawPile != null ? drawPile.size() : 0; }
+    public long getStateVersion() { return stateVersion; }
+    
+    // Para cambios hechos desde fuera (p. ej. un jugador que se desconecta)
+    public void markChanged() { stateVersion++; }
+    
+    // Estimación del heap que retiene la partida (sin contar strings compartidos)
+    public long estimateRetainedBytes() {
+        long bytes = GAME_BYTES + 2L * gameId.length();
+        int cards = discardPile.size() + getDrawPileSize();
+        for (Player player : players) {
+            bytes += PLAYER_BYTES + 2L * (player.getId().length() + player.getName().length());
+            cards += player.getHandSize();
+        }
+        return bytes + (long) cards * CARD_BYTES;
+    }
 }
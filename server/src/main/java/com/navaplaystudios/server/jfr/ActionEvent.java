@@ -0,0 +1,32 @@
+package com.navaplaystudios.server.jfr;
+
+/**
+ * Una acción de cliente atendida por UnoWebSocketServer, desde que el
+ * handler empieza hasta que termina (broadcast incluido). Desactivado por
+ * defecto; lo activa el perfil uno.jfc.
+ */
+import jdk.jfr.*;
+
+@Name("uno.Action")
+@Label("Acción UNO")
+@Category({"UNO", "Servidor"})
+@Description("Acción de un cliente atendida por el servidor")
+@Enabled(false)
+@StackTrace(false)
+public class ActionEvent extends Event {
+    @Label("Juego")
+    public String gameId;
+
+    @Label("Acción")
+    public String action;
+
+    @Label("Jugador")
+    public String playerId;
+
+    @Label("Jugadores en el juego")
+    public int playerCount;
+
+    @Label("Bytes del mensaje")
+    @DataAmount
+    public int payloadBytes;
+}
@@ -0,0 +1,31 @@
+package com.navaplaystudios.server.jfr;
+
+/**
+ * Envío del estado de un juego a todos sus jugadores (frames completos o
+ * deltas). payloadBytes suma lo encolado para todos los destinatarios.
+ */
+import jdk.jfr.*;
+
+@Name("uno.Broadcast")
+@Label("Broadcast de estado")
+@Category({"UNO", "Servidor"})
+@Description("Estado de un juego enviado a sus jugadores")
+@Enabled(false)
+@StackTrace(false)
+public class BroadcastEvent extends Event {
+    @Label("Juego")
+    public String gameId;
+
+    @Label("Acción")
+    public String action;
+
+    @Label("Versión de estado")
+    public long stateVersion;
+
+    @Label("Destinatarios")
+    public int recipients;
+
+    @Label("Bytes encolados")
+    @DataAmount
+    public long payloadBytes;
+}
@@ -0,0 +1,30 @@
+package com.navaplaystudios.server.jfr;
+
+/**
+ * Mutación de un UnoGame hecha por GameManager (unirse, iniciar, jugar,
+ * robar, elegir color), con la versión de estado resultante.
+ */
+import jdk.jfr.*;
+
+@Name("uno.GameMutation")
+@Label("Mutación de juego")
+@Category({"UNO", "Juego"})
+@Description("Cambio de estado de una partida")
+@Enabled(false)
+@StackTrace(false)
+public class GameMutationEvent extends Event {
+    @Label("Juego")
+    public String gameId;
+
+    @Label("Mutación")
+    public String mutation;
+
+    @Label("Jugadores en el juego")
+    public int playerCount;
+
+    @Label("Versión de estado")
+    public long stateVersion;
+
+    @Label("Aplicada")
+    public boolean success;
+}
@@ -0,0 +1,28 @@
+package com.navaplaystudios.server.jfr;
+
+/**
+ * Operación del lobby: foto para un suscriptor, lobby_delta enviado a todos
+ * o consulta de list_games. rooms es la cantidad de salas incluidas.
+ */
+import jdk.jfr.*;
+
+@Name("uno.Lobby")
+@Label("Operación de lobby")
+@Category({"UNO", "Lobby"})
+@Description("Foto, delta o consulta del lobby")
+@Enabled(false)
+@StackTrace(false)
+public class LobbyEvent extends Event {
+    @Label("Operación")
+    public String operation;
+
+    @Label("Salas")
+    public int rooms;
+
+    @Label("Suscriptores")
+    public int subscribers;
+
+    @Label("Bytes del mensaje")
+    @DataAmount
+    public int payloadBytes;
+}
@@ -0,0 +1,120 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import org.junit.jupiter.api.Test;
+
+class ActionDecoderTest {
+
+    private static GameAction decode(String json) {
+        GameAction action = ActionDecoder.scratch();
+        ActionDecoder.decode(json, action);
+        return action;
+    }
+
+    @Test
+    void decodificaLosCamposDeUnaJugada() {
+        GameAction action = decode(
+                "{\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":3,\"chosenColor\":\"RED\"}");
+        assertEquals(GameAction.Type.PLAY_CARD, action.getType());
+        assertEquals("p1", action.getPlayerId());
+        assertTrue(action.hasCardIndex());
+        assertEquals(3, action.getCardIndex());
+        assertEquals(Card.Color.RED, action.getChosenColor());
+        assertNull(action.getPayload());
+    }
+
+    @Test
+    void saltaCamposDesconocidosYAnidados() {
+        GameAction action = decode("{\"meta\":{\"a\":[1,{\"b\":\"}\"}]},\"action\":\"draw_card\","
+                + "\"extra\":\"x\\\"y\",\"playerId\":\"p2\",\"n\":-1.5e3}");
+        assertEquals(GameAction.Type.DRAW_CARD, action.getType());
+        assertEquals("p2", action.getPlayerId());
+    }
+
+    @Test
+    void resuelveSecuenciasDeEscape() {
+        GameAction action = decode(
+                "{\"action\":\"join_game\",\"gameId\":\"g1\",\"playerId\":\"p1\",\"playerName\":\"Jos\\u00e9 \\\"J\\\"\"}");
+        assertEquals("José \"J\"", action.getPlayerName());
+    }
+
+    @Test
+    void aceptaNumerosEntreComillasYNulos() {
+        GameAction action = decode(
+                "{\"action\":\"get_game_state\",\"playerId\":\"p1\",\"version\":\"57\",\"deltaUpdates\":true,\"cardIndex\":null}");
+        assertTrue(action.hasVersion());
+        assertEquals(57, action.getVersion());
+        assertTrue(action.isDeltaUpdates());
+        assertFalse(action.hasCardIndex());
+    }
+
+    @Test
+    void conservaElPayloadDeLasAccionesFrias() {
+        GameAction action = decode("{\"action\":\"create_game\",\"roomName\":\"Sala\",\"maxPlayers\":3}");
+        assertEquals(GameAction.Type.CREATE_GAME, action.getType());
+        assertNotNull(action.getPayload());
+        assertEquals("Sala", action.getPayload().getString("roomName"));
+        assertEquals(3, action.getPayload().getInt("maxPlayers"));
+    }
+
+    @Test
+    void guardaElNombreDeUnaAccionDesconocida() {
+        GameAction action = decode("{\"action\":\"dance\",\"playerId\":\"p1\"}");
+        assertNull(action.getType());
+        assertEquals("dance", action.getActionName());
+    }
+
+    @Test
+    void rechazaMensajesMalFormados() {
+        assertThrows(IllegalArgumentException.class, () -> decode("{}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"playerId\":\"p1\"}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"action\":\"draw_card\""));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"action\":\"draw_card\" \"playerId\":\"p1\"}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"action\":\"choose_color\",\"color\":\"PINK\"}"));
+        assertThrows(IllegalArgumentException.class, () -> decode("{\"action\":\"play_card\",\"cardIndex\":\"x\"}"));
+    }
+
+    @Test
+    void rechazaNumerosFueraDeRango() {
+        // 2^32 truncado a int daba 0: jugaba la primera carta en vez de rechazar la jugada
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":4294967296}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":\"-2147483649\"}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> decode("{\"action\":\"ack_state\",\"playerId\":\"p1\",\"version\":99999999999999999999}"));
+        assertEquals(Integer.MAX_VALUE,
+                decode("{\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":2147483647}").getCardIndex());
+        assertEquals(123456789012345678L,
+                decode("{\"action\":\"ack_state\",\"playerId\":\"p1\",\"version\":123456789012345678}").getVersion());
+    }
+
+    @Test
+    void peekTypeLeeSoloLasClavesDelPrimerNivel() {
+        assertEquals(GameAction.Type.PLAY_CARD,
+                ActionDecoder.peekType("{\"playerId\":\"p1\",\"action\":\"play_card\",\"cardIndex\":0}"));
+        assertEquals(GameAction.Type.DRAW_CARD,
+                ActionDecoder.peekType("{\"data\":{\"action\":\"ping\"},\"action\":\"draw_card\"}"));
+        assertEquals(GameAction.Type.DRAW_CARD,
+                ActionDecoder.peekType("{\"playerName\":\"\\\"action\\\":\\\"ping\\\"\",\"action\":\"draw_card\"}"));
+        assertNull(ActionDecoder.peekType("{\"data\":{\"action\":\"ping\"}}"));
+    }
+
+    @Test
+    void peekTypeSeQuedaConLaUltimaAccionComoDecode() {
+        String json = "{\"action\":\"ping\",\"action\":\"play_card\",\"playerId\":\"p1\",\"cardIndex\":0}";
+        assertEquals(decode(json).getType(), ActionDecoder.peekType(json));
+        assertEquals(GameAction.Type.PLAY_CARD, ActionDecoder.peekType(json));
+    }
+
+    @Test
+    void peekTypeDevuelveNullSiNoPuedeLeer() {
+        assertNull(ActionDecoder.peekType(""));
+        assertNull(ActionDecoder.peekType("no es json"));
+        assertNull(ActionDecoder.peekType("{\"action\":\"ping\""));
+        assertNull(ActionDecoder.peekType("{\"action\":\"dance\"}"));
+    }
+}
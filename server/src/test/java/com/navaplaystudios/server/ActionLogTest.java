@@ -0,0 +1,211 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.GameState;
+import com.navaplaystudios.server.clases.Player;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ActionLogTest {
+    @TempDir
+    Path dir;
+
+    private ServerConfig config() {
+        return new ServerConfig().setPort(0).setMetricsPort(0).setWalDir(dir.toString()).setWalFsyncMillis(0)
+                .setTurnSeconds(0).setHeartbeatSeconds(0);
+    }
+
+    /** Una sesión del log: recupera lo anterior, escribe y cierra (cada sesión abre un segmento nuevo). */
+    private List<ActionLog.Entry> session(Consumer<ActionLog> write) throws IOException {
+        List<ActionLog.Entry> replayed = new ArrayList<>();
+        ActionLog log = new ActionLog(config());
+        log.replay(replayed::add);
+        log.start();
+        write.accept(log);
+        log.close();
+        return replayed;
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "wal-*.log")) {
+            stream.forEach(segments::add);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0xFF));
+            b.rewind();
+            channel.write(b, position);
+        }
+    }
+
+    @Test
+    void repiteLosRegistrosEnOrden() throws IOException {
+        session(log -> {
+            log.created("g1", "Sala", "p1", "Ana", 4, 123L);
+            log.joined("g1", "p1", "Ana");
+            log.seated("g1", "p1", "token-1");
+            log.started("g1", "p1", 42L);
+            log.played("g1", "p1", 2, Card.Color.BLUE);
+            log.played("g1", "p1", 0, null);
+            log.drew("g1", "p1");
+            log.choseColor("g1", "p1", Card.Color.YELLOW);
+            log.timedOut("g1", "p1");
+            log.left("g1", "p1");
+            log.removed("g1");
+        });
+        List<ActionLog.Entry> entries = session(log -> { });
+
+        assertEquals(11, entries.size());
+        ActionLog.Entry created = entries.get(0);
+        assertEquals(ActionLog.Op.CREATE, created.op);
+        assertEquals("Sala", created.text);
+        assertEquals("Ana", created.text2);
+        assertEquals(4, created.number);
+        assertEquals(123L, created.value);
+        assertEquals("token-1", entries.get(2).text);
+        assertEquals(42L, entries.get(3).value);
+        assertEquals(2, entries.get(4).number);
+        assertEquals(Card.Color.BLUE, entries.get(4).color());
+        assertNull(entries.get(5).color());
+        assertEquals(Card.Color.YELLOW, entries.get(7).color());
+        assertEquals(ActionLog.Op.REMOVE, entries.get(10).op);
+    }
+
+    @Test
+    void truncaUnaEscrituraAMediasAlFinal() throws IOException {
+        session(log -> {
+            log.created("g1", "Sala", "p1", "Ana", 4, 0);
+            log.drew("g1", "p1");
+        });
+        Path last = segments().get(segments().size() - 1);
+        long size = Files.size(last);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3); // el último registro quedó cortado
+        }
+
+        List<ActionLog.Entry> entries = session(log -> log.drew("g1", "p1"));
+        assertEquals(1, entries.size());
+        assertEquals(ActionLog.Op.CREATE, entries.get(0).op);
+        assertEquals(2, session(log -> { }).size()); // el corte se truncó y lo nuevo quedó legible
+    }
+
+    @Test
+    void descartaLasPartidasQueUnSegmentoDanadoDejaIncompletas() throws IOException {
+        session(log -> {
+            log.created("A", "r", "p1", "n", 2, 0);
+            log.created("B", "r", "p2", "n", 2, 0);
+            for (int i = 0; i < 50; i++) {
+                log.drew("A", "p1");
+            }
+        });
+        session(log -> {
+            log.drew("A", "p1");
+            log.drew("B", "p2");
+            log.created("C", "r", "p3", "n", 2, 0);
+            log.drew("C", "p3");
+            log.drew("D", "p4"); // su CREATE no está en lo que se lee
+        });
+        Path first = segments().get(0);
+        flipByte(first, Files.size(first) / 2);
+
+        List<ActionLog.Entry> entries = new ArrayList<>();
+        ActionLog log = new ActionLog(config());
+        log.replay(entries::add);
+
+        List<String> removed = new ArrayList<>();
+        List<String> applied = new ArrayList<>();
+        for (ActionLog.Entry entry : entries) {
+            if (entry.op == ActionLog.Op.REMOVE) {
+                removed.add(entry.gameId);
+            } else {
+                applied.add(entry.gameId);
+            }
+        }
+        assertEquals(List.of("A", "B"), removed); // se borran al final en vez de seguir divergentes
+        assertTrue(applied.contains("C"));
+        assertFalse(applied.contains("D"));
+        assertEquals(List.of("C", "C"), applied.subList(applied.size() - 2, applied.size()));
+        log.start();
+        log.close();
+    }
+
+    @Test
+    void elServidorRecuperaLasPartidasDelLog() throws IOException {
+        // Se juega una partida con GameManager y se anota lo aceptado, como hacen los handlers
+        GameManager manager = new GameManager();
+        session(log -> {
+            manager.createGame("g1");
+            log.created("g1", "Sala", "p1", "Ana", 4, 0);
+            for (String id : new String[] {"p1", "p2", "p3"}) {
+                manager.joinGame("g1", id, "Jugador " + id);
+                log.joined("g1", id, "Jugador " + id);
+            }
+            manager.startGame("g1", "p1", 7L);
+            log.started("g1", "p1", 7L);
+            UnoGame game = manager.getGame("g1");
+            for (int turn = 0; turn < 40 && game.getState() == GameState.IN_PROGRESS; turn++) {
+                if (game.isWaitingForColorChoice()) {
+                    String chooser = game.getColorChoicePlayerId();
+                    Card.Color color = game.suggestColor(chooser);
+                    manager.chooseColor(chooser, color);
+                    log.choseColor("g1", chooser, color);
+                    continue;
+                }
+                Player current = game.getCurrentPlayer();
+                boolean played = false;
+                for (int i = 0; i < current.getHandSize() && !played; i++) {
+                    if (manager.playCard(current.getId(), i, null).isSuccess()) {
+                        log.played("g1", current.getId(), i, null);
+                        played = true;
+                    }
+                }
+                if (!played && manager.drawCard(current.getId()).isSuccess()) {
+                    log.drew("g1", current.getId());
+                }
+            }
+        });
+
+        UnoWebSocketServer server = new UnoWebSocketServer(config());
+        try {
+            UnoGame original = manager.getGame("g1");
+            UnoGame recovered = server.getGameManager().getGame("g1");
+            assertNotNull(recovered);
+            assertEquals(original.getState(), recovered.getState());
+            assertEquals(original.getStateVersion(), recovered.getStateVersion());
+            assertEquals(original.getTopCard().toString(), recovered.getTopCard().toString());
+            assertEquals(original.getDrawPileSize(), recovered.getDrawPileSize());
+            assertEquals(original.isWaitingForColorChoice(), recovered.isWaitingForColorChoice());
+            if (original.getState() == GameState.IN_PROGRESS) {
+                assertEquals(original.getCurrentPlayer().getId(), recovered.getCurrentPlayer().getId());
+            }
+            for (int i = 0; i < original.getPlayers().size(); i++) {
+                assertEquals(original.getPlayers().get(i).getHand().toString(),
+                        recovered.getPlayers().get(i).getHand().toString());
+            }
+        } finally {
+            server.discard();
+        }
+    }
+}
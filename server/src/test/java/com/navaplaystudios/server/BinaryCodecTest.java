@@ -0,0 +1,170 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.navaplaystudios.server.clases.Card;
+import com.navaplaystudios.server.clases.GameAction;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class BinaryCodecTest {
+
+    private static GameAction decode(ByteBuffer frame) {
+        GameAction action = ActionDecoder.scratch();
+        BinaryCodec.decodeAction(frame, action);
+        return action;
+    }
+
+    @Test
+    void decodificaUnaJugadaConColor() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_PLAY_CARD);
+        out.string("p1");
+        out.varint(300);
+        out.u8(Card.Color.GREEN.ordinal());
+        GameAction action = decode(out.toBuffer());
+        assertEquals(GameAction.Type.PLAY_CARD, action.getType());
+        assertEquals("p1", action.getPlayerId());
+        assertEquals(300, action.getCardIndex());
+        assertEquals(Card.Color.GREEN, action.getChosenColor());
+    }
+
+    @Test
+    void decodificaUnirseConTextoUtf8() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_JOIN_GAME);
+        out.string("g1");
+        out.string("p1");
+        out.string("Ñandú");
+        out.u8(1);
+        GameAction action = decode(out.toBuffer());
+        assertEquals(GameAction.Type.JOIN_GAME, action.getType());
+        assertEquals("g1", action.getGameId());
+        assertEquals("Ñandú", action.getPlayerName());
+        assertTrue(action.isDeltaUpdates());
+    }
+
+    @Test
+    void opJsonPasaPorActionDecoder() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_JSON & 0xFF);
+        out.text("{\"action\":\"draw_card\",\"playerId\":\"p3\"}");
+        GameAction action = decode(out.toBuffer());
+        assertEquals(GameAction.Type.DRAW_CARD, action.getType());
+        assertEquals("p3", action.getPlayerId());
+    }
+
+    @Test
+    void peekTypeNoAvanzaElBuffer() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(8);
+        out.u8(BinaryCodec.OP_DRAW_CARD);
+        out.string("p1");
+        ByteBuffer frame = out.toBuffer();
+        assertEquals(GameAction.Type.DRAW_CARD, BinaryCodec.peekType(frame));
+        assertEquals(0, frame.position());
+        assertNull(BinaryCodec.peekType(ByteBuffer.allocate(0)));
+        assertNull(BinaryCodec.peekType(ByteBuffer.wrap(new byte[] {(byte) 0x7F})));
+    }
+
+    @Test
+    void rechazaLongitudesMayoresQueElFrame() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(8);
+        out.u8(BinaryCodec.OP_DRAW_CARD);
+        out.varint(1000); // anuncia 1000 bytes y manda 2
+        out.raw("p1".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> decode(out.toBuffer()));
+    }
+
+    @Test
+    void rechazaLongitudesEnormesSinReservarlas() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_DRAW_CARD);
+        out.varint(Integer.MAX_VALUE);
+        assertThrows(IllegalArgumentException.class, () -> decode(out.toBuffer()));
+
+        BinaryCodec.Writer negative = new BinaryCodec.Writer(16);
+        negative.u8(BinaryCodec.OP_DRAW_CARD);
+        negative.varint(-1); // 10 bytes: como long es negativo
+        assertThrows(IllegalArgumentException.class, () -> decode(negative.toBuffer()));
+    }
+
+    @Test
+    void rechazaCadenasPorEncimaDelMaximo() {
+        int length = BinaryCodec.Reader.MAX_STRING_BYTES + 1;
+        BinaryCodec.Writer out = new BinaryCodec.Writer(length + 8);
+        out.u8(BinaryCodec.OP_DRAW_CARD);
+        out.varint(length);
+        out.raw(new byte[length]);
+        assertThrows(IllegalArgumentException.class, () -> decode(out.toBuffer()));
+    }
+
+    @Test
+    void rechazaIndicesDeCartaFueraDeRango() {
+        BinaryCodec.Writer out = new BinaryCodec.Writer(16);
+        out.u8(BinaryCodec.OP_PLAY_CARD);
+        out.string("p1");
+        out.varint(1L << 32); // truncado a int era la carta 0
+        out.u8(0xFF);
+        assertThrows(IllegalArgumentException.class, () -> decode(out.toBuffer()));
+    }
+
+    @Test
+    void rechazaVarintsSinFin() {
+        byte[] frame = new byte[12];
+        frame[0] = BinaryCodec.OP_PLAY_CARD;
+        frame[1] = 0; // playerId vacío
+        for (int i = 2; i < frame.length; i++) {
+            frame[i] = (byte) 0x80;
+        }
+        assertThrows(IllegalArgumentException.class, () -> decode(ByteBuffer.wrap(frame)));
+    }
+
+    @Test
+    void rechazaOpcodesDesconocidos() {
+        assertThrows(IllegalArgumentException.class, () -> decode(ByteBuffer.wrap(new byte[] {0x7F})));
+        assertThrows(IllegalArgumentException.class, () -> decode(ByteBuffer.wrap(new byte[] {0})));
+    }
+
+    @Test
+    void codificaEventosConSuLayout() {
+        JSONObject event = new JSONObject().put("type", "card_played").put("gameId", "g1").put("data", "p1");
+        ByteBuffer frame = BinaryCodec.encode(event);
+        assertEquals(BinaryCodec.OP_EVENT, frame.get(0));
+        BinaryCodec.Reader in = new BinaryCodec.Reader(frame);
+        in.u8();
+        assertEquals(0, in.u8()); // card_played
+        assertEquals("g1", in.string());
+        assertEquals("p1", in.string());
+    }
+
+    @Test
+    void codificaErrores() {
+        JSONObject error = new JSONObject().put("type", "error").put("success", false).put("message", "No es tu turno");
+        BinaryCodec.Reader in = new BinaryCodec.Reader(BinaryCodec.encode(error));
+        assertEquals(BinaryCodec.OP_ERROR & 0xFF, in.u8());
+        assertEquals("error", in.string());
+        assertEquals("No es tu turno", in.string());
+    }
+
+    @Test
+    void elRestoVaComoJson() {
+        JSONObject pong = new JSONObject().put("type", "pong").put("status", "OK");
+        ByteBuffer frame = BinaryCodec.encode(pong);
+        BinaryCodec.Reader in = new BinaryCodec.Reader(frame);
+        assertEquals(BinaryCodec.OP_JSON & 0xFF, in.u8());
+        assertEquals(pong.toMap(), new JSONObject(in.rest()).toMap());
+    }
+
+    @Test
+    void codigosDeCartaIdaYVuelta() {
+        for (Card.Color color : Card.Color.values()) {
+            for (Card.Type type : Card.Type.values()) {
+                String name = color + "_" + type;
+                assertEquals(name, BinaryCodec.cardName(BinaryCodec.cardCode(color, type)));
+                assertEquals(BinaryCodec.cardCode(color, type), BinaryCodec.cardCode(name));
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.Framedata;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ClientSessionTest {
+    private static final String KEY = OutboundMessage.stateKey("g1");
+
+    private final List<JSONObject> sent = new ArrayList<>();
+    private boolean closed;
+    private ClientSession session;
+    private OutboundStats stats;
+
+    @BeforeEach
+    void setUp() {
+        // Socket abierto y sin nada en buffer que guarda lo que se le manda
+        WebSocket socket = (WebSocket) Proxy.newProxyInstance(WebSocket.class.getClassLoader(),
+                new Class<?>[] {WebSocket.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> !closed;
+                    case "hasBufferedData" -> false;
+                    case "close" -> closed = true;
+                    case "sendFrame" -> {
+                        if (args[0] instanceof Collection<?> frames) {
+                            frames.forEach(frame -> record((Framedata) frame));
+                        } else {
+                            record((Framedata) args[0]);
+                        }
+                        yield null;
+                    }
+                    default -> null;
+                });
+        session = new ClientSession(socket, ClientSession.WireFormat.JSON);
+        stats = new OutboundStats();
+    }
+
+    private void record(Framedata frame) {
+        sent.add(new JSONObject(StandardCharsets.UTF_8.decode(frame.getPayloadData()).toString()));
+    }
+
+    private static OutboundMessage fullState(long version) {
+        return OutboundMessage.of(new JSONObject().put("type", "game_state_update").put("version", version), KEY);
+    }
+
+    private static OutboundMessage delta(long baseVersion, long version) {
+        return OutboundMessage.of(new JSONObject().put("type", "game_state_delta")
+                .put("baseVersion", baseVersion).put("version", version), KEY);
+    }
+
+    private static OutboundMessage event(String type) {
+        return OutboundMessage.of(new JSONObject().put("type", type));
+    }
+
+    private List<String> flush(ServerConfig config) {
+        assertTrue(session.flushPending(config, stats) >= 0);
+        List<String> types = new ArrayList<>();
+        for (JSONObject message : sent) {
+            types.add(message.getString("type") + (message.has("version") ? "@" + message.getLong("version") : ""));
+        }
+        sent.clear();
+        return types;
+    }
+
+    @Test
+    void unEstadoCompletoReemplazaALaCadenaEncolada() {
+        ServerConfig config = new ServerConfig();
+        session.addPending(fullState(1), config, stats);
+        session.addPending(event("card_played"), config, stats);
+        session.addPending(delta(1, 2), config, stats);
+        session.addPending(fullState(3), config, stats);
+        session.addPending(delta(3, 4), config, stats);
+
+        assertEquals(List.of("card_played", "game_state_update@3", "game_state_delta@4"), flush(config));
+        assertEquals(2, stats.getSuperseded());
+        assertNull(session.pollBrokenChain());
+    }
+
+    @Test
+    void primeroDescartaLosNoCriticosSueltos() {
+        ServerConfig config = new ServerConfig().setOutboundQueueMessages(3);
+        session.addPending(fullState(1), config, stats);
+        session.addPending(event("card_played"), config, stats);
+        session.addPending(delta(1, 2), config, stats);
+        session.addPending(delta(2, 3), config, stats);
+
+        assertEquals(List.of("game_state_update@1", "game_state_delta@2", "game_state_delta@3"), flush(config));
+        assertEquals(1, stats.getDropped());
+        assertNull(session.pollBrokenChain());
+    }
+
+    @Test
+    void conLaColaLlenaCortaLaCadenaYEsperaUnEstadoCompleto() {
+        ServerConfig config = new ServerConfig().setOutboundQueueMessages(4);
+        session.addPending(fullState(1), config, stats);
+        session.addPending(delta(1, 2), config, stats);
+        session.addPending(delta(2, 3), config, stats);
+        session.addPending(event("player_joined"), config, stats);
+        session.addPending(event("game_started"), config, stats);
+
+        // Se va la cadena entera, no un delta suelto, y se avisa una sola vez
+        assertEquals(2, session.getPendingCount());
+        assertEquals(3, stats.getDropped());
+        assertEquals(KEY, session.pollBrokenChain());
+        assertNull(session.pollBrokenChain());
+
+        // Los deltas que siguen no tienen base en el cliente
+        assertFalse(session.addPending(delta(3, 4), config, stats));
+        assertEquals(2, session.getPendingCount());
+
+        session.addPending(fullState(4), config, stats);
+        session.addPending(delta(4, 5), config, stats);
+        assertEquals(List.of("player_joined", "game_started", "game_state_update@4", "game_state_delta@5"),
+                flush(config));
+        assertFalse(closed);
+    }
+
+    @Test
+    void nuncaQuedaUnDeltaSinSuBase() {
+        ServerConfig config = new ServerConfig().setOutboundQueueMessages(3);
+        long version = 1;
+        session.addPending(fullState(version), config, stats);
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            session.addPending(delta(version, version + 1), config, stats);
+            version++;
+            if (i % 7 == 0) {
+                session.addPending(event("game_started"), config, stats);
+            }
+            if (session.pollBrokenChain() != null) {
+                // Lo que hace el servidor: mandar el estado completo de nuevo
+                session.addPending(fullState(version), config, stats);
+            }
+            if (i % 10 == 9) {
+                received.addAll(flush(config));
+            }
+        }
+        received.addAll(flush(config));
+
+        // Aplicado en orden, cada delta parte de la versión que tiene el cliente
+        long clientVersion = 0;
+        for (String message : received) {
+            if (message.startsWith("game_state_update@")) {
+                clientVersion = Long.parseLong(message.substring(message.indexOf('@') + 1));
+            } else if (message.startsWith("game_state_delta@")) {
+                long next = Long.parseLong(message.substring(message.indexOf('@') + 1));
+                assertEquals(clientVersion + 1, next, received.toString());
+                clientVersion = next;
+            }
+        }
+        assertEquals(version, clientVersion);
+        assertTrue(stats.getDropped() > 0);
+        assertFalse(closed);
+    }
+
+    @Test
+    void elEstadoCompletoRecienEncoladoNoSeDescarta() {
+        ServerConfig config = new ServerConfig().setOutboundQueueMessages(2);
+        session.addPending(event("player_joined"), config, stats);
+        session.addPending(event("game_started"), config, stats);
+        session.addPending(fullState(1), config, stats);
+
+        // Sin nada que descartar, se desconecta en vez de pedir otro estado
+        assertTrue(closed);
+        assertNull(session.pollBrokenChain());
+        assertEquals(1, stats.getOverflowDisconnects());
+    }
+}
@@ -0,0 +1,178 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.navaplaystudios.server.clases.GameManager;
+import com.navaplaystudios.server.clases.UnoGame;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class GameExecutorTest {
+    /** Contador sin sincronizar: solo da bien si las tareas de un juego nunca se pisan. */
+    private static final class Game {
+        final String id;
+        final AtomicBoolean running = new AtomicBoolean();
+        int count;
+        volatile boolean overlapped;
+
+        Game(String id) {
+            this.id = id;
+        }
+
+        void increment() {
+            if (!running.compareAndSet(false, true)) {
+                overlapped = true;
+            }
+            count++;
+            running.set(false);
+        }
+    }
+
+    /** Cada hilo productor encola perGame incrementos en todos los juegos y espera a que corran. */
+    private static void hammer(GameExecutor executor, List<Game> games, int producers, int perGame)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(producers * games.size() * perGame);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perGame; i++) {
+                    for (Game game : games) {
+                        executor.execute(game.id, () -> {
+                            game.increment();
+                            done.countDown();
+                        });
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS), "quedaron tareas sin correr");
+    }
+
+    private static List<Game> games(int count) {
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            games.add(new Game("game_" + i));
+        }
+        return games;
+    }
+
+    @Test
+    void unJuegoSiempreCaeEnElMismoShard() {
+        GameExecutor executor = new GameExecutor(8);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                String id = "game_" + i;
+                int shard = executor.shardFor(id);
+                assertTrue(shard >= 0 && shard < 8);
+                assertEquals(shard, executor.shardFor(new String(id.toCharArray())));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void noSePierdenActualizacionesConVariosProductores() throws InterruptedException {
+        int producers = Math.max(4, Runtime.getRuntime().availableProcessors());
+        GameExecutor executor = new GameExecutor(4);
+        List<Game> games = games(200);
+        try {
+            hammer(executor, games, producers, 250);
+        } finally {
+            executor.shutdown();
+        }
+        for (Game game : games) {
+            assertFalse(game.overlapped, "dos tareas de " + game.id + " corrieron a la vez");
+            assertEquals(producers * 250, game.count, game.id);
+        }
+    }
+
+    @Test
+    void lasTareasDeUnJuegoCorrenEnOrden() throws InterruptedException {
+        GameExecutor executor = new GameExecutor(4);
+        int tasks = 10_000;
+        List<Integer> seen = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(tasks);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                int n = i;
+                executor.execute("g1", () -> {
+                    seen.add(n); // solo el hilo del shard de g1
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < tasks; i++) {
+            assertEquals(i, seen.get(i));
+        }
+    }
+
+    @Test
+    void jugadasConcurrentesSobreGameManager() throws InterruptedException {
+        // Robos de todos los jugadores de 100 partidas, encolados desde 4 hilos: cada robo aceptado sube la versión en 1
+        GameManager manager = new GameManager();
+        List<String> gameIds = new ArrayList<>();
+        for (int g = 0; g < 100; g++) {
+            String gameId = manager.createGame("g" + g);
+            for (int p = 0; p < 3; p++) {
+                manager.joinGame(gameId, gameId + "p" + p, "Jugador " + p);
+            }
+            manager.startGame(gameId, gameId + "p0", g);
+            gameIds.add(gameId);
+        }
+        long[] before = new long[gameIds.size()];
+        for (int g = 0; g < gameIds.size(); g++) {
+            before[g] = manager.getGame(gameIds.get(g)).getStateVersion();
+        }
+
+        GameExecutor executor = new GameExecutor(4);
+        AtomicInteger accepted = new AtomicInteger();
+        int[] perGame = new int[gameIds.size()];
+        CountDownLatch done = new CountDownLatch(4 * gameIds.size() * 20);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread producer = new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (int g = 0; g < gameIds.size(); g++) {
+                        String gameId = gameIds.get(g);
+                        int index = g;
+                        executor.execute(gameId, () -> {
+                            UnoGame game = manager.getGame(gameId);
+                            String current = game.getCurrentPlayer().getId();
+                            if (manager.drawCard(current).isSuccess()) {
+                                perGame[index]++; // solo el shard de esta partida
+                                accepted.incrementAndGet();
+                            }
+                            done.countDown();
+                        });
+                    }
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        for (int g = 0; g < gameIds.size(); g++) {
+            assertEquals(before[g] + perGame[g], manager.getGame(gameIds.get(g)).getStateVersion(), gameIds.get(g));
+        }
+        assertTrue(accepted.get() > 0);
+    }
+}
@@ -0,0 +1,23 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ServerConfigTest {
+
+    @Test
+    void laPartidaVaciaDuraMasQueLasReservas() {
+        ServerConfig config = new ServerConfig().setEmptyTtlSeconds(120).setResumeGraceSeconds(300);
+        assertEquals(300 + ServerConfig.EMPTY_TTL_MARGIN_SECONDS, config.getEmptyTtlSeconds());
+        // El orden de los setters no importa
+        config = new ServerConfig().setResumeGraceSeconds(300).setEmptyTtlSeconds(120);
+        assertEquals(300 + ServerConfig.EMPTY_TTL_MARGIN_SECONDS, config.getEmptyTtlSeconds());
+    }
+
+    @Test
+    void respetaUnTtlMayorOSinResume() {
+        assertEquals(600, new ServerConfig().setResumeGraceSeconds(60).setEmptyTtlSeconds(600).getEmptyTtlSeconds());
+        assertEquals(5, new ServerConfig().setResumeGraceSeconds(0).setEmptyTtlSeconds(5).getEmptyTtlSeconds());
+    }
+}
@@ -0,0 +1,136 @@
+package com.navaplaystudios.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+    private static final long TICK_MILLIS = 5;
+
+    private TimingWheel wheel;
+
+    private static final class Counter extends TimingWheel.Timeout {
+        final AtomicInteger expired = new AtomicInteger();
+        final AtomicLong expiredAt = new AtomicLong();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        protected void expire() {
+            expiredAt.set(System.nanoTime());
+            expired.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel(TICK_MILLIS, 64);
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void venceDespuesDelPlazo() throws InterruptedException {
+        Counter timeout = new Counter();
+        long start = System.nanoTime();
+        wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue(timeout.latch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.expiredAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(1, timeout.expired.get());
+    }
+
+    @Test
+    void cancelarEvitaElVencimiento() throws InterruptedException {
+        Counter timeout = new Counter();
+        wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(30));
+        wheel.cancel(timeout);
+        assertFalse(timeout.latch.await(150, TimeUnit.MILLISECONDS));
+        assertEquals(0, timeout.expired.get());
+    }
+
+    @Test
+    void reprogramarSeQuedaConElUltimoPlazo() throws InterruptedException {
+        Counter timeout = new Counter();
+        long start = System.nanoTime();
+        wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(20));
+        wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(200));
+        assertTrue(timeout.latch.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.expiredAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+        Thread.sleep(50);
+        assertEquals(1, timeout.expired.get());
+    }
+
+    @Test
+    void plazosMasLargosQueUnaVuelta() throws InterruptedException {
+        // 64 cubetas de 5 ms: 500 ms da casi dos vueltas a la rueda
+        Counter timeout = new Counter();
+        long start = System.nanoTime();
+        wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(500));
+        assertTrue(timeout.latch.await(3, TimeUnit.SECONDS));
+        assertTrue(timeout.expiredAt.get() - start >= TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(1, timeout.expired.get());
+    }
+
+    @Test
+    void sePuedeReprogramarDesdeExpire() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(3);
+        TimingWheel.Timeout repeating = new TimingWheel.Timeout() {
+            @Override
+            protected void expire() {
+                done.countDown();
+                if (done.getCount() > 0) {
+                    wheel.schedule(this, TimeUnit.MILLISECONDS.toNanos(10));
+                }
+            }
+        };
+        wheel.schedule(repeating, TimeUnit.MILLISECONDS.toNanos(10));
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void muchosPlazosDesdeVariosHilos() throws InterruptedException {
+        int threads = 4;
+        int perThread = 2_000;
+        List<Counter> timeouts = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++) {
+            timeouts.add(new Counter());
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * perThread;
+            Thread worker = new Thread(() -> {
+                for (int i = first; i < first + perThread; i++) {
+                    Counter timeout = timeouts.get(i);
+                    wheel.schedule(timeout, TimeUnit.MILLISECONDS.toNanos(50 + i % 100));
+                    if (i % 2 == 1) {
+                        wheel.cancel(timeout); // la mitad se cancela antes de vencer
+                    }
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (int i = 0; i < timeouts.size(); i += 2) {
+            assertTrue(timeouts.get(i).latch.await(2, TimeUnit.SECONDS), "no venció el plazo " + i);
+        }
+        Thread.sleep(150);
+        for (int i = 0; i < timeouts.size(); i++) {
+            assertEquals(i % 2 == 0 ? 1 : 0, timeouts.get(i).expired.get(), "plazo " + i);
+        }
+        assertEquals(0, wheel.size());
+    }
+}